@@ -11,8 +11,23 @@ public class PatchInfo {
     public final Bitmap patchBm;
     public final boolean intersects;
     public final boolean areaChanged;
+    // Part of patchBm (bitmap coordinates) to re-render; null re-renders the whole patch.
+    public final Rect dirtyArea;
+    // Result of a dirtyArea render: the region rendered offscreen, copied into patchBm on the UI
+    // thread so native code never draws into a bitmap the view may be showing.
+    public final Bitmap regionBm;
 
     public PatchInfo(Rect viewArea, Bitmap patchBm, Rect previousArea, boolean update) {
+        this(viewArea, patchBm, previousArea, update, null);
+    }
+
+    // Update of the patch already in patchBm limited to dirtyArea, given in page view pixels
+    // (the coordinates of viewArea's content). Falls back to a complete redraw when the area moved.
+    public PatchInfo(Rect viewArea, Bitmap patchBm, Rect previousArea, Rect dirtyPageArea) {
+        this(viewArea, patchBm, previousArea, true, dirtyPageArea);
+    }
+
+    private PatchInfo(Rect viewArea, Bitmap patchBm, Rect previousArea, boolean update, Rect dirtyPageArea) {
         this.viewArea = viewArea;
         Rect rect = new Rect(0, 0, patchBm.getWidth(), patchBm.getHeight());
         intersects = rect.intersect(viewArea);
@@ -21,6 +36,37 @@ public class PatchInfo {
         areaChanged = previousArea == null || !viewArea.equals(previousArea);
         completeRedraw = areaChanged || !update;
         this.patchBm = patchBm;
+
+        Rect dirty = null;
+        if (!completeRedraw && dirtyPageArea != null) {
+            dirty = new Rect(dirtyPageArea);
+            if (dirty.intersect(patchArea)) {
+                dirty.offset(-patchArea.left, -patchArea.top);
+                // The RGB_565 dither is a 2x2 pattern indexed by x and y parity; even left and top
+                // edges keep it in step with complete renders.
+                dirty.left &= ~1;
+                dirty.top &= ~1;
+            } else {
+                dirty.setEmpty();
+            }
+        }
+        dirtyArea = dirty;
+        regionBm = null;
+    }
+
+    private PatchInfo(PatchInfo other, Bitmap regionBm) {
+        viewArea = other.viewArea;
+        patchArea = other.patchArea;
+        completeRedraw = other.completeRedraw;
+        patchBm = other.patchBm;
+        intersects = other.intersects;
+        areaChanged = other.areaChanged;
+        dirtyArea = other.dirtyArea;
+        this.regionBm = regionBm;
     }
-}
 
+    // This patch with dirtyArea rendered into regionBm.
+    public PatchInfo withRegionBitmap(Bitmap regionBm) {
+        return new PatchInfo(this, regionBm);
+    }
+}
@@ -1,84 +1,95 @@
 #include "mupdf_native.h"
 #include "pp_core.h"
 
-void alerts_init(globals *glo)
-{
-    if (!glo || !glo->ctx || !glo->doc)
-        return;
-    if (glo->alerts)
-        return;
-
-    /* PDF-only: returns NULL for non-PDF docs. */
-    glo->alerts = pp_pdf_alerts_new_mupdf(glo->ctx, glo->doc);
-}
-
-void alerts_fin(globals *glo)
+/*
+ * Delivers an alert to MuPDFCore.onAlertFromNative on the thread that is running the document's
+ * JavaScript. That thread is inside a JNI call on this core, so glo->env/glo->thiz belong to it.
+ */
+static int alerts_notify_java(void *user, const pp_pdf_alert *alert)
 {
-    if (!glo || !glo->alerts)
-        return;
-    pp_pdf_alerts_drop(glo->alerts);
-    glo->alerts = NULL;
-}
-
-JNIEXPORT jobject JNICALL
-JNI_FN(MuPDFCore_waitForAlertInternal)(JNIEnv * env, jobject thiz)
-{
-    globals *glo = get_globals(env, thiz);
+    globals *glo = (globals *)user;
+    JNIEnv *env;
+    jclass coreClass;
     jclass alertClass;
+    jmethodID callback;
     jmethodID ctor;
     jstring title;
     jstring message;
     jobject obj;
-    pp_pdf_alert alert;
+    jboolean delivered;
 
-    if (!glo || !glo->alerts)
-        return NULL;
-
-    if (!pp_pdf_alerts_wait(glo->alerts, &alert))
-        return NULL;
+    if (!glo || !glo->env || !glo->thiz || !alert)
+        return 0;
+    env = glo->env;
 
     alertClass = (*env)->FindClass(env, PACKAGENAME "/MuPDFAlertInternal");
     if (alertClass == NULL)
     {
-        pp_pdf_alert_free_mupdf(glo->ctx, &alert);
-        return NULL;
+        (*env)->ExceptionClear(env);
+        return 0;
     }
-
     ctor = (*env)->GetMethodID(env, alertClass, "<init>", "(Ljava/lang/String;IILjava/lang/String;I)V");
-    if (ctor == NULL)
+    coreClass = (*env)->GetObjectClass(env, glo->thiz);
+    callback = coreClass ? (*env)->GetMethodID(env, coreClass, "onAlertFromNative",
+                                               "(L" PACKAGENAME "/MuPDFAlertInternal;)Z") : NULL;
+    if (ctor == NULL || callback == NULL)
     {
-        pp_pdf_alert_free_mupdf(glo->ctx, &alert);
-        return NULL;
+        (*env)->ExceptionClear(env);
+        return 0;
     }
 
-    title = (*env)->NewStringUTF(env, alert.title_utf8 ? alert.title_utf8 : "");
-    if (title == NULL)
+    title = (*env)->NewStringUTF(env, alert->title_utf8 ? alert->title_utf8 : "");
+    message = (*env)->NewStringUTF(env, alert->message_utf8 ? alert->message_utf8 : "");
+    if (title == NULL || message == NULL)
     {
-        pp_pdf_alert_free_mupdf(glo->ctx, &alert);
-        return NULL;
+        (*env)->ExceptionClear(env);
+        return 0;
     }
 
-    message = (*env)->NewStringUTF(env, alert.message_utf8 ? alert.message_utf8 : "");
-    if (message == NULL)
+    obj = (*env)->NewObject(env, alertClass, ctor,
+                            message, alert->icon_type, alert->button_group_type, title, alert->button_pressed);
+    delivered = obj ? (*env)->CallBooleanMethod(env, glo->thiz, callback, obj) : JNI_FALSE;
+    if ((*env)->ExceptionCheck(env))
     {
-        (*env)->DeleteLocalRef(env, title);
-        pp_pdf_alert_free_mupdf(glo->ctx, &alert);
-        return NULL;
+        (*env)->ExceptionClear(env);
+        delivered = JNI_FALSE;
     }
 
-    obj = (*env)->NewObject(env, alertClass, ctor,
-                            message, alert.icon_type, alert.button_group_type, title, alert.button_pressed);
-
     (*env)->DeleteLocalRef(env, title);
     (*env)->DeleteLocalRef(env, message);
-    pp_pdf_alert_free_mupdf(glo->ctx, &alert);
-    return obj;
+    if (obj)
+        (*env)->DeleteLocalRef(env, obj);
+    (*env)->DeleteLocalRef(env, coreClass);
+    (*env)->DeleteLocalRef(env, alertClass);
+    return delivered ? 1 : 0;
+}
+
+void alerts_init(globals *glo)
+{
+    if (!glo || !glo->ctx || !glo->doc)
+        return;
+    if (glo->alerts)
+        return;
+
+    /* PDF-only: returns NULL for non-PDF docs. */
+    glo->alerts = pp_pdf_alerts_new_mupdf(glo->ctx, glo->doc);
+    pp_pdf_alerts_set_notify(glo->alerts, alerts_notify_java, glo);
+}
+
+void alerts_fin(globals *glo)
+{
+    if (!glo || !glo->alerts)
+        return;
+    pp_pdf_alerts_drop(glo->alerts);
+    glo->alerts = NULL;
 }
 
 JNIEXPORT void JNICALL
 JNI_FN(MuPDFCore_replyToAlertInternal)(JNIEnv * env, jobject thiz, jobject alertObj)
 {
-    globals *glo = get_globals(env, thiz);
+    /* Runs on the UI thread while the script thread is parked inside a core call: leave
+     * glo->env/glo->thiz (which belong to that thread) untouched. */
+    globals *glo = get_globals_any_thread(env, thiz);
     jclass alertClass;
     jfieldID field;
     int button_pressed;
@@ -101,7 +112,7 @@ JNI_FN(MuPDFCore_replyToAlertInternal)(JNIEnv * env, jobject thiz, jobject alert
 JNIEXPORT void JNICALL
 JNI_FN(MuPDFCore_startAlertsInternal)(JNIEnv * env, jobject thiz)
 {
-    globals *glo = get_globals(env, thiz);
+    globals *glo = get_globals_any_thread(env, thiz);
     if (!glo || !glo->alerts)
         return;
     (void)pp_pdf_alerts_start(glo->alerts);
@@ -110,7 +121,7 @@ JNI_FN(MuPDFCore_startAlertsInternal)(JNIEnv * env, jobject thiz)
 JNIEXPORT void JNICALL
 JNI_FN(MuPDFCore_stopAlertsInternal)(JNIEnv * env, jobject thiz)
 {
-    globals *glo = get_globals(env, thiz);
+    globals *glo = get_globals_any_thread(env, thiz);
     if (!glo || !glo->alerts)
         return;
     pp_pdf_alerts_stop(glo->alerts);
@@ -390,6 +390,25 @@ JNI_FN(MuPDFCore_clearPageCacheInternal)(JNIEnv *env, jobject thiz)
 		drop_page_cache(glo, &glo->pages[i]);
 }
 
+JNIEXPORT void JNICALL
+JNI_FN(MuPDFCore_trimCachesInternal)(JNIEnv *env, jobject thiz, jint percent)
+{
+	globals *glo = get_globals(env, thiz);
+	if (glo == NULL)
+		return;
+
+	if (percent <= 0)
+	{
+		for (int i = 0; i < NUM_CACHE; i++)
+			drop_page_cache(glo, &glo->pages[i]);
+		fz_empty_store(glo->ctx);
+	}
+	else if (percent < 100)
+	{
+		fz_shrink_store(glo->ctx, (unsigned int)percent);
+	}
+}
+
 JNIEXPORT jboolean JNICALL
 JNI_FN(MuPDFCore_layoutDocumentInternal)(JNIEnv *env, jobject thiz, jfloat pageW, jfloat pageH, jfloat em)
 {
@@ -465,6 +484,81 @@ JNI_FN(MuPDFCore_pageNumberFromLocationInternal)(JNIEnv *env, jobject thiz, jlon
 	return (jint)page_num;
 }
 
+JNIEXPORT jintArray JNICALL
+JNI_FN(MuPDFCore_chapterPageCountsInternal)(JNIEnv *env, jobject thiz)
+{
+	globals *glo = get_globals(env, thiz);
+	if (glo == NULL || glo->ctx == NULL || glo->doc == NULL)
+		return NULL;
+
+	fz_context *ctx = glo->ctx;
+	int n = 0;
+	int *counts = NULL;
+	jintArray arr;
+
+	fz_var(counts);
+	fz_try(ctx)
+	{
+		n = fz_count_chapters(ctx, glo->doc);
+		counts = fz_malloc(ctx, (n > 0 ? n : 1) * sizeof(int));
+		for (int i = 0; i < n; i++)
+			counts[i] = fz_count_chapter_pages(ctx, glo->doc, i);
+	}
+	fz_catch(ctx)
+	{
+		fz_free(ctx, counts);
+		LOGE("chapterPageCountsInternal failed: %s", fz_caught_message(ctx));
+		return NULL;
+	}
+
+	arr = (*env)->NewIntArray(env, n);
+	if (arr != NULL && n > 0)
+		(*env)->SetIntArrayRegion(env, arr, 0, n, (const jint *)counts);
+	fz_free(ctx, counts);
+	return arr;
+}
+
+JNIEXPORT jint JNICALL
+JNI_FN(MuPDFCore_chapterCountInternal)(JNIEnv *env, jobject thiz)
+{
+	globals *glo = get_globals(env, thiz);
+	if (glo == NULL || glo->ctx == NULL || glo->doc == NULL)
+		return (jint)-1;
+
+	fz_context *ctx = glo->ctx;
+	int n = -1;
+	fz_try(ctx)
+	{
+		n = fz_count_chapters(ctx, glo->doc);
+	}
+	fz_catch(ctx)
+	{
+		n = -1;
+	}
+	return (jint)n;
+}
+
+JNIEXPORT jint JNICALL
+JNI_FN(MuPDFCore_chapterPageCountInternal)(JNIEnv *env, jobject thiz, jint chapter)
+{
+	globals *glo = get_globals(env, thiz);
+	if (glo == NULL || glo->ctx == NULL || glo->doc == NULL)
+		return (jint)-1;
+
+	fz_context *ctx = glo->ctx;
+	int n = -1;
+	fz_try(ctx)
+	{
+		if (chapter >= 0 && chapter < fz_count_chapters(ctx, glo->doc))
+			n = fz_count_chapter_pages(ctx, glo->doc, (int)chapter);
+	}
+	fz_catch(ctx)
+	{
+		n = -1;
+	}
+	return (jint)n;
+}
+
 JNIEXPORT void JNICALL
 JNI_FN(MuPDFCore_setUserCssInternal)(JNIEnv *env, jobject thiz, jstring jcss)
 {
@@ -3,51 +3,138 @@
 
 JNIEXPORT void JNICALL JNI_FN(MuPDFCore_gotoPageInternal)(JNIEnv *env, jobject thiz, int page);
 
-JNIEXPORT jboolean JNICALL
-JNI_FN(MuPDFCore_drawPage)(JNIEnv *env, jobject thiz, jobject bitmap,
-		int pageW, int pageH, int patchX, int patchY, int patchW, int patchH, jlong cookiePtr)
+/*
+ * Converts one RGBA_8888 row to RGB_565. The renderer composites onto opaque white, so alpha
+ * can be dropped; a 2x2 ordered dither keeps gradients in scanned pages from banding.
+ */
+static void rgba_row_to_565(const unsigned char *src, uint16_t *dst, int width, int y)
+{
+	static const int dither[2][2] = { { 0, 4 }, { 6, 2 } };
+	int x;
+	for (x = 0; x < width; x++)
+	{
+		int d = dither[y & 1][x & 1];
+		int r = src[0] + (d >> 1);
+		int g = src[1] + (d >> 2);
+		int b = src[2] + (d >> 1);
+		if (r > 255) r = 255;
+		if (g > 255) g = 255;
+		if (b > 255) b = 255;
+		dst[x] = (uint16_t)(((r >> 3) << 11) | ((g >> 2) << 5) | (b >> 3));
+		src += 4;
+	}
+}
+
+/*
+ * Renders a patch into an Android bitmap. RGBA_8888 bitmaps are rendered in place; RGB_565
+ * bitmaps are rendered into a temporary RGBA buffer and converted, which halves the memory the
+ * Java side keeps for opaque pages and thumbnails.
+ */
+static int render_into_bitmap(JNIEnv *env, globals *glo, jobject bitmap, fz_page *page, int page_index,
+		int pageW, int pageH, int patchX, int patchY, int patchW, int patchH, pp_cookie *cookie)
 {
 	AndroidBitmapInfo info;
 	void *pixels;
+	unsigned char *rgba = NULL;
 	int ret = 0;
 	int ok = 0;
-	globals *glo = get_globals(env, thiz);
-	page_cache *pc = &glo->pages[glo->current];
-	pp_cookie *cookie = (pp_cookie *)(intptr_t)cookiePtr;
-
-	if (!glo || !glo->ctx || !glo->doc || pc->number < 0)
-		return 0;
 
-	LOGI("native drawPage page=%d page=%dx%d patch=[%d,%d,%d,%d]",
-	     pc->number, pageW, pageH, patchX, patchY, patchW, patchH);
 	if ((ret = AndroidBitmap_getInfo(env, bitmap, &info)) < 0) {
 		LOGE("AndroidBitmap_getInfo() failed ! error=%d", ret);
 		return 0;
 	}
 
-	if (info.format != ANDROID_BITMAP_FORMAT_RGBA_8888) {
-		LOGE("Bitmap format is not RGBA_8888 !");
+	if (info.format != ANDROID_BITMAP_FORMAT_RGBA_8888 && info.format != ANDROID_BITMAP_FORMAT_RGB_565) {
+		LOGE("Bitmap format %d is not RGBA_8888 or RGB_565 !", info.format);
 		return 0;
 	}
 
+	if (info.format == ANDROID_BITMAP_FORMAT_RGB_565) {
+		rgba = malloc((size_t)info.width * (size_t)info.height * 4);
+		if (rgba == NULL) {
+			LOGE("cannot allocate RGB_565 staging buffer %dx%d", info.width, info.height);
+			return 0;
+		}
+	}
+
 	if ((ret = AndroidBitmap_lockPixels(env, bitmap, &pixels)) < 0) {
 		LOGE("AndroidBitmap_lockPixels() failed ! error=%d", ret);
+		free(rgba);
 		return 0;
 	}
 
-	ok = pp_render_patch_rgba_mupdf_opts(glo->ctx, glo->doc, pc->page, pc->number,
-	                               pageW, pageH,
-	                               patchX, patchY, patchW, patchH,
-	                               (unsigned char *)pixels, info.stride, cookie,
-	                               glo->render_annots);
-	if (!ok)
-		LOGE("drawPage render failed page=%d", pc->number);
+	if (rgba == NULL) {
+		ok = pp_render_patch_rgba_mupdf_opts(glo->ctx, glo->doc, page, page_index,
+		                               pageW, pageH,
+		                               patchX, patchY, patchW, patchH,
+		                               (unsigned char *)pixels, info.stride, cookie,
+		                               glo->render_annots);
+	} else {
+		ok = pp_render_patch_rgba_mupdf_opts(glo->ctx, glo->doc, page, page_index,
+		                               pageW, pageH,
+		                               patchX, patchY, patchW, patchH,
+		                               rgba, (int)info.width * 4, cookie,
+		                               glo->render_annots);
+		if (ok) {
+			uint32_t y;
+			for (y = 0; y < info.height; y++)
+				rgba_row_to_565(rgba + (size_t)y * info.width * 4,
+				                (uint16_t *)((unsigned char *)pixels + (size_t)y * info.stride),
+				                (int)info.width, patchY + (int)y);
+		}
+	}
 
 	AndroidBitmap_unlockPixels(env, bitmap);
+	free(rgba);
+
+	return ok;
+}
+
+JNIEXPORT jboolean JNICALL
+JNI_FN(MuPDFCore_drawPage)(JNIEnv *env, jobject thiz, jobject bitmap,
+		int pageW, int pageH, int patchX, int patchY, int patchW, int patchH, jlong cookiePtr)
+{
+	int ok = 0;
+	globals *glo = get_globals(env, thiz);
+	page_cache *pc = &glo->pages[glo->current];
+	pp_cookie *cookie = (pp_cookie *)(intptr_t)cookiePtr;
+
+	if (!glo || !glo->ctx || !glo->doc || pc->number < 0)
+		return 0;
+
+	LOGI("native drawPage page=%d page=%dx%d patch=[%d,%d,%d,%d]",
+	     pc->number, pageW, pageH, patchX, patchY, patchW, patchH);
+
+	ok = render_into_bitmap(env, glo, bitmap, pc->page, pc->number,
+	                        pageW, pageH, patchX, patchY, patchW, patchH, cookie);
+	if (!ok)
+		LOGE("drawPage render failed page=%d", pc->number);
 
 	return ok ? 1 : 0;
 }
 
+/*
+ * Whether the current page uses transparency groups, blend modes or soft masks. Such pages
+ * tend to carry smooth shading that bands in RGB_565, so callers keep them in ARGB_8888.
+ * Non-PDF documents (images, EPUB, CBZ) report 0.
+ */
+JNIEXPORT jboolean JNICALL
+JNI_FN(MuPDFCore_pageHasTransparencyInternal)(JNIEnv *env, jobject thiz)
+{
+	globals *glo = get_globals(env, thiz);
+	page_cache *pc;
+
+	if (!glo || !glo->ctx || !glo->doc)
+		return 1;
+	pc = &glo->pages[glo->current];
+	if (pc->number < 0 || pc->page == NULL)
+		return 1;
+	if (pdf_specifics(glo->ctx, glo->doc) == NULL)
+		return 0;
+
+	return ((pdf_page *)pc->page)->transparency ? 1 : 0;
+}
+
 static char *widget_type_string(int t)
 {
 	switch(t)
@@ -71,9 +158,6 @@ JNI_FN(MuPDFCore_updatePageInternal)(JNIEnv *env, jobject thiz, jobject bitmap,
 	if (page < 0)
 		page = 0;
 
-	AndroidBitmapInfo info;
-	void *pixels;
-	int ret = 0;
 	int ok = 0;
 	globals *glo = get_globals(env, thiz);
 	fz_page *cached_page = NULL;
@@ -85,20 +169,6 @@ JNI_FN(MuPDFCore_updatePageInternal)(JNIEnv *env, jobject thiz, jobject bitmap,
 
 	LOGI("native updatePage page=%d page=%dx%d patch=[%d,%d,%d,%d]",
 	     page, pageW, pageH, patchX, patchY, patchW, patchH);
-	if ((ret = AndroidBitmap_getInfo(env, bitmap, &info)) < 0) {
-		LOGE("AndroidBitmap_getInfo() failed ! error=%d", ret);
-		return 0;
-	}
-
-	if (info.format != ANDROID_BITMAP_FORMAT_RGBA_8888) {
-		LOGE("Bitmap format is not RGBA_8888 !");
-		return 0;
-	}
-
-	if ((ret = AndroidBitmap_lockPixels(env, bitmap, &pixels)) < 0) {
-		LOGE("AndroidBitmap_lockPixels() failed ! error=%d", ret);
-		return 0;
-	}
 
 	for (i = 0; i < NUM_CACHE; i++)
 	{
@@ -109,16 +179,11 @@ JNI_FN(MuPDFCore_updatePageInternal)(JNIEnv *env, jobject thiz, jobject bitmap,
 		}
 	}
 
-	ok = pp_render_patch_rgba_mupdf_opts(glo->ctx, glo->doc, cached_page, page,
-	                               pageW, pageH,
-	                               patchX, patchY, patchW, patchH,
-	                               (unsigned char *)pixels, info.stride, cookie,
-	                               glo->render_annots);
+	ok = render_into_bitmap(env, glo, bitmap, cached_page, page,
+	                        pageW, pageH, patchX, patchY, patchW, patchH, cookie);
 	if (!ok)
 		LOGE("updatePage render failed page=%d", page);
 
-	AndroidBitmap_unlockPixels(env, bitmap);
-
 	return ok ? 1 : 0;
 }
 
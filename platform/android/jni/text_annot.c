@@ -1285,8 +1285,20 @@ JNI_FN(MuPDFCore_updateFreeTextRotationInternal)(JNIEnv * env, jobject thiz, jlo
 	}
 }
 
-JNIEXPORT jobjectArray JNICALL
-JNI_FN(MuPDFCore_getAnnotationsInternal)(JNIEnv * env, jobject thiz, int pageNumber)
+static int compare_object_ids(const void *a, const void *b)
+{
+	jlong x = *(const jlong *)a;
+	jlong y = *(const jlong *)b;
+	return (x > y) - (x < y);
+}
+
+/*
+ * Lists the annotations of a page as Java objects. Annotations whose object id is in
+ * reuse_arcs (sorted ascending) get null arcs: the caller already holds them, and ink-heavy
+ * pages spend most of the listing creating PointF objects.
+ */
+static jobjectArray
+annotations_to_java(JNIEnv * env, jobject thiz, int pageNumber, const jlong *reuse_arcs, jsize reuse_count)
 {
 	jclass annotClass, pt_cls, ptarr_cls;
     jmethodID Annotation;
@@ -1345,7 +1357,10 @@ JNI_FN(MuPDFCore_getAnnotationsInternal)(JNIEnv * env, jobject thiz, int pageNum
             jtext = (*env)->NewStringUTF(env, info->contents_utf8);
 
         jobjectArray arcs = NULL;
-        if (info->arcs != NULL && info->arc_count > 0)
+        jlong object_id = (jlong)info->object_id;
+        int reuse = reuse_count > 0 && object_id > 0
+                && bsearch(&object_id, reuse_arcs, reuse_count, sizeof(jlong), compare_object_ids) != NULL;
+        if (!reuse && info->arcs != NULL && info->arc_count > 0)
         {
             arcs = (*env)->NewObjectArray(env, info->arc_count, ptarr_cls, NULL);
             if (arcs == NULL) { arr = NULL; goto cleanup; }
@@ -1391,3 +1406,51 @@ cleanup:
         pp_pdf_drop_annot_list_mupdf(ctx, list);
     return arr;
 }
+
+JNIEXPORT jobjectArray JNICALL
+JNI_FN(MuPDFCore_getAnnotationsInternal)(JNIEnv * env, jobject thiz, int pageNumber)
+{
+    return annotations_to_java(env, thiz, pageNumber, NULL, 0);
+}
+
+JNIEXPORT jobjectArray JNICALL
+JNI_FN(MuPDFCore_getAnnotationsReusingArcsInternal)(JNIEnv * env, jobject thiz, int pageNumber, jlongArray jreuse)
+{
+    jobjectArray arr;
+    jsize count = jreuse != NULL ? (*env)->GetArrayLength(env, jreuse) : 0;
+    jlong *reuse = count > 0 ? (*env)->GetLongArrayElements(env, jreuse, NULL) : NULL;
+
+    if (count > 0 && reuse == NULL)
+        return NULL;
+    arr = annotations_to_java(env, thiz, pageNumber, reuse, reuse != NULL ? count : 0);
+    if (reuse != NULL)
+        (*env)->ReleaseLongArrayElements(env, jreuse, reuse, JNI_ABORT);
+    return arr;
+}
+
+/*
+ * Regenerates the appearance streams of annotations changed on the current page without
+ * rendering it, e.g. before saving a document that had annotations added programmatically.
+ */
+JNIEXPORT void JNICALL
+JNI_FN(MuPDFCore_updatePageAppearancesInternal)(JNIEnv * env, jobject thiz)
+{
+	globals *glo = get_globals(env, thiz);
+	if (glo == NULL) return;
+	fz_context *ctx = glo->ctx;
+	pdf_document *idoc = pdf_specifics(ctx, glo->doc);
+	page_cache *pc = &glo->pages[glo->current];
+
+	if (idoc == NULL || pc->page == NULL)
+		return;
+
+	fz_try(ctx)
+	{
+		pdf_update_page(ctx, (pdf_page *)pc->page);
+		dump_annotation_display_lists(glo);
+	}
+	fz_catch(ctx)
+	{
+		LOGE("updatePageAppearancesInternal: %s", fz_caught_message(ctx));
+	}
+}
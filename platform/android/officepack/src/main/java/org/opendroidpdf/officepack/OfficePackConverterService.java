@@ -49,7 +49,7 @@ public final class OfficePackConverterService extends Service {
                  BufferedInputStream bin = new BufferedInputStream(in);
                  BufferedOutputStream bout = new BufferedOutputStream(out)) {
 
-                int result = WordToPdfConverter.convert(bin, bout, getCacheDir());
+                int result = WordToPdfConverter.convert(bin, bout, getCacheDir(), BuildConfig.IMAGE_DPI);
                 bout.flush();
                 return result;
             } catch (Throwable t) {
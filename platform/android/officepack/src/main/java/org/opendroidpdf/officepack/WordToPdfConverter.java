@@ -5,6 +5,10 @@ import android.graphics.BitmapFactory;
 import android.util.Log;
 import android.util.Xml;
 
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceGray;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
 import com.tom_roush.pdfbox.pdmodel.graphics.image.LosslessFactory;
 import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
 import com.tom_roush.pdfbox.pdmodel.PDDocument;
@@ -18,6 +22,8 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -44,6 +50,12 @@ final class WordToPdfConverter {
     private static final float LINE_SPACING_MULT = 1.25f;
     private static final float PARAGRAPH_SPACING_MULT = 0.6f;
 
+    /**
+     * Default resolution non-JPEG images are decoded at, relative to their placed size on the
+     * page. JPEGs are embedded as-is (DCT passthrough) and are not resampled.
+     */
+    static final int DEFAULT_IMAGE_DPI = 150;
+
     private static final byte[] OLE_HEADER = new byte[]{
             (byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0,
             (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1
@@ -52,14 +64,15 @@ final class WordToPdfConverter {
     private WordToPdfConverter() {
     }
 
-    static int convert(BufferedInputStream in, OutputStream out, File tempDir) throws IOException {
+    /** {@code imageDpi}: see {@link #DEFAULT_IMAGE_DPI}; values below 1 select the default. */
+    static int convert(BufferedInputStream in, OutputStream out, File tempDir, int imageDpi) throws IOException {
         in.mark(16);
         byte[] header = new byte[8];
         int read = readAtLeast(in, header);
         in.reset();
 
         if (read >= 2 && header[0] == 'P' && header[1] == 'K') {
-            return convertDocxToPdf(in, out, tempDir);
+            return convertDocxToPdf(in, out, tempDir, imageDpi);
         }
 
         if (read == 8 && isOleHeader(header)) {
@@ -88,7 +101,7 @@ final class WordToPdfConverter {
         return true;
     }
 
-    private static int convertDocxToPdf(InputStream in, OutputStream out, File tempDir) throws IOException {
+    private static int convertDocxToPdf(InputStream in, OutputStream out, File tempDir, int imageDpi) throws IOException {
         File tmpDocx = File.createTempFile("odp_docx_", ".docx", tempDir);
         try {
             try (FileOutputStream fout = new FileOutputStream(tmpDocx)) {
@@ -118,7 +131,7 @@ final class WordToPdfConverter {
 
                 PdfFlowWriter writer;
                 try {
-                    writer = new PdfFlowWriter(pdf);
+                    writer = new PdfFlowWriter(pdf, imageDpi);
                 } catch (IOException ioe) {
                     Log.e(TAG, "PDF writer init failed", ioe);
                     return IOfficePackConverter.RESULT_ERROR;
@@ -319,10 +332,77 @@ final class WordToPdfConverter {
         return name.equals(localName) || name.endsWith(":" + localName);
     }
 
+    private static final class PlacedImage {
+        final PDImageXObject image;
+        final float widthPt;
+        final float heightPt;
+
+        PlacedImage(PDImageXObject image, float widthPt, float heightPt) {
+            this.image = image;
+            this.widthPt = widthPt;
+            this.heightPt = heightPt;
+        }
+    }
+
+    /** Largest power-of-two subsample that still leaves at least {@code targetWidth} pixels. */
+    static int sampleSizeFor(int srcWidth, int targetWidth) {
+        int sample = 1;
+        while (targetWidth > 0 && srcWidth / (sample * 2) >= targetWidth) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    /**
+     * Returns the component count of a baseline, extended or progressive 8-bit JPEG (which PDF
+     * readers decode natively via DCTDecode), or -1 for anything else (not a JPEG, arithmetic
+     * coding, 12-bit, lossless, truncated).
+     */
+    static int jpegComponentCount(byte[] data) {
+        if (data == null || data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) return -1;
+        int pos = 2;
+        while (pos + 3 < data.length) {
+            if ((data[pos] & 0xFF) != 0xFF) return -1;
+            int marker = data[pos + 1] & 0xFF;
+            if (marker == 0xFF) { // fill byte
+                pos++;
+                continue;
+            }
+            pos += 2;
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) continue; // no length
+            if (marker == 0xD9 || marker == 0xDA) return -1; // EOI/SOS before a frame header
+            int length = ((data[pos] & 0xFF) << 8) | (data[pos + 1] & 0xFF);
+            if (length < 2) return -1;
+            if (marker == 0xC0 || marker == 0xC1 || marker == 0xC2) {
+                if (pos + 7 >= data.length) return -1;
+                int precision = data[pos + 2] & 0xFF;
+                return precision == 8 ? (data[pos + 7] & 0xFF) : -1;
+            }
+            if (marker >= 0xC3 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                return -1; // lossless / arithmetic-coded frames
+            }
+            pos += length;
+        }
+        return -1;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
     private static final class PdfFlowWriter {
         private static final PDFont FONT = PDType1Font.HELVETICA;
 
         private final PDDocument pdf;
+        private final int imageDpi;
+        /** Images already embedded, by zip entry, so repeated images share one XObject. */
+        private final Map<String, PlacedImage> images = new HashMap<>();
         private final float lineHeight;
         private final float paragraphGap;
         private final float usableWidth;
@@ -334,8 +414,9 @@ final class WordToPdfConverter {
 
         private boolean wroteContent;
 
-        PdfFlowWriter(PDDocument pdf) throws IOException {
+        PdfFlowWriter(PDDocument pdf, int imageDpi) throws IOException {
             this.pdf = pdf;
+            this.imageDpi = imageDpi > 0 ? imageDpi : DEFAULT_IMAGE_DPI;
 
             lineHeight = TEXT_SIZE_PT * LINE_SPACING_MULT;
             paragraphGap = lineHeight * PARAGRAPH_SPACING_MULT;
@@ -484,33 +565,60 @@ final class WordToPdfConverter {
                 return;
             }
 
-            Bitmap bitmap;
+            PlacedImage placed = images.get(entryName);
+            if (placed == null) {
+                placed = loadImage(zip, entry);
+                if (placed == null) {
+                    Log.i(TAG, "DOCX image decode failed for " + entryName);
+                    return;
+                }
+                images.put(entryName, placed);
+            }
+            appendImage(placed);
+        }
+
+        private PlacedImage loadImage(ZipFile zip, ZipEntry entry) throws IOException {
+            byte[] bytes;
             try (InputStream img = zip.getInputStream(entry)) {
-                bitmap = BitmapFactory.decodeStream(img);
+                bytes = readFully(img);
             }
-            if (bitmap == null) {
-                Log.i(TAG, "DOCX image decode failed for " + entryName);
-                return;
+
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.length, bounds);
+            int pixelWidth = bounds.outWidth;
+            int pixelHeight = bounds.outHeight;
+            if (pixelWidth <= 0 || pixelHeight <= 0) return null;
+
+            // Layout is unchanged from full decoding: one pixel per point, capped at the text width.
+            float widthPt = Math.min(usableWidth, pixelWidth);
+            float heightPt = pixelHeight * (widthPt / pixelWidth);
+
+            int components = jpegComponentCount(bytes);
+            if (components == 1 || components == 3) {
+                PDColorSpace colorSpace = components == 1 ? PDDeviceGray.INSTANCE : PDDeviceRGB.INSTANCE;
+                PDImageXObject image = new PDImageXObject(pdf, new ByteArrayInputStream(bytes),
+                        COSName.DCT_DECODE, pixelWidth, pixelHeight, 8, colorSpace);
+                return new PlacedImage(image, widthPt, heightPt);
             }
 
+            int targetPixels = Math.max(1, Math.round(widthPt * imageDpi / 72f));
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSizeFor(pixelWidth, targetPixels);
+            Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+            if (bitmap == null) return null;
             try {
-                appendImage(bitmap);
+                return new PlacedImage(LosslessFactory.createFromImage(pdf, bitmap), widthPt, heightPt);
             } finally {
                 bitmap.recycle();
             }
         }
 
-        private void appendImage(Bitmap bitmap) throws IOException {
-            float maxWidth = usableWidth;
-            float desiredWidth = Math.min(maxWidth, bitmap.getWidth());
-            float scale = desiredWidth / Math.max(1f, bitmap.getWidth());
-            float desiredHeight = bitmap.getHeight() * scale;
-
-            ensureSpace(desiredHeight + paragraphGap);
+        private void appendImage(PlacedImage placed) throws IOException {
+            ensureSpace(placed.heightPt + paragraphGap);
 
-            PDImageXObject image = LosslessFactory.createFromImage(pdf, bitmap);
-            float yBottom = yTop - desiredHeight;
-            contentStream.drawImage(image, x, yBottom, desiredWidth, desiredHeight);
+            float yBottom = yTop - placed.heightPt;
+            contentStream.drawImage(placed.image, x, yBottom, placed.widthPt, placed.heightPt);
             wroteContent = true;
 
             yTop = yBottom - paragraphGap;
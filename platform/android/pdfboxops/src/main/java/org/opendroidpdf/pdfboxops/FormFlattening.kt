@@ -0,0 +1,49 @@
+package org.opendroidpdf.pdfboxops
+
+import com.tom_roush.pdfbox.cos.COSDictionary
+import com.tom_roush.pdfbox.pdmodel.PDDocument
+import com.tom_roush.pdfbox.pdmodel.interactive.annotation.PDAnnotationWidget
+import com.tom_roush.pdfbox.pdmodel.interactive.form.PDAcroForm
+import com.tom_roush.pdfbox.pdmodel.interactive.form.PDField
+import com.tom_roush.pdfbox.pdmodel.interactive.form.PDTerminalField
+import java.io.IOException
+import java.util.IdentityHashMap
+
+/**
+ * Page-at-a-time AcroForm flattening, shared by [PdfBoxOps] and the XFA pack converter.
+ */
+object FormFlattening {
+    /**
+     * Flattens [acro]'s terminal fields grouped by the first page that shows one of their widgets,
+     * in page order, so a refresh only builds one page's appearances at a time. Fields without a
+     * placed widget and the non-terminal fields of the tree go last.
+     *
+     * With [refreshAppearances] each group's appearance streams are regenerated before it is
+     * flattened; without it the existing appearances are used as-is.
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun flattenByPage(doc: PDDocument, acro: PDAcroForm, refreshAppearances: Boolean) {
+        // Widget -> page, from the pages' /Annots (a widget's /P entry is optional).
+        val pageOfWidget = IdentityHashMap<COSDictionary, Int>()
+        doc.pages.forEachIndexed { index, page ->
+            for (annot in page.annotations) {
+                if (annot is PDAnnotationWidget) pageOfWidget[annot.cosObject] = index
+            }
+        }
+        val byPage = sortedMapOf<Int, MutableList<PDField>>()
+        val rest = ArrayList<PDField>()
+        for (field in acro.fieldTree) {
+            if (field !is PDTerminalField) {
+                rest.add(field)
+                continue
+            }
+            val page = field.widgets.mapNotNull { pageOfWidget[it.cosObject] }.minOrNull()
+            if (page == null) rest.add(field) else byPage.getOrPut(page) { ArrayList() }.add(field)
+        }
+        for (fields in byPage.values) {
+            acro.flatten(fields, refreshAppearances)
+        }
+        if (rest.isNotEmpty()) acro.flatten(rest, refreshAppearances)
+    }
+}
@@ -1,14 +1,16 @@
 package org.opendroidpdf.pdfboxops
 
+import android.content.ContentResolver
 import android.content.Context
 import android.net.Uri
 import androidx.annotation.WorkerThread
 import com.tom_roush.pdfbox.android.PDFBoxResourceLoader
+import com.tom_roush.pdfbox.io.MemoryUsageSetting
 import com.tom_roush.pdfbox.pdmodel.PDDocument
 import com.tom_roush.pdfbox.pdmodel.PDDocumentInformation
 import com.tom_roush.pdfbox.pdmodel.interactive.form.PDAcroForm
-import java.io.InputStream
-import java.io.OutputStream
+import java.io.File
+import java.io.FileOutputStream
 
 /**
  * Lightweight PDFBox-backed helpers kept out of the base APK.
@@ -21,6 +23,16 @@ object PdfBoxOps {
     @Volatile
     private var initialized = false
 
+    /** Default cap on PDFBox's in-heap buffers; anything beyond spills to a scratch file. */
+    const val DEFAULT_MAX_MAIN_MEMORY_BYTES: Long = 16L * 1024 * 1024
+
+    /**
+     * Heap budget for PDFBox stream buffers while a document is open. Inputs are always read from
+     * a seekable file, so only parsed objects and this much stream data live on the heap.
+     */
+    @Volatile
+    var maxMainMemoryBytes: Long = DEFAULT_MAX_MAIN_MEMORY_BYTES
+
     private fun ensureInit(context: Context) {
         if (initialized) return
         synchronized(this) {
@@ -39,28 +51,19 @@ object PdfBoxOps {
     /**
      * Flatten AcroForm fields into page content. Saves to [output] to keep the
      * source immutable. Returns page count and whether a form was present.
+     *
+     * Fields are refreshed and flattened one page at a time, so appearance generation only holds
+     * one page's widgets at once.
      */
     @WorkerThread
     fun flattenForm(context: Context, input: Uri, output: Uri): FlattenResult {
         ensureInit(context)
-        return context.contentResolver.openInputStream(input).use { inputStream ->
-            requireNotNull(inputStream) { "Missing input stream for $input" }
-            PDDocument.load(inputStream).use { doc ->
-                val acro: PDAcroForm? = doc.documentCatalog.acroForm
-                val hadForm = acro != null
-                acro?.apply {
-                    // Generate appearances before flattening to keep field styling.
-                    setNeedAppearances(true)
-                    refreshAppearances()
-                    flatten()
-                }
-                context.contentResolver.openOutputStream(output, "w").use { out ->
-                    requireNotNull(out) { "Missing output stream for $output" }
-                    doc.save(out)
-                    out.flush()
-                }
-                FlattenResult(doc.numberOfPages, hadForm)
-            }
+        return openDocument(context, input, output) { doc ->
+            val acro: PDAcroForm? = doc.documentCatalog.acroForm
+            val hadForm = acro != null
+            acro?.let { flattenByPage(doc, it) }
+            save(context, doc, output)
+            FlattenResult(doc.numberOfPages, hadForm)
         }
     }
 
@@ -82,22 +85,66 @@ object PdfBoxOps {
         request: MetadataRequest
     ): Int {
         ensureInit(context)
-        return context.contentResolver.openInputStream(input).use { inputStream ->
-            requireNotNull(inputStream) { "Missing input stream for $input" }
-            PDDocument.load(inputStream).use { doc ->
-                val info: PDDocumentInformation = doc.documentInformation ?: PDDocumentInformation()
-                request.title?.let { info.title = it }
-                request.author?.let { info.author = it }
-                request.subject?.let { info.subject = it }
-                request.keywords?.takeIf { it.isNotEmpty() }?.let { info.keywords = it.joinToString(", ") }
-                doc.documentInformation = info
-                context.contentResolver.openOutputStream(output, "w").use { out ->
-                    requireNotNull(out) { "Missing output stream for $output" }
-                    doc.save(out)
-                    out.flush()
-                }
-                doc.numberOfPages
+        return openDocument(context, input, output) { doc ->
+            val info: PDDocumentInformation = doc.documentInformation ?: PDDocumentInformation()
+            request.title?.let { info.title = it }
+            request.author?.let { info.author = it }
+            request.subject?.let { info.subject = it }
+            request.keywords?.takeIf { it.isNotEmpty() }?.let { info.keywords = it.joinToString(", ") }
+            doc.documentInformation = info
+            save(context, doc, output)
+            doc.numberOfPages
+        }
+    }
+
+    private fun flattenByPage(doc: PDDocument, acro: PDAcroForm) {
+        // Generate appearances before flattening to keep field styling.
+        acro.setNeedAppearances(true)
+        FormFlattening.flattenByPage(doc, acro, refreshAppearances = true)
+    }
+
+    private fun memoryUsage(tempDir: File): MemoryUsageSetting =
+        MemoryUsageSetting.setupMixed(maxMainMemoryBytes.coerceAtLeast(0L)).setTempDir(tempDir)
+
+    /**
+     * Opens [input] from a seekable file: file:// URIs directly, anything else after spooling the
+     * stream into the cache dir. PDFBox then reads objects on demand instead of buffering the
+     * whole input in the heap. An input that is also the [output] is always spooled, since the
+     * document keeps reading from its source until it is closed.
+     */
+    private fun <T> openDocument(context: Context, input: Uri, output: Uri, block: (PDDocument) -> T): T {
+        val tempDir = context.cacheDir
+        var spooled: File? = null
+        try {
+            val source = input.path?.takeIf { input.scheme == ContentResolver.SCHEME_FILE && input != output }
+                ?.let(::File)
+                ?.takeIf { it.isFile && it.canRead() }
+                ?: spoolToTempFile(context, input, tempDir).also { spooled = it }
+            return PDDocument.load(source, memoryUsage(tempDir)).use(block)
+        } finally {
+            spooled?.delete()
+        }
+    }
+
+    private fun spoolToTempFile(context: Context, input: Uri, tempDir: File): File {
+        val file = File.createTempFile("odp_pdfbox_", ".pdf", tempDir)
+        try {
+            context.contentResolver.openInputStream(input).use { inputStream ->
+                requireNotNull(inputStream) { "Missing input stream for $input" }
+                FileOutputStream(file).use { out -> inputStream.copyTo(out) }
             }
+        } catch (t: Throwable) {
+            file.delete()
+            throw t
+        }
+        return file
+    }
+
+    private fun save(context: Context, doc: PDDocument, output: Uri) {
+        context.contentResolver.openOutputStream(output, "w").use { out ->
+            requireNotNull(out) { "Missing output stream for $output" }
+            doc.save(out)
+            out.flush()
         }
     }
 }
@@ -26,6 +26,10 @@ public class ChoosePDFAdapter extends BaseAdapter {
         mItems.add(item);
     }
 
+    public void add(int index, ChoosePDFItem item) {
+        mItems.add(index, item);
+    }
+
     public int getCount() {
         return mItems.size();
     }
@@ -26,15 +26,15 @@ import android.widget.ListView;
 import android.widget.TextView.OnEditorActionListener;
 import android.widget.TextView;
 import java.io.File;
-import java.io.FileFilter;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import kotlinx.coroutines.CoroutineScope;
 import org.opendroidpdf.app.AppCoroutines;
 import org.opendroidpdf.app.document.DocumentViewerIntents;
+import org.opendroidpdf.app.storage.DirectoryScanner;
 
 public class FileBrowserFragment extends ListFragment {
 
@@ -43,8 +43,10 @@ public class FileBrowserFragment extends ListFragment {
     private File mDirectory;
     private Map<String, Integer> mPositions = new HashMap<String, Integer>();
     private File  mParent;
-    private File[] mDirs;
-    private File[] mFiles;
+    private final List<File> mDirs = new ArrayList<File>();
+    private final List<File> mFiles = new ArrayList<File>();
+    private DirectoryScanner.Handle mScan;
+    private File mListedDirectory;
     private CoroutineScope uiScope;
     private Runnable mUpdateFiles;
     private ChoosePDFAdapter mAdapter;
@@ -138,71 +140,64 @@ public class FileBrowserFragment extends ListFragment {
         mUpdateFiles = new Runnable() {
                 public void run() {
                     if(!isAdded() || isDetached() || isRemoving()) return;
-                    if(mDirectory==null) return;
+                    if(mDirectory==null || mAdapter==null) return;
 
                         //Set the title from the current direcory
                     setTitle();
-                    
-                        //Get the parent directory and the directories and files
-                    mParent = mDirectory.getParentFile();
-                    mDirs = mDirectory.listFiles(new FileFilter() {
-                            public boolean accept(File file) {
-                                return file.isDirectory();
+
+                        //List the directory in the background; batches arrive sorted and in order
+                    if (mScan != null) mScan.cancel();
+                    final File directory = mDirectory;
+                        //Rescans of the shown directory keep the old listing until the first batch arrives
+                    final boolean sameDirectory = directory.equals(mListedDirectory);
+                    mListedDirectory = directory;
+                    mParent = directory.getParentFile();
+                    if (!sameDirectory) {
+                        clearListing();
+                        mAdapter.notifyDataSetChanged();
+                    }
+                    mScan = DirectoryScanner.get().scan(uiScope, directory, new DirectoryScanner.Callback() {
+                            private boolean cleared = !sameDirectory;
+
+                            private void clearOnce() {
+                                if (cleared) return;
+                                cleared = true;
+                                clearListing();
                             }
-                        });
-                    if (mDirs == null)
-                        mDirs = new File[0];
-                    mFiles = mDirectory.listFiles(new FileFilter() {
-                            public boolean accept(File file) {
-                                if (file.isDirectory())
-                                    return false;
-                                String fname = file.getName().toLowerCase();
-                                switch (mPurpose) {
-                                    case ChooseFileForOpening:
-                                    case ChooseFileForOpeningAndLaunch:
-                                        return fname.endsWith(".pdf") || fname.endsWith(".epub");
-                                    case ChooseFileForSaving:
-                                        return fname.endsWith(".pdf");
-                                    case PickKeyFile:
-                                        return fname.endsWith(".pfx") || fname.endsWith(".p12");
-                                    default:
-                                        return false;
+
+                            @Override
+                            public void onBatch(List<String> dirs, List<String> files) {
+                                clearOnce();
+                                int dirOffset = mParent == null ? 0 : 1;
+                                for (String name : dirs) {
+                                    mAdapter.add(dirOffset + mDirs.size(), new ChoosePDFItem(ChoosePDFItem.Type.DIR, name));
+                                    mDirs.add(new File(directory, name));
+                                }
+                                for (String name : files) {
+                                    if (!acceptFile(name)) continue;
+                                    mAdapter.add(new ChoosePDFItem(ChoosePDFItem.Type.DOC, name));
+                                    mFiles.add(new File(directory, name));
                                 }
+                                mAdapter.notifyDataSetChanged();
                             }
-                        });
-                    if (mFiles == null)
-                        mFiles = new File[0];
 
-                        //Sort the file and directory lists
-                    Arrays.sort(mFiles, new Comparator<File>() {
-                            public int compare(File arg0, File arg1) {
-                                return arg0.getName().compareToIgnoreCase(arg1.getName());
-                            }
-                        });
-                    Arrays.sort(mDirs, new Comparator<File>() {
-                            public int compare(File arg0, File arg1) {
-                                return arg0.getName().compareToIgnoreCase(arg1.getName());
+                            @Override
+                            public void onComplete(boolean failed) {
+                                clearOnce();
+                                mAdapter.notifyDataSetChanged();
+                                lastPosition();
                             }
                         });
-
-                        //Add them to the adapter
-                    mAdapter.clear();
-                    if (mParent != null)
-                        mAdapter.add(new ChoosePDFItem(ChoosePDFItem.Type.PARENT, getString(R.string.parent_directory)));
-                    for (File f : mDirs)
-                        mAdapter.add(new ChoosePDFItem(ChoosePDFItem.Type.DIR, f.getName()));
-                    for (File f : mFiles)
-                        mAdapter.add(new ChoosePDFItem(ChoosePDFItem.Type.DOC, f.getName()));
-                    mAdapter.notifyDataSetChanged();
-                    lastPosition();
                 }
             };
         
             // Start initial file scan...
         AppCoroutines.launchMain(uiScope, mUpdateFiles);
             // ...and observe the directory and scan files upon changes.
-        FileObserver observer = new FileObserver(mDirectory.getPath(), FileObserver.CREATE | FileObserver.DELETE) {
+        final File observed = mDirectory;
+        FileObserver observer = new FileObserver(observed.getPath(), FileObserver.CREATE | FileObserver.DELETE) {
                 public void onEvent(int event, String path) {
+                    DirectoryScanner.get().invalidate(observed);
                     AppCoroutines.launchMain(uiScope, mUpdateFiles);
                 }
             };
@@ -210,6 +205,35 @@ public class FileBrowserFragment extends ListFragment {
     }
 
 
+    private void clearListing() {
+        mDirs.clear();
+        mFiles.clear();
+        mAdapter.clear();
+        if (mParent != null)
+            mAdapter.add(new ChoosePDFItem(ChoosePDFItem.Type.PARENT, getString(R.string.parent_directory)));
+    }
+
+    private boolean acceptFile(String name) {
+        String fname = name.toLowerCase();
+        switch (mPurpose) {
+            case ChooseFileForOpening:
+            case ChooseFileForOpeningAndLaunch:
+                return fname.endsWith(".pdf") || fname.endsWith(".epub");
+            case ChooseFileForSaving:
+                return fname.endsWith(".pdf");
+            case PickKeyFile:
+                return fname.endsWith(".pfx") || fname.endsWith(".p12");
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        if (mScan != null) mScan.cancel();
+        super.onDestroy();
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -276,16 +300,17 @@ public class FileBrowserFragment extends ListFragment {
 
         position -= (mParent == null ? 0 : 1);
 
-        if (position < mDirs.length) {
-            mDirectory = mDirs[position];
+        if (position < mDirs.size()) {
+            mDirectory = mDirs.get(position);
             AppCoroutines.launchMain(uiScope, mUpdateFiles);
             return;
         }
 
-        position -= mDirs.length;
+        position -= mDirs.size();
 
-        Uri uri = Uri.fromFile(mFiles[position]);
-        Intent intent = DocumentViewerIntents.viewInApp(getActivity(), uri, mFiles[position].getName());
+        File file = mFiles.get(position);
+        Uri uri = Uri.fromFile(file);
+        Intent intent = DocumentViewerIntents.viewInApp(getActivity(), uri, file.getName());
         
         switch (mPurpose) {
             case ChooseFileForOpeningAndLaunch:
@@ -14,6 +14,15 @@ import java.io.FileOutputStream;
 import java.io.File;
 import android.os.ParcelFileDescriptor;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.opendroidpdf.app.AppCoroutines;
+import org.opendroidpdf.app.memory.CacheGovernor;
+import org.opendroidpdf.app.reflow.ReflowPagination;
+import org.opendroidpdf.core.PageAnnotationCache;
+import org.opendroidpdf.core.PageTextCache;
+
 
 public class MuPDFCore
 {
@@ -43,6 +52,10 @@ public class MuPDFCore
 		/* Readable members */
     private int numPages = -1;
     private boolean numPagesIsUpToDate = false;
+    /** Page map for the current reflow layout, when known; see {@link #setReflowPagination}. */
+    @Nullable private volatile ReflowPagination reflowPagination;
+    /** Bumped by every {@link #layoutDocument}; guarded by {@code this}. */
+    private int layoutGeneration;
     private float pageWidth;
     private float pageHeight;
     private long globals;
@@ -50,6 +63,18 @@ public class MuPDFCore
     private String file_format;
     private String mPath = null;
     private String mFileName = null;
+    /** Transparency flag per page index, captured whenever a page is loaded. */
+    private final java.util.concurrent.ConcurrentHashMap<Integer, Boolean> pageTransparency =
+            new java.util.concurrent.ConcurrentHashMap<>();
+    @Nullable private CacheGovernor.Registration governed;
+    /** Extracted text per page; read without the core lock, filled and invalidated under it. */
+    private final PageTextCache pageText = new PageTextCache();
+    @Nullable private CacheGovernor.Registration pageTextGoverned;
+    /** Embedded annotations per page; read without the core lock, updated under it. */
+    private final PageAnnotationCache pageAnnotations = new PageAnnotationCache();
+    @Nullable private CacheGovernor.Registration pageAnnotationsGoverned;
+    /** Page of the last widget click; choice and signature edits apply to the widget focused there. */
+    private int focusedWidgetPage = -1;
     
 		/* The native functions */
     private static native boolean gprfSupportedInternal();
@@ -62,6 +87,7 @@ public class MuPDFCore
     private native int getBaseResolutionInternal();
     private native float getPageWidth();
     private native float getPageHeight();
+    private native boolean pageHasTransparencyInternal();
     private native void drawPage(Bitmap bitmap,
 								 int pageW, int pageH,
 								 int patchX, int patchY,
@@ -73,6 +99,8 @@ public class MuPDFCore
 										   int patchX, int patchY,
 										   int patchW, int patchH,
 										   long cookiePtr);
+    /** Regenerates annotation appearances of the current page without rendering it. */
+    private native void updatePageAppearancesInternal();
     private native boolean layoutDocumentInternal(float pageW, float pageH, float em);
     /**
      * Returns a MuPDF {@code fz_location} encoded into a {@code long} as:
@@ -84,7 +112,15 @@ public class MuPDFCore
     private native long locationFromPageNumberInternal(int pageNumber);
     /** Converts an encoded {@code fz_location} (see {@link #locationFromPageNumberInternal}) to a page number. */
     private native int pageNumberFromLocationInternal(long encodedLocation);
+    /** Pages per chapter in the current layout (one entry for documents without chapters). */
+    private native int[] chapterPageCountsInternal();
+    /** Number of chapters, or -1 on failure. Does not lay anything out. */
+    private native int chapterCountInternal();
+    /** Pages of one chapter in the current layout (lays out only that chapter), or -1. */
+    private native int chapterPageCountInternal(int chapter);
     private native void clearPageCacheInternal();
+    /** Shrinks the MuPDF store to {@code percent} of its size; 0 also drops the cached pages. */
+    private native void trimCachesInternal(int percent);
     private native RectF[] searchPage(String text);
     private native TextChar[][][][] text();
     private native byte[] textAsHtml();
@@ -135,11 +171,12 @@ public class MuPDFCore
     private native int resolveLinkPageInternal(String uri);
     private native RectF[] getWidgetAreasInternal(int page);
     private native Annotation[] getAnnotationsInternal(int page);
+    /** Like {@link #getAnnotationsInternal} but with null arcs for the given (sorted) objects. */
+    private native Annotation[] getAnnotationsReusingArcsInternal(int page, long[] reuseArcsFor);
     private native OutlineItem [] getOutlineInternal();
     private native boolean hasOutlineInternal();
     private native boolean needsPasswordInternal();
     private native boolean authenticatePasswordInternal(String password);
-    private native MuPDFAlertInternal waitForAlertInternal();
     private native void replyToAlertInternal(MuPDFAlertInternal alert);
     private native void startAlertsInternal();
     private native void stopAlertsInternal();
@@ -234,6 +271,10 @@ public class MuPDFCore
             }
             file_format = fileFormatInternal();
             if(file_format == null) throw new Exception(String.format(context.getString(R.string.cannot_interpret_file), path));
+            // A reopened document must not see the previous one's page text or annotations.
+            pageText.clear();
+            pageAnnotations.clear();
+            registerWithCacheGovernor();
 		}
 
     public MuPDFCore(Context context, byte buffer[], String fileName) throws Exception
@@ -256,10 +297,16 @@ public class MuPDFCore
             }
             file_format = fileFormatInternal();
             if(file_format == null) throw new Exception(String.format(context.getString(R.string.cannot_interpret_file), fileName));
+            // A reopened document must not see the previous one's page text or annotations.
+            pageText.clear();
+            pageAnnotations.clear();
+            registerWithCacheGovernor();
 		}
 
     public int countPages()
 		{
+            ReflowPagination pagination = reflowPagination;
+            if (pagination != null) return pagination.pageCount();
             if (numPages < 0 || !numPagesIsUpToDate )
             {
                 numPages = countPagesSynchronized();
@@ -287,6 +334,7 @@ public class MuPDFCore
             gotoPageInternal(page);
             this.pageWidth = getPageWidth();
             this.pageHeight = getPageHeight();
+            pageTransparency.put(page, pageHasTransparencyInternal());
 		}
 
     public synchronized int getBaseResolutionDpi() {
@@ -314,16 +362,69 @@ public class MuPDFCore
         boolean ok = layoutDocumentInternal(pageW, pageH, em);
         // Layout affects page count and sizes, so invalidate the Java-side cache either way.
         numPagesIsUpToDate = false;
+        reflowPagination = null;
+        layoutGeneration++;
+        pageTransparency.clear();
+        pageText.clear();
+        pageAnnotations.clear();
         return ok;
     }
 
+    /** Identifies the current layout for {@link #setReflowPagination}. */
+    public synchronized int layoutGeneration() {
+        return layoutGeneration;
+    }
+
+    /**
+     * Answers page count and location lookups from {@code pagination} (null: ask MuPDF again) as
+     * long as the layout is still the one {@code generation} names. Returns false, and changes
+     * nothing, when the document was laid out again since.
+     */
+    public synchronized boolean setReflowPagination(int generation, @Nullable ReflowPagination pagination) {
+        if (generation != layoutGeneration) return false;
+        reflowPagination = pagination;
+        return true;
+    }
+
+    @Nullable
+    public ReflowPagination reflowPagination() {
+        return reflowPagination;
+    }
+
+    /**
+     * Counts the pages of every chapter in the current layout. For reflowable documents this lays
+     * out chapters MuPDF has not laid out yet, so call it off the UI thread.
+     */
+    @Nullable
+    public synchronized ReflowPagination computeReflowPagination(@NonNull String layoutProfileId) {
+        if (globals == 0) return null;
+        return ReflowPagination.of(layoutProfileId, chapterPageCountsInternal());
+    }
+
+    /**
+     * Checks {@code pagination} against the current layout without counting every chapter: the
+     * chapter count must match, and so must the page count of {@code probeChapter}, which is the
+     * only chapter laid out. Call it off the UI thread.
+     */
+    public synchronized boolean reflowPaginationMatches(@NonNull ReflowPagination pagination, int probeChapter) {
+        if (globals == 0) return false;
+        if (chapterCountInternal() != pagination.chapterCount()) return false;
+        return chapterPageCountInternal(probeChapter) == pagination.chapterPageCount(probeChapter);
+    }
+
     /**
      * Returns an encoded MuPDF {@code fz_location} for the given page number.
      * <p>
      * For reflowable documents, this can be used to restore positions across relayouts.
      * Returns {@code -1} when unavailable.
      */
-    public synchronized long locationFromPageNumber(int pageNumber) {
+    public long locationFromPageNumber(int pageNumber) {
+        ReflowPagination pagination = reflowPagination;
+        if (pagination != null) return pagination.locationFromPageNumber(pageNumber);
+        return locationFromPageNumberSynchronized(pageNumber);
+    }
+
+    private synchronized long locationFromPageNumberSynchronized(int pageNumber) {
         if (globals == 0) return -1L;
         return locationFromPageNumberInternal(pageNumber);
     }
@@ -332,9 +433,15 @@ public class MuPDFCore
      * Converts an encoded MuPDF {@code fz_location} (from {@link #locationFromPageNumber})
      * into a page number in the current layout. Returns {@code -1} when unavailable.
      */
-    public synchronized int pageNumberFromLocation(long encodedLocation) {
-        if (globals == 0) return -1;
+    public int pageNumberFromLocation(long encodedLocation) {
         if (encodedLocation == -1L) return -1;
+        ReflowPagination pagination = reflowPagination;
+        if (pagination != null) return pagination.pageNumberFromLocation(encodedLocation);
+        return pageNumberFromLocationSynchronized(encodedLocation);
+    }
+
+    private synchronized int pageNumberFromLocationSynchronized(long encodedLocation) {
+        if (globals == 0) return -1;
         return pageNumberFromLocationInternal(encodedLocation);
     }
 
@@ -349,31 +456,111 @@ public class MuPDFCore
         clearPageCacheInternal();
     }
 
+    private void registerWithCacheGovernor() {
+        if (governed != null) governed.unregister();
+        if (pageTextGoverned != null) pageTextGoverned.unregister();
+        pageTextGoverned = CacheGovernor.get().register("pageText", CacheGovernor.PRIORITY_NATIVE, 0f, pageText);
+        if (pageAnnotationsGoverned != null) pageAnnotationsGoverned.unregister();
+        pageAnnotationsGoverned = CacheGovernor.get().register("pageAnnotations", CacheGovernor.PRIORITY_NATIVE, 0f,
+                pageAnnotations);
+        // The store's size is not exposed by MuPDF, so it is trimmed by level rather than by bytes.
+        // Trims run off the caller's thread: rendering can hold this core's lock for a long time.
+        governed = CacheGovernor.get().register("mupdfStore", CacheGovernor.PRIORITY_NATIVE, 0f,
+                new CacheGovernor.Trimmable() {
+                    @Override public long sizeBytes() {
+                        return CacheGovernor.UNKNOWN_SIZE;
+                    }
+
+                    @Override public void trimToFraction(float fraction) {
+                        final int percent = Math.round(fraction * 100f);
+                        if (percent >= 100) return;
+                        AppCoroutines.launchIo(AppCoroutines.ioScope(), () -> trimCaches(percent));
+                    }
+                });
+    }
+
+    private synchronized void trimCaches(int percent) {
+        if (globals == 0) return;
+        trimCachesInternal(percent);
+        if (percent <= 0) pageTransparency.clear();
+    }
+
     /** Drops cached pages/display lists so subsequent renders pick up layout/CSS changes. */
     public synchronized void clearPageCache() {
         if (globals == 0) return;
         clearPageCacheInternal();
         numPagesIsUpToDate = false;
+        pageTransparency.clear();
+        pageText.clear();
+        pageAnnotations.clear();
+    }
+
+    /**
+     * Whether the page is known to be free of transparency groups, blend modes and soft masks.
+     * Does not take the core lock: pages that have not been loaded yet report false, so callers
+     * fall back to ARGB_8888 until the page size lookup (which loads the page) has run.
+     */
+    public boolean isPageKnownOpaque(int page) {
+        return Boolean.FALSE.equals(pageTransparency.get(page));
+    }
+
+    /**
+     * Receives JavaScript alerts. Called on whichever thread is running the core call that
+     * triggered the script (that thread then waits for {@link #replyToAlert}), so implementations
+     * must hand the alert off and return quickly. Return false to dismiss the alert unanswered.
+     */
+    public interface AlertSink {
+        boolean onAlert(MuPDFAlert alert);
+    }
+
+    private final java.util.concurrent.atomic.AtomicReference<AlertSink> alertSink =
+            new java.util.concurrent.atomic.AtomicReference<>();
+
+    public void setAlertSink(AlertSink sink) {
+        alertSink.set(sink);
+    }
+
+    /** Clears the sink only if it is still {@code sink}; returns whether it was cleared. */
+    public boolean clearAlertSink(AlertSink sink) {
+        return alertSink.compareAndSet(sink, null);
     }
 
-    public MuPDFAlert waitForAlert() {
-        MuPDFAlertInternal alert = waitForAlertInternal();
-        return alert != null ? alert.toAlert() : null;
+    // Called from native code (jni/alerts.c).
+    @SuppressWarnings("unused")
+    private boolean onAlertFromNative(MuPDFAlertInternal alert) {
+        AlertSink sink = alertSink.get();
+        return sink != null && alert != null && sink.onAlert(alert.toAlert());
     }
 
+    // reply/start/stop must not take the core lock: the script thread holds it while it waits.
     public void replyToAlert(MuPDFAlert alert) {
         replyToAlertInternal(new MuPDFAlertInternal(alert));
     }
 
-    public synchronized void stopAlerts() {
+    public void stopAlerts() {
         stopAlertsInternal();
     }
 
-    public synchronized void startAlerts() {
+    public void startAlerts() {
         startAlertsInternal();
     }
 
     public synchronized void onDestroy() {
+        if (governed != null) {
+            governed.unregister();
+            governed = null;
+        }
+        if (pageTextGoverned != null) {
+            pageTextGoverned.unregister();
+            pageTextGoverned = null;
+        }
+        pageText.clear();
+        if (pageAnnotationsGoverned != null) {
+            pageAnnotationsGoverned.unregister();
+            pageAnnotationsGoverned = null;
+        }
+        pageAnnotations.clear();
+        alertSink.set(null);
         stopAlerts();
         destroying();
         globals = 0;
@@ -406,8 +593,31 @@ public class MuPDFCore
 		updatePageInternal(bm, page, pageW, pageH, patchX, patchY, patchW, patchH, cookie.cookiePtr);
 	}
 
+    /** Regenerates the appearance streams of annotations changed on {@code page}. */
+    public synchronized void updateAnnotationAppearances(int page) {
+        if (globals == 0) return;
+        gotoPage(page);
+        updatePageAppearancesInternal();
+    }
+
+    /**
+     * Document-space bounds of the annotations changed on {@code page} by edits whose listing
+     * has been merged since the last call, or null when unknown (callers then re-render the whole
+     * page). An empty rect means the edits changed nothing visible. Never touches the core.
+     */
+    @Nullable
+    public RectF takeAnnotationChangeBounds(int page) {
+        float[] bounds = pageAnnotations.takeChangedBounds(page);
+        return bounds != null ? new RectF(bounds[0], bounds[1], bounds[2], bounds[3]) : null;
+    }
+
     public synchronized PassClickResult passClickEvent(int page, float x, float y) {
         boolean changed = passClickEventInternal(page, x, y) != 0;
+        focusedWidgetPage = page;
+        if (changed) {
+            pageText.invalidate(page);
+            pageAnnotations.markChangedUnknown(page);
+        }
 
         switch (WidgetType.values()[getFocusedWidgetTypeInternal()])
         {
@@ -432,12 +642,15 @@ public class MuPDFCore
     public synchronized boolean setFocusedWidgetText(int page, String text) {
         boolean success;
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChangedUnknown(page);
         success = setFocusedWidgetTextInternal(text) != 0 ? true : false;
 
         return success;
     }
 
     public synchronized void setFocusedWidgetChoiceSelected(String [] selected) {
+        focusedWidgetChanged();
         setFocusedWidgetChoiceSelectedInternal(selected);
     }
 
@@ -446,9 +659,20 @@ public class MuPDFCore
     }
 
     public synchronized boolean signFocusedSignature(String keyFile, String password) {
+        focusedWidgetChanged();
         return signFocusedSignatureInternal(keyFile, password);
     }
 
+    /** The focused widget's appearance is about to change; its page must be listed again. */
+    private void focusedWidgetChanged() {
+        if (focusedWidgetPage < 0) {
+            pageAnnotations.clear();
+            return;
+        }
+        pageText.invalidate(focusedWidgetPage);
+        pageAnnotations.markChangedUnknown(focusedWidgetPage);
+    }
+
     public synchronized LinkInfo [] getPageLinks(int page) {
         LinkInfo[] pageLinks = getPageLinksInternal(page);
         if(pageLinks == null) return null;
@@ -469,8 +693,44 @@ public class MuPDFCore
         return getWidgetAreasInternal(page);
     }
 
-    public synchronized Annotation [] getAnnoations(int page) {
-        return getAnnotationsInternal(page);
+    /**
+     * Embedded annotations of {@code page}. Answered from the page annotation cache without taking
+     * the core lock when the page has not changed since it was listed; the returned array and its
+     * annotations are shared and must not be modified.
+     */
+    public Annotation [] getAnnoations(int page) {
+        Annotation[] cached = pageAnnotations.get(page);
+        if (cached != null) return cached;
+        return listAnnotations(page);
+    }
+
+    /** Annotations of {@code page} if listed and unchanged since, or null; never touches the core. */
+    @Nullable
+    public Annotation [] cachedAnnotations(int page) {
+        return pageAnnotations.get(page);
+    }
+
+    private synchronized Annotation [] listAnnotations(int page) {
+        Annotation[] cached = pageAnnotations.get(page);
+        if (cached != null) return cached;
+        // After an edit only the annotations it touched (and new ones) carry their arcs over JNI.
+        long[] reuse = pageAnnotations.reusableArcs(page);
+        Annotation[] listed = reuse.length > 0
+                ? getAnnotationsReusingArcsInternal(page, reuse)
+                : getAnnotationsInternal(page);
+        if (listed == null) {
+            pageAnnotations.invalidate(page);
+            return null;
+        }
+        Annotation[] merged = pageAnnotations.merge(page, listed, reuse);
+        if (merged != null) return merged;
+        // The snapshot holding the skipped arcs was trimmed meanwhile; list the page in full.
+        listed = getAnnotationsInternal(page);
+        if (listed == null) {
+            pageAnnotations.invalidate(page);
+            return null;
+        }
+        return pageAnnotations.merge(page, listed, new long[0]);
     }
 
     public synchronized RectF [] searchPage(int page, String text) {
@@ -483,7 +743,27 @@ public class MuPDFCore
         return textAsHtml();
     }
 
-    public synchronized TextWord [][] textLines(int page) {
+    /**
+     * Text of {@code page} grouped into lines of words. Answered from the page text cache without
+     * taking the core lock when the page was extracted (or warmed) before; the returned arrays are
+     * shared and must not be modified.
+     */
+    public TextWord [][] textLines(int page) {
+        TextWord[][] cached = pageText.get(page);
+        if (cached != null) return cached;
+        return extractTextLines(page);
+    }
+
+    /** Cached text lines of {@code page}, or null; never touches the core. */
+    @Nullable
+    public TextWord [][] cachedTextLines(int page) {
+        return pageText.get(page);
+    }
+
+    private synchronized TextWord [][] extractTextLines(int page) {
+        // A warmup may have extracted the page while this caller waited for the lock.
+        TextWord[][] cached = pageText.get(page);
+        if (cached != null) return cached;
         gotoPage(page);
         TextChar[][][][] chars = text();
 
@@ -560,51 +840,71 @@ public class MuPDFCore
             }
         }
         
-        return lns.toArray(new TextWord[lns.size()][]);
+        TextWord[][] lines = lns.toArray(new TextWord[lns.size()][]);
+        pageText.put(page, lines);
+        return lines;
     }
 
     public synchronized void addTextAnnotation(int page, PointF[] rect, String text) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page);
         addMarkupAnnotationInternal(rect, Annotation.Type.FREETEXT.ordinal(), text);
     }
     
     public synchronized void addMarkupAnnotation(int page, PointF[] quadPoints, Annotation.Type type) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page);
         addMarkupAnnotationInternal(quadPoints, type.ordinal(),"");
     }
 
     public synchronized void addInkAnnotation(int page, PointF[][] arcs) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page);
         addInkAnnotationInternal(arcs);
     }
 
     public synchronized void deleteAnnotation(int page, int annot_index) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page);
         deleteAnnotationInternal(annot_index);
     }
 
     public synchronized void deleteAnnotationByObjectNumber(int page, long objectNumber) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page, objectNumber);
         deleteAnnotationByObjectNumberInternal(objectNumber);
     }
 
 	public synchronized void updateAnnotationContentsByObjectNumber(int page, long objectNumber, String text) {
 		gotoPage(page);
+		pageText.invalidate(page);
+		pageAnnotations.markChanged(page, objectNumber);
 		updateAnnotationContentsByObjectNumberInternal(objectNumber, text);
 	}
 
     public synchronized void updateAnnotationRectByObjectNumber(int page, long objectNumber, float left, float top, float right, float bottom) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page, objectNumber);
         updateAnnotationRectByObjectNumberInternal(objectNumber, left, top, right, bottom);
     }
 
     public synchronized void updateFreeTextStyleByObjectNumber(int page, long objectNumber, float fontSize, float r, float g, float b) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page, objectNumber);
         updateFreeTextStyleByObjectNumberInternal(objectNumber, fontSize, r, g, b);
     }
 
     public synchronized void updateFreeTextBackgroundByObjectNumber(int page, long objectNumber, float r, float g, float b, float opacity) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page, objectNumber);
         updateFreeTextBackgroundByObjectNumberInternal(objectNumber, r, g, b, opacity);
     }
 
@@ -617,6 +917,8 @@ public class MuPDFCore
                                                                 boolean dashed,
                                                                 float radiusPt) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page, objectNumber);
         updateFreeTextBorderByObjectNumberInternal(objectNumber, r, g, b, widthPt, dashed, radiusPt);
     }
 
@@ -647,6 +949,8 @@ public class MuPDFCore
     /** Applies "lock position/size" + "lock contents" (/F flags) for a FreeText annotation by stable object number. */
     public synchronized void updateFreeTextLocksByObjectNumber(int page, long objectNumber, boolean lockPositionSize, boolean lockContents) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page, objectNumber);
         updateFreeTextLocksInternal(objectNumber, lockPositionSize, lockContents);
     }
 
@@ -657,6 +961,8 @@ public class MuPDFCore
 
     public synchronized void setFreeTextUserResizedByObjectNumber(int page, long objectNumber, boolean userResized) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page, objectNumber);
         setFreeTextUserResizedInternal(objectNumber, userResized);
     }
 
@@ -672,6 +978,8 @@ public class MuPDFCore
 
     public synchronized void updateFreeTextFontFamilyByObjectNumber(int page, long objectNumber, int fontFamily) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page, objectNumber);
         updateFreeTextFontFamilyInternal(objectNumber, fontFamily);
     }
 
@@ -690,6 +998,8 @@ public class MuPDFCore
     /** Applies style flags (bold/italic/underline/strikeout) for this FreeText annotation. */
     public synchronized void updateFreeTextStyleFlagsByObjectNumber(int page, long objectNumber, int styleFlags) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page, objectNumber);
         updateFreeTextStyleFlagsInternal(objectNumber, styleFlags);
     }
 
@@ -702,6 +1012,8 @@ public class MuPDFCore
     /** Applies paragraph settings (line-height multiplier + text-indent in pt) for this FreeText annotation. */
     public synchronized void updateFreeTextParagraphByObjectNumber(int page, long objectNumber, float lineHeight, float textIndentPt) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page, objectNumber);
         updateFreeTextParagraphInternal(objectNumber, lineHeight, textIndentPt);
     }
 
@@ -712,6 +1024,8 @@ public class MuPDFCore
 
     public synchronized void updateFreeTextAlignmentByObjectNumber(int page, long objectNumber, int alignment) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page, objectNumber);
         updateFreeTextAlignmentInternal(objectNumber, alignment);
     }
 
@@ -722,6 +1036,8 @@ public class MuPDFCore
 
     public synchronized void updateFreeTextRotationByObjectNumber(int page, long objectNumber, int rotationDegrees) {
         gotoPage(page);
+        pageText.invalidate(page);
+        pageAnnotations.markChanged(page, objectNumber);
         updateFreeTextRotationInternal(objectNumber, rotationDegrees);
     }
 
@@ -772,6 +1088,10 @@ public class MuPDFCore
     
     public synchronized boolean insertBlankPageBefore(int position) {
         numPagesIsUpToDate = false;
+        reflowPagination = null;
+        pageTransparency.clear();
+        pageText.clear();
+        pageAnnotations.clear();
         return insertBlankPageBeforeInternal(position) == 0 ? true : false;
     }
 
@@ -13,14 +13,18 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import org.opendroidpdf.core.MuPdfController;
+import org.opendroidpdf.app.memory.CacheGovernor;
 import org.opendroidpdf.app.document.DocumentType;
 import org.opendroidpdf.app.sidecar.SidecarAnnotationSession;
 import org.opendroidpdf.app.reader.ReaderModeRequester;
+import org.opendroidpdf.app.content.PageTextWarmup;
 import org.opendroidpdf.app.reader.TextAnnotationRequester;
 import org.opendroidpdf.app.preferences.EditorPreferences;
 
 public class MuPDFPageAdapter extends BaseAdapter {
     private static final int PAGE_SIZE_PREFETCH_LIMIT = 32;
+    /** Rough retained size of one cached page size (SparseArray slot plus PointF). */
+    private static final long PAGE_SIZE_ENTRY_BYTES = 40L;
     private final Context mContext;
     private final FilePicker.FilePickerSupport mFilePickerSupport;
     private final MuPdfController muPdfController;
@@ -28,6 +32,8 @@ public class MuPDFPageAdapter extends BaseAdapter {
     private final SparseArray<PointF> mPageSizes = new SparseArray<PointF>();
     private final Object pageSizeLock = new Object();
     private final ExecutorService pageSizeExecutor = Executors.newSingleThreadExecutor();
+    private final CacheGovernor.Registration pageSizesRegistration;
+    @Nullable private final PageTextWarmup textWarmup;
     
     public MuPDFPageAdapter(Context c,
                             MuPdfController controller,
@@ -49,6 +55,21 @@ public class MuPDFPageAdapter extends BaseAdapter {
                 docType,
                 canSaveToCurrentUri);
 
+        pageSizesRegistration = CacheGovernor.get().register("pageSizes", CacheGovernor.PRIORITY_NATIVE, 0f,
+                new CacheGovernor.Trimmable() {
+                    @Override public long sizeBytes() {
+                        synchronized (pageSizeLock) {
+                            return mPageSizes.size() * PAGE_SIZE_ENTRY_BYTES;
+                        }
+                    }
+
+                    @Override public void trimToFraction(float fraction) {
+                        trimPageSizes(fraction);
+                    }
+                });
+
+        textWarmup = muPdfController != null ? new PageTextWarmup(muPdfController) : null;
+
         if (muPdfController != null) {
             pageSizeExecutor.execute(new Runnable() {
                 @Override
@@ -80,12 +101,36 @@ public class MuPDFPageAdapter extends BaseAdapter {
         if (readerComposition != null) readerComposition.setTextAnnotationRequester(requester);
     }
 
+    /**
+     * Extracts the text of {@code page} and its neighbours in the background. {@code now}: a text
+     * tool just became active; otherwise the reader settled and the warmup waits briefly.
+     */
+    public void warmPageText(int page, boolean now) {
+        if (textWarmup == null) return;
+        if (now) textWarmup.warmNow(page);
+        else textWarmup.warmWhenIdle(page);
+    }
+
+    /** Drops a pending idle warmup, e.g. because the user started scrolling again. */
+    public void cancelPageTextWarmup() {
+        if (textWarmup != null) textWarmup.cancel();
+    }
+
     private void cachePageSize(int position, PointF size) {
         synchronized (pageSizeLock) {
             mPageSizes.put(position, size);
         }
     }
 
+    /** Keeps the sizes of the lowest page indices, which the prefetch would load again first. */
+    private void trimPageSizes(float fraction) {
+        synchronized (pageSizeLock) {
+            int size = mPageSizes.size();
+            int keep = Math.max(0, Math.min(size, (int) (size * fraction)));
+            if (keep < size) mPageSizes.removeAtRange(keep, size - keep);
+        }
+    }
+
     private PointF getCachedPageSize(int position) {
         synchronized (pageSizeLock) {
             return mPageSizes.get(position);
@@ -22,11 +22,14 @@ import org.opendroidpdf.app.selection.SelectionActionRouter;
 import org.opendroidpdf.app.selection.SelectionPageModel;
 import org.opendroidpdf.app.selection.SelectionUiBridge;
 import org.opendroidpdf.app.selection.SidecarSelectionController;
+import org.opendroidpdf.app.sidecar.model.SidecarHighlight;
 import org.opendroidpdf.app.sidecar.model.SidecarNote;
 import org.opendroidpdf.app.widget.WidgetAreasLoader;
 import org.opendroidpdf.widget.WidgetUiController;
 import org.opendroidpdf.app.reader.ReaderComposition;
 import org.opendroidpdf.app.reader.gesture.AnnotationHitHelper;
+import org.opendroidpdf.app.reader.gesture.PageHitIndex;
+import org.opendroidpdf.app.reader.gesture.PageHitIndexCache;
 import org.opendroidpdf.app.reader.gesture.PageHitRouter;
 import org.opendroidpdf.app.reader.gesture.PageTapHitRouter;
 import org.opendroidpdf.app.reader.gesture.ReaderMode;
@@ -62,9 +65,6 @@ import java.util.List;
 public class MuPDFPageView extends PageView implements MuPDFView, SelectionPageModel {
 	private static final String TAG = "MuPDFPageView";
     private static final Annotation[] EMPTY_ANNOTATIONS = new Annotation[0];
-    private static final int UNDO_DOMAIN_INK = 1;
-    private static final int UNDO_DOMAIN_TEXT = 2;
-    private int lastUndoDomain = UNDO_DOMAIN_INK;
 
 		
 	private final FilePicker.FilePickerSupport mFilePickerSupport;
@@ -77,6 +77,7 @@ private final InkController inkController;
     private final SidecarSelectionController sidecarSelectionController;
     private final WidgetController widgetController;
     private final PageHitRouter pageHitRouter;
+    private final PageHitIndexCache hitIndexCache;
 	    private final PageTapHitRouter tapHitRouter;
 	    private final SelectionActionRouter selectionRouter;
 	    private final PageSelectionCoordinator selectionCoordinator;
@@ -125,6 +126,7 @@ private final InkController inkController;
 	            setSidecarAnnotations(sidecarSession);
 	        }
 	        inkController = new InkController(new InkHost(), muPdfController, sidecarSession);
+	        hitIndexCache = new PageHitIndexCache(new HitIndexSources());
 			        pageHitRouter = new PageHitRouter(new HitHost());
 		        this.selectionManager = composition.selectionManager();
 		        this.selectionUiBridge = new SelectionUiBridge(this, selectionManager);
@@ -140,6 +142,7 @@ private final InkController inkController;
             @Override public int viewTop() { return getTop(); }
             @Override public void setItemSelectBox(@Nullable RectF rect) { MuPDFPageView.this.setItemSelectBox(rect); }
             @Override public void forwardTextAnnotation(Annotation annotation) { MuPDFPageView.this.forwardTextAnnotation(annotation); }
+            @NonNull @Override public PageHitIndex hitIndex() { return hitIndexCache.get(); }
         });
         tapHitRouter = new PageTapHitRouter(pageHitRouter, sidecarSelectionController);
 	        selectionCoordinator = new PageSelectionCoordinator(
@@ -167,7 +170,11 @@ private final InkController inkController;
             @Nullable @Override public Annotation[] embeddedAnnotationsOrNull() { return mAnnotations; }
 
             @Override public void requestFullRedrawAfterNextAnnotationLoad() { MuPDFPageView.this.requestFullRedrawAfterNextAnnotationLoad(); }
-            @Override public void discardRenderedPage() { MuPDFPageView.this.discardRenderedPage(); }
+            @Override public void discardRenderedPage() {
+                // Embedded edits re-render only the region they changed once annotations reload.
+                if (sidecarSession == null) MuPDFPageView.this.discardRenderedAnnotations();
+                else MuPDFPageView.this.discardRenderedPage();
+            }
             @Override public void loadAnnotations() { MuPDFPageView.this.loadAnnotations(); }
 	            @Override public void invalidateOverlay() { MuPDFPageView.this.invalidateOverlay(); }
 	            @Override public void setAnnotationSelectionBox(@Nullable RectF rectDoc) {
@@ -222,6 +229,22 @@ private final InkController inkController;
         }
     }
 
+    @Override
+    protected android.graphics.Bitmap.Config entireBitmapConfig() {
+        boolean opaque = muPdfController != null && muPdfController.isPageKnownOpaque(mPageNumber);
+        return org.opendroidpdf.app.render.BitmapFormats.forPage(opaque);
+    }
+
+    @Override
+    protected RectF takeAnnotationChangeBounds() {
+        if (muPdfController == null) return null;
+        try {
+            return muPdfController.takeAnnotationChangeBounds(mPageNumber);
+        } catch (Throwable ignore) {
+            return null;
+        }
+    }
+
 	    @Override public void requestFullRedrawAfterNextAnnotationLoad() { super.requestFullRedrawAfterNextAnnotationLoad(); }
 		    @Override public void loadAnnotations() { super.loadAnnotations(); }
 		    @Override public void discardRenderedPage() { super.discardRenderedPage(); }
@@ -285,6 +308,18 @@ private final InkController inkController;
         @Override public float currentEraserThickness() { return MuPDFPageView.this.currentEraserThickness(); }
     }
 
+    private class HitIndexSources implements PageHitIndexCache.Sources {
+        @Override public LinkInfo[] links() { return mLinks; }
+        @Override public Annotation[] annotations() { return mAnnotations; }
+        @Override public RectF[] widgetAreas() { return widgets.widgetAreas(); }
+        @Override public List<SidecarNote> sidecarNotes() {
+            try { return sidecarSession != null ? sidecarSession.notesForPage(mPageNumber) : null; } catch (Throwable ignore) { return null; }
+        }
+        @Override public List<SidecarHighlight> sidecarHighlights() {
+            try { return sidecarSession != null ? sidecarSession.highlightsForPage(mPageNumber) : null; } catch (Throwable ignore) { return null; }
+        }
+    }
+
     private class HitHost implements PageHitRouter.Host {
         @Override public float scale() { return getScale(); }
         @Override public int viewLeft() { return getLeft(); }
@@ -294,6 +329,7 @@ private final InkController inkController;
 	        @Override public LinkInfo[] links() { return mLinks; }
 	        @Override public Annotation[] annotations() { return MuPDFPageView.this.areCommentsVisible() ? mAnnotations : EMPTY_ANNOTATIONS; }
 	        @Override public RectF[] widgetAreas() { return widgets.widgetAreas(); }
+	        @Override public PageHitIndex hitIndex() { return hitIndexCache.get(); }
 
 	        @Override public AnnotationHitHelper annotationHitHelper() { return annotationHitHelper; }
 	        @Override public WidgetController widgetController() { return widgetController; }
@@ -506,25 +542,19 @@ private final InkController inkController;
 
         if (canTextUndo && (!canInkUndo || shouldPreferTextUndo())) {
             try {
-                if (textAnnotationDelegate.undoLastEmbeddedTextEdit()) {
-                    lastUndoDomain = UNDO_DOMAIN_TEXT;
-                    return;
-                }
+                if (textAnnotationDelegate.undoLastEmbeddedTextEdit()) return;
             } catch (Throwable ignore) {
             }
         }
 
         if (canInkUndo) {
             inkController.undoDraw();
-            lastUndoDomain = UNDO_DOMAIN_INK;
             return;
         }
 
         if (canTextUndo) {
             try {
-                if (textAnnotationDelegate.undoLastEmbeddedTextEdit()) {
-                    lastUndoDomain = UNDO_DOMAIN_TEXT;
-                }
+                textAnnotationDelegate.undoLastEmbeddedTextEdit();
             } catch (Throwable ignore) {
             }
         }
@@ -537,30 +567,14 @@ private final InkController inkController;
         try { canTextRedo = (sidecarSession == null) && textAnnotationDelegate.hasEmbeddedTextRedo(); } catch (Throwable ignore) { canTextRedo = false; }
         try { canInkRedo = inkController.canRedo(); } catch (Throwable ignore) { canInkRedo = false; }
 
-        if (lastUndoDomain == UNDO_DOMAIN_TEXT && canTextRedo) {
+        if (canTextRedo && (!canInkRedo || shouldPreferTextRedo())) {
             try {
-                if (textAnnotationDelegate.redoLastEmbeddedTextEdit()) {
-                    return;
-                }
-            } catch (Throwable ignore) {
-            }
-        } else if (lastUndoDomain == UNDO_DOMAIN_INK && canInkRedo) {
-            inkController.redoDraw();
-            return;
-        }
-
-        if (canTextRedo) {
-            try {
-                if (textAnnotationDelegate.redoLastEmbeddedTextEdit()) {
-                    lastUndoDomain = UNDO_DOMAIN_TEXT;
-                    return;
-                }
+                if (textAnnotationDelegate.redoLastEmbeddedTextEdit()) return;
             } catch (Throwable ignore) {
             }
         }
         if (canInkRedo) {
             inkController.redoDraw();
-            lastUndoDomain = UNDO_DOMAIN_INK;
         }
     }
 
@@ -570,12 +584,22 @@ private final InkController inkController;
             try { return sidecarSession == null && textAnnotationDelegate.hasEmbeddedTextUndo(); } catch (Throwable ignore) { return false; }
         }
 
+        // Text and ink histories draw sequence numbers from one counter (UndoJournal), so the
+        // newest edit wins on undo and the most recently undone one wins on redo.
         private boolean shouldPreferTextUndo() {
-            long tText = 0L;
-            long tInk = 0L;
-            try { tText = textAnnotationDelegate.embeddedTextHistoryLastMutationUptimeMs(); } catch (Throwable ignore) { tText = 0L; }
-            try { tInk = inkController.lastUndoMutationUptimeMs(); } catch (Throwable ignore) { tInk = 0L; }
-            return tText >= tInk;
+            long text = Long.MIN_VALUE;
+            long ink = Long.MIN_VALUE;
+            try { text = textAnnotationDelegate.embeddedTextUndoSequence(); } catch (Throwable ignore) { text = Long.MIN_VALUE; }
+            try { ink = inkController.peekUndoSequence(); } catch (Throwable ignore) { ink = Long.MIN_VALUE; }
+            return text >= ink;
+        }
+
+        private boolean shouldPreferTextRedo() {
+            long text = Long.MAX_VALUE;
+            long ink = Long.MAX_VALUE;
+            try { text = textAnnotationDelegate.embeddedTextRedoSequence(); } catch (Throwable ignore) { text = Long.MAX_VALUE; }
+            try { ink = inkController.peekRedoSequence(); } catch (Throwable ignore) { ink = Long.MAX_VALUE; }
+            return text <= ink;
         }
 
 	    // Wait (best-effort) for the asynchronous ink-commit task to finish so that
@@ -720,7 +744,6 @@ private final InkController inkController;
 	        inkController.clear();
 	        dismissInlineTextAnnotationEditor();
 	        try { textAnnotationDelegate.clearEmbeddedTextUndoHistory(); } catch (Throwable ignore) {}
-	        lastUndoDomain = UNDO_DOMAIN_INK;
 	        widgets.onSetPage(page);
 
 			super.setPage(page, size);
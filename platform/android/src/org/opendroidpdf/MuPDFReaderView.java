@@ -1,6 +1,7 @@
 package org.opendroidpdf;
 
 import android.app.Activity;
+import android.graphics.ColorFilter;
 import android.os.Bundle;
 import android.os.Parcelable;
 import android.view.MotionEvent;
@@ -23,6 +24,8 @@ import android.widget.Adapter;
 abstract public class MuPDFReaderView extends ReaderView {
     private final MuPDFReaderInteractionController interaction;
     private boolean formFieldHighlightEnabled = false;
+    @Nullable private ColorFilter pageColorFilter;
+    private int pagePaperColor = 0xFFFFFFFF;
     private boolean commentsVisible = true;
     private boolean sidecarNotesStickyModeEnabled = false;
     @Nullable
@@ -145,11 +148,33 @@ abstract public class MuPDFReaderView extends ReaderView {
         });
     }
 
+    /**
+     * Recolors rendered pages at draw time (reflow themes). Pages are not re-rendered and the
+     * document layout is untouched; pass a null filter and white paper to draw pages as rendered.
+     */
+    public void setPageColorFilter(@Nullable ColorFilter filter, int paperColor) {
+        if (pageColorFilter == filter && pagePaperColor == paperColor) return;
+        pageColorFilter = filter;
+        pagePaperColor = paperColor;
+        applyToChildren(new ViewMapper() {
+            @Override void applyToView(View view) {
+                if (view instanceof PageView) {
+                    ((PageView) view).setPageColorFilter(filter, paperColor);
+                }
+            }
+        });
+    }
+
     public void setMode(ReaderMode m) {
         if (BuildConfig.DEBUG) {
             android.util.Log.d("MuPDFReaderView", "setMode " + interaction.mode() + " -> " + m);
         }
         interaction.setMode(m);
+        if (m == ReaderMode.SELECTING) {
+            // Selection handles and markup anchoring read the page text on the first drag.
+            MuPDFPageAdapter adapter = pageAdapterOrNull();
+            if (adapter != null) adapter.warmPageText(getSelectedItemPosition(), true);
+        }
     }
 
     public ReaderMode getMode() {
@@ -307,6 +332,7 @@ abstract public class MuPDFReaderView extends ReaderView {
             ((PageView) v).setFormFieldHighlightEnabled(formFieldHighlightEnabled);
             ((PageView) v).setCommentsVisible(commentsVisible);
             ((PageView) v).setSidecarNotesStickyModeEnabled(sidecarNotesStickyModeEnabled);
+            ((PageView) v).setPageColorFilter(pageColorFilter, pagePaperColor);
         }
         if (v instanceof MuPDFPageView) {
             ((MuPDFPageView) v).setWidgetFieldNavigationRequester(new WidgetUiBridge.FieldNavigationRequester() {
@@ -339,6 +365,9 @@ abstract public class MuPDFReaderView extends ReaderView {
     protected void onSettle(View v) {
             // When the layout has settled ask the page to render in HQ
         ((MuPDFView) v).addHq(false);
+            // ...and, once that had a head start, extract text so selection starts instantly
+        MuPDFPageAdapter adapter = pageAdapterOrNull();
+        if (adapter != null) adapter.warmPageText(getSelectedItemPosition(), false);
     }
 
     @Override
@@ -346,6 +375,14 @@ abstract public class MuPDFReaderView extends ReaderView {
             // When something changes making the previous settled view
             // no longer appropriate, tell the page to remove HQ
         ((MuPDFView) v).removeHq();
+        MuPDFPageAdapter adapter = pageAdapterOrNull();
+        if (adapter != null) adapter.cancelPageTextWarmup();
+    }
+
+    @Nullable
+    private MuPDFPageAdapter pageAdapterOrNull() {
+        Adapter adapter = getAdapter();
+        return adapter instanceof MuPDFPageAdapter ? (MuPDFPageAdapter) adapter : null;
     }
 
     @Override
@@ -25,15 +25,15 @@ import android.widget.ListView;
 import android.widget.TextView.OnEditorActionListener;
 import android.widget.TextView;
 import java.io.File;
-import java.io.FileFilter;
-import java.util.Arrays;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import kotlinx.coroutines.CoroutineScope;
 import org.opendroidpdf.app.AppCoroutines;
 import org.opendroidpdf.app.document.DocumentViewerIntents;
+import org.opendroidpdf.app.storage.DirectoryScanner;
 
 public class NoteBrowserFragment extends ListFragment {
 
@@ -42,8 +42,10 @@ public class NoteBrowserFragment extends ListFragment {
     private File mDirectory;
     private Map<String, Integer> mPositions = new HashMap<String, Integer>();
     private File  mParent;
-    private File[] mDirs;
-    private File[] mFiles;
+    private final List<File> mDirs = new ArrayList<File>();
+    private final List<File> mFiles = new ArrayList<File>();
+    private DirectoryScanner.Handle mScan;
+    private File mListedDirectory;
     private CoroutineScope uiScope;
     private Runnable mUpdateFiles;
     private ChoosePDFAdapter mAdapter;
@@ -137,58 +139,55 @@ public class NoteBrowserFragment extends ListFragment {
         mUpdateFiles = new Runnable() {
                 public void run() {
                     if(!isAdded()) return;
-                    if(mDirectory==null) return;
+                    if(mDirectory==null || mAdapter==null) return;
 
-                        //Get the parent directory and the directories and files
-                    mDirs = mDirectory.listFiles(new FileFilter() {
-                            public boolean accept(File file) {
-                                return file.isDirectory();
+                        //List the directory in the background; batches arrive sorted and in order
+                    if (mScan != null) mScan.cancel();
+                    final File directory = mDirectory;
+                        //Rescans of the shown directory keep the old listing until the first batch arrives
+                    final boolean sameDirectory = directory.equals(mListedDirectory);
+                    mListedDirectory = directory;
+                    if (!sameDirectory) {
+                        clearListing();
+                        mAdapter.notifyDataSetChanged();
+                    }
+                    mScan = DirectoryScanner.get().scan(uiScope, directory, new DirectoryScanner.Callback() {
+                            private boolean cleared = !sameDirectory;
+
+                            private void clearOnce() {
+                                if (cleared) return;
+                                cleared = true;
+                                clearListing();
                             }
-                        });
-                    if (mDirs == null)
-                        mDirs = new File[0];
-                    mFiles = mDirectory.listFiles(new FileFilter() {
-                            public boolean accept(File file) {
-                                if (file.isDirectory())
-                                    return false;
-                                String fname = file.getName().toLowerCase();
-                                switch (mPurpose) {
-                                    case ChooseFileForOpening:
-                                    case ChooseFileForOpeningAndLaunch:
-                                        return fname.endsWith(".pdf") || fname.endsWith(".epub");
-                                    case ChooseFileForSaving:
-                                        return fname.endsWith(".pdf");
-                                    case PickKeyFile:
-                                        return fname.endsWith(".pfx") || fname.endsWith(".p12");
-                                    default:
-                                        return false;
+
+                            @Override
+                            public void onBatch(List<String> dirs, List<String> files) {
+                                clearOnce();
+                                for (String name : files) {
+                                    if (!acceptFile(name)) continue;
+                                    mAdapter.add(new ChoosePDFItem(ChoosePDFItem.Type.DOC, name));
+                                    mFiles.add(new File(directory, name));
                                 }
+                                mAdapter.notifyDataSetChanged();
                             }
-                        });
-                    if (mFiles == null)
-                        mFiles = new File[0];
 
-                        //Sort the file and directory lists
-                    Arrays.sort(mFiles, new Comparator<File>() {
-                            public int compare(File arg0, File arg1) {
-                                return arg0.getName().compareToIgnoreCase(arg1.getName());
+                            @Override
+                            public void onComplete(boolean failed) {
+                                clearOnce();
+                                mAdapter.notifyDataSetChanged();
+                                lastPosition();
                             }
                         });
-
-                        //Add them to the adapter
-                    mAdapter.clear();
-                    for (File f : mFiles)
-                        mAdapter.add(new ChoosePDFItem(ChoosePDFItem.Type.DOC, f.getName()));
-                    mAdapter.notifyDataSetChanged();
-                    lastPosition();
                 }
             };
         
             // Start initial file scan...
         AppCoroutines.launchMain(uiScope, mUpdateFiles);
             // ...and observe the directory and scan files upon changes.
-        FileObserver observer = new FileObserver(mDirectory.getPath(), FileObserver.CREATE | FileObserver.DELETE) {
+        final File observed = mDirectory;
+        FileObserver observer = new FileObserver(observed.getPath(), FileObserver.CREATE | FileObserver.DELETE) {
                 public void onEvent(int event, String path) {
+                    DirectoryScanner.get().invalidate(observed);
                     AppCoroutines.launchMain(uiScope, mUpdateFiles);
                 }
             };
@@ -196,6 +195,33 @@ public class NoteBrowserFragment extends ListFragment {
     }
 
 
+    private void clearListing() {
+        mDirs.clear();
+        mFiles.clear();
+        mAdapter.clear();
+    }
+
+    private boolean acceptFile(String name) {
+        String fname = name.toLowerCase();
+        switch (mPurpose) {
+            case ChooseFileForOpening:
+            case ChooseFileForOpeningAndLaunch:
+                return fname.endsWith(".pdf") || fname.endsWith(".epub");
+            case ChooseFileForSaving:
+                return fname.endsWith(".pdf");
+            case PickKeyFile:
+                return fname.endsWith(".pfx") || fname.endsWith(".p12");
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        if (mScan != null) mScan.cancel();
+        super.onDestroy();
+    }
+
     @Override
     public void onResume() {
         super.onResume();
@@ -262,16 +288,17 @@ public class NoteBrowserFragment extends ListFragment {
 
         position -= (mParent == null ? 0 : 1);
 
-        if (position < mDirs.length) {
-            mDirectory = mDirs[position];
+        if (position < mDirs.size()) {
+            mDirectory = mDirs.get(position);
             AppCoroutines.launchMain(uiScope, mUpdateFiles);
             return;
         }
 
-        position -= mDirs.length;
+        position -= mDirs.size();
 
-        Uri uri = Uri.fromFile(mFiles[position]);
-        Intent intent = DocumentViewerIntents.viewInApp(getActivity(), uri, mFiles[position].getName());
+        File file = mFiles.get(position);
+        Uri uri = Uri.fromFile(file);
+        Intent intent = DocumentViewerIntents.viewInApp(getActivity(), uri, file.getName());
         
         switch (mPurpose) {
             case ChooseFileForOpeningAndLaunch:
@@ -133,6 +133,18 @@ public class OpenDroidPDFActivity extends AppCompatActivity implements Temporary
                 : null;
     }
 
+    /** Identity only if already resolved; never waits. */
+    @Nullable
+    public DocumentIdentity resolvedDocumentIdentityOrNull() {
+        return documentLifecycleManager != null
+                ? documentLifecycleManager.resolvedDocumentIdentityOrNull()
+                : null;
+    }
+
+    public void whenDocumentIdentityReady(@NonNull DocumentLifecycleManager.IdentityCallback callback) {
+        if (documentLifecycleManager != null) documentLifecycleManager.whenDocumentIdentityReady(callback);
+    }
+
     @Nullable
     public String currentDocIdOrNull() {
         DocumentIdentity ident = currentDocumentIdentityOrNull();
@@ -149,6 +161,16 @@ public class OpenDroidPDFActivity extends AppCompatActivity implements Temporary
         if (documentLifecycleManager != null) documentLifecycleManager.setCurrentDocumentIdentity(identity);
     }
 
+    public void setCurrentDocumentIdentityFuture(@Nullable java.util.concurrent.Future<DocumentIdentity> identity) {
+        if (documentLifecycleManager != null) documentLifecycleManager.setCurrentDocumentIdentityFuture(identity);
+    }
+
+    /** Non-blocking access to the current document identity; see {@link DocumentLifecycleManager}. */
+    @Nullable
+    public java.util.concurrent.Future<DocumentIdentity> currentDocumentIdentityFuture() {
+        return documentLifecycleManager != null ? documentLifecycleManager.currentDocumentIdentityFuture() : null;
+    }
+
     public void setCurrentUserFacingDocument(@Nullable Uri uri, @Nullable String displayName) {
         if (documentLifecycleManager != null) documentLifecycleManager.setCurrentUserFacingDocument(uri, displayName);
     }
@@ -528,8 +550,8 @@ public class OpenDroidPDFActivity extends AppCompatActivity implements Temporary
     // For StartupBootstrap: set core from last non-config without reinitializing controllers
     public void setCoreFromLastNonConfig(OpenDroidPDFCore last) {
         if (documentLifecycleManager != null) documentLifecycleManager.setCoreFromLastNonConfig(last);
-        // Ensure doc identity is available if callers request it during early restore.
-        currentDocumentIdentityOrNull();
+        // Start resolving the doc identity so it is ready (usually from cache) when restore needs it.
+        currentDocumentIdentityFuture();
     }
 
     /** Restores the last non-config instance (core + policy metadata) after configuration changes. */
@@ -540,7 +562,8 @@ public class OpenDroidPDFActivity extends AppCompatActivity implements Temporary
             setCoreFromLastNonConfig(r.core);
             setCurrentDocumentOrigin(r.origin);
             setSaveToCurrentUriDisabledByPolicy(r.saveToCurrentUriDisabledByPolicy);
-            setCurrentDocumentIdentity(r.identity);
+            // A null identity was still hashing; keep the resolution started above.
+            if (r.identity != null) setCurrentDocumentIdentity(r.identity);
             setCurrentUserFacingDocument(r.userFacingUri, r.userFacingDisplayName);
             return;
         }
@@ -615,7 +638,7 @@ public class OpenDroidPDFActivity extends AppCompatActivity implements Temporary
                         mycore,
                         currentDocumentOrigin(),
                         saveDisabled,
-                        currentDocumentIdentityOrNull(),
+                        resolvedDocumentIdentityOrNull(),
                         currentUserFacingUriOrNull(),
                         currentUserFacingDisplayNameOrNull());
         setCoreInstance(null);
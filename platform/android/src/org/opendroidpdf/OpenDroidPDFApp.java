@@ -8,6 +8,7 @@ import androidx.annotation.Nullable;
 import org.opendroidpdf.app.diagnostics.AppLog;
 import org.opendroidpdf.app.diagnostics.CrashReporter;
 import org.opendroidpdf.app.diagnostics.SessionDiagnostics;
+import org.opendroidpdf.app.memory.CacheGovernor;
 
 public class OpenDroidPDFApp extends Application {
     private static OpenDroidPDFApp instance;
@@ -17,11 +18,24 @@ public class OpenDroidPDFApp extends Application {
     public void onCreate() {
         super.onCreate();
         instance = this;
+        CacheGovernor.init(this);
         previousSession = SessionDiagnostics.beginNewSession(this);
         AppLog.init(this);
         CrashReporter.install(this);
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        CacheGovernor.get().onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        CacheGovernor.get().clear();
+    }
+
     public static Resources getAppResources() {
         return instance != null ? instance.getResources() : null;
     }
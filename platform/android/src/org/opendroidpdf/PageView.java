@@ -16,6 +16,7 @@ import android.graphics.Bitmap;
 import android.graphics.Bitmap.Config;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ColorFilter;
 import android.graphics.Matrix;
 import android.graphics.Point;
 import android.graphics.PointF;
@@ -58,6 +59,8 @@ import org.opendroidpdf.app.fillsign.FillSignPlacementOverlay;
 public abstract class PageView extends ViewGroup implements MuPDFView {
     private static final int BACKGROUND_COLOR = 0xFFFFFFFF;
     private static final int PROGRESS_DIALOG_DELAY = 200;
+    // Document units added around annotation change bounds before re-rendering them.
+    private static final float ANNOTATION_CHANGE_PADDING = 2f;
     
     protected final Context mContext;
     protected ViewGroup mParent;
@@ -69,6 +72,8 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
     private       boolean   mFormFieldHighlightEnabled;
     private       boolean   mCommentsVisible = true;
     private       boolean   mSidecarNotesStickyModeEnabled = false;
+    private       ColorFilter mPageColorFilter;
+    private       int       mPaperColor = BACKGROUND_COLOR;
 
     // Removed legacy text annotation scratch bitmap (no longer used)
     
@@ -92,8 +97,12 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
     private       org.opendroidpdf.app.overlay.PageOverlayView mOverlayView;
     private       SearchResult mSearchResult = null;
     private       boolean   mForceFullRedrawOnNextAnnotationLoad;
+    // Set by discardRenderedAnnotations(): the bitmaps on screen predate an annotation edit.
+    private       boolean   mRenderedAnnotationsStale;
     
     protected final DrawingController drawingController;
+    // Spill file the last saved state refers to; deleted when the next save supersedes it.
+    @Nullable private String drawingStateFile;
     private SidecarAnnotationProvider sidecarAnnotations;
     @Nullable private FillSignPlacementOverlay fillSignPlacementOverlay;
     @Nullable private String itemDragPreviewText;
@@ -245,6 +254,19 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
         }
     }
 
+    /**
+     * Recolors the rendered page (reflow themes) without re-rendering it; the overlay keeps its
+     * own colors so annotations look the same under every theme.
+     */
+    public void setPageColorFilter(@Nullable ColorFilter filter, int paperColor) {
+        if (mPageColorFilter == filter && mPaperColor == paperColor) return;
+        mPageColorFilter = filter;
+        mPaperColor = paperColor;
+        setBackgroundColor(paperColor);
+        if (mEntireView != null) mEntireView.setPageColorFilter(filter, paperColor);
+        if (mHqView != null) mHqView.setPageColorFilter(filter, paperColor);
+    }
+
     @Override
     public boolean isOpaque() {
         return true;
@@ -275,6 +297,7 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
         fillSignPlacementOverlay = null;
         itemDragPreviewText = null;
         firstPatchLogged = false;
+        mRenderedAnnotationsStale = false;
     }
 
     public void releaseResources() {        
@@ -300,6 +323,7 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
         itemDragPreviewText = null;
         mPageReady = false;
         firstPatchLogged = false;
+        mRenderedAnnotationsStale = false;
     }
 
     @Override
@@ -311,7 +335,7 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
 
     public void releaseBitmaps() {
         reset();
-        mEntireBm = null;
+        retireEntireBitmap();
     }
 
     public void setPage(int page, PointF size) {
@@ -342,7 +366,7 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
 
             //Set the background to white for now and
             //prepare and show the busy indicator
-        setBackgroundColor(BACKGROUND_COLOR);
+        setBackgroundColor(mPaperColor);
         busyIndicator.attachIfNeeded(this, mContext, PROGRESS_DIALOG_DELAY);
 
             //Create the mEntireView
@@ -510,7 +534,14 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
             mForceFullRedrawOnNextAnnotationLoad = false;
             return v;
         }
-        @Override public void requestRedraw(boolean update) { redraw(update); }
+        @Override public void requestRedraw(boolean update) {
+            if (mRenderedAnnotationsStale) {
+                mRenderedAnnotationsStale = false;
+                if (redrawChangedAnnotations()) return;
+                discardRenderedPage();
+            }
+            redraw(update);
+        }
         @Override public void setSelectBox(RectF box) { PageView.this.setSelectBox(box); }
         @Override public RectF getSelectBox() { return selectionState.getSelectBox(); }
     }
@@ -652,8 +683,11 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
         Point s = pageState.getMinZoomSize();
         if (s == null) return;
         Rect viewArea = new Rect(0, 0, s.x, s.y);
-        if (mEntireBm == null || s.x != mEntireBm.getWidth() || s.y != mEntireBm.getHeight()) {
-            mEntireBm = Bitmap.createBitmap(s.x, s.y, Config.ARGB_8888);
+        Config config = entireBitmapConfig();
+        if (mEntireBm == null || s.x != mEntireBm.getWidth() || s.y != mEntireBm.getHeight()
+                || mEntireBm.getConfig() != config) {
+            retireEntireBitmap();
+            mEntireBm = org.opendroidpdf.app.render.BitmapPool.get().acquire(s.x, s.y, config);
         }
         mEntireView = org.opendroidpdf.app.overlay.PageRenderOrchestrator.ensureAndRender(
                 mContext,
@@ -663,7 +697,31 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
                 mEntireBm,
                 update,
                 patchHost,
-                mOverlayView);
+                mOverlayView,
+                isVisibleInParent()
+                        ? org.opendroidpdf.app.render.RenderScheduler.Priority.VISIBLE_ENTIRE
+                        : org.opendroidpdf.app.render.RenderScheduler.Priority.PREFETCH);
+        if (mEntireView != null) mEntireView.setPageColorFilter(mPageColorFilter, mPaperColor);
+    }
+
+    /**
+     * Bitmap config for the min-zoom render of the current page. Subclasses that can tell the page
+     * is opaque return {@link Config#RGB_565} via {@link org.opendroidpdf.app.render.BitmapFormats}.
+     */
+    protected Config entireBitmapConfig() {
+        return Config.ARGB_8888;
+    }
+
+    /**
+     * Whether any part of this page is inside the parent's bounds. Off-screen neighbours kept by
+     * the reader are rendered at prefetch priority. Before the first layout we assume visible.
+     */
+    private boolean isVisibleInParent() {
+        ViewGroup parent = mParent;
+        if (parent == null || parent.getWidth() <= 0 || parent.getHeight() <= 0) return true;
+        if (getWidth() <= 0 || getHeight() <= 0) return true;
+        return getRight() > 0 && getLeft() < parent.getWidth()
+                && getBottom() > 0 && getTop() < parent.getHeight();
     }
     
     
@@ -695,7 +753,9 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
                 parentReader.getPatchBm(update),
                 update,
                 patchHost,
-                mOverlayView);
+                mOverlayView,
+                org.opendroidpdf.app.render.RenderScheduler.Priority.VISIBLE_HQ);
+        if (mHqView != null) mHqView.setPageColorFilter(mPageColorFilter, mPaperColor);
     }
 
     public void removeHq() {
@@ -721,10 +781,12 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
     public Parcelable onSaveInstanceState() {
         Bundle bundle = new Bundle();
         bundle.putParcelable("superInstanceState", super.onSaveInstanceState());
-        org.opendroidpdf.app.annotation.DrawingStateSerializer.putInto(
+        drawingStateFile = org.opendroidpdf.app.annotation.DrawingStateSerializer.putInto(
+                mContext,
                 bundle,
                 drawingController.getDrawing(),
-                drawingController.getHistory());
+                drawingController.getHistory(),
+                drawingStateFile);
         return bundle;
     }
 
@@ -733,7 +795,7 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
         if (state instanceof Bundle) {
             Bundle bundle = (Bundle) state;
             org.opendroidpdf.app.annotation.DrawingStateSerializer.Restored restored =
-                    org.opendroidpdf.app.annotation.DrawingStateSerializer.restoreFrom(bundle);
+                    org.opendroidpdf.app.annotation.DrawingStateSerializer.restoreFrom(mContext, bundle);
             drawingController.restore(restored.drawing, restored.history);
             state = bundle.getParcelable("superInstanceState");
         }
@@ -745,6 +807,65 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
         return mHqView.getImageBitmap();
     }
 
+    /**
+     * Like {@link #discardRenderedPage()} for annotation edits, but keeps the current bitmaps on
+     * screen until the annotations are loaded again. By then the core knows which part of the page
+     * the edit changed and only that region is re-rendered; otherwise the page is discarded then.
+     */
+    protected void discardRenderedAnnotations() {
+        mRenderedAnnotationsStale = true;
+    }
+
+    /**
+     * Document-space bounds of what annotation edits changed on this page since the last call,
+     * empty when nothing visible changed, or null when unknown.
+     */
+    @Nullable
+    protected RectF takeAnnotationChangeBounds() {
+        return null;
+    }
+
+    /** Re-renders the part of the entire and hi-res bitmaps the last annotation edits changed. */
+    private boolean redrawChangedAnnotations() {
+        RectF changed = takeAnnotationChangeBounds();
+        if (changed == null) return false;
+        if (!changed.isEmpty()) {
+            // Appearance streams may paint a little outside the annotation rect (borders, AA).
+            changed.inset(-ANNOTATION_CHANGE_PADDING, -ANNOTATION_CHANGE_PADDING);
+            Point s = pageState.getMinZoomSize();
+            if (s == null || mEntireView == null) return false;
+            if (!org.opendroidpdf.app.overlay.PageRenderOrchestrator.renderRegion(
+                    mEntireView,
+                    new Rect(0, 0, s.x, s.y),
+                    mEntireBm,
+                    toPixels(changed, pageState.getSourceScale()),
+                    isVisibleInParent()
+                            ? org.opendroidpdf.app.render.RenderScheduler.Priority.VISIBLE_ENTIRE
+                            : org.opendroidpdf.app.render.RenderScheduler.Priority.PREFETCH)) {
+                return false;
+            }
+            if (mHqView != null && mHqView.getImageBitmap() != null
+                    && (getWidth() != s.x || getHeight() != s.y)
+                    && !org.opendroidpdf.app.overlay.PageRenderOrchestrator.renderRegion(
+                            mHqView,
+                            new Rect(getLeft(), getTop(), getRight(), getBottom()),
+                            mHqView.getImageBitmap(),
+                            toPixels(changed, getScale()),
+                            org.opendroidpdf.app.render.RenderScheduler.Priority.VISIBLE_HQ)) {
+                return false;
+            }
+        }
+        if (mOverlayView != null) mOverlayView.invalidate();
+        return true;
+    }
+
+    private static Rect toPixels(RectF doc, float scale) {
+        return new Rect((int) Math.floor(doc.left * scale) - 1,
+                (int) Math.floor(doc.top * scale) - 1,
+                (int) Math.ceil(doc.right * scale) + 1,
+                (int) Math.ceil(doc.bottom * scale) + 1);
+    }
+
     protected void discardRenderedPage() {
         if (mEntireView != null) {
             mEntireView.reset();
@@ -752,7 +873,23 @@ public abstract class PageView extends ViewGroup implements MuPDFView {
         if (mHqView != null) {
             mHqView.reset();
         }
+        retireEntireBitmap();
+    }
+
+    /**
+     * Drops {@link #mEntireBm}. The entire view may still show it (we keep the last frame while
+     * re-rendering) or have a render in flight into it, so it is returned to the shared pool only
+     * once the view lets go of it.
+     */
+    private void retireEntireBitmap() {
+        Bitmap old = mEntireBm;
         mEntireBm = null;
+        if (old == null) return;
+        if (mEntireView != null) {
+            mEntireView.retireBitmap(old);
+        } else {
+            org.opendroidpdf.app.render.BitmapPool.get().release(old);
+        }
     }
 
     public boolean saveDraw() {
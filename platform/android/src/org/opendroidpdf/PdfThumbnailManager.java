@@ -15,6 +15,7 @@ import android.util.Log;
 import android.graphics.PointF;
 import java.util.Random;
 
+import org.opendroidpdf.app.render.BitmapFormats;
 import org.opendroidpdf.core.MuPdfController;
 
 public class PdfThumbnailManager
@@ -43,7 +44,7 @@ public class PdfThumbnailManager
          * it can take a long time*/
     public String generate(int bmWidth, int bmHeight, MuPDFCore.Cookie cookie) {
         if(controller==null || context==null) return null;
-        Bitmap bm = Bitmap.createBitmap(bmWidth, bmHeight, Bitmap.Config.ARGB_8888);;
+        Bitmap bm = BitmapFormats.createForPage(bmWidth, bmHeight, controller.isPageKnownOpaque(0));
             /*If the core is destroyed drawPage() sometimes simply doesn't draw anything and this seems impossible to detect from just the coockie. As really bad hack around this problem we hide a random number in the first pixel and check if it has changed.*/
         Random random = new Random();
         int testPixelColor = random.nextInt();
@@ -87,9 +88,7 @@ public class PdfThumbnailManager
         File cacheDir = context.getCacheDir();
         File bitmapFile = new File(cacheDir, thumbnail);
         if(bitmapFile != null && bitmapFile.isFile()) {
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-            return BitmapFactory.decodeFile(bitmapFile.getPath(), options);
+            return BitmapFactory.decodeFile(bitmapFile.getPath(), BitmapFormats.thumbnailDecodeOptions());
         }
         else
             return null;
@@ -104,7 +103,8 @@ public class PdfThumbnailManager
         File bitmapFile = new File(cacheDir, thumbnail);
 
         if(bitmapFile != null && bitmapFile.isFile()) {
-            return new BitmapDrawable(res, bitmapFile.getPath());
+            Bitmap bm = BitmapFactory.decodeFile(bitmapFile.getPath(), BitmapFormats.thumbnailDecodeOptions());
+            return bm != null ? new BitmapDrawable(res, bm) : null;
         }
         else
             return null;
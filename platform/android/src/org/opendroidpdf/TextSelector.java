@@ -1,8 +1,8 @@
 package org.opendroidpdf;
 
 import android.graphics.RectF;
-import java.util.ArrayList;
-import java.util.Iterator;
+
+import org.opendroidpdf.app.selection.TextLineIndex;
 
 /**
  * Selects words intersecting a rectangular selection box and streams them
@@ -28,18 +28,13 @@ public class TextSelector {
     public void select(TextProcessor tp) {
         if (text == null || selectBox == null) return;
 
-        ArrayList<TextWord[]> lines = new ArrayList<TextWord[]>();
-        for (TextWord[] line : text) {
-            if (line != null && line.length > 0 && line[0].bottom > selectBox.top && line[0].top < selectBox.bottom) {
-                lines.add(line);
-            }
-        }
-
-        Iterator<TextWord[]> it = lines.iterator();
-        while (it.hasNext()) {
-            TextWord[] line = it.next();
-            boolean firstLine = line[0].top < selectBox.top;
-            boolean lastLine = line[0].bottom > selectBox.bottom;
+        // Lines and word ranges come from the page's line index, so the cost follows the size
+        // of the selection rather than of the page.
+        TextLineIndex index = TextLineIndex.of(text);
+        for (int line : index.linesOverlapping(selectBox.top, selectBox.bottom)) {
+            TextWord first = text[line][0];
+            boolean firstLine = first.top < selectBox.top;
+            boolean lastLine = first.bottom > selectBox.bottom;
 
             float start = startLimit;
             float end = endLimit;
@@ -54,14 +49,9 @@ public class TextSelector {
             }
 
             tp.onStartLine();
-
-            for (TextWord word : line) {
-                if (word.right > start && word.left < end) tp.onWord(word);
-            }
-
+            index.emitWords(line, start, end, tp);
             tp.onEndLine();
         }
         tp.onEndText();
     }
 }
-
@@ -2,21 +2,30 @@ package org.opendroidpdf.app;
 
 import android.app.Application;
 import android.content.Context;
+import android.content.SharedPreferences;
 
 import org.opendroidpdf.OpenDroidPDFCore;
 import org.opendroidpdf.R;
 import org.opendroidpdf.app.preferences.PenPreferencesServiceImpl;
 import org.opendroidpdf.app.preferences.PreferencesNames;
+import org.opendroidpdf.app.preferences.PreferencesRepository;
+import org.opendroidpdf.app.preferences.SharedPreferencesAppPrefsStore;
+import org.opendroidpdf.app.preferences.SharedPreferencesEditorPrefsStore;
 import org.opendroidpdf.app.preferences.SharedPreferencesPenPrefsStore;
 import org.opendroidpdf.app.preferences.SharedPreferencesTextStylePrefsStore;
+import org.opendroidpdf.app.preferences.SharedPreferencesViewerPrefsStore;
 import org.opendroidpdf.app.preferences.TextStylePreferencesServiceImpl;
 import org.opendroidpdf.app.services.PenPreferencesService;
 import org.opendroidpdf.app.services.TextStylePreferencesService;
 import org.opendroidpdf.app.services.recent.RecentFilesStore;
+import org.opendroidpdf.app.services.recent.SQLiteRecentFilesStore;
 import org.opendroidpdf.app.services.recent.SharedPreferencesRecentFilesStore;
 import org.opendroidpdf.core.MuPdfRepository;
 import android.util.TypedValue;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
 /**
  * Lightweight service locator to keep a single place for app-scoped helpers.
  * This avoids re-instantiating preferences/repositories from activities and
@@ -26,6 +35,7 @@ public final class AppServices {
     private static AppServices instance;
 
     private final Application app;
+    private PreferencesRepository preferences;
     private PenPreferencesService penPreferences;
     private TextStylePreferencesService textStylePreferences;
     private RecentFilesStore recentFilesStore;
@@ -48,45 +58,59 @@ public final class AppServices {
         return instance;
     }
 
-    public PenPreferencesService penPreferences() {
-        if (penPreferences == null) {
-            float min = resFloat(R.dimen.pen_size_min);
-            float max = resFloat(R.dimen.pen_size_max);
-            float step = resFloat(R.dimen.pen_size_step);
-            float def = resFloat(R.dimen.ink_thickness_default);
-            penPreferences = new PenPreferencesServiceImpl(
+    /** App-scoped preference snapshots; loaded once, persisted in the background. */
+    public synchronized PreferencesRepository preferences() {
+        if (preferences == null) {
+            SharedPreferences prefs = app.getSharedPreferences(PreferencesNames.CURRENT, Context.MODE_MULTI_PROCESS);
+            ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "prefs-writes");
+                t.setDaemon(true);
+                return t;
+            });
+            preferences = new PreferencesRepository(
                     new SharedPreferencesPenPrefsStore(
-                            app.getSharedPreferences(PreferencesNames.CURRENT, Context.MODE_MULTI_PROCESS),
-                            min,
-                            max,
-                            step,
-                            def));
+                            prefs,
+                            resFloat(R.dimen.pen_size_min),
+                            resFloat(R.dimen.pen_size_max),
+                            resFloat(R.dimen.pen_size_step),
+                            resFloat(R.dimen.ink_thickness_default)),
+                    new SharedPreferencesTextStylePrefsStore(
+                            prefs,
+                            resFloat(R.dimen.text_style_size_min),
+                            resFloat(R.dimen.text_style_size_max),
+                            resFloat(R.dimen.text_style_size_step),
+                            resFloat(R.dimen.text_style_size_default)),
+                    new SharedPreferencesEditorPrefsStore(app),
+                    new SharedPreferencesViewerPrefsStore(app),
+                    new SharedPreferencesAppPrefsStore(app),
+                    writer);
+            // SharedPreferences holds listeners weakly; this singleton keeps the repository alive.
+            prefs.registerOnSharedPreferenceChangeListener(preferences);
+        }
+        return preferences;
+    }
+
+    public synchronized PenPreferencesService penPreferences() {
+        if (penPreferences == null) {
+            penPreferences = new PenPreferencesServiceImpl(preferences());
         }
         return penPreferences;
     }
 
-    public TextStylePreferencesService textStylePreferences() {
+    public synchronized TextStylePreferencesService textStylePreferences() {
         if (textStylePreferences == null) {
-            float min = resFloat(R.dimen.text_style_size_min);
-            float max = resFloat(R.dimen.text_style_size_max);
-            float step = resFloat(R.dimen.text_style_size_step);
-            float def = resFloat(R.dimen.text_style_size_default);
-            textStylePreferences = new TextStylePreferencesServiceImpl(
-                    new SharedPreferencesTextStylePrefsStore(
-                            app.getSharedPreferences(PreferencesNames.CURRENT, Context.MODE_MULTI_PROCESS),
-                            min,
-                            max,
-                            step,
-                            def));
+            textStylePreferences = new TextStylePreferencesServiceImpl(preferences());
         }
         return textStylePreferences;
     }
 
-    public RecentFilesStore recentFilesStore() {
+    public synchronized RecentFilesStore recentFilesStore() {
         if (recentFilesStore == null) {
-            recentFilesStore = new SharedPreferencesRecentFilesStore(
+            recentFilesStore = new SQLiteRecentFilesStore(
                     app,
-                    app.getSharedPreferences(PreferencesNames.CURRENT, Context.MODE_MULTI_PROCESS));
+                    new SharedPreferencesRecentFilesStore(
+                            app,
+                            app.getSharedPreferences(PreferencesNames.CURRENT, Context.MODE_PRIVATE)));
         }
         return recentFilesStore;
     }
@@ -1,62 +1,98 @@
 package org.opendroidpdf.app.annotation;
 
+import android.content.Context;
 import android.graphics.PointF;
 import android.os.Bundle;
+import android.util.Log;
 
-import java.io.Serializable;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.UUID;
 
 /**
  * Serializes the in-progress drawing and its undo history into a Bundle
  * and restores it back. Kept separate to shrink PageView.
+ *
+ * <p>State is packed into two flat arrays: a layout array ({@code listCount}, then per list
+ * {@code strokeCount} followed by each stroke's {@code pointCount}) and an {@code x,y} coordinate
+ * array. List 0 is the drawing, the rest are history entries in deque order. Small states go into
+ * the Bundle as primitive arrays; large ones are written to a file under the cache dir and only
+ * its name is kept in the Bundle, so long drawing sessions cannot overflow the saved-state
+ * transaction. Each save supersedes the caller's previous file, which is deleted once the new
+ * state is written; files orphaned by a process that never restored are swept after a day.</p>
  */
 public final class DrawingStateSerializer {
 
-    private static final String KEY_DRAWING = "mDrawing";
-    private static final String KEY_HISTORY = "mDrawingHistory";
+    private static final String TAG = "DrawingStateSerializer";
+    private static final String KEY_LAYOUT = "drawingLayout";
+    private static final String KEY_COORDS = "drawingCoords";
+    private static final String KEY_FILE = "drawingStateFile";
+    private static final String DIR_NAME = "drawing_state";
+    private static final int MAGIC = 0x44525731; // "DRW1"
+    /** Coordinates kept inline in the Bundle (8k points). */
+    private static final int MAX_INLINE_COORDS = 16 * 1024;
+    private static final long STALE_FILE_MS = 24L * 60 * 60 * 1000;
 
     private DrawingStateSerializer() {}
 
-    // Lightweight serializable PointF wrapper
-    public static class PointFSerializable extends PointF implements Serializable {
-        private static final long serialVersionUID = 1L;
-        public PointFSerializable(PointF p) { super(p.x, p.y); }
-    }
-
-    public static void putInto(Bundle bundle,
-                               ArrayList<ArrayList<PointF>> drawing,
-                               ArrayDeque<ArrayList<ArrayList<PointF>>> history) {
-        ArrayList<ArrayList<PointFSerializable>> drawingSer = new ArrayList<>();
-        if (drawing != null) {
-            for (ArrayList<PointF> stroke : drawing) {
-                ArrayList<PointFSerializable> strokeSer = new ArrayList<>();
-                if (stroke != null) {
-                    for (PointF p : stroke) strokeSer.add(new PointFSerializable(p));
-                }
-                drawingSer.add(strokeSer);
+    /**
+     * Saves the state into {@code bundle}. Returns the name of the state file the bundle now
+     * refers to, or null when the state went inline; pass it back as {@code previousFile} on the
+     * next save so the superseded file is deleted.
+     */
+    @Nullable
+    public static String putInto(@NonNull Context context,
+                                 @NonNull Bundle bundle,
+                                 ArrayList<ArrayList<PointF>> drawing,
+                                 ArrayDeque<ArrayList<ArrayList<PointF>>> history,
+                                 @Nullable String previousFile) {
+        int lists = 1 + (history != null ? history.size() : 0);
+        int layoutSize = 1 + lists;
+        int pointCount = 0;
+        layoutSize += strokeCount(drawing);
+        pointCount += pointCount(drawing);
+        if (history != null) {
+            for (ArrayList<ArrayList<PointF>> list : history) {
+                layoutSize += strokeCount(list);
+                pointCount += pointCount(list);
             }
         }
+        if (pointCount == 0 && lists == 1) {
+            deleteFile(context, previousFile);
+            return null;
+        }
 
-        ArrayDeque<ArrayList<ArrayList<PointFSerializable>>> historySer = new ArrayDeque<>();
+        int[] layout = new int[layoutSize];
+        float[] coords = new float[pointCount * 2];
+        int[] cursor = new int[2];
+        layout[cursor[0]++] = lists;
+        pack(drawing, layout, coords, cursor);
         if (history != null) {
-            for (ArrayList<ArrayList<PointF>> list : history) {
-                ArrayList<ArrayList<PointFSerializable>> listSer = new ArrayList<>();
-                if (list != null) {
-                    for (ArrayList<PointF> stroke : list) {
-                        ArrayList<PointFSerializable> strokeSer = new ArrayList<>();
-                        if (stroke != null) {
-                            for (PointF p : stroke) strokeSer.add(new PointFSerializable(p));
-                        }
-                        listSer.add(strokeSer);
-                    }
-                }
-                historySer.add(listSer);
-            }
+            for (ArrayList<ArrayList<PointF>> list : history) pack(list, layout, coords, cursor);
         }
 
-        bundle.putSerializable(KEY_DRAWING, drawingSer);
-        bundle.putSerializable(KEY_HISTORY, historySer);
+        if (coords.length > MAX_INLINE_COORDS) {
+            String name = writeFile(context, layout, coords);
+            if (name != null) {
+                bundle.putString(KEY_FILE, name);
+                deleteFile(context, previousFile);
+                return name;
+            }
+        }
+        bundle.putIntArray(KEY_LAYOUT, layout);
+        bundle.putFloatArray(KEY_COORDS, coords);
+        deleteFile(context, previousFile);
+        return null;
     }
 
     public static class Restored {
@@ -67,46 +103,176 @@ public final class DrawingStateSerializer {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public static Restored restoreFrom(Bundle bundle) {
+    @NonNull
+    public static Restored restoreFrom(@NonNull Context context, @NonNull Bundle bundle) {
         ArrayList<ArrayList<PointF>> drawing = new ArrayList<>();
         ArrayDeque<ArrayList<ArrayList<PointF>>> history = new ArrayDeque<>();
 
-        Object dObj = bundle.getSerializable(KEY_DRAWING);
-        if (dObj instanceof ArrayList) {
-            ArrayList<ArrayList<PointFSerializable>> drawingSer = (ArrayList<ArrayList<PointFSerializable>>) dObj;
-            if (drawingSer != null) {
-                for (ArrayList<PointFSerializable> strokeSer : drawingSer) {
-                    ArrayList<PointF> stroke = new ArrayList<>();
-                    if (strokeSer != null) {
-                        for (PointF pSer : strokeSer) stroke.add(new PointF(pSer.x, pSer.y));
-                    }
-                    drawing.add(stroke);
-                }
+        int[] layout = bundle.getIntArray(KEY_LAYOUT);
+        float[] coords = bundle.getFloatArray(KEY_COORDS);
+        String name = bundle.getString(KEY_FILE);
+        if (name != null) {
+            Packed read = readFile(context, name);
+            if (read != null) {
+                layout = read.layout;
+                coords = read.coords;
             }
         }
+        if (layout == null || coords == null || layout.length == 0) return new Restored(drawing, history);
 
-        Object hObj = bundle.getSerializable(KEY_HISTORY);
-        if (hObj instanceof ArrayDeque) {
-            ArrayDeque<ArrayList<ArrayList<PointFSerializable>>> historySer =
-                    (ArrayDeque<ArrayList<ArrayList<PointFSerializable>>>) hObj;
-            if (historySer != null) {
-                for (ArrayList<ArrayList<PointFSerializable>> listSer : historySer) {
-                    ArrayList<ArrayList<PointF>> list = new ArrayList<>();
-                    if (listSer != null) {
-                        for (ArrayList<PointFSerializable> strokeSer : listSer) {
-                            ArrayList<PointF> stroke = new ArrayList<>();
-                            if (strokeSer != null) {
-                                for (PointF pSer : strokeSer) stroke.add(new PointF(pSer.x, pSer.y));
-                            }
-                            list.add(stroke);
-                        }
-                    }
-                    history.add(list);
-                }
+        try {
+            int[] cursor = new int[2];
+            int lists = layout[cursor[0]++];
+            for (int i = 0; i < lists; i++) {
+                ArrayList<ArrayList<PointF>> list = unpack(layout, coords, cursor);
+                if (i == 0) drawing = list;
+                else history.add(list);
             }
+        } catch (RuntimeException e) {
+            // Truncated or foreign data: drop the in-progress drawing rather than crash on restore.
+            Log.w(TAG, "discarding unreadable drawing state", e);
+            return new Restored(new ArrayList<ArrayList<PointF>>(), new ArrayDeque<ArrayList<ArrayList<PointF>>>());
         }
         return new Restored(drawing, history);
     }
-}
 
+    private static int strokeCount(@Nullable ArrayList<ArrayList<PointF>> list) {
+        return list != null ? list.size() : 0;
+    }
+
+    private static int pointCount(@Nullable ArrayList<ArrayList<PointF>> list) {
+        if (list == null) return 0;
+        int n = 0;
+        for (ArrayList<PointF> stroke : list) {
+            if (stroke == null) continue;
+            for (PointF p : stroke) if (p != null) n++;
+        }
+        return n;
+    }
+
+    /** cursor[0] indexes {@code layout}, cursor[1] indexes {@code coords}. */
+    private static void pack(@Nullable ArrayList<ArrayList<PointF>> list,
+                             int[] layout, float[] coords, int[] cursor) {
+        layout[cursor[0]++] = strokeCount(list);
+        if (list == null) return;
+        for (ArrayList<PointF> stroke : list) {
+            int countAt = cursor[0]++;
+            int count = 0;
+            if (stroke != null) {
+                for (PointF p : stroke) {
+                    if (p == null) continue;
+                    coords[cursor[1]++] = p.x;
+                    coords[cursor[1]++] = p.y;
+                    count++;
+                }
+            }
+            layout[countAt] = count;
+        }
+    }
+
+    @NonNull
+    private static ArrayList<ArrayList<PointF>> unpack(int[] layout, float[] coords, int[] cursor) {
+        int strokes = layout[cursor[0]++];
+        ArrayList<ArrayList<PointF>> list = new ArrayList<>(strokes);
+        for (int s = 0; s < strokes; s++) {
+            int count = layout[cursor[0]++];
+            ArrayList<PointF> stroke = new ArrayList<>(count);
+            for (int p = 0; p < count; p++) {
+                float x = coords[cursor[1]++];
+                float y = coords[cursor[1]++];
+                stroke.add(new PointF(x, y));
+            }
+            list.add(stroke);
+        }
+        return list;
+    }
+
+    @Nullable
+    private static String writeFile(@NonNull Context context, int[] layout, float[] coords) {
+        File dir = new File(context.getCacheDir(), DIR_NAME);
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+        deleteStaleFiles(dir);
+        String name = UUID.randomUUID().toString() + ".bin";
+        File f = new File(dir, name);
+        ByteBuffer buf = ByteBuffer.allocate(12 + 4 * layout.length + 4 * coords.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(layout.length).putInt(coords.length);
+        buf.asIntBuffer().put(layout);
+        buf.position(buf.position() + 4 * layout.length);
+        buf.asFloatBuffer().put(coords);
+        buf.rewind();
+        try (FileOutputStream out = new FileOutputStream(f); FileChannel ch = out.getChannel()) {
+            while (buf.hasRemaining()) ch.write(buf);
+            return name;
+        } catch (IOException e) {
+            Log.w(TAG, "failed to write drawing state", e);
+            //noinspection ResultOfMethodCallIgnored
+            f.delete();
+            return null;
+        }
+    }
+
+    private static final class Packed {
+        final int[] layout;
+        final float[] coords;
+
+        Packed(int[] layout, float[] coords) {
+            this.layout = layout;
+            this.coords = coords;
+        }
+    }
+
+    /** Reads and deletes a state file; returns null if it is missing or malformed. */
+    @Nullable
+    private static Packed readFile(@NonNull Context context, @NonNull String name) {
+        File f = new File(new File(context.getCacheDir(), DIR_NAME), name);
+        if (!name.equals(f.getName()) || !f.isFile()) return null;
+        try (FileInputStream in = new FileInputStream(f); FileChannel ch = in.getChannel()) {
+            long size = ch.size();
+            if (size < 12 || size > Integer.MAX_VALUE) return null;
+            ByteBuffer buf = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            while (buf.hasRemaining() && ch.read(buf) >= 0) { /* fill */ }
+            buf.flip();
+            if (buf.getInt() != MAGIC) return null;
+            int layoutLength = buf.getInt();
+            int coordsLength = buf.getInt();
+            if (layoutLength < 0 || coordsLength < 0
+                    || 12L + 4L * layoutLength + 4L * coordsLength != size) {
+                return null;
+            }
+            int[] layout = new int[layoutLength];
+            float[] coords = new float[coordsLength];
+            buf.asIntBuffer().get(layout);
+            buf.position(buf.position() + 4 * layoutLength);
+            buf.asFloatBuffer().get(coords);
+            return new Packed(layout, coords);
+        } catch (IOException e) {
+            Log.w(TAG, "failed to read drawing state", e);
+            return null;
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            f.delete();
+        }
+    }
+
+    private static void deleteFile(@NonNull Context context, @Nullable String name) {
+        if (name == null) return;
+        File f = new File(new File(context.getCacheDir(), DIR_NAME), name);
+        //noinspection ResultOfMethodCallIgnored
+        if (name.equals(f.getName())) f.delete();
+    }
+
+    /** Files from saves that were never restored (the task was finished instead). */
+    private static void deleteStaleFiles(@NonNull File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        long cutoff = System.currentTimeMillis() - STALE_FILE_MS;
+        for (File f : files) {
+            if (f.lastModified() < cutoff) {
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            }
+        }
+    }
+}
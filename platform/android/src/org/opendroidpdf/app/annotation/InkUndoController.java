@@ -7,12 +7,15 @@ import android.util.Log;
 import org.opendroidpdf.Annotation;
 import org.opendroidpdf.core.MuPdfController;
 
-import java.util.ArrayDeque;
 import java.util.Locale;
 
 /**
  * Encapsulates the committed-ink undo stack so {@link org.opendroidpdf.MuPDFPageView}
  * can delegate push/undo logic instead of owning stack state directly.
+ *
+ * <p>Entries live in a bounded {@link UndoJournal} and reference the committed arcs instead of
+ * copying them; the oldest strokes stop being undoable once the page's history exceeds the
+ * journal budget.</p>
  */
 public class InkUndoController {
 
@@ -34,7 +37,8 @@ public class InkUndoController {
     private final Backend backend;
     private final boolean log;
     private final String tag;
-    private final ArrayDeque<InkUndoItem> stack = new ArrayDeque<>();
+    private final UndoJournal<InkUndoItem> stack = new UndoJournal<>(
+            UndoJournal.DEFAULT_MAX_ENTRIES, UndoJournal.DEFAULT_MAX_BYTES, new InkUndoItemSizer(), null);
 
     public InkUndoController(Host host, MuPdfController controller, String logTag, boolean logUndo) {
         this(host, wrap(controller), logTag, logUndo);
@@ -75,7 +79,8 @@ public class InkUndoController {
     }
 
     public boolean undoLast() {
-        InkUndoItem item = stack.peek();
+        UndoJournal.Entry<InkUndoItem> top = stack.peekUndo();
+        InkUndoItem item = top != null ? top.value : null;
         if (log) {
             logInkUndoItem("[undo] attempt", item);
         }
@@ -97,7 +102,7 @@ public class InkUndoController {
                 backend.deleteAnnotation(host.pageNumber(), matchIndex);
                 backend.markDocumentDirty();
                 host.onInkStackMutated();
-                stack.pop();
+                stack.popUndo();
                 if (log) {
                     Log.d(tag, "[undo] success idx=" + matchIndex + "; new stack size=" + stack.size());
                 }
@@ -115,7 +120,12 @@ public class InkUndoController {
     }
 
     public boolean hasUndo() {
-        return !stack.isEmpty();
+        return stack.hasUndo();
+    }
+
+    /** See {@link UndoJournal#peekUndoSequence()}. */
+    public long peekUndoSequence() {
+        return stack.peekUndoSequence();
     }
 
     public int stackSize() {
@@ -215,27 +225,6 @@ public class InkUndoController {
         return out;
     }
 
-    private static PointF[][] cloneArcs(PointF[][] arcs) {
-        if (arcs == null) {
-            return null;
-        }
-        PointF[][] copy = new PointF[arcs.length][];
-        for (int i = 0; i < arcs.length; i++) {
-            PointF[] arc = arcs[i];
-            if (arc == null) {
-                copy[i] = null;
-                continue;
-            }
-            PointF[] arcCopy = new PointF[arc.length];
-            for (int j = 0; j < arc.length; j++) {
-                PointF pt = arc[j];
-                arcCopy[j] = pt == null ? null : new PointF(pt.x, pt.y);
-            }
-            copy[i] = arcCopy;
-        }
-        return copy;
-    }
-
     private static boolean arcsApproximatelyEqual(PointF[][] expected, PointF[][] actual) {
         if (expected == null || actual == null) {
             return false;
@@ -385,6 +374,14 @@ public class InkUndoController {
         return sb.toString();
     }
 
+    private static final class InkUndoItemSizer implements UndoJournal.Sizer<InkUndoItem> {
+        @Override
+        public long retainedBytes(InkUndoItem item) {
+            // Object headers plus one PointF (and its array slot) per signature point.
+            return 96L + 32L * countPoints(item.arcsSignature);
+        }
+    }
+
     private static final class InkUndoItem {
         final int annotationIndex;
         final RectF bounds;
@@ -397,7 +394,9 @@ public class InkUndoController {
             PointF[][] candidate = (annotation != null && annotation.arcs != null)
                     ? annotation.arcs
                     : sourceArcs;
-            this.arcsSignature = cloneArcs(candidate);
+            // Annotation arcs are fresh arrays from the core and committed arcs are never reused,
+            // so the signature can share them.
+            this.arcsSignature = candidate;
             this.objectNumber = annotation != null ? annotation.objectNumber : -1L;
         }
 
@@ -76,7 +76,11 @@ public final class TextAnnotationPageDelegate {
 
     public boolean hasEmbeddedTextRedo() { return undoController.hasRedo(); }
 
-    public long embeddedTextHistoryLastMutationUptimeMs() { return undoController.lastMutationUptimeMs(); }
+    /** Sequence of the newest embedded text edit; see {@link UndoJournal#peekUndoSequence()}. */
+    public long embeddedTextUndoSequence() { return undoController.peekUndoSequence(); }
+
+    /** Sequence of the most recently undone embedded text edit; see {@link UndoJournal#peekRedoSequence()}. */
+    public long embeddedTextRedoSequence() { return undoController.peekRedoSequence(); }
 
     public boolean undoLastEmbeddedTextEdit() {
         if (host.sidecarSessionOrNull() != null) return false;
@@ -1,18 +1,15 @@
 package org.opendroidpdf.app.annotation;
 
-import android.os.SystemClock;
-
 import androidx.annotation.NonNull;
 
 import org.opendroidpdf.app.toolbar.ToolbarStateCache;
 
-import java.util.ArrayDeque;
-
 /**
- * Small, page-scoped undo/redo stack for embedded text annotation operations.
+ * Small, page-scoped undo/redo history for embedded text annotation operations.
  *
  * <p>Sidecar annotation undo/redo lives in {@link org.opendroidpdf.app.sidecar.SidecarAnnotationSession}
- * and is exposed through {@link org.opendroidpdf.app.drawing.InkController}.</p>
+ * and is exposed through {@link org.opendroidpdf.app.drawing.InkController}. Both are
+ * {@link UndoJournal}s, so {@link #peekUndoSequence()} orders text edits against ink edits.</p>
  */
 public final class TextAnnotationUndoController {
 
@@ -21,57 +18,48 @@ public final class TextAnnotationUndoController {
         void redo();
     }
 
-    private final ArrayDeque<Op> undoStack = new ArrayDeque<>();
-    private final ArrayDeque<Op> redoStack = new ArrayDeque<>();
-    private long lastMutationUptimeMs = 0L;
+    private final UndoJournal<Op> journal = new UndoJournal<>();
+
+    public boolean hasUndo() { return journal.hasUndo(); }
 
-    public boolean hasUndo() { return !undoStack.isEmpty(); }
+    public boolean hasRedo() { return journal.hasRedo(); }
 
-    public boolean hasRedo() { return !redoStack.isEmpty(); }
+    /** See {@link UndoJournal#peekUndoSequence()}. */
+    public long peekUndoSequence() { return journal.peekUndoSequence(); }
 
-    public long lastMutationUptimeMs() { return lastMutationUptimeMs; }
+    /** See {@link UndoJournal#peekRedoSequence()}. */
+    public long peekRedoSequence() { return journal.peekRedoSequence(); }
 
     public void clear() {
-        undoStack.clear();
-        redoStack.clear();
-        bump();
+        journal.clear();
         syncToolbar();
     }
 
     public void push(@NonNull Op op) {
         if (op == null) return;
-        undoStack.push(op);
-        redoStack.clear();
-        bump();
+        journal.push(op);
         syncToolbar();
     }
 
     public boolean undoLast() {
-        Op op = undoStack.poll();
-        if (op == null) return false;
-        op.undo();
-        redoStack.push(op);
-        bump();
+        UndoJournal.Entry<Op> e = journal.popUndo();
+        if (e == null) return false;
+        e.value.undo();
+        journal.pushRedo(e);
         syncToolbar();
         return true;
     }
 
     public boolean redoLast() {
-        Op op = redoStack.poll();
-        if (op == null) return false;
-        op.redo();
-        undoStack.push(op);
-        bump();
+        UndoJournal.Entry<Op> e = journal.popRedo();
+        if (e == null) return false;
+        e.value.redo();
+        journal.pushUndo(e);
         syncToolbar();
         return true;
     }
 
-    private void bump() {
-        lastMutationUptimeMs = SystemClock.uptimeMillis();
-    }
-
     private void syncToolbar() {
         ToolbarStateCache.get().setTextUndoRedo(hasUndo(), hasRedo());
     }
 }
-
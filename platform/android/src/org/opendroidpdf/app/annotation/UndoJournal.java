@@ -0,0 +1,215 @@
+package org.opendroidpdf.app.annotation;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded undo/redo history shared by the ink, embedded-text and sidecar undo paths.
+ *
+ * <p>Every pushed entry gets a sequence number from one app-wide counter, so callers that own
+ * several journals (a page's text history, its committed ink and the document's sidecar session)
+ * can undo in the order the user made the edits: the journal with the highest
+ * {@link #peekUndoSequence()} holds the newest edit, and the one with the lowest
+ * {@link #peekRedoSequence()} holds the most recently undone one.</p>
+ *
+ * <p>The journal keeps at most {@code maxEntries} entries and roughly {@code maxBytes} of retained
+ * state (as reported by the {@link Sizer}). When over budget the oldest undo entries are handed to
+ * the optional {@link Spill}, or dropped without one; spilled entries come back (newest first) once
+ * the in-memory undo stack runs dry. Not thread-safe; callers use it from the UI thread.</p>
+ */
+public final class UndoJournal<T> {
+
+    public static final int DEFAULT_MAX_ENTRIES = 200;
+    public static final long DEFAULT_MAX_BYTES = 2L * 1024 * 1024;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /** Estimates the heap retained by an entry. */
+    public interface Sizer<T> {
+        long retainedBytes(@NonNull T value);
+    }
+
+    /** Secondary storage for entries evicted from memory. */
+    public interface Spill<T> {
+        /** Stores an evicted entry; returns false if it could not be kept. */
+        boolean spill(long sequence, @NonNull T value);
+
+        /** Removes and returns the newest spilled entry, or null when there is none. */
+        @Nullable Entry<T> restoreNewest();
+
+        void clear();
+    }
+
+    public static final class Entry<T> {
+        public final long sequence;
+        @NonNull public final T value;
+        long bytes;
+
+        public Entry(long sequence, @NonNull T value) {
+            this.sequence = sequence;
+            this.value = value;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+    @NonNull private final Sizer<? super T> sizer;
+    @Nullable private final Spill<T> spill;
+
+    private final ArrayDeque<Entry<T>> undo = new ArrayDeque<>();
+    private final ArrayDeque<Entry<T>> redo = new ArrayDeque<>();
+    private long retainedBytes;
+    private int spilled;
+    private long dropped;
+
+    public UndoJournal(int maxEntries, long maxBytes, @NonNull Sizer<? super T> sizer, @Nullable Spill<T> spill) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxBytes = Math.max(0L, maxBytes);
+        this.sizer = sizer;
+        this.spill = spill;
+    }
+
+    /** Journal with the default budget and a flat per-entry size estimate. */
+    public UndoJournal() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES, new Sizer<Object>() {
+            @Override public long retainedBytes(@NonNull Object value) { return 64L; }
+        }, null);
+    }
+
+    /** Next value of the app-wide sequence; exposed for histories that order themselves against journals. */
+    public static long nextSequence() {
+        return SEQUENCE.incrementAndGet();
+    }
+
+    /** Records a new edit, clearing the redo stack. Returns the entry's sequence number. */
+    public long push(@NonNull T value) {
+        for (Entry<T> e : redo) retainedBytes -= e.bytes;
+        redo.clear();
+        Entry<T> e = new Entry<>(nextSequence(), value);
+        e.bytes = sizer.retainedBytes(value);
+        undo.push(e);
+        retainedBytes += e.bytes;
+        trim();
+        return e.sequence;
+    }
+
+    @Nullable
+    public Entry<T> peekUndo() {
+        if (undo.isEmpty()) restoreSpilled();
+        return undo.peek();
+    }
+
+    /** Removes the newest undo entry; the caller applies it and usually hands it to {@link #pushRedo}. */
+    @Nullable
+    public Entry<T> popUndo() {
+        Entry<T> e = peekUndo();
+        if (e == null) return null;
+        undo.pop();
+        retainedBytes -= e.bytes;
+        return e;
+    }
+
+    /** Stores an undone entry for redo, re-measuring it since undo may have captured state. */
+    public void pushRedo(@NonNull Entry<T> e) {
+        e.bytes = sizer.retainedBytes(e.value);
+        redo.push(e);
+        retainedBytes += e.bytes;
+        trim();
+    }
+
+    @Nullable
+    public Entry<T> popRedo() {
+        Entry<T> e = redo.poll();
+        if (e != null) retainedBytes -= e.bytes;
+        return e;
+    }
+
+    /** Puts a redone entry back on the undo stack, keeping its original sequence number. */
+    public void pushUndo(@NonNull Entry<T> e) {
+        e.bytes = sizer.retainedBytes(e.value);
+        undo.push(e);
+        retainedBytes += e.bytes;
+        trim();
+    }
+
+    public boolean hasUndo() {
+        return !undo.isEmpty() || spilled > 0;
+    }
+
+    public boolean hasRedo() {
+        return !redo.isEmpty();
+    }
+
+    /** Sequence of the newest undoable entry, or {@link Long#MIN_VALUE} when there is none. */
+    public long peekUndoSequence() {
+        Entry<T> e = peekUndo();
+        return e != null ? e.sequence : Long.MIN_VALUE;
+    }
+
+    /** Sequence of the most recently undone entry, or {@link Long#MAX_VALUE} when there is none. */
+    public long peekRedoSequence() {
+        Entry<T> e = redo.peek();
+        return e != null ? e.sequence : Long.MAX_VALUE;
+    }
+
+    public void clear() {
+        undo.clear();
+        redo.clear();
+        retainedBytes = 0L;
+        if (spilled > 0 && spill != null) spill.clear();
+        spilled = 0;
+    }
+
+    /** In-memory entries (undo and redo). */
+    public int size() {
+        return undo.size() + redo.size();
+    }
+
+    public long retainedBytes() {
+        return retainedBytes;
+    }
+
+    public int spilledCount() {
+        return spilled;
+    }
+
+    public long droppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Evicts the oldest undo entries while over budget. The newest undo entry and the redo stack
+     * always stay in memory.
+     */
+    private void trim() {
+        while (undo.size() > 1 && (size() > maxEntries || retainedBytes > maxBytes)) {
+            Entry<T> oldest = undo.pollLast();
+            retainedBytes -= oldest.bytes;
+            if (spill != null && spill.spill(oldest.sequence, oldest.value)) {
+                spilled++;
+            } else {
+                dropped++;
+                // Anything spilled earlier is older than what was just dropped and can no longer
+                // be reached in order.
+                if (spilled > 0 && spill != null) spill.clear();
+                spilled = 0;
+            }
+        }
+    }
+
+    private void restoreSpilled() {
+        if (spilled <= 0 || spill == null) return;
+        Entry<T> e = spill.restoreNewest();
+        if (e == null) {
+            spilled = 0;
+            return;
+        }
+        spilled--;
+        e.bytes = sizer.retainedBytes(e.value);
+        undo.push(e);
+        retainedBytes += e.bytes;
+    }
+}
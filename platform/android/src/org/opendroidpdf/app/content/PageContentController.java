@@ -28,6 +28,13 @@ public final class PageContentController {
 
     public void loadText(final Host host) {
         if (contentController == null || host == null || textJob != null) return;
+        // Warmed pages get their text on this frame, so selection works from the first touch.
+        TextWord[][] cached = contentController.cachedText(host.getPageNumber());
+        if (cached != null) {
+            host.setText(cached);
+            host.invalidateOverlay();
+            return;
+        }
         textJob = contentController.loadTextAsync(host.getPageNumber(), new DocumentTextCallback() {
             @Override public void onResult(TextWord[][] result) {
                 host.setText(result);
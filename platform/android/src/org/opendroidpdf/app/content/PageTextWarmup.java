@@ -0,0 +1,101 @@
+package org.opendroidpdf.app.content;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.opendroidpdf.app.AppCoroutines;
+import org.opendroidpdf.core.MuPdfController;
+
+import kotlinx.coroutines.Job;
+
+/**
+ * Extracts page text ahead of use so selection and markup tools never wait for it.
+ * <p>
+ * Extraction fills the core's page text cache (see {@link org.opendroidpdf.core.PageTextCache}),
+ * which {@code textLines()} and page views read without the core lock. Requests supersede each
+ * other: only the latest centre page is warmed, the visible page first and then its neighbours,
+ * one page per core call so renders can take the lock in between. Idle warmups wait a moment so
+ * they do not compete with the high-resolution render of a page that just settled.
+ */
+public final class PageTextWarmup {
+    /** Pages warmed on either side of the centre page. */
+    static final int NEIGHBOURS = 1;
+    /** Delay for warmups triggered by the reader settling rather than by a tool. */
+    static final long IDLE_DELAY_MS = 400L;
+
+    private final MuPdfController controller;
+    private final Object lock = new Object();
+    /** Bumped by every request and by {@link #cancel()}; a running warmup stops when it moves on. */
+    private volatile int generation;
+    @Nullable private Job pending;
+
+    public PageTextWarmup(@NonNull MuPdfController controller) {
+        this.controller = controller;
+    }
+
+    /** Warms {@code page} and its neighbours now, e.g. when a text tool becomes active. */
+    public void warmNow(int page) {
+        schedule(page, 0L);
+    }
+
+    /** Warms {@code page} and its neighbours once the reader has been idle briefly. */
+    public void warmWhenIdle(int page) {
+        schedule(page, IDLE_DELAY_MS);
+    }
+
+    /** Stops any pending or running warmup after its current page. */
+    public void cancel() {
+        synchronized (lock) {
+            generation++;
+            AppCoroutines.cancel(pending);
+            pending = null;
+        }
+    }
+
+    private void schedule(int page, long delayMs) {
+        if (page < 0) return;
+        synchronized (lock) {
+            final int gen = ++generation;
+            AppCoroutines.cancel(pending);
+            Runnable warm = () -> AppCoroutines.launchIo(AppCoroutines.ioScope(), () -> run(gen, page));
+            pending = delayMs > 0L
+                    ? AppCoroutines.launchMainDelayed(AppCoroutines.mainScope(), delayMs, warm)
+                    : AppCoroutines.launchIo(AppCoroutines.ioScope(), () -> run(gen, page));
+        }
+    }
+
+    private void run(int gen, int centre) {
+        int pageCount;
+        try {
+            pageCount = controller.pageCount();
+        } catch (Throwable t) {
+            return;
+        }
+        for (int page : order(centre, pageCount)) {
+            if (gen != generation) return;
+            if (controller.cachedTextLines(page) != null) continue;
+            try {
+                controller.textLines(page);
+            } catch (Throwable ignore) {
+                // Tools fall back to extracting on demand.
+                return;
+            }
+        }
+    }
+
+    /** Centre first, then alternating after/before, clipped to the document. */
+    @NonNull
+    static int[] order(int centre, int pageCount) {
+        if (centre < 0 || centre >= pageCount) return new int[0];
+        int[] pages = new int[1 + 2 * NEIGHBOURS];
+        int n = 0;
+        pages[n++] = centre;
+        for (int d = 1; d <= NEIGHBOURS; d++) {
+            if (centre + d < pageCount) pages[n++] = centre + d;
+            if (centre - d >= 0) pages[n++] = centre - d;
+        }
+        int[] out = new int[n];
+        System.arraycopy(pages, 0, out, 0, n);
+        return out;
+    }
+}
@@ -42,6 +42,7 @@ public final class DebugActionsController {
     public static final String ACTION_TEXT_MULTI_DISTRIBUTE_H = "org.opendroidpdf.DEBUG_TEXT_MULTI_DISTRIBUTE_H";
     public static final String ACTION_TEXT_MULTI_TOGGLE_GROUP = "org.opendroidpdf.DEBUG_TEXT_MULTI_TOGGLE_GROUP";
     public static final String ACTION_TEXT_MULTI_NUDGE = "org.opendroidpdf.DEBUG_TEXT_MULTI_NUDGE";
+    public static final String ACTION_DUMP_METRICS = "org.opendroidpdf.DEBUG_DUMP_METRICS";
 
     private DebugActionsController() {}
 
@@ -95,6 +96,9 @@ public final class DebugActionsController {
         } else if (id == R.id.menu_debug_pdfbox_flatten) {
             performPdfBoxFlatten(host);
             return true;
+        } else if (id == R.id.menu_debug_dump_metrics) {
+            performDumpMetrics(host);
+            return true;
         }
         return false;
     }
@@ -161,6 +165,7 @@ public final class DebugActionsController {
         filter.addAction(ACTION_TEXT_MULTI_DISTRIBUTE_H);
         filter.addAction(ACTION_TEXT_MULTI_TOGGLE_GROUP);
         filter.addAction(ACTION_TEXT_MULTI_NUDGE);
+        filter.addAction(ACTION_DUMP_METRICS);
         androidx.core.content.ContextCompat.registerReceiver(
                 ctx,
                 receiver,
@@ -284,6 +289,45 @@ public final class DebugActionsController {
         }
     }
 
+    /** Visible for debug/instrumentation: returns the metrics JSON without writing it anywhere. */
+    @Nullable
+    public static String metricsJson() {
+        if (!BuildConfig.DEBUG) return null;
+        try {
+            org.json.JSONObject root = new org.json.JSONObject();
+            root.put("timestampMs", System.currentTimeMillis());
+            root.put("coreOps", org.opendroidpdf.core.CoreOpMetrics.toJson());
+            root.put("bitmapPool", org.opendroidpdf.app.render.BitmapPool.get().toJson());
+            root.put("cacheGovernor", org.opendroidpdf.app.memory.CacheGovernor.get().toJson());
+            org.opendroidpdf.app.document.ConversionCache conversions =
+                    org.opendroidpdf.app.document.ConversionCache.peek();
+            if (conversions != null) root.put("conversionCache", conversions.toJson());
+            return root.toString(2);
+        } catch (org.json.JSONException e) {
+            android.util.Log.e("OpenDroidPDF/Debug", "metrics json failed", e);
+            return null;
+        }
+    }
+
+    private static void performDumpMetrics(@NonNull Host host) {
+        android.util.Log.d("OpenDroidPDF/Debug", "performDumpMetrics invoked");
+        final Context ctx = host.context();
+        if (ctx == null) return;
+        String json = metricsJson();
+        if (json == null) return;
+        java.io.File outDir = ctx.getExternalFilesDir(null);
+        if (outDir == null) outDir = ctx.getFilesDir();
+        java.io.File out = new java.io.File(outDir, "odp_metrics.json");
+        try (java.io.FileOutputStream fos = new java.io.FileOutputStream(out)) {
+            fos.write(json.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            fos.flush();
+            android.util.Log.i("OpenDroidPDF/Debug", "metrics saved " + out.getAbsolutePath() + "\n" + json);
+            try { Toast.makeText(ctx, "Metrics saved: " + out.getName(), Toast.LENGTH_SHORT).show(); } catch (Throwable ignore) {}
+        } catch (Exception e) {
+            android.util.Log.e("OpenDroidPDF/Debug", "metrics dump failed", e);
+        }
+    }
+
     private static void performQpdfSmoke(@NonNull Host host) {
         if (!BuildConfig.DEBUG) return;
         final Context ctx = host.context();
@@ -368,6 +412,8 @@ public final class DebugActionsController {
             performTextMultiToggleGroup(host);
         } else if (ACTION_TEXT_MULTI_NUDGE.equals(action)) {
             performTextMultiNudge(host);
+        } else if (ACTION_DUMP_METRICS.equals(action)) {
+            performDumpMetrics(host);
         }
     }
 
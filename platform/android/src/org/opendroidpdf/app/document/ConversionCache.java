@@ -0,0 +1,271 @@
+package org.opendroidpdf.app.document;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * On-disk cache of converted PDFs (Word import, XFA conversion) shared by the companion-pack
+ * pipelines.
+ *
+ * <p>Entries are keyed by the source's content id, the converter package and its version, and the
+ * conversion mode, so re-opening an unchanged document returns the earlier output without binding
+ * the pack service, while updating the pack or editing the source produces a fresh conversion.
+ * Outputs are written to a temp file and renamed into place, so a lookup never sees a partial
+ * file. The directory is bounded by a byte budget; least recently used entries (by file
+ * modification time, which lookups refresh) are evicted first.</p>
+ */
+public final class ConversionCache {
+    private static final String TAG = "ConversionCache";
+    private static final String DIR_NAME = "conversions";
+    private static final String SUFFIX = ".pdf";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final long DEFAULT_BUDGET_BYTES = 128L * 1024 * 1024;
+    private static final long STALE_TMP_MS = 24L * 60 * 60 * 1000;
+    /** File name prefixes used in the cache root before conversions were keyed by content. */
+    private static final String[] LEGACY_PREFIXES = {"word_import_", "xfa_convert_", "xfa_flatten_"};
+
+    /** Notified on the converting thread; used to surface progress for slow conversions. */
+    public interface Listener {
+        /** The output was not cached; the converter service is about to be bound. */
+        void onConversionStarted();
+
+        /**
+         * Polled once the service is bound; when true the conversion is not started. A running
+         * pack call cannot be interrupted, so callers also drop results that arrive afterwards.
+         */
+        default boolean isCancelled() {
+            return false;
+        }
+    }
+
+    private static volatile ConversionCache instance;
+
+    @NonNull
+    public static ConversionCache get(@NonNull Context context) {
+        ConversionCache c = instance;
+        if (c == null) {
+            synchronized (ConversionCache.class) {
+                c = instance;
+                if (c == null) {
+                    File cacheDir = context.getApplicationContext().getCacheDir();
+                    deleteLegacyOutputs(cacheDir);
+                    c = new ConversionCache(new File(cacheDir, DIR_NAME), DEFAULT_BUDGET_BYTES);
+                    instance = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /** The shared instance if one was created; used by the debug metrics export. */
+    @Nullable
+    public static ConversionCache peek() {
+        return instance;
+    }
+
+    private final File dir;
+    private final long budgetBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    ConversionCache(@NonNull File dir, long budgetBytes) {
+        this.dir = dir;
+        this.budgetBytes = Math.max(0L, budgetBytes);
+        deleteStaleTemps();
+    }
+
+    /**
+     * Cache key for a conversion, or null when {@code contentId} is not content-derived (URI-based
+     * fallback ids would keep serving the old output after the file changes).
+     */
+    @Nullable
+    public static String key(@Nullable String contentId,
+                             @NonNull String converter,
+                             @NonNull String converterVersion,
+                             int mode) {
+        if (contentId == null || !DocumentIdentityResolver.isContentId(contentId)) return null;
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            String raw = contentId + "|" + converter + "|" + converterVersion + "|" + mode;
+            byte[] hash = md.digest(raw.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                sb.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(hash[i] & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    /**
+     * Version string for an installed converter package, or null when it is not installed. Includes
+     * the update time so reinstalling a build with an unchanged version code still invalidates.
+     */
+    @Nullable
+    @SuppressWarnings("deprecation")
+    public static String packageVersion(@NonNull Context context, @NonNull String packageName) {
+        try {
+            PackageInfo info = context.getPackageManager().getPackageInfo(packageName, 0);
+            long code = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                    ? info.getLongVersionCode()
+                    : info.versionCode;
+            return code + "." + info.lastUpdateTime;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    /** Returns the cached output for {@code key} and marks it recently used, or null. */
+    @Nullable
+    public synchronized File lookup(@Nullable String key) {
+        if (key == null) return null;
+        File f = new File(dir, key + SUFFIX);
+        if (!f.isFile() || f.length() <= 0) {
+            misses++;
+            return null;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        f.setLastModified(System.currentTimeMillis());
+        hits++;
+        return f;
+    }
+
+    /** A fresh temp file for the converter to write into; pass it to {@link #commit} or {@link #abort}. */
+    @NonNull
+    public File newTempFile(@NonNull String tag) {
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+        return new File(dir, tag + "." + System.nanoTime() + TMP_SUFFIX);
+    }
+
+    /**
+     * Publishes a finished temp file under {@code key} and trims the cache to budget. Returns the
+     * cached file, or {@code temp} itself when there is no key or the rename fails.
+     */
+    @NonNull
+    public synchronized File commit(@Nullable String key, @NonNull File temp) {
+        if (key == null) return temp;
+        File dest = new File(dir, key + SUFFIX);
+        if (dest.exists() && !dest.delete()) return temp;
+        if (!temp.renameTo(dest)) {
+            Log.w(TAG, "rename failed for " + temp.getName());
+            return temp;
+        }
+        //noinspection ResultOfMethodCallIgnored
+        dest.setLastModified(System.currentTimeMillis());
+        trimLocked(budgetBytes, dest);
+        return dest;
+    }
+
+    public void abort(@Nullable File temp) {
+        if (temp == null) return;
+        //noinspection ResultOfMethodCallIgnored
+        temp.delete();
+    }
+
+    /** Evicts least recently used entries until at most {@code targetBytes} remain. */
+    public synchronized void trimTo(long targetBytes) {
+        trimLocked(Math.max(0L, targetBytes), null);
+    }
+
+    public synchronized long sizeBytes() {
+        long total = 0L;
+        for (File f : entries()) total += f.length();
+        return total;
+    }
+
+    public long budgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized JSONObject toJson() throws JSONException {
+        JSONObject o = new JSONObject();
+        o.put("budgetBytes", budgetBytes);
+        o.put("sizeBytes", sizeBytes());
+        o.put("entries", entries().size());
+        o.put("hits", hits);
+        o.put("misses", misses);
+        o.put("evictions", evictions);
+        return o;
+    }
+
+    /** Never evicts {@code keep}, so the output just handed to a caller stays readable. */
+    private void trimLocked(long targetBytes, @Nullable File keep) {
+        List<File> files = entries();
+        long total = 0L;
+        for (File f : files) total += f.length();
+        if (total <= targetBytes) return;
+        Collections.sort(files, new Comparator<File>() {
+            @Override public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File f : files) {
+            if (total <= targetBytes) break;
+            if (f.equals(keep)) continue;
+            long len = f.length();
+            if (f.delete()) {
+                total -= len;
+                evictions++;
+            }
+        }
+    }
+
+    @NonNull
+    private List<File> entries() {
+        File[] files = dir.listFiles();
+        if (files == null) return new ArrayList<>();
+        List<File> out = new ArrayList<>(files.length);
+        for (File f : files) {
+            if (f.isFile() && f.getName().endsWith(SUFFIX)) out.add(f);
+        }
+        return out;
+    }
+
+    private void deleteStaleTemps() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        long cutoff = System.currentTimeMillis() - STALE_TMP_MS;
+        for (File f : files) {
+            if (f.getName().endsWith(TMP_SUFFIX) && f.lastModified() < cutoff) {
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            }
+        }
+    }
+
+    private static void deleteLegacyOutputs(@Nullable File cacheDir) {
+        File[] files = cacheDir != null ? cacheDir.listFiles() : null;
+        if (files == null) return;
+        for (File f : files) {
+            String name = f.getName();
+            if (!f.isFile() || !name.endsWith(SUFFIX)) continue;
+            for (String prefix : LEGACY_PREFIXES) {
+                if (name.startsWith(prefix)) {
+                    //noinspection ResultOfMethodCallIgnored
+                    f.delete();
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.opendroidpdf.app.document;
+
+import android.app.Activity;
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.ProgressBar;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+
+import org.opendroidpdf.R;
+import org.opendroidpdf.app.AppCoroutines;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Indeterminate progress dialog with a Cancel button for companion-pack conversions. It appears
+ * only once the pipeline reports that the pack actually has to run; cached outputs open directly.
+ *
+ * <p>The pack call itself cannot be interrupted. Cancelling dismisses the dialog, keeps the
+ * pipeline from binding the pack if it has not yet, and tells the caller to drop the result; an
+ * output that still completes is cached for the next open.</p>
+ */
+public final class ConversionProgress implements ConversionCache.Listener {
+    private final Context context;
+    private final String title;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    /** Main thread only. */
+    @Nullable private AlertDialog dialog;
+    /** Main thread only. */
+    private boolean finished;
+
+    /** {@code context} must be able to host dialogs (an activity). */
+    public ConversionProgress(@NonNull Context context, @NonNull String title) {
+        this.context = context;
+        this.title = title;
+    }
+
+    @Override
+    public void onConversionStarted() {
+        AppCoroutines.launchMain(AppCoroutines.mainScope(), this::show);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /** Dismisses the dialog. Call on the main thread once the pipeline has returned. */
+    public void finish() {
+        finished = true;
+        AlertDialog d = dialog;
+        dialog = null;
+        if (d != null && d.isShowing()) {
+            try { d.dismiss(); } catch (IllegalArgumentException ignore) {}
+        }
+    }
+
+    private void show() {
+        if (finished || cancelled.get()) return;
+        if (context instanceof Activity && ((Activity) context).isFinishing()) return;
+        View view = LayoutInflater.from(context).inflate(R.layout.dialog_progress_determinate, null, false);
+        ProgressBar bar = view.findViewById(R.id.progress_bar);
+        bar.setIndeterminate(true);
+        AlertDialog d = new AlertDialog.Builder(context)
+                .setTitle(title)
+                .setView(view)
+                .setCancelable(false)
+                .setNegativeButton(R.string.cancel, (di, w) -> cancelled.set(true))
+                .create();
+        d.setCanceledOnTouchOutside(false);
+        d.show();
+        dialog = d;
+    }
+}
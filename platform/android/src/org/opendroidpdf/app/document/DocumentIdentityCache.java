@@ -0,0 +1,117 @@
+package org.opendroidpdf.app.document;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers resolved document ids keyed by URI and validated by (size, last-modified), so that
+ * re-opening an unchanged document does not hash it again.
+ *
+ * <p>Entries live in a small in-memory LRU backed by SharedPreferences (optional, for tests).
+ * A lookup only hits when size and last-modified both match what was recorded; documents whose
+ * provider does not report a modification time are never cached.</p>
+ */
+final class DocumentIdentityCache {
+    static final String PREFS_NAME = "document_identity_cache";
+    private static final int MEMORY_ENTRIES = 64;
+    private static final int PERSISTED_ENTRIES = 256;
+
+    static final class Entry {
+        final long size;
+        final long lastModified;
+        final long lastUsedMs;
+        @NonNull final String docId;
+
+        Entry(long size, long lastModified, long lastUsedMs, @NonNull String docId) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.lastUsedMs = lastUsedMs;
+            this.docId = docId;
+        }
+
+        @NonNull
+        String encode() {
+            return size + "|" + lastModified + "|" + lastUsedMs + "|" + docId;
+        }
+
+        @Nullable
+        static Entry decode(@Nullable String raw) {
+            if (raw == null) return null;
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4 || parts[3].isEmpty()) return null;
+            try {
+                return new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                        Long.parseLong(parts[2]), parts[3]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    @Nullable private final SharedPreferences prefs;
+    private final LinkedHashMap<String, Entry> memory =
+            new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+                @Override protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    return size() > MEMORY_ENTRIES;
+                }
+            };
+
+    DocumentIdentityCache(@Nullable SharedPreferences prefs) {
+        this.prefs = prefs;
+    }
+
+    /** Returns the cached doc id, or null when unknown or the file changed since it was cached. */
+    @Nullable
+    synchronized String get(@NonNull String uriKey, long size, long lastModified) {
+        if (size < 0 || lastModified <= 0) return null;
+        Entry e = memory.get(uriKey);
+        if (e == null && prefs != null) {
+            e = Entry.decode(prefs.getString(uriKey, null));
+            if (e != null) memory.put(uriKey, e);
+        }
+        if (e == null) return null;
+        if (e.size != size || e.lastModified != lastModified) return null;
+        return e.docId;
+    }
+
+    synchronized void put(@NonNull String uriKey, long size, long lastModified, @NonNull String docId) {
+        if (size < 0 || lastModified <= 0 || docId.isEmpty()) return;
+        Entry e = new Entry(size, lastModified, System.currentTimeMillis(), docId);
+        memory.put(uriKey, e);
+        if (prefs == null) return;
+        SharedPreferences.Editor editor = prefs.edit().putString(uriKey, e.encode());
+        pruneLocked(editor, uriKey);
+        editor.apply();
+    }
+
+    /** Drops the least recently stored persisted entries beyond {@link #PERSISTED_ENTRIES}. */
+    private void pruneLocked(@NonNull SharedPreferences.Editor editor, @NonNull String keep) {
+        Map<String, ?> all = prefs.getAll();
+        int excess = all.size() + (all.containsKey(keep) ? 0 : 1) - PERSISTED_ENTRIES;
+        if (excess <= 0) return;
+        List<Map.Entry<String, Long>> byAge = new ArrayList<>(all.size());
+        for (Map.Entry<String, ?> kv : all.entrySet()) {
+            if (kv.getKey().equals(keep)) continue;
+            Entry e = Entry.decode(kv.getValue() instanceof String ? (String) kv.getValue() : null);
+            byAge.add(new java.util.AbstractMap.SimpleEntry<>(kv.getKey(), e != null ? e.lastUsedMs : 0L));
+        }
+        Collections.sort(byAge, new Comparator<Map.Entry<String, Long>>() {
+            @Override public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                return Long.compare(a.getValue(), b.getValue());
+            }
+        });
+        for (int i = 0; i < excess && i < byAge.size(); i++) {
+            editor.remove(byAge.get(i).getKey());
+            memory.remove(byAge.get(i).getKey());
+        }
+    }
+}
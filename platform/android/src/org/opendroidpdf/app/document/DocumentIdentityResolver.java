@@ -2,8 +2,11 @@ package org.opendroidpdf.app.document;
 
 import android.content.ContentResolver;
 import android.content.Context;
+import android.database.Cursor;
 import android.net.Uri;
 import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.provider.OpenableColumns;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -15,6 +18,12 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 /**
  * Resolves a canonical, content-derived document id for a Uri.
@@ -22,21 +31,131 @@ import java.security.MessageDigest;
  * <p>The id is intended to survive rename/move and is used to key sidecar annotations,
  * per-document reflow prefs, and viewport/recents state. If hashing fails, we fall back
  * to the legacy URI string.</p>
+ *
+ * <p>Hashing can take a while for large or non-seekable documents, so the open path uses
+ * {@link #resolveAsync} to hash concurrently with the native open. Results are cached by
+ * (URI, size, last-modified) in {@link DocumentIdentityCache}; re-opening an unchanged document
+ * resolves without touching its content.</p>
  */
 public final class DocumentIdentityResolver {
     private static final int SAMPLE_BYTES = 64 * 1024;
     private static final String PREFIX = "sha256:";
 
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "odp-docid");
+        t.setDaemon(true);
+        return t;
+    });
+    /** Resolutions in flight, keyed by URI string, so concurrent callers share one hash. */
+    private static final Map<String, Future<DocumentIdentity>> IN_FLIGHT = new HashMap<>();
+    private static volatile DocumentIdentityCache cache;
+
     private DocumentIdentityResolver() {}
 
+    /** True when {@code docId} was derived from document content rather than the legacy URI. */
+    public static boolean isContentId(@Nullable String docId) {
+        return docId != null && docId.startsWith(PREFIX);
+    }
+
+    /** Resolves synchronously, consulting the identity cache first. */
     @NonNull
     public static DocumentIdentity resolve(@NonNull Context context, @NonNull Uri uri) {
         final String legacy = uri.toString();
-        String stable = tryComputeContentId(context, uri);
+        DocumentIdentityCache c = cache(context);
+        long[] stat = statOrNull(context, uri);
+        String stable = stat != null ? c.get(legacy, stat[0], stat[1]) : null;
+        if (stable == null) {
+            stable = tryComputeContentId(context, uri);
+            if (stable != null && !stable.isEmpty() && stat != null) {
+                c.put(legacy, stat[0], stat[1], stable);
+            }
+        }
         if (stable == null || stable.isEmpty()) stable = legacy;
         return new DocumentIdentity(stable, legacy);
     }
 
+    /**
+     * The content id already cached for {@code uri} at its current size and modification time, or
+     * null. Never hashes, so it is cheap enough for the open path.
+     */
+    @Nullable
+    public static String cachedContentIdOrNull(@NonNull Context context, @NonNull Uri uri) {
+        long[] stat = statOrNull(context, uri);
+        return stat != null ? cache(context).get(uri.toString(), stat[0], stat[1]) : null;
+    }
+
+    /**
+     * Resolves on a background thread. The returned future never fails: like {@link #resolve}, it
+     * falls back to the legacy id. Concurrent requests for the same URI share one computation.
+     */
+    @NonNull
+    public static Future<DocumentIdentity> resolveAsync(@NonNull Context context, @NonNull Uri uri) {
+        final Context appContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        final String key = uri.toString();
+        final FutureTask<DocumentIdentity> task;
+        synchronized (IN_FLIGHT) {
+            Future<DocumentIdentity> existing = IN_FLIGHT.get(key);
+            if (existing != null) return existing;
+            task = new FutureTask<DocumentIdentity>(() -> {
+                try {
+                    return resolve(appContext, uri);
+                } catch (Throwable t) {
+                    return new DocumentIdentity(key, key);
+                } finally {
+                    synchronized (IN_FLIGHT) {
+                        IN_FLIGHT.remove(key);
+                    }
+                }
+            });
+            IN_FLIGHT.put(key, task);
+        }
+        EXECUTOR.execute(task);
+        return task;
+    }
+
+    @NonNull
+    private static DocumentIdentityCache cache(@NonNull Context context) {
+        DocumentIdentityCache c = cache;
+        if (c == null) {
+            synchronized (DocumentIdentityResolver.class) {
+                c = cache;
+                if (c == null) {
+                    Context app = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+                    c = new DocumentIdentityCache(
+                            app.getSharedPreferences(DocumentIdentityCache.PREFS_NAME, Context.MODE_PRIVATE));
+                    cache = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    /** Returns {size, lastModifiedMs} when both are known, else null (and the result is not cached). */
+    @Nullable
+    private static long[] statOrNull(@NonNull Context context, @NonNull Uri uri) {
+        try {
+            if ("file".equalsIgnoreCase(uri.getScheme())) {
+                String path = uri.getPath();
+                if (path == null || path.isEmpty()) return null;
+                File f = new File(path);
+                if (!f.isFile()) return null;
+                long mtime = f.lastModified();
+                return mtime > 0 ? new long[]{f.length(), mtime} : null;
+            }
+            try (Cursor c = context.getContentResolver().query(uri, null, null, null, null)) {
+                if (c == null || !c.moveToFirst()) return null;
+                int sizeCol = c.getColumnIndex(OpenableColumns.SIZE);
+                int mtimeCol = c.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+                if (sizeCol < 0 || mtimeCol < 0 || c.isNull(sizeCol) || c.isNull(mtimeCol)) return null;
+                long size = c.getLong(sizeCol);
+                long mtime = c.getLong(mtimeCol);
+                return (size >= 0 && mtime > 0) ? new long[]{size, mtime} : null;
+            }
+        } catch (Throwable ignore) {
+            return null;
+        }
+    }
+
     @Nullable
     private static String tryComputeContentId(@NonNull Context context, @NonNull Uri uri) {
         try {
@@ -3,10 +3,12 @@ package org.opendroidpdf.app.document;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.opendroidpdf.OpenDroidPDFCore;
 import org.opendroidpdf.MuPDFReaderView;
+import org.opendroidpdf.app.AppCoroutines;
 import org.opendroidpdf.app.lifecycle.ActivityComposition;
 import org.opendroidpdf.app.AppServices;
 import org.opendroidpdf.core.MuPdfController;
@@ -15,6 +17,13 @@ import org.opendroidpdf.app.services.SearchService;
 import org.opendroidpdf.app.diagnostics.AppLog;
 import org.opendroidpdf.app.diagnostics.SessionDiagnostics;
 
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Centralises document/core setup and teardown so the host activity can stay slimmer.
  */
@@ -24,12 +33,30 @@ public class DocumentLifecycleManager {
         @Nullable androidx.appcompat.app.AlertDialog.Builder alertBuilder();
     }
 
+    /** Receives the current document's identity on the main thread. */
+    public interface IdentityCallback {
+        void onIdentity(@NonNull DocumentIdentity identity);
+    }
+
+    /**
+     * Longest {@link #currentDocumentIdentityOrNull()} waits for a pending hash before falling
+     * back to the legacy id; a cache hit resolves well within this.
+     */
+    private static final long IDENTITY_WAIT_MS = 50L;
+
     private final Host host;
     private final CoreInstanceCoordinator coreCoordinator;
     private final ActivityComposition.Composition comp;
     private final AppServices appServices;
     private final SearchService searchService;
     @Nullable private DocumentIdentity currentDocumentIdentity;
+    /** Identity still being resolved for the current document (see {@link DocumentIdentityResolver#resolveAsync}). */
+    @Nullable private Future<DocumentIdentity> pendingDocumentIdentity;
+    /** Callbacks waiting for the identity, in registration order (main thread only). */
+    private final ArrayList<IdentityCallback> identityWaiters = new ArrayList<>();
+    private boolean awaitingIdentity;
+    /** Bumped whenever the document changes so stale identity waits are ignored. */
+    private int identityGeneration;
     @Nullable private Uri currentUserFacingUri;
     @Nullable private String currentUserFacingDisplayName;
     private boolean canSaveToCurrentUriCached;
@@ -96,6 +123,7 @@ public class DocumentLifecycleManager {
 
     public void setCurrentDocumentIdentity(@Nullable DocumentIdentity identity) {
         this.currentDocumentIdentity = identity;
+        this.pendingDocumentIdentity = null;
     }
 
     public void setCurrentUserFacingDocument(@Nullable Uri uri, @Nullable String displayName) {
@@ -111,21 +139,142 @@ public class DocumentLifecycleManager {
         return currentDocumentOrigin != null ? currentDocumentOrigin : DocumentOrigin.NATIVE;
     }
 
+    /**
+     * Current document identity without blocking on a hash: waits at most
+     * {@link #IDENTITY_WAIT_MS} for a pending resolution, then falls back to the legacy
+     * (uri-based) identity. The fallback is not cached, so later calls pick up the real id.
+     * Callers that key persistent state by the id should use
+     * {@link #whenDocumentIdentityReady(IdentityCallback)} instead.
+     */
     @Nullable
     public DocumentIdentity currentDocumentIdentityOrNull() {
-        ensureCurrentDocumentIdentity();
+        if (currentDocumentIdentity != null) return currentDocumentIdentity;
+        Future<DocumentIdentity> pending = currentDocumentIdentityFuture();
+        if (pending == null) return null;
+        try {
+            DocumentIdentity identity = pending.get(IDENTITY_WAIT_MS, TimeUnit.MILLISECONDS);
+            adoptResolvedIdentity(pending, identity);
+            if (identity != null) return identity;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ignore) {
+        }
+        return legacyIdentityOrNull();
+    }
+
+    /** The current document identity if it has already been resolved, else null. Never waits. */
+    @Nullable
+    public DocumentIdentity resolvedDocumentIdentityOrNull() {
+        if (currentDocumentIdentity == null) {
+            Future<DocumentIdentity> pending = pendingDocumentIdentity;
+            if (pending != null && pending.isDone()) {
+                try {
+                    adoptResolvedIdentity(pending, pending.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ignore) {
+                }
+            }
+        }
         return currentDocumentIdentity;
     }
 
-    private void ensureCurrentDocumentIdentity() {
-        if (currentDocumentIdentity != null) return;
-        Uri uri = currentDocumentUri();
-        if (uri == null) return;
-        try {
-            Context ctx = host != null ? host.context() : null;
-            if (ctx != null) currentDocumentIdentity = DocumentIdentityResolver.resolve(ctx, uri);
-        } catch (Throwable ignore) {
+    /**
+     * Runs {@code callback} on the main thread once the current document's identity is
+     * resolved; immediately when it already is and nothing is queued ahead of it. Callbacks run
+     * in registration order and are dropped if the document is replaced or closed first.
+     */
+    public void whenDocumentIdentityReady(@NonNull IdentityCallback callback) {
+        if (!awaitingIdentity) {
+            DocumentIdentity ready = resolvedDocumentIdentityOrNull();
+            if (ready != null) {
+                callback.onIdentity(ready);
+                return;
+            }
+            Future<DocumentIdentity> pending = currentDocumentIdentityFuture();
+            if (pending == null) return;
+            awaitingIdentity = true;
+            awaitIdentity(pending, identityGeneration);
         }
+        identityWaiters.add(callback);
+    }
+
+    private void awaitIdentity(@NonNull Future<DocumentIdentity> pending, int generation) {
+        AppCoroutines.launchIo(AppCoroutines.ioScope(), () -> {
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignore) {
+            }
+            AppCoroutines.launchMain(AppCoroutines.mainScope(), () -> {
+                if (generation != identityGeneration) return;
+                DocumentIdentity identity = resolvedDocumentIdentityOrNull();
+                if (identity == null) {
+                    // The pending future may have been swapped while we waited; follow it.
+                    Future<DocumentIdentity> next = currentDocumentIdentityFuture();
+                    if (next != null && next != pending) {
+                        awaitIdentity(next, generation);
+                        return;
+                    }
+                    identity = legacyIdentityOrNull();
+                }
+                awaitingIdentity = false;
+                ArrayList<IdentityCallback> waiters = new ArrayList<>(identityWaiters);
+                identityWaiters.clear();
+                if (identity == null) return;
+                for (IdentityCallback waiter : waiters) waiter.onIdentity(identity);
+            });
+        });
+    }
+
+    /**
+     * Installs an identity that is still being resolved. Callers that can defer work should use
+     * {@link #whenDocumentIdentityReady(IdentityCallback)}.
+     */
+    public void setCurrentDocumentIdentityFuture(@Nullable Future<DocumentIdentity> identity) {
+        this.currentDocumentIdentity = null;
+        this.pendingDocumentIdentity = identity;
+    }
+
+    /** Future for the current document's identity, or null when no document is open. */
+    @Nullable
+    public Future<DocumentIdentity> currentDocumentIdentityFuture() {
+        if (currentDocumentIdentity != null) {
+            FutureTask<DocumentIdentity> done = new FutureTask<>(() -> currentDocumentIdentity);
+            done.run();
+            return done;
+        }
+        if (pendingDocumentIdentity != null) return pendingDocumentIdentity;
+        Uri uri = currentDocumentUri();
+        Context ctx = host != null ? host.context() : null;
+        if (uri == null || ctx == null) return null;
+        pendingDocumentIdentity = DocumentIdentityResolver.resolveAsync(ctx, uri);
+        return pendingDocumentIdentity;
+    }
+
+    /** Promotes {@code identity} to the current one if {@code from} is still the pending resolution. */
+    private void adoptResolvedIdentity(@NonNull Future<DocumentIdentity> from, @Nullable DocumentIdentity identity) {
+        if (identity == null || pendingDocumentIdentity != from) return;
+        currentDocumentIdentity = identity;
+        pendingDocumentIdentity = null;
+    }
+
+    /** Drops the identity and any callbacks still waiting for it; the document is changing. */
+    private void forgetDocumentIdentity() {
+        currentDocumentIdentity = null;
+        pendingDocumentIdentity = null;
+        identityGeneration++;
+        awaitingIdentity = false;
+        identityWaiters.clear();
+    }
+
+    @Nullable
+    private DocumentIdentity legacyIdentityOrNull() {
+        Uri uri = currentDocumentUri();
+        if (uri == null) return null;
+        String legacy = DocumentIds.legacyFromUri(uri);
+        return new DocumentIdentity(legacy, legacy);
     }
 
     public DocumentState documentState() {
@@ -151,7 +300,7 @@ public class DocumentLifecycleManager {
         if (coreCoordinator != null && coreCoordinator.getCore() != null) {
             coreCoordinator.destroyCoreNow(appServices, host != null ? host.alertBuilder() : null);
         }
-        currentDocumentIdentity = null;
+        forgetDocumentIdentity();
         currentUserFacingUri = null;
         currentUserFacingDisplayName = null;
         currentDocumentOrigin = DocumentOrigin.NATIVE;
@@ -187,7 +336,7 @@ public class DocumentLifecycleManager {
         if (coreCoordinator != null) {
             coreCoordinator.setCoreInstance(newCore, appServices, host != null ? host.alertBuilder() : null);
         }
-        currentDocumentIdentity = null;
+        forgetDocumentIdentity();
         currentUserFacingUri = null;
         currentUserFacingDisplayName = null;
         currentDocumentOrigin = DocumentOrigin.NATIVE;
@@ -199,7 +348,7 @@ public class DocumentLifecycleManager {
     public void setCoreFromLastNonConfig(OpenDroidPDFCore last) {
         if (coreCoordinator == null) return;
         coreCoordinator.setCoreInstance(last, appServices, host != null ? host.alertBuilder() : null);
-        currentDocumentIdentity = null;
+        forgetDocumentIdentity();
         currentUserFacingUri = null;
         currentUserFacingDisplayName = null;
         currentDocumentOrigin = DocumentOrigin.NATIVE;
@@ -215,7 +364,7 @@ public class DocumentLifecycleManager {
         if (coreCoordinator != null) {
             coreCoordinator.destroyCoreNow(appServices, host != null ? host.alertBuilder() : null);
         }
-        currentDocumentIdentity = null;
+        forgetDocumentIdentity();
         currentUserFacingUri = null;
         currentUserFacingDisplayName = null;
         currentDocumentOrigin = DocumentOrigin.NATIVE;
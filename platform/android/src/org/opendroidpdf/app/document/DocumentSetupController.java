@@ -21,14 +21,21 @@ import org.opendroidpdf.MuPDFView;
 import org.opendroidpdf.MuPDFPageView;
 import org.opendroidpdf.PageView;
 import org.opendroidpdf.app.epub.EpubEncryptionDetector;
+import org.opendroidpdf.app.epub.EpubMetadataCache;
 import org.opendroidpdf.app.services.SearchService;
 import org.opendroidpdf.app.preferences.PreferencesCoordinator;
 import org.opendroidpdf.app.reflow.ReflowAnnotatedLayout;
+import org.opendroidpdf.app.reflow.ReflowLayoutProfileId;
+import org.opendroidpdf.app.reflow.ReflowPaginationCache;
 import org.opendroidpdf.app.reflow.ReflowPrefsSnapshot;
 import org.opendroidpdf.app.reflow.ReflowPrefsStore;
+import org.opendroidpdf.app.reflow.ReflowTheme;
+import org.opendroidpdf.app.reflow.ReflowThemePaint;
 import org.opendroidpdf.app.services.search.SearchDocumentView;
 import org.opendroidpdf.app.diagnostics.AppLog;
 
+import java.util.concurrent.Future;
+
 /**
  * Handles core initialization, docView setup, and search task setup to slim the activity.
  */
@@ -42,21 +49,30 @@ public class DocumentSetupController {
     private final WordImportPipeline wordImportPipeline;
     private final Object wordImportLock = new Object();
     @Nullable private Uri wordImportInFlightUri = null;
+    /** Prefs the current EPUB's baseline layout used; null until it has been laid out. */
+    @Nullable private ReflowPrefsSnapshot baselineReflowPrefs;
 
     public interface Host {
         OpenDroidPDFCore getCore();
         void setCoreInstance(OpenDroidPDFCore core);
         void setCurrentDocumentIdentity(@NonNull DocumentIdentity identity);
+        /** Identity still being hashed; consumers wait on it only when they need the id. */
+        void setCurrentDocumentIdentityFuture(@NonNull Future<DocumentIdentity> identity);
         void setCurrentDocumentOrigin(@NonNull DocumentOrigin origin);
         void setSaveToCurrentUriDisabledByPolicy(boolean disabled);
         /** Overrides the user-facing document URI/name for imported docs (e.g., Word→PDF). */
         void setCurrentUserFacingDocument(@Nullable Uri uri, @Nullable String displayName);
-        @Nullable DocumentIdentity currentDocumentIdentityOrNull();
+        /** Identity if already resolved; never waits for the hash. */
+        @Nullable DocumentIdentity resolvedDocumentIdentityOrNull();
+        /** Runs {@code callback} on the main thread once the identity is resolved. */
+        void whenDocumentIdentityReady(@NonNull DocumentLifecycleManager.IdentityCallback callback);
         AlertDialog.Builder alertBuilder();
         void requestPassword();
         org.opendroidpdf.core.SearchController getSearchController();
         MuPDFReaderView getDocView();
         default void onDocViewReady() {}
+        /** The stored reflow page map was stale; page count changed after the adapter was built. */
+        default void onReflowPaginationCorrected() {}
         void showInfo(String message);
         Context getContext();
         void setTitle();
@@ -117,23 +133,31 @@ public class DocumentSetupController {
         }
 
         Context appContext = context.getApplicationContext();
+        Handler h = new Handler(Looper.getMainLooper());
+        // Cached imports return without binding Office Pack; only real conversions show progress.
+        ConversionProgress progress = new ConversionProgress(context, context.getString(R.string.word_import_converting));
         new Thread(() -> {
             WordImportPipeline.Result res;
             try {
-                res = wordImportPipeline.importToPdf(appContext, wordUri);
+                res = wordImportPipeline.importToPdf(appContext, wordUri, progress);
             } catch (Throwable t) {
                 Log.e(TAG, "Word import threw", t);
                 res = WordImportPipeline.Result.unavailable(appContext.getString(R.string.word_import_unavailable));
             }
 
             WordImportPipeline.Result finalRes = res;
-            Handler h = new Handler(Looper.getMainLooper());
             h.post(() -> {
                 synchronized (wordImportLock) {
                     wordImportInFlightUri = null;
                 }
+                progress.finish();
 
                 if (host.getCore() != null) return;
+                if (progress.isCancelled()) {
+                    Log.i(TAG, "Word import cancelled uri=" + wordUri);
+                    host.setCoreInstance(null);
+                    return;
+                }
                 if (finalRes == null || !finalRes.isSuccess() || finalRes.pdfUriOrNull() == null) {
                     String msg = finalRes != null ? finalRes.userMessageOrNull() : null;
                     if (msg == null || msg.isEmpty()) msg = context.getString(R.string.word_import_unavailable);
@@ -167,6 +191,12 @@ public class DocumentSetupController {
             return;
         }
 
+        // Hash the document for its stable id while the native core opens it.
+        Uri prefetchIdentityUri = identityUriOverride != null ? identityUriOverride : intentUri;
+        Future<DocumentIdentity> identityFuture = prefetchIdentityUri != null
+                ? DocumentIdentityResolver.resolveAsync(context, prefetchIdentityUri)
+                : null;
+
         OpenDroidPDFCore newCore = null;
         try {
             newCore = new OpenDroidPDFCore(context, intentUri);
@@ -203,15 +233,19 @@ public class DocumentSetupController {
             host.setCurrentUserFacingDocument(identityUriOverride, resolveDisplayNameOrNull(context, identityUriOverride));
         }
 
-        // Compute and store a stable, content-derived doc id as early as possible so reflow prefs
-        // and sidecar persistence survive rename/move.
+        // Publish the stable, content-derived doc id (resolved concurrently with the open above) so
+        // reflow prefs and sidecar persistence survive rename/move. The open does not wait for it:
+        // an EPUB lays out with the prefs known now and is re-laid out if the resolved id's differ.
         Uri identityUri = identityUriOverride != null ? identityUriOverride : core.getUri();
+        baselineReflowPrefs = null;
         if (identityUri != null) {
-            try {
-                DocumentIdentity ident = DocumentIdentityResolver.resolve(context, identityUri);
-                host.setCurrentDocumentIdentity(ident);
-                maybeMigrateReflowPrefsIfNeeded(ident);
-            } catch (Throwable ignore) {
+            if (identityFuture == null || !identityUri.equals(prefetchIdentityUri)) {
+                identityFuture = DocumentIdentityResolver.resolveAsync(context, identityUri);
+            }
+            host.setCurrentDocumentIdentityFuture(identityFuture);
+            if (DocumentType.fromFileFormat(core.fileFormat()) == DocumentType.EPUB) {
+                final OpenDroidPDFCore epubCore = core;
+                host.whenDocumentIdentityReady(ident -> onEpubIdentityResolved(context, epubCore, ident));
             }
         }
 
@@ -241,6 +275,11 @@ public class DocumentSetupController {
             try { AppLog.w(TAG, "Failed to log core metadata: " + t); } catch (Throwable ignore) {}
         }
 
+        // The DRM check above only streamed the archive; index it (TOC) off the UI thread.
+        if (DocumentType.fromFileFormat(core.fileFormat()) == DocumentType.EPUB && core.getUri() != null) {
+            EpubMetadataCache.get(context).prefetch(core.getUri());
+        }
+
         // Apply current preferences (pen + annotation colors) to the newly created core.
         preferencesCoordinator.applyToCore(core);
     }
@@ -295,13 +334,7 @@ public class DocumentSetupController {
             float pageW = widthPx * 72f / densityDpi;
             float pageH = usableHeightPx * 72f / densityDpi;
 
-            String docId = null;
-            DocumentIdentity ident = host.currentDocumentIdentityOrNull();
-            if (ident != null) docId = ident.docId();
-            if (docId == null && core.getUri() != null) docId = DocumentIds.fromUri(core.getUri());
-
-            ReflowPrefsSnapshot prefs =
-                    (docId != null ? reflowPrefsStore.load(docId) : ReflowPrefsSnapshot.defaults());
+            ReflowPrefsSnapshot prefs = reflowPrefsFor(core);
             float em = prefs.fontDp * 72f / 160f;
 
             // Apply user CSS before layout so margins/line-spacing take effect during pagination.
@@ -309,6 +342,16 @@ public class DocumentSetupController {
             core.setUserCss(css);
 
             boolean ok = core.layoutDocument(pageW, pageH, em);
+            baselineReflowPrefs = prefs;
+            // Only a resolved id keys the stored map; a still-hashing document just lays out.
+            DocumentIdentity ident = host.resolvedDocumentIdentityOrNull();
+            String docId = ident != null ? ident.docId() : null;
+            if (ok && docId != null) {
+                // Reopening at a known profile serves page count and locations from the stored map.
+                String profileId = ReflowLayoutProfileId.from(prefs, core.getPageSize(0), em);
+                ReflowPaginationCache.get(context).applyAfterLayout(
+                        core, docId, profileId, host::onReflowPaginationCorrected);
+            }
             Log.i(TAG, "Baseline reflow layout applied type=" + type
                     + " w=" + pageW + " h=" + pageH + " em=" + em + " ok=" + ok
                     + " theme=" + prefs.theme);
@@ -317,6 +360,62 @@ public class DocumentSetupController {
         }
     }
 
+    /**
+     * Applies the resolved identity to an EPUB opened before its hash finished: migrates legacy
+     * prefs, then re-lays out (or just repaints) if they differ from what the baseline used.
+     */
+    private void onEpubIdentityResolved(@NonNull Context context,
+                                        @NonNull OpenDroidPDFCore core,
+                                        @NonNull DocumentIdentity ident) {
+        if (host.getCore() != core) return;
+        maybeMigrateReflowPrefsIfNeeded(ident);
+        ReflowPrefsSnapshot applied = baselineReflowPrefs;
+        // Not laid out yet: the baseline layout will read the resolved prefs itself.
+        if (applied == null) return;
+        ReflowPrefsSnapshot resolved = reflowPrefsFor(core);
+        boolean sameLayout = applied.fontDp == resolved.fontDp
+                && applied.marginScale == resolved.marginScale
+                && applied.lineSpacing == resolved.lineSpacing;
+        if (!sameLayout) {
+            maybeApplyBaselineReflowLayout(context, core);
+            host.onReflowPaginationCorrected();
+        }
+        if (!sameLayout || applied.theme != resolved.theme) {
+            applyReflowThemePaint(core, host.getDocView());
+        }
+    }
+
+    /** Resolved doc id when known, else the legacy uri id older versions keyed reflow prefs by. */
+    @Nullable
+    private String reflowDocIdFor(@NonNull OpenDroidPDFCore core) {
+        DocumentIdentity ident = host.resolvedDocumentIdentityOrNull();
+        if (ident != null) return ident.docId();
+        return core.getUri() != null ? DocumentIds.fromUri(core.getUri()) : null;
+    }
+
+    @NonNull
+    private ReflowPrefsSnapshot reflowPrefsFor(@NonNull OpenDroidPDFCore core) {
+        String docId = reflowDocIdFor(core);
+        return docId != null ? reflowPrefsStore.load(docId) : ReflowPrefsSnapshot.defaults();
+    }
+
+    /**
+     * Reflow themes are drawn as a color filter over the rendered pages rather than baked into the
+     * CSS; other formats (and a reused doc view) get the filter cleared.
+     */
+    private void applyReflowThemePaint(@NonNull OpenDroidPDFCore core, @Nullable MuPDFReaderView docView) {
+        if (docView == null) return;
+        ReflowTheme theme = ReflowTheme.LIGHT;
+        try {
+            if (DocumentType.fromFileFormat(core.fileFormat()) == DocumentType.EPUB) {
+                theme = reflowPrefsFor(core).theme;
+            }
+        } catch (Throwable t) {
+            Log.w(TAG, "Failed to load reflow theme", t);
+        }
+        docView.setPageColorFilter(ReflowThemePaint.colorFilter(theme), ReflowThemePaint.paperColor(theme));
+    }
+
     public void setupSearchSession(final MuPDFReaderView docView) {
         org.opendroidpdf.core.SearchController searchController = host.getSearchController();
         if (searchController == null) {
@@ -328,12 +427,12 @@ public class DocumentSetupController {
             searchService.clearDocument();
             return;
         }
-        String docId = null;
-        DocumentIdentity ident = host.currentDocumentIdentityOrNull();
-        if (ident != null) docId = ident.docId();
-        if (docId == null) docId = DocumentIds.fromUri(core.getUri());
-        SearchDocumentView searchDoc = new org.opendroidpdf.app.hosts.SearchDocumentHostAdapter(docView);
-        searchService.bindDocument(docId, searchController, searchDoc);
+        host.whenDocumentIdentityReady(ident -> {
+            // The view may have been replaced while the identity was hashing.
+            if (host.getDocView() != docView || host.getCore() != core) return;
+            SearchDocumentView searchDoc = new org.opendroidpdf.app.hosts.SearchDocumentHostAdapter(docView);
+            searchService.bindDocument(ident.docId(), searchController, searchDoc);
+        });
     }
 
     public void setupDocView() {
@@ -363,6 +462,7 @@ public class DocumentSetupController {
         host.restoreViewportIfAny();
         host.restoreDocViewStateIfAny();
         host.syncDocViewPreferences();
+        applyReflowThemePaint(core, host.getDocView());
         host.setTitle();
         host.onDocViewAttached();
         // Bind search once the docView is ready
@@ -17,7 +17,6 @@ import org.opendroidpdf.app.preferences.PreferencesCoordinator;
 import org.opendroidpdf.app.services.recent.ViewportSnapshot;
 import org.opendroidpdf.core.MuPdfController;
 import org.opendroidpdf.core.MuPdfRepository;
-import org.opendroidpdf.app.document.DocumentIds;
 
 /**
  * Handles docView creation/attachment, adapter setup, and viewport/state restore.
@@ -31,7 +30,8 @@ public final class DocumentViewDelegate {
         @Nullable MuPdfRepository repositoryOrNull();
         @Nullable MuPdfController muPdfControllerOrNull();
         @NonNull FilePicker.FilePickerSupport filePickerSupport();
-        @Nullable DocumentIdentity currentDocumentIdentityOrNull();
+        /** Runs {@code callback} on the main thread once the document identity is resolved. */
+        void whenDocumentIdentityReady(@NonNull DocumentLifecycleManager.IdentityCallback callback);
         boolean canSaveToCurrentUri();
     }
 
@@ -62,11 +62,14 @@ public final class DocumentViewDelegate {
     }
 
     public void restoreDocViewStateIfAny() {
-        MuPDFReaderView doc = host.docViewOrNull();
-        if (pendingDocState != null && doc != null) {
-            doc.onRestoreInstanceState(pendingDocState);
-        }
-        pendingDocState = null;
+        // Queued behind the adapter (see ensureDocAdapter) so the state lands on the new pages.
+        host.whenDocumentIdentityReady(ident -> {
+            MuPDFReaderView doc = host.docViewOrNull();
+            if (pendingDocState != null && doc != null) {
+                doc.onRestoreInstanceState(pendingDocState);
+            }
+            pendingDocState = null;
+        });
     }
 
     public void syncPreferences() {
@@ -83,26 +86,33 @@ public final class DocumentViewDelegate {
         MuPDFReaderView doc = host.docViewOrNull();
         if (doc == null || core == null || repo == null || controller == null) return;
         if (needsNewAdapterFlag) {
-            DocumentIdentity ident = host.currentDocumentIdentityOrNull();
-            String docId = ident != null ? ident.docId()
-                    : (core.getUri() != null ? DocumentIds.fromUri(core.getUri()) : "");
-            String legacyDocId = ident != null ? ident.legacyDocId() : docId;
-            EditorPreferences editorPreferences = new EditorPreferences(
-                    preferencesCoordinator::penPrefsSnapshot,
-                    preferencesCoordinator::editorPrefsSnapshot);
-            doc.setAdapter(new MuPDFPageAdapter(
-                    host.context(),
-                    controller,
-                    host.filePickerSupport(),
-                    docId,
-                    legacyDocId,
-                    documentViewHostAdapter.currentDocumentType(),
-                    host.canSaveToCurrentUri(),
-                    editorPreferences));
-            needsNewAdapter = false;
+            // Sidecar annotations are keyed by the content id, so the adapter waits for it.
+            host.whenDocumentIdentityReady(ident -> {
+                MuPDFReaderView current = host.docViewOrNull();
+                // Already rebuilt, or the view/document changed while the identity was hashing.
+                if (!needsNewAdapter || current == null || host.muPdfControllerOrNull() != controller) return;
+                current.setAdapter(newPageAdapter(controller, ident));
+                needsNewAdapter = false;
+            });
         }
     }
 
+    @NonNull
+    private MuPDFPageAdapter newPageAdapter(@NonNull MuPdfController controller, @NonNull DocumentIdentity ident) {
+        EditorPreferences editorPreferences = new EditorPreferences(
+                preferencesCoordinator::penPrefsSnapshot,
+                preferencesCoordinator::editorPrefsSnapshot);
+        return new MuPDFPageAdapter(
+                host.context(),
+                controller,
+                host.filePickerSupport(),
+                ident.docId(),
+                ident.legacyDocId(),
+                documentViewHostAdapter.currentDocumentType(),
+                host.canSaveToCurrentUri(),
+                editorPreferences);
+    }
+
     /**
      * Recreate the adapter (e.g., after reflow relayout) while preserving the current viewport
      * as best as possible.
@@ -111,7 +121,14 @@ public final class DocumentViewDelegate {
         MuPDFReaderView doc = host.docViewOrNull();
         if (doc == null) return;
 
+        // Capture the viewport now; the rebuild itself waits for the identity (normally resolved).
         ViewportSnapshot snap = snapshot != null ? snapshot : ViewportHelper.snapshot(doc);
+        host.whenDocumentIdentityReady(ident -> recreateAdapter(ident, snap));
+    }
+
+    private void recreateAdapter(@NonNull DocumentIdentity ident, @Nullable ViewportSnapshot snap) {
+        MuPDFReaderView doc = host.docViewOrNull();
+        if (doc == null) return;
         OpenDroidPDFCore core = host.coreOrNull();
         MuPdfRepository repo = host.repositoryOrNull();
         MuPdfController controller = host.muPdfControllerOrNull();
@@ -121,22 +138,7 @@ public final class DocumentViewDelegate {
         // be re-applied to the new page indices.
         doc.clearSearchResults();
 
-        DocumentIdentity ident = host.currentDocumentIdentityOrNull();
-        String docId = ident != null ? ident.docId()
-                : (core.getUri() != null ? DocumentIds.fromUri(core.getUri()) : "");
-        String legacyDocId = ident != null ? ident.legacyDocId() : docId;
-        EditorPreferences editorPreferences = new EditorPreferences(
-                preferencesCoordinator::penPrefsSnapshot,
-                preferencesCoordinator::editorPrefsSnapshot);
-        doc.setAdapter(new MuPDFPageAdapter(
-                host.context(),
-                controller,
-                host.filePickerSupport(),
-                docId,
-                legacyDocId,
-                documentViewHostAdapter.currentDocumentType(),
-                host.canSaveToCurrentUri(),
-                editorPreferences));
+        doc.setAdapter(newPageAdapter(controller, ident));
         needsNewAdapter = false;
         if (documentViewHostAdapter.currentDocumentType() == DocumentType.EPUB && snap != null) {
             long loc = snap.reflowLocation();
@@ -28,7 +28,8 @@ public final class DocumentViewportController {
         @Nullable MuPdfRepository getRepository();
         @NonNull DocumentType getCurrentDocumentType();
         @Nullable SidecarAnnotationProvider getSidecarAnnotationProviderOrNull();
-        @Nullable DocumentIdentity currentDocumentIdentityOrNull();
+        /** Runs {@code callback} on the main thread once the document identity is resolved. */
+        void whenDocumentIdentityReady(@NonNull DocumentLifecycleManager.IdentityCallback callback);
         @Nullable String getUserFacingDocumentDisplayNameOrNull();
     }
 
@@ -38,16 +39,20 @@ public final class DocumentViewportController {
         this.host = host;
     }
 
+    /** Restores the saved viewport once the document identity (its key) is resolved. */
     public void restoreViewport() {
+        if (host.getCoreUri() == null || host.getRecentFilesService() == null) return;
+        host.whenDocumentIdentityReady(this::restoreViewport);
+    }
+
+    private void restoreViewport(@NonNull DocumentIdentity ident) {
         MuPDFReaderView doc = host.getDocView();
         RecentFilesService recent = host.getRecentFilesService();
-        Uri uri = host.getCoreUri();
-        if (uri == null || recent == null) return;
+        if (recent == null) return;
         MuPdfRepository repo = host.getRepository();
-        DocumentIdentity ident = host.currentDocumentIdentityOrNull();
-        String docId = ident != null ? ident.docId() : DocumentIds.fromUri(uri);
+        String docId = ident.docId();
         ViewportSnapshot snapshot = recent.restoreViewport(docId);
-        if (snapshot == null && ident != null && !ident.docId().equals(ident.legacyDocId())) {
+        if (snapshot == null && !ident.docId().equals(ident.legacyDocId())) {
             // Migration: older versions keyed viewports by uriString. Copy on first access.
             snapshot = recent.restoreViewport(ident.legacyDocId());
             if (snapshot != null) {
@@ -142,17 +147,15 @@ public final class DocumentViewportController {
                 if (loc != -1L) snapshot = snapshot.withReflowLocation(loc);
             }
         }
-        DocumentIdentity ident = host.currentDocumentIdentityOrNull();
-        String docId = ident != null ? ident.docId() : DocumentIds.fromUri(uri);
-        recent.saveViewport(docId, snapshot);
+        // Capture now; the identity may still be hashing and the view can be gone by then.
+        final ViewportSnapshot captured = snapshot;
+        host.whenDocumentIdentityReady(ident -> recent.saveViewport(ident.docId(), captured));
     }
 
     public void recordRecent(@Nullable Uri uri) {
         RecentFilesService recent = host.getRecentFilesService();
         MuPdfRepository repo = host.getRepository();
         if (recent == null || uri == null || repo == null) return;
-        DocumentIdentity ident = host.currentDocumentIdentityOrNull();
-        String docId = ident != null ? ident.docId() : DocumentIds.fromUri(uri);
         String uriString = uri.toString();
         MuPDFReaderView doc = host.getDocView();
         ViewportSnapshot vp = ViewportHelper.snapshot(doc);
@@ -169,15 +172,17 @@ public final class DocumentViewportController {
         int lastPage = vp != null ? vp.page() : 0;
         String displayName = host.getUserFacingDocumentDisplayNameOrNull();
         if (displayName == null || displayName.isEmpty()) displayName = repo.getDocumentName();
-        RecentEntry entry = new RecentEntry(
-                docId,
+        final String name = displayName;
+        final ViewportSnapshot viewport = vp;
+        final long openedAt = System.currentTimeMillis();
+        host.whenDocumentIdentityReady(ident -> recent.recordRecent(new RecentEntry(
+                ident.docId(),
                 uriString,
-                displayName,
-                System.currentTimeMillis(),
+                name,
+                openedAt,
                 lastPage,
-                vp,
-                null);
-        recent.recordRecent(entry);
+                viewport,
+                null)));
     }
 
     public void cancelRenderThumbnailJob() {
@@ -4,12 +4,16 @@ import android.content.ClipData;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
 import android.app.Activity;
 import android.net.Uri;
 import android.print.PrintAttributes;
 import android.print.PrintManager;
+import android.view.LayoutInflater;
+import android.view.View;
 import android.widget.EditText;
 import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import androidx.annotation.Nullable;
@@ -20,6 +24,7 @@ import androidx.appcompat.app.AlertDialog;
 
 import org.opendroidpdf.PdfPrintAdapter;
 import org.opendroidpdf.R;
+import org.opendroidpdf.app.AppCoroutines;
 import org.opendroidpdf.app.document.DocumentAccessIntents;
 import org.opendroidpdf.app.helpers.RequestCodes;
 import org.opendroidpdf.app.sidecar.SidecarAnnotationProvider;
@@ -32,8 +37,11 @@ import org.opendroidpdf.core.PdfOps;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.Callable;
 
@@ -57,6 +65,9 @@ public class ExportController {
         @Nullable SidecarAnnotationProvider sidecarAnnotationProviderOrNull();
     }
 
+    /** Resolution of the bundle export/import progress bar. */
+    private static final int PROGRESS_MAX = 1000;
+
     private final Host host;
     private @Nullable Uri lastExportedUri;
     private @Nullable String pendingUserPw;
@@ -760,47 +771,40 @@ public class ExportController {
         final Context appContext = host.getContext().getApplicationContext();
         final String documentName = host.currentDocumentName();
 
-        host.callInBackgroundAndShowDialog(
+        runWithProgress(
                 host.getContext().getString(R.string.preparing_to_share),
-                new Callable<Exception>() {
-                    Uri exportedUri;
-
-                    @Override
-                    public Exception call() {
-                        try {
-                            host.commitPendingInkToCoreBlocking();
-                            exportedUri = exportSidecarBundleForExternalUse(appContext, session, documentName);
-                        } catch (Exception e) {
-                            return e;
-                        }
+                progress -> {
+                    host.commitPendingInkToCoreBlocking();
+                    Uri exportedUri = exportSidecarBundleForExternalUse(appContext, session, documentName, progress);
 
-                        shareIntent.setType("application/json");
-                        shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-                        shareIntent.setClipData(ClipData.newUri(host.getContentResolver(), documentName, exportedUri));
-                        shareIntent.putExtra(Intent.EXTRA_STREAM, exportedUri);
+                    shareIntent.setType("application/json");
+                    shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                    shareIntent.setClipData(ClipData.newUri(host.getContentResolver(), documentName, exportedUri));
+                    shareIntent.putExtra(Intent.EXTRA_STREAM, exportedUri);
 
-                        PackageManager pm = host.getContext().getPackageManager();
-                        for (android.content.pm.ResolveInfo ri : pm.queryIntentActivities(shareIntent, PackageManager.MATCH_DEFAULT_ONLY)) {
-                            if (ri.activityInfo != null && ri.activityInfo.packageName != null) {
-                                try {
-                                    host.getContext().grantUriPermission(ri.activityInfo.packageName, exportedUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
-                                } catch (Exception ignore) {}
-                            }
+                    PackageManager pm = host.getContext().getPackageManager();
+                    for (android.content.pm.ResolveInfo ri : pm.queryIntentActivities(shareIntent, PackageManager.MATCH_DEFAULT_ONLY)) {
+                        if (ri.activityInfo != null && ri.activityInfo.packageName != null) {
+                            try {
+                                host.getContext().grantUriPermission(ri.activityInfo.packageName, exportedUri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                            } catch (Exception ignore) {}
                         }
-                        return null;
                     }
                 },
-                new Callable<Void>() {
-                    @Override
-                    public Void call() {
-                        host.markIgnoreSaveOnStop();
-                        Intent chooser = Intent.createChooser(shareIntent, host.getContext().getString(R.string.share_with));
-                        chooser.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-                        host.getContext().startActivity(chooser);
-                        return null;
+                error -> {
+                    if (error instanceof CancellationException) {
+                        host.showInfo(host.getContext().getString(R.string.export_annotations_cancelled));
+                        return;
                     }
-                },
-                null);
+                    if (error != null) {
+                        host.showInfo(host.getContext().getString(R.string.error_exporting) + ": " + error);
+                        return;
+                    }
+                    host.markIgnoreSaveOnStop();
+                    Intent chooser = Intent.createChooser(shareIntent, host.getContext().getString(R.string.share_with));
+                    chooser.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                    host.getContext().startActivity(chooser);
+                });
     }
 
     public void requestImportSidecarAnnotationsBundle() {
@@ -826,7 +830,8 @@ public class ExportController {
         }
         final SidecarAnnotationSession session = (SidecarAnnotationSession) provider;
 
-        final AtomicReference<SidecarBundleJson.SidecarBundle> parsedRef = new AtomicReference<>();
+        // Only the header is read here; rows are streamed by the import itself.
+        final AtomicReference<SidecarBundleJson.BundleHeader> headerRef = new AtomicReference<>();
         host.callInBackgroundAndShowDialog(
                 host.getContext().getString(R.string.importing_annotations),
                 new Callable<Exception>() {
@@ -834,7 +839,7 @@ public class ExportController {
                     public Exception call() {
                         try (InputStream in = host.getContentResolver().openInputStream(uri)) {
                             if (in == null) return new Exception("unable to open bundle: " + uri);
-                            parsedRef.set(SidecarBundleJson.readBundleJson(in));
+                            headerRef.set(SidecarBundleJson.readBundleHeader(in));
                             return null;
                         } catch (Exception e) {
                             return e;
@@ -844,19 +849,19 @@ public class ExportController {
                 new Callable<Void>() {
                     @Override
                     public Void call() {
-                        SidecarBundleJson.SidecarBundle parsed = parsedRef.get();
-                        if (parsed == null) return null;
+                        SidecarBundleJson.BundleHeader header = headerRef.get();
+                        if (header == null) return null;
 
-                        boolean docMatch = session.docId().equals(parsed.docId);
+                        boolean docMatch = session.docId().equals(header.docId);
                         if (!docMatch && !forceImport) {
-                            showDocMismatchConfirm(session, parsed);
+                            showDocMismatchConfirm(session, uri, header);
                             return null;
                         }
                         if (!docMatch && forceImport && org.opendroidpdf.BuildConfig.DEBUG) {
                             android.util.Log.w("ExportController", "DEBUG import: docId mismatch bundle="
-                                    + shortId(parsed.docId) + " current=" + shortId(session.docId()));
+                                    + shortId(header.docId) + " current=" + shortId(session.docId()));
                         }
-                        importBundleIntoCurrentDoc(session, parsed);
+                        importBundleIntoCurrentDoc(session, uri);
                         return null;
                     }
                 },
@@ -864,52 +869,115 @@ public class ExportController {
     }
 
     private void showDocMismatchConfirm(SidecarAnnotationSession session,
-                                        SidecarBundleJson.SidecarBundle bundle) {
+                                        Uri uri,
+                                        SidecarBundleJson.BundleHeader header) {
         String message = host.getContext().getString(
                 R.string.import_docid_mismatch_message,
-                shortId(bundle.docId),
+                shortId(header.docId),
                 shortId(session.docId()));
         new androidx.appcompat.app.AlertDialog.Builder(host.getContext())
                 .setTitle(R.string.import_annotations_title)
                 .setMessage(message)
-                .setPositiveButton(R.string.import_annotations_anyway, (d, w) -> importBundleIntoCurrentDoc(session, bundle))
+                .setPositiveButton(R.string.import_annotations_anyway, (d, w) -> importBundleIntoCurrentDoc(session, uri))
                 .setNegativeButton(android.R.string.cancel, null)
                 .show();
     }
 
-    private void importBundleIntoCurrentDoc(SidecarAnnotationSession session,
-                                           SidecarBundleJson.SidecarBundle bundle) {
+    private void importBundleIntoCurrentDoc(SidecarAnnotationSession session, Uri uri) {
         final AtomicReference<SidecarBundleJson.ImportStats> statsRef = new AtomicReference<>();
-        host.callInBackgroundAndShowDialog(
+        runWithProgress(
                 host.getContext().getString(R.string.importing_annotations),
-                new Callable<Exception>() {
-                    @Override
-                    public Exception call() {
-                        try {
-                            statsRef.set(session.importBundleIntoThisDoc(bundle));
-                            return null;
-                        } catch (Exception e) {
-                            return e;
+                progress -> {
+                    try (AssetFileDescriptor afd = host.getContentResolver().openAssetFileDescriptor(uri, "r")) {
+                        if (afd == null) throw new IOException("unable to open bundle: " + uri);
+                        try (InputStream in = afd.createInputStream()) {
+                            statsRef.set(session.importBundleIntoThisDoc(in, afd.getLength(), progress));
                         }
                     }
                 },
-                new Callable<Void>() {
-                    @Override
-                    public Void call() {
-                        host.invalidateDocumentView();
-                        SidecarBundleJson.ImportStats stats = statsRef.get();
-                        if (stats != null && stats.total() == 0) {
-                            host.showInfo(host.getContext().getString(R.string.import_annotations_empty));
-                            return null;
-                        }
-                        int ink = stats != null ? stats.inkCount : bundle.ink.size();
-                        int hl = stats != null ? stats.highlightCount : bundle.highlights.size();
-                        int notes = stats != null ? stats.noteCount : bundle.notes.size();
-                        host.showInfo(host.getContext().getString(R.string.import_annotations_done, ink, hl, notes));
-                        return null;
+                error -> {
+                    // Batches committed before a cancel or failure stay imported; show them.
+                    host.invalidateDocumentView();
+                    if (error instanceof CancellationException) {
+                        host.showInfo(host.getContext().getString(R.string.import_annotations_cancelled));
+                        return;
                     }
-                },
-                null);
+                    if (error != null) {
+                        host.showInfo(host.getContext().getString(R.string.import_annotations_failed) + ": " + error);
+                        return;
+                    }
+                    SidecarBundleJson.ImportStats stats = statsRef.get();
+                    if (stats == null || stats.total() == 0) {
+                        host.showInfo(host.getContext().getString(R.string.import_annotations_empty));
+                        return;
+                    }
+                    host.showInfo(host.getContext().getString(R.string.import_annotations_done,
+                            stats.inkCount, stats.highlightCount, stats.noteCount));
+                });
+    }
+
+    /** Background half of {@link #runWithProgress}; runs off the main thread. */
+    private interface ProgressTask {
+        void run(@NonNull SidecarBundleJson.Progress progress) throws Exception;
+    }
+
+    /** Main-thread completion of {@link #runWithProgress}; {@code error} is null on success. */
+    private interface ProgressDone {
+        void onDone(@Nullable Exception error);
+    }
+
+    /**
+     * Runs {@code task} on the IO scope behind a determinate progress dialog with a Cancel button.
+     * Cancelling makes {@link SidecarBundleJson.Progress#isCancelled()} return true, so the task
+     * ends with a {@link CancellationException} at its next check.
+     */
+    private void runWithProgress(@NonNull String title, @NonNull ProgressTask task, @NonNull ProgressDone done) {
+        final Context ctx = host.getContext();
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        View view = LayoutInflater.from(ctx).inflate(R.layout.dialog_progress_determinate, null, false);
+        final ProgressBar bar = view.findViewById(R.id.progress_bar);
+        bar.setIndeterminate(true);
+        bar.setMax(PROGRESS_MAX);
+        final AlertDialog dialog = new AlertDialog.Builder(ctx)
+                .setTitle(title)
+                .setView(view)
+                .setCancelable(false)
+                .setNegativeButton(R.string.cancel, (d, w) -> cancelled.set(true))
+                .create();
+        dialog.setCanceledOnTouchOutside(false);
+        if (!(ctx instanceof Activity) || !((Activity) ctx).isFinishing()) dialog.show();
+
+        final SidecarBundleJson.Progress progress = new SidecarBundleJson.Progress() {
+            @Override
+            public void onProgress(long completed, long total) {
+                if (total <= 0) return;
+                final int value = (int) Math.min(PROGRESS_MAX, completed * PROGRESS_MAX / total);
+                AppCoroutines.launchMain(AppCoroutines.mainScope(), () -> {
+                    bar.setIndeterminate(false);
+                    bar.setProgress(value);
+                });
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return cancelled.get();
+            }
+        };
+        AppCoroutines.launchIo(AppCoroutines.ioScope(), () -> {
+            Exception error = null;
+            try {
+                task.run(progress);
+            } catch (Exception e) {
+                error = e;
+            }
+            final Exception result = error;
+            AppCoroutines.launchMain(AppCoroutines.mainScope(), () -> {
+                if (dialog.isShowing()) {
+                    try { dialog.dismiss(); } catch (IllegalArgumentException ignore) {}
+                }
+                done.onDone(result);
+            });
+        });
     }
 
     private static String shortId(String id) {
@@ -939,10 +1007,15 @@ public class ExportController {
 
     private static Uri exportSidecarBundleForExternalUse(Context appContext,
                                                         SidecarAnnotationSession session,
-                                                        String baseName) throws Exception {
+                                                        String baseName,
+                                                        @Nullable SidecarBundleJson.Progress progress) throws Exception {
         File outFile = newSidecarBundleFile(appContext, baseName);
         try (OutputStream os = new FileOutputStream(outFile, false)) {
-            session.writeBundleJson(os);
+            session.writeBundleJson(os, progress);
+        } catch (Exception e) {
+            //noinspection ResultOfMethodCallIgnored
+            outFile.delete();
+            throw e;
         }
         return FileProvider.getUriForFile(appContext, "org.opendroidpdf.fileprovider", outFile);
     }
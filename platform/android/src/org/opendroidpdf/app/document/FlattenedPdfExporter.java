@@ -12,6 +12,10 @@ import androidx.core.content.FileProvider;
 
 import org.opendroidpdf.MuPDFCore;
 import org.opendroidpdf.app.overlay.SidecarAnnotationRenderer;
+import org.opendroidpdf.app.render.BitmapFormats;
+import org.opendroidpdf.app.render.BitmapPool;
+import org.opendroidpdf.app.render.CookieRenderWork;
+import org.opendroidpdf.app.render.RenderScheduler;
 import org.opendroidpdf.app.sidecar.SidecarAnnotationProvider;
 import org.opendroidpdf.core.MuPdfRepository;
 
@@ -54,14 +58,8 @@ final class FlattenedPdfExporter {
                 int w = Math.max(1, (int) Math.ceil(pageSize.x * scale));
                 int h = Math.max(1, (int) Math.ceil(pageSize.y * scale));
 
-                Bitmap bitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
-                bitmap.eraseColor(0xFFFFFFFF);
-                MuPDFCore.Cookie cookie = repo.newRenderCookie();
-                try {
-                    repo.drawPage(bitmap, pageIndex, w, h, 0, 0, w, h, cookie);
-                } finally {
-                    cookie.destroy();
-                }
+                Bitmap bitmap = BitmapFormats.createForPage(w, h, repo.isPageKnownOpaque(pageIndex));
+                renderPage(repo, bitmap, pageIndex, w, h);
 
                 if (overlayRenderer != null && sidecar != null) {
                     Canvas overlayCanvas = new Canvas(bitmap);
@@ -75,7 +73,7 @@ final class FlattenedPdfExporter {
                     page.getCanvas().drawBitmap(bitmap, 0, 0, null);
                 } finally {
                     pdf.finishPage(page);
-                    bitmap.recycle();
+                    BitmapPool.get().release(bitmap);
                 }
             }
             pdf.writeTo(os);
@@ -86,6 +84,29 @@ final class FlattenedPdfExporter {
         return FileProvider.getUriForFile(appContext, "org.opendroidpdf.fileprovider", outFile);
     }
 
+    /**
+     * Renders one page through the shared scheduler at export priority and waits for it. Visible
+     * renders preempt the page; it is then re-rendered from scratch.
+     */
+    private static void renderPage(@NonNull MuPdfRepository repo,
+                                   @NonNull final Bitmap bitmap,
+                                   final int pageIndex,
+                                   final int w,
+                                   final int h) throws Exception {
+        CookieRenderWork work = new CookieRenderWork(repo) {
+            @Override protected void render(@NonNull MuPDFCore.Cookie cookie) {
+                bitmap.eraseColor(0xFFFFFFFF);
+                repo.drawPage(bitmap, pageIndex, w, h, 0, 0, w, h, cookie);
+            }
+        };
+        boolean completed = RenderScheduler.get()
+                .submit(new RenderScheduler.Request(RenderScheduler.Priority.EXPORT, work).restartOnPreempt())
+                .await();
+        if (!completed) {
+            throw new java.io.InterruptedIOException("page render dropped page=" + pageIndex);
+        }
+    }
+
     private static File newExportFile(@NonNull Context appContext, @NonNull String baseName) {
         File dir = new File(appContext.getCacheDir(), "tmpfiles");
         //noinspection ResultOfMethodCallIgnored
@@ -19,8 +19,6 @@ import org.opendroidpdf.officepack.IOfficePackConverter;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -28,7 +26,8 @@ import java.util.concurrent.TimeUnit;
  * Word import implementation backed by the optional Office Pack companion APK.
  *
  * <p>This pipeline is synchronous and is expected to be called off the UI thread. It performs a
- * secure bind to the Office Pack and routes conversions through it.</p>
+ * secure bind to the Office Pack and routes conversions through it. Outputs are kept in
+ * {@link ConversionCache}, so re-importing an unchanged document does not bind the pack.</p>
  */
 public final class OfficePackWordImportPipeline implements WordImportPipeline {
 
@@ -36,15 +35,25 @@ public final class OfficePackWordImportPipeline implements WordImportPipeline {
     private static final String OFFICE_PACK_PACKAGE = "org.opendroidpdf.officepack";
     private static final String OFFICE_PACK_SERVICE = "org.opendroidpdf.officepack.OfficePackConverterService";
     private static final long BIND_TIMEOUT_MS = 2000;
-    private static final String OUT_PREFIX = "word_import_";
+    private static final String OUT_PREFIX = "word_import";
+    private static final int CACHE_MODE_WORD = 0;
 
     @NonNull
     @Override
     public Result importToPdf(@NonNull Context context, @NonNull Uri wordUri) {
+        return importToPdf(context, wordUri, null);
+    }
+
+    @NonNull
+    @Override
+    public Result importToPdf(@NonNull Context context,
+                              @NonNull Uri wordUri,
+                              @Nullable ConversionCache.Listener listener) {
         Context appContext = context.getApplicationContext();
         boolean isLegacyDoc = isLikelyLegacyDoc(appContext, wordUri);
 
-        if (!isOfficePackInstalled(appContext)) {
+        String packVersion = ConversionCache.packageVersion(appContext, OFFICE_PACK_PACKAGE);
+        if (packVersion == null) {
             return Result.unavailable(
                     appContext.getString(R.string.word_import_unavailable),
                     Result.Action.INSTALL_OFFICE_PACK);
@@ -60,12 +69,16 @@ public final class OfficePackWordImportPipeline implements WordImportPipeline {
             docId = DocumentIdentityResolver.resolve(appContext, wordUri).docId();
         } catch (Throwable ignore) {
         }
-        String token = stableHash(docId != null ? docId : wordUri.toString());
-        File outFile = new File(appContext.getCacheDir(), OUT_PREFIX + token + ".pdf");
-        if (outFile.isFile() && outFile.length() > 0) {
-            Log.i(TAG, "Using cached Word import pdf=" + outFile.getName());
-            return Result.success(Uri.fromFile(outFile));
+        ConversionCache cache = ConversionCache.get(appContext);
+        String key = ConversionCache.key(docId, OFFICE_PACK_PACKAGE, packVersion, CACHE_MODE_WORD);
+        File cached = cache.lookup(key);
+        if (cached != null) {
+            Log.i(TAG, "Using cached Word import pdf=" + cached.getName());
+            return Result.success(Uri.fromFile(cached));
         }
+        if (listener != null) listener.onConversionStarted();
+
+        File outFile = cache.newTempFile(OUT_PREFIX);
         boolean success = false;
 
         try (ParcelFileDescriptor inPfd = openForRead(appContext, wordUri);
@@ -97,6 +110,9 @@ public final class OfficePackWordImportPipeline implements WordImportPipeline {
                 if (converter == null) {
                     return Result.unavailable(appContext.getString(R.string.word_import_office_pack_failed));
                 }
+                if (listener != null && listener.isCancelled()) {
+                    return Result.unavailable(appContext.getString(R.string.word_import_office_pack_failed));
+                }
 
                 int code;
                 try {
@@ -108,7 +124,7 @@ public final class OfficePackWordImportPipeline implements WordImportPipeline {
 
                 if (code == IOfficePackConverter.RESULT_OK) {
                     success = true;
-                    return Result.success(Uri.fromFile(outFile));
+                    return Result.success(Uri.fromFile(cache.commit(key, outFile)));
                 }
                 if (code == IOfficePackConverter.RESULT_UNSUPPORTED) {
                     if (isLegacyDoc) {
@@ -133,24 +149,11 @@ public final class OfficePackWordImportPipeline implements WordImportPipeline {
             return Result.unavailable(appContext.getString(R.string.word_import_office_pack_failed));
         } finally {
             if (!success) {
-                try {
                 // Best-effort cleanup of partial outputs.
-                //noinspection ResultOfMethodCallIgnored
-                outFile.delete();
-            } catch (Throwable ignore) {
+                cache.abort(outFile);
             }
         }
     }
-    }
-
-    private static boolean isOfficePackInstalled(Context context) {
-        try {
-            context.getPackageManager().getPackageInfo(OFFICE_PACK_PACKAGE, 0);
-            return true;
-        } catch (Throwable t) {
-            return false;
-        }
-    }
 
     private static boolean signaturesMatch(Context context) {
         PackageManager pm = context.getPackageManager();
@@ -248,21 +251,4 @@ public final class OfficePackWordImportPipeline implements WordImportPipeline {
             return converter;
         }
     }
-
-    private static String stableHash(@NonNull String input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder(24);
-            // Shorten: we only need a stable filename token, not a full content hash.
-            for (int i = 0; i < Math.min(hash.length, 12); i++) {
-                byte b = hash[i];
-                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
-                sb.append(Character.forDigit(b & 0xF, 16));
-            }
-            return sb.toString();
-        } catch (Throwable t) {
-            return Integer.toHexString(input.hashCode());
-        }
-    }
 }
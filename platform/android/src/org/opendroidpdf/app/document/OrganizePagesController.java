@@ -33,6 +33,10 @@ import org.opendroidpdf.MuPDFCore;
 import org.opendroidpdf.OpenDroidPDFCore;
 import org.opendroidpdf.R;
 import org.opendroidpdf.app.helpers.RequestCodes;
+import org.opendroidpdf.app.memory.CacheGovernor;
+import org.opendroidpdf.app.render.BitmapFormats;
+import org.opendroidpdf.app.render.CookieRenderWork;
+import org.opendroidpdf.app.render.RenderScheduler;
 import org.opendroidpdf.app.sidecar.SidecarAnnotationProvider;
 import org.opendroidpdf.core.MuPdfRepository;
 import org.opendroidpdf.core.PdfOps;
@@ -47,12 +51,11 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Organize pages is the home for structural PDF edits (merge, extract, rotate, etc).
@@ -1170,16 +1173,65 @@ public final class OrganizePagesController {
         }
     }
 
+    private static void trackThumbnailJob(@NonNull List<RenderScheduler.Handle> jobs,
+                                          @NonNull RenderScheduler.Handle handle) {
+        synchronized (jobs) {
+            Iterator<RenderScheduler.Handle> it = jobs.iterator();
+            while (it.hasNext()) {
+                if (it.next().isDone()) it.remove();
+            }
+            jobs.add(handle);
+        }
+    }
+
+    private static void cancelThumbnailJobs(@NonNull List<RenderScheduler.Handle> jobs) {
+        synchronized (jobs) {
+            for (RenderScheduler.Handle h : jobs) {
+                try { h.cancel(true); } catch (Throwable ignore) {}
+            }
+            jobs.clear();
+        }
+    }
+
+    /**
+     * Page thumbnails for the organize dialogs, sized in bytes from a {@link CacheGovernor} share
+     * and trimmed with the other caches under memory pressure. Evicted bitmaps are not recycled
+     * because a visible row may still show them.
+     */
+    private static final class ThumbnailCache extends android.util.LruCache<Integer, Bitmap> {
+        private static final float BUDGET_SHARE = 0.125f;
+        private static final int MIN_BUDGET_KB = 2 * 1024;
+
+        private final CacheGovernor.Registration registration;
+
+        ThumbnailCache() {
+            super(budgetKb());
+            registration = CacheGovernor.get().register("organizeThumbnails",
+                    CacheGovernor.PRIORITY_THUMBNAILS, BUDGET_SHARE, new CacheGovernor.Trimmable() {
+                        @Override public long sizeBytes() { return size() * 1024L; }
+                        @Override public void trimToFraction(float fraction) { trimToSize((int) (size() * fraction)); }
+                    });
+        }
+
+        private static int budgetKb() {
+            long bytes = (long) (CacheGovernor.get().budgetBytes() * (double) BUDGET_SHARE);
+            return (int) Math.max(MIN_BUDGET_KB, Math.min(Integer.MAX_VALUE, bytes / 1024L));
+        }
+
+        @Override protected int sizeOf(@NonNull Integer key, @NonNull Bitmap value) {
+            return Math.max(1, value.getAllocationByteCount() / 1024);
+        }
+    }
+
     private static final class ReorderPagesAdapter extends RecyclerView.Adapter<ReorderPagesAdapter.Holder> {
         private static final int THUMBNAIL_WIDTH_DP = 56;
-        private static final int THUMBNAIL_CACHE_SIZE = 32;
 
         private final MuPdfRepository repo;
         private final List<Integer> pages;
         private @Nullable ItemTouchHelper helper;
         private final int thumbnailWidthPx;
-        private final android.util.LruCache<Integer, Bitmap> thumbnailCache;
-        private final ExecutorService thumbExecutor;
+        private final ThumbnailCache thumbnailCache;
+        private final List<RenderScheduler.Handle> thumbJobs = Collections.synchronizedList(new ArrayList<>());
         private final Set<Integer> inFlight = Collections.synchronizedSet(new HashSet<>());
         private volatile boolean released;
 
@@ -1192,12 +1244,7 @@ public final class OrganizePagesController {
             float density = 1f;
             try { density = ctx.getResources().getDisplayMetrics().density; } catch (Throwable ignore) { density = 1f; }
             thumbnailWidthPx = Math.max(1, Math.round(density * THUMBNAIL_WIDTH_DP));
-            thumbnailCache = new android.util.LruCache<Integer, Bitmap>(THUMBNAIL_CACHE_SIZE) {
-                @Override protected int sizeOf(@NonNull Integer key, @NonNull Bitmap value) {
-                    return 1;
-                }
-            };
-            thumbExecutor = Executors.newSingleThreadExecutor();
+            thumbnailCache = new ThumbnailCache();
         }
 
         void setItemTouchHelper(@NonNull ItemTouchHelper helper) {
@@ -1255,7 +1302,7 @@ public final class OrganizePagesController {
 
         void release() {
             released = true;
-            try { thumbExecutor.shutdownNow(); } catch (Throwable ignore) {}
+            cancelThumbnailJobs(thumbJobs);
             try { thumbnailCache.evictAll(); } catch (Throwable ignore) {}
             try { inFlight.clear(); } catch (Throwable ignore) {}
         }
@@ -1270,33 +1317,42 @@ public final class OrganizePagesController {
             }
             holder.thumbnail.setImageDrawable(null);
             if (!inFlight.add(page1Based)) return;
-            thumbExecutor.execute(() -> {
-                Bitmap bm = null;
-                try {
-                    bm = renderThumbnail(page1Based);
-                } catch (Throwable ignore) {
-                    bm = null;
-                } finally {
+            CookieRenderWork work = new CookieRenderWork(repo) {
+                @Override protected void render(@NonNull MuPDFCore.Cookie cookie) {
+                    Bitmap bm = null;
+                    try {
+                        bm = renderThumbnail(page1Based, cookie);
+                    } catch (Throwable ignore) {
+                        bm = null;
+                    }
+                    // Preempted renders are re-run by the scheduler; keep the page marked in flight.
+                    if (cookie.aborted()) return;
                     try { inFlight.remove(page1Based); } catch (Throwable ignore) {}
+                    if (released || bm == null) return;
+                    thumbnailCache.put(page1Based, bm);
+                    try {
+                        holder.itemView.post(() -> {
+                            if (released) return;
+                            if (holder.boundPage != page1Based) return;
+                            Bitmap latest = thumbnailCache.get(page1Based);
+                            if (latest != null && holder.thumbnail != null) {
+                                holder.thumbnail.setImageBitmap(latest);
+                            }
+                        });
+                    } catch (Throwable ignore) {
+                    }
                 }
-                if (released || bm == null) return;
-                thumbnailCache.put(page1Based, bm);
-                try {
-                    holder.itemView.post(() -> {
-                        if (released) return;
-                        if (holder.boundPage != page1Based) return;
-                        Bitmap latest = thumbnailCache.get(page1Based);
-                        if (latest != null && holder.thumbnail != null) {
-                            holder.thumbnail.setImageBitmap(latest);
-                        }
-                    });
-                } catch (Throwable ignore) {
+
+                @Override public void onDropped() {
+                    try { inFlight.remove(page1Based); } catch (Throwable ignore) {}
                 }
-            });
+            };
+            trackThumbnailJob(thumbJobs, RenderScheduler.get().submit(
+                    new RenderScheduler.Request(RenderScheduler.Priority.THUMBNAIL, work).restartOnPreempt()));
         }
 
         @Nullable
-        private Bitmap renderThumbnail(int page1Based) {
+        private Bitmap renderThumbnail(int page1Based, @NonNull MuPDFCore.Cookie cookie) {
             int pageIndex = page1Based - 1;
             if (pageIndex < 0) return null;
             PointF size = null;
@@ -1307,14 +1363,9 @@ public final class OrganizePagesController {
             }
             int w = thumbnailWidthPx;
             int h = Math.max(1, Math.round(w * ratio));
-            Bitmap bm = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
-            MuPDFCore.Cookie cookie = repo.newRenderCookie();
-            try {
-                repo.drawPage(bm, pageIndex, w, h, 0, 0, w, h, cookie);
-            } finally {
-                try { cookie.destroy(); } catch (Throwable ignore) {}
-            }
-            return bm;
+            Bitmap bm = BitmapFormats.createForPage(w, h, repo.isPageKnownOpaque(pageIndex));
+            repo.drawPage(bm, pageIndex, w, h, 0, 0, w, h, cookie);
+            return cookie.aborted() ? bm : BitmapFormats.toDisplayOnly(bm);
         }
 
         @NonNull String buildPageSpec() {
@@ -1344,14 +1395,13 @@ public final class OrganizePagesController {
 
     private static final class InsertPositionAdapter extends RecyclerView.Adapter<InsertPositionAdapter.Holder> {
         private static final int THUMBNAIL_WIDTH_DP = 56;
-        private static final int THUMBNAIL_CACHE_SIZE = 32;
 
         private final Context ctx;
         private final MuPdfRepository repo;
         private final int pageCount;
         private final int thumbnailWidthPx;
-        private final android.util.LruCache<Integer, Bitmap> thumbnailCache;
-        private final ExecutorService thumbExecutor;
+        private final ThumbnailCache thumbnailCache;
+        private final List<RenderScheduler.Handle> thumbJobs = Collections.synchronizedList(new ArrayList<>());
         private final Set<Integer> inFlight = Collections.synchronizedSet(new HashSet<>());
         private final IntConsumer onSelected;
         private volatile boolean released;
@@ -1368,12 +1418,7 @@ public final class OrganizePagesController {
             float density = 1f;
             try { density = ctx.getResources().getDisplayMetrics().density; } catch (Throwable ignore) { density = 1f; }
             thumbnailWidthPx = Math.max(1, Math.round(density * THUMBNAIL_WIDTH_DP));
-            thumbnailCache = new android.util.LruCache<Integer, Bitmap>(THUMBNAIL_CACHE_SIZE) {
-                @Override protected int sizeOf(@NonNull Integer key, @NonNull Bitmap value) {
-                    return 1;
-                }
-            };
-            thumbExecutor = Executors.newSingleThreadExecutor();
+            thumbnailCache = new ThumbnailCache();
         }
 
         @NonNull @Override
@@ -1413,7 +1458,7 @@ public final class OrganizePagesController {
 
         void release() {
             released = true;
-            try { thumbExecutor.shutdownNow(); } catch (Throwable ignore) {}
+            cancelThumbnailJobs(thumbJobs);
             try { thumbnailCache.evictAll(); } catch (Throwable ignore) {}
             try { inFlight.clear(); } catch (Throwable ignore) {}
         }
@@ -1428,33 +1473,42 @@ public final class OrganizePagesController {
             }
             holder.thumbnail.setImageDrawable(null);
             if (!inFlight.add(page1Based)) return;
-            thumbExecutor.execute(() -> {
-                Bitmap bm = null;
-                try {
-                    bm = renderThumbnail(page1Based);
-                } catch (Throwable ignore) {
-                    bm = null;
-                } finally {
+            CookieRenderWork work = new CookieRenderWork(repo) {
+                @Override protected void render(@NonNull MuPDFCore.Cookie cookie) {
+                    Bitmap bm = null;
+                    try {
+                        bm = renderThumbnail(page1Based, cookie);
+                    } catch (Throwable ignore) {
+                        bm = null;
+                    }
+                    // Preempted renders are re-run by the scheduler; keep the page marked in flight.
+                    if (cookie.aborted()) return;
                     try { inFlight.remove(page1Based); } catch (Throwable ignore) {}
+                    if (released || bm == null) return;
+                    thumbnailCache.put(page1Based, bm);
+                    try {
+                        holder.itemView.post(() -> {
+                            if (released) return;
+                            if (holder.boundThumbnailPage != page1Based) return;
+                            Bitmap latest = thumbnailCache.get(page1Based);
+                            if (latest != null && holder.thumbnail != null) {
+                                holder.thumbnail.setImageBitmap(latest);
+                            }
+                        });
+                    } catch (Throwable ignore) {
+                    }
                 }
-                if (released || bm == null) return;
-                thumbnailCache.put(page1Based, bm);
-                try {
-                    holder.itemView.post(() -> {
-                        if (released) return;
-                        if (holder.boundThumbnailPage != page1Based) return;
-                        Bitmap latest = thumbnailCache.get(page1Based);
-                        if (latest != null && holder.thumbnail != null) {
-                            holder.thumbnail.setImageBitmap(latest);
-                        }
-                    });
-                } catch (Throwable ignore) {
+
+                @Override public void onDropped() {
+                    try { inFlight.remove(page1Based); } catch (Throwable ignore) {}
                 }
-            });
+            };
+            trackThumbnailJob(thumbJobs, RenderScheduler.get().submit(
+                    new RenderScheduler.Request(RenderScheduler.Priority.THUMBNAIL, work).restartOnPreempt()));
         }
 
         @Nullable
-        private Bitmap renderThumbnail(int page1Based) {
+        private Bitmap renderThumbnail(int page1Based, @NonNull MuPDFCore.Cookie cookie) {
             int pageIndex = page1Based - 1;
             if (pageIndex < 0) return null;
             PointF size = null;
@@ -1465,14 +1519,9 @@ public final class OrganizePagesController {
             }
             int w = thumbnailWidthPx;
             int h = Math.max(1, Math.round(w * ratio));
-            Bitmap bm = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
-            MuPDFCore.Cookie cookie = repo.newRenderCookie();
-            try {
-                repo.drawPage(bm, pageIndex, w, h, 0, 0, w, h, cookie);
-            } finally {
-                try { cookie.destroy(); } catch (Throwable ignore) {}
-            }
-            return bm;
+            Bitmap bm = BitmapFormats.createForPage(w, h, repo.isPageKnownOpaque(pageIndex));
+            repo.drawPage(bm, pageIndex, w, h, 0, 0, w, h, cookie);
+            return cookie.aborted() ? bm : BitmapFormats.toDisplayOnly(bm);
         }
 
         static final class Holder extends RecyclerView.ViewHolder {
@@ -5,9 +5,10 @@ import android.graphics.Point;
 import android.view.Display;
 import android.view.WindowManager;
 
-import org.opendroidpdf.app.AppCoroutines;
 import org.opendroidpdf.MuPDFCore;
 import org.opendroidpdf.PdfThumbnailManager;
+import org.opendroidpdf.app.render.CookieRenderWork;
+import org.opendroidpdf.app.render.RenderScheduler;
 import org.opendroidpdf.app.services.RecentFilesService;
 import org.opendroidpdf.app.services.recent.RecentEntry;
 import org.opendroidpdf.app.services.recent.RecentFilesStore;
@@ -30,11 +31,8 @@ public final class RecentFilesController implements RecentFilesService {
     private final MuPdfController controller; // may be null until a doc is open
     private final RecentFilesStore store;
 
-    // Background render state moved out of the Activity
-    private kotlinx.coroutines.Job renderThumbnailJob = null;
-    // Owned by the running thumbnail job; cancellation may abort it, but must not destroy it.
-    private volatile MuPDFCore.Cookie renderThumbnailCookie = null;
-    private final Object renderThumbnailCookieLock = new Object();
+    // Background render state moved out of the Activity; the render itself runs on the shared scheduler.
+    private RenderScheduler.Handle renderThumbnailHandle = null;
 
     public RecentFilesController(Context context,
                                  MuPdfRepository repository,
@@ -118,51 +116,34 @@ public final class RecentFilesController implements RecentFilesService {
 
         final int targetW = bmWidth;
         final int targetH = bmHeight;
-        renderThumbnailJob = AppCoroutines.launchIo(AppCoroutines.ioScope(), new Runnable() {
-            @Override public void run() {
-                final MuPDFCore.Cookie cookie = repository.newRenderCookie();
-                synchronized (renderThumbnailCookieLock) {
-                    renderThumbnailCookie = cookie;
-                }
-                try {
-                    String thumb = thumbnailManager.generate(targetW, targetH, cookie);
-                    if (thumb != null && cookie != null && !cookie.aborted()) {
-                        RecentEntry updated = entry.withThumbnail(thumb);
-                        List<RecentEntry> recents = new ArrayList<>(store.loadRecents());
-                        // replace matching docId with updated
-                        for (int i = 0; i < recents.size(); i++) {
-                            if (recents.get(i).docId().equals(updated.docId())) {
-                                recents.set(i, updated);
-                                break;
-                            }
-                        }
-                        store.persistRecents(recents);
-                    }
-                } catch (Throwable ignore) {
-                } finally {
-                    // Clear and destroy under the same lock so cancellation can't race with destroy().
-                    synchronized (renderThumbnailCookieLock) {
-                        renderThumbnailCookie = null;
-                        if (cookie != null) {
-                            try { cookie.destroy(); } catch (Throwable ignore) {}
+        CookieRenderWork work = new CookieRenderWork(repository) {
+            @Override protected void render(MuPDFCore.Cookie cookie) {
+                String thumb = thumbnailManager.generate(targetW, targetH, cookie);
+                if (thumb != null && !cookie.aborted()) {
+                    RecentEntry updated = entry.withThumbnail(thumb);
+                    List<RecentEntry> recents = new ArrayList<>(store.loadRecents());
+                    // replace matching docId with updated
+                    for (int i = 0; i < recents.size(); i++) {
+                        if (recents.get(i).docId().equals(updated.docId())) {
+                            recents.set(i, updated);
+                            break;
                         }
                     }
+                    store.persistRecents(recents);
                 }
             }
-        });
+        };
+        renderThumbnailHandle = RenderScheduler.get().submit(
+                new RenderScheduler.Request(RenderScheduler.Priority.THUMBNAIL, work)
+                        .dedupeKey("recent-thumbnail:" + entry.docId())
+                        .restartOnPreempt());
     }
 
     private void cancelRenderThumbnailJob() {
-        if (renderThumbnailJob != null) {
-            renderThumbnailJob.cancel(null);
-            renderThumbnailJob = null;
-        }
-        // Only abort here; the job itself owns/destroys the cookie in its finally block.
-        synchronized (renderThumbnailCookieLock) {
-            MuPDFCore.Cookie cookie = renderThumbnailCookie;
-            if (cookie != null) {
-                try { cookie.abort(); } catch (Throwable ignore) {}
-            }
+        // Only abort here; the work itself owns/destroys the cookie.
+        if (renderThumbnailHandle != null) {
+            renderThumbnailHandle.cancel(true);
+            renderThumbnailHandle = null;
         }
     }
 }
@@ -71,4 +71,15 @@ public interface WordImportPipeline {
 
     @NonNull
     Result importToPdf(@NonNull Context context, @NonNull Uri wordUri);
+
+    /**
+     * Like {@link #importToPdf(Context, Uri)}, notifying {@code listener} when an actual
+     * conversion starts (as opposed to a cached output being returned).
+     */
+    @NonNull
+    default Result importToPdf(@NonNull Context context,
+                               @NonNull Uri wordUri,
+                               @Nullable ConversionCache.Listener listener) {
+        return importToPdf(context, wordUri);
+    }
 }
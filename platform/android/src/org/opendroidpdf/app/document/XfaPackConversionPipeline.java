@@ -19,8 +19,6 @@ import org.opendroidpdf.xfapack.IXfaPackConverter;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -28,7 +26,8 @@ import java.util.concurrent.TimeUnit;
  * XFA conversion implementation backed by the optional XFA Pack companion APK.
  *
  * <p>This pipeline is synchronous and is expected to be called off the UI thread. It performs a
- * secure bind to the XFA Pack and routes conversions through it.</p>
+ * secure bind to the XFA Pack and routes conversions through it. Outputs are kept in
+ * {@link ConversionCache}, so converting an unchanged form again does not bind the pack.</p>
  */
 public final class XfaPackConversionPipeline {
 
@@ -37,8 +36,8 @@ public final class XfaPackConversionPipeline {
     private static final String XFA_PACK_SERVICE = "org.opendroidpdf.xfapack.XfaPackConverterService";
     private static final long BIND_TIMEOUT_MS = 2000;
 
-    private static final String OUT_PREFIX_CONVERT = "xfa_convert_";
-    private static final String OUT_PREFIX_FLATTEN = "xfa_flatten_";
+    private static final String OUT_PREFIX_CONVERT = "xfa_convert";
+    private static final String OUT_PREFIX_FLATTEN = "xfa_flatten";
 
     public static final class Result {
         @Nullable public final Uri outputUri;
@@ -83,9 +82,24 @@ public final class XfaPackConversionPipeline {
                                  @NonNull Uri pdfUri,
                                  int mode,
                                  @Nullable String password) {
+        return convert(context, pdfUri, mode, password, null);
+    }
+
+    /**
+     * Converts {@code pdfUri}, returning a cached output when the same document was converted in
+     * the same mode by the installed XFA Pack version. {@code listener} is notified (on the calling
+     * thread) only when the pack actually has to run.
+     */
+    @NonNull
+    public static Result convert(@NonNull Context context,
+                                 @NonNull Uri pdfUri,
+                                 int mode,
+                                 @Nullable String password,
+                                 @Nullable ConversionCache.Listener listener) {
         Context appContext = context.getApplicationContext();
 
-        if (!isXfaPackInstalled(appContext)) {
+        String packVersion = ConversionCache.packageVersion(appContext, XFA_PACK_PACKAGE);
+        if (packVersion == null) {
             return Result.unavailable(
                     appContext.getString(R.string.xfa_pack_unavailable),
                     Action.INSTALL_XFA_PACK);
@@ -102,13 +116,17 @@ public final class XfaPackConversionPipeline {
         } catch (Throwable ignore) {
         }
 
-        String token = stableHash(docId != null ? docId : pdfUri.toString());
-        String prefix = mode == IXfaPackConverter.MODE_FLATTEN_TO_PDF ? OUT_PREFIX_FLATTEN : OUT_PREFIX_CONVERT;
-        File outFile = new File(appContext.getCacheDir(), prefix + token + ".pdf");
-        if (outFile.isFile() && outFile.length() > 0) {
-            Log.i(TAG, "Using cached XFA pack output=" + outFile.getName());
-            return Result.success(Uri.fromFile(outFile));
+        ConversionCache cache = ConversionCache.get(appContext);
+        String key = ConversionCache.key(docId, XFA_PACK_PACKAGE, packVersion, mode);
+        File cached = cache.lookup(key);
+        if (cached != null) {
+            Log.i(TAG, "Using cached XFA pack output=" + cached.getName());
+            return Result.success(Uri.fromFile(cached));
         }
+        if (listener != null) listener.onConversionStarted();
+
+        String prefix = mode == IXfaPackConverter.MODE_FLATTEN_TO_PDF ? OUT_PREFIX_FLATTEN : OUT_PREFIX_CONVERT;
+        File outFile = cache.newTempFile(prefix);
         boolean success = false;
 
         try (ParcelFileDescriptor inPfd = openForRead(appContext, pdfUri);
@@ -140,6 +158,9 @@ public final class XfaPackConversionPipeline {
                 if (converter == null) {
                     return Result.unavailable(appContext.getString(R.string.xfa_pack_failed));
                 }
+                if (listener != null && listener.isCancelled()) {
+                    return Result.unavailable(appContext.getString(R.string.xfa_pack_failed));
+                }
 
                 int code;
                 try {
@@ -162,7 +183,7 @@ public final class XfaPackConversionPipeline {
 
                 if (code == IXfaPackConverter.RESULT_OK) {
                     success = true;
-                    return Result.success(Uri.fromFile(outFile));
+                    return Result.success(Uri.fromFile(cache.commit(key, outFile)));
                 }
                 if (code == IXfaPackConverter.RESULT_PASSWORD_REQUIRED) {
                     return Result.unavailable(appContext.getString(R.string.xfa_pack_password_required));
@@ -185,25 +206,12 @@ public final class XfaPackConversionPipeline {
             return Result.unavailable(appContext.getString(R.string.xfa_pack_failed));
         } finally {
             if (!success) {
-                try {
-                    // Best-effort cleanup of partial outputs.
-                    //noinspection ResultOfMethodCallIgnored
-                    outFile.delete();
-                } catch (Throwable ignore) {
-                }
+                // Best-effort cleanup of partial outputs.
+                cache.abort(outFile);
             }
         }
     }
 
-    private static boolean isXfaPackInstalled(Context context) {
-        try {
-            context.getPackageManager().getPackageInfo(XFA_PACK_PACKAGE, 0);
-            return true;
-        } catch (Throwable t) {
-            return false;
-        }
-    }
-
     private static boolean signaturesMatch(Context context) {
         PackageManager pm = context.getPackageManager();
         try {
@@ -252,21 +260,4 @@ public final class XfaPackConversionPipeline {
             return converter;
         }
     }
-
-    private static String stableHash(@NonNull String input) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] hash = md.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder(24);
-            // Shorten: we only need a stable filename token, not a full content hash.
-            for (int i = 0; i < Math.min(hash.length, 12); i++) {
-                byte b = hash[i];
-                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
-                sb.append(Character.forDigit(b & 0xF, 16));
-            }
-            return sb.toString();
-        } catch (Throwable t) {
-            return Integer.toHexString(input.hashCode());
-        }
-    }
 }
@@ -53,7 +53,6 @@ public class InkController {
     private boolean activeEraseGesture = false;
     private float activeEraserThickness = 0f;
 
-    private long lastUndoMutationUptimeMs = 0L;
 
     // When true, the current erase gesture is editing an existing ink annotation
     // (loaded into DrawingController) and should auto-commit on erase end.
@@ -71,8 +70,22 @@ public class InkController {
 
     public InkUndoController undo() { return inkUndoController; }
 
-    /** Best-effort timestamp used to order ink-vs-text undo choices on a page. */
-    public long lastUndoMutationUptimeMs() { return lastUndoMutationUptimeMs; }
+    /**
+     * Sequence of the newest undoable ink edit, used to order ink-vs-text undo on a page (see
+     * {@link org.opendroidpdf.app.annotation.UndoJournal}). Pending strokes always count as newest.
+     */
+    public long peekUndoSequence() {
+        if (host.drawingController().canUndo()) return Long.MAX_VALUE;
+        SidecarAnnotationSession sidecar = sidecarSession;
+        long sidecarSeq = sidecar != null ? sidecar.peekUndoSequence() : Long.MIN_VALUE;
+        return Math.max(sidecarSeq, inkUndoController.peekUndoSequence());
+    }
+
+    /** Sequence of the most recently undone ink edit, or {@link Long#MAX_VALUE} when none. */
+    public long peekRedoSequence() {
+        SidecarAnnotationSession sidecar = sidecarSession;
+        return sidecar != null ? sidecar.peekRedoSequence() : Long.MAX_VALUE;
+    }
 
     public boolean isEditingExistingInk() {
         return erasingExistingInkAnnotation;
@@ -349,14 +362,21 @@ public class InkController {
             updateUndoCache();
             return;
         }
+        // Sidecar and embedded ink journals share one sequence; undo whichever edit is newer.
         SidecarAnnotationSession sidecar = sidecarSession;
-        if (sidecar != null && sidecar.undoLast()) {
+        if (sidecar != null && sidecar.peekUndoSequence() > inkUndoController.peekUndoSequence()
+                && sidecar.undoLast()) {
             host.invalidateOverlay();
             updateUndoCache();
             return;
         }
         if (inkUndoController.undoLast()) {
             updateUndoCache();
+            return;
+        }
+        if (sidecar != null && sidecar.undoLast()) {
+            host.invalidateOverlay();
+            updateUndoCache();
         }
     }
 
@@ -455,7 +475,6 @@ public class InkController {
     }
 
     private void updateUndoCache() {
-        lastUndoMutationUptimeMs = SystemClock.uptimeMillis();
         org.opendroidpdf.app.toolbar.ToolbarStateCache.get().setInkUndoRedo(canUndo(), canRedo());
     }
 
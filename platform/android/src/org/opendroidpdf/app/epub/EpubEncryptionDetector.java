@@ -29,8 +29,8 @@ public final class EpubEncryptionDetector {
         ERROR,
     }
 
-    private static final String ENCRYPTION_ENTRY = "META-INF/encryption.xml";
-    private static final int MAX_ENCRYPTION_XML_BYTES = 256 * 1024;
+    static final String ENCRYPTION_ENTRY = "META-INF/encryption.xml";
+    static final int MAX_ENCRYPTION_XML_BYTES = 256 * 1024;
 
     private EpubEncryptionDetector() {}
 
@@ -39,8 +39,19 @@ public final class EpubEncryptionDetector {
         return kind == EncryptionKind.DRM_OR_UNKNOWN;
     }
 
+    /**
+     * Uses the classification cached with the book's {@link EpubMetadata} when it was opened
+     * before; otherwise streams the archive up to {@code META-INF/encryption.xml}, which is cheap
+     * enough for the open path, rather than waiting on the cache hashing and indexing the book.
+     */
     @NonNull
     public static EncryptionKind detectFromEpubUri(@NonNull Context context, @NonNull Uri uri) {
+        try {
+            EpubMetadata cached = EpubMetadataCache.get(context).cachedOrNull(uri);
+            if (cached != null) return cached.encryption;
+        } catch (Throwable ignore) {
+            // Fall back to streaming.
+        }
         try (InputStream raw = context.getContentResolver().openInputStream(uri)) {
             if (raw == null) return EncryptionKind.ERROR;
             return detectFromEpubZipStream(raw);
@@ -139,7 +150,7 @@ public final class EpubEncryptionDetector {
     }
 
     @NonNull
-    private static String readUtf8Bounded(@NonNull InputStream in, int maxBytes) throws Exception {
+    static String readUtf8Bounded(@NonNull InputStream in, int maxBytes) throws Exception {
         ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(16_384, maxBytes));
         byte[] buf = new byte[8192];
         int total = 0;
@@ -0,0 +1,311 @@
+package org.opendroidpdf.app.epub;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Container-level facts about an EPUB, read in one pass over the ZIP central directory: the entry
+ * index, the OPF manifest and spine (with each chapter's uncompressed size), the table of contents
+ * and the encryption classification.
+ *
+ * <p>Built by {@link #read(ZipFile)} and cached per document by {@link EpubMetadataCache}, so the
+ * TOC dialog and the DRM check on later opens share one parse instead of each re-opening the
+ * archive.</p>
+ */
+public final class EpubMetadata {
+
+    /** Bumped when the parse or the persisted form changes, so older cache files are ignored. */
+    static final int FORMAT_VERSION = 1;
+
+    public static final class ManifestItem {
+        @NonNull public final String id;
+        /** Zip path, resolved against the OPF directory. */
+        @NonNull public final String href;
+        @NonNull public final String mediaType;
+        @NonNull public final String properties;
+
+        ManifestItem(@NonNull String id, @NonNull String href, @NonNull String mediaType, @NonNull String properties) {
+            this.id = id;
+            this.href = href;
+            this.mediaType = mediaType;
+            this.properties = properties;
+        }
+    }
+
+    public static final class SpineItem {
+        @NonNull public final String href;
+        /** Uncompressed size of the chapter document, or -1 when unknown. */
+        public final long sizeBytes;
+
+        SpineItem(@NonNull String href, long sizeBytes) {
+            this.href = href;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+
+    @Nullable public final String opfPath;
+    /** Entry name to uncompressed size (-1 when the central directory does not record it). */
+    @NonNull public final Map<String, Long> entries;
+    @NonNull public final List<ManifestItem> manifest;
+    @NonNull public final List<SpineItem> spine;
+    @NonNull public final List<EpubTocParser.TocEntry> toc;
+    @NonNull public final EpubEncryptionDetector.EncryptionKind encryption;
+
+    EpubMetadata(@Nullable String opfPath,
+                 @NonNull Map<String, Long> entries,
+                 @NonNull List<ManifestItem> manifest,
+                 @NonNull List<SpineItem> spine,
+                 @NonNull List<EpubTocParser.TocEntry> toc,
+                 @NonNull EpubEncryptionDetector.EncryptionKind encryption) {
+        this.opfPath = opfPath;
+        this.entries = Collections.unmodifiableMap(entries);
+        this.manifest = Collections.unmodifiableList(manifest);
+        this.spine = Collections.unmodifiableList(spine);
+        this.toc = Collections.unmodifiableList(toc);
+        this.encryption = encryption;
+    }
+
+    /** Sum of known spine chapter sizes; a cheap proxy for layout cost across chapters. */
+    public long totalSpineBytes() {
+        long total = 0L;
+        for (SpineItem s : spine) {
+            if (s.sizeBytes > 0) total += s.sizeBytes;
+        }
+        return total;
+    }
+
+    @NonNull
+    public static EpubMetadata read(@NonNull ZipFile zip) {
+        LinkedHashMap<String, Long> entries = new LinkedHashMap<>();
+        String ncxFallback = null;
+        String encryptionEntry = null;
+        Enumeration<? extends ZipEntry> it = zip.entries();
+        while (it.hasMoreElements()) {
+            ZipEntry e = it.nextElement();
+            String name = e != null ? e.getName() : null;
+            if (name == null) continue;
+            entries.put(name, e.getSize());
+            String lower = name.toLowerCase(Locale.US);
+            if (ncxFallback == null && lower.endsWith(".ncx")) ncxFallback = name;
+            if (encryptionEntry == null && EpubEncryptionDetector.ENCRYPTION_ENTRY.equalsIgnoreCase(name)) {
+                encryptionEntry = name;
+            }
+        }
+
+        EpubEncryptionDetector.EncryptionKind encryption = classifyEncryption(zip, encryptionEntry);
+
+        ArrayList<ManifestItem> manifest = new ArrayList<>();
+        ArrayList<String> spineIds = new ArrayList<>();
+        String[] tocId = new String[1];
+        String opfPath = EpubTocParser.findOpfPath(zip);
+        if (opfPath != null) readOpf(zip, opfPath, manifest, spineIds, tocId);
+
+        HashMap<String, ManifestItem> byId = new HashMap<>();
+        for (ManifestItem m : manifest) byId.put(m.id, m);
+        ArrayList<SpineItem> spine = new ArrayList<>(spineIds.size());
+        for (String idref : spineIds) {
+            ManifestItem m = byId.get(idref);
+            if (m == null) continue;
+            Long size = entries.get(m.href);
+            spine.add(new SpineItem(m.href, size != null ? size : -1L));
+        }
+
+        List<EpubTocParser.TocEntry> toc = new ArrayList<>();
+        if (opfPath != null) {
+            String tocPath = findNcx(manifest, tocId[0]);
+            if (tocPath == null) tocPath = ncxFallback;
+            if (tocPath == null) tocPath = findNav(manifest);
+            if (tocPath != null) toc = EpubTocParser.parseTocDocument(zip, tocPath);
+        }
+        return new EpubMetadata(opfPath, entries, manifest, spine, toc, encryption);
+    }
+
+    @NonNull
+    private static EpubEncryptionDetector.EncryptionKind classifyEncryption(@NonNull ZipFile zip,
+                                                                           @Nullable String entryName) {
+        if (entryName == null) return EpubEncryptionDetector.EncryptionKind.NONE;
+        ZipEntry entry = zip.getEntry(entryName);
+        if (entry == null) return EpubEncryptionDetector.EncryptionKind.NONE;
+        try (InputStream is = zip.getInputStream(entry)) {
+            String xml = EpubEncryptionDetector.readUtf8Bounded(is, EpubEncryptionDetector.MAX_ENCRYPTION_XML_BYTES);
+            return EpubEncryptionDetector.classifyEncryptionXml(xml);
+        } catch (Throwable t) {
+            return EpubEncryptionDetector.EncryptionKind.ERROR;
+        }
+    }
+
+    private static void readOpf(@NonNull ZipFile zip,
+                                @NonNull String opfPath,
+                                @NonNull List<ManifestItem> manifest,
+                                @NonNull List<String> spineIds,
+                                @NonNull String[] tocIdOut) {
+        ZipEntry opfEntry = zip.getEntry(opfPath);
+        if (opfEntry == null) return;
+        String opfDir = EpubTocParser.dirOf(opfPath);
+        try (InputStream is = zip.getInputStream(opfEntry)) {
+            Document doc = EpubTocParser.parseXml(is);
+            if (doc == null) return;
+
+            NodeList spineNodes = doc.getElementsByTagNameNS("*", "spine");
+            if (spineNodes.getLength() > 0 && spineNodes.item(0) instanceof Element) {
+                Element spine = (Element) spineNodes.item(0);
+                String toc = spine.getAttribute("toc");
+                tocIdOut[0] = toc != null && !toc.trim().isEmpty() ? toc : null;
+                NodeList refs = spine.getElementsByTagNameNS("*", "itemref");
+                for (int i = 0; i < refs.getLength(); i++) {
+                    Node n = refs.item(i);
+                    if (!(n instanceof Element)) continue;
+                    String idref = ((Element) n).getAttribute("idref");
+                    if (idref != null && !idref.trim().isEmpty()) spineIds.add(idref.trim());
+                }
+            }
+
+            NodeList itemNodes = doc.getElementsByTagNameNS("*", "item");
+            for (int i = 0; i < itemNodes.getLength(); i++) {
+                Node n = itemNodes.item(i);
+                if (!(n instanceof Element)) continue;
+                Element item = (Element) n;
+                String href = item.getAttribute("href");
+                if (href == null || href.trim().isEmpty()) continue;
+                manifest.add(new ManifestItem(
+                        nonNull(item.getAttribute("id")),
+                        EpubTocParser.normalizeZipHref(opfDir, href.trim()),
+                        nonNull(item.getAttribute("media-type")).trim(),
+                        nonNull(item.getAttribute("properties")).trim()));
+            }
+        } catch (Throwable ignore) {
+            // Keep whatever was read; the TOC falls back to a bare .ncx lookup.
+        }
+    }
+
+    @Nullable
+    private static String findNcx(@NonNull List<ManifestItem> manifest, @Nullable String tocId) {
+        for (ManifestItem m : manifest) {
+            boolean matchesId = tocId != null && tocId.equals(m.id);
+            boolean isNcx = EpubTocParser.NCX_MEDIA_TYPE.equalsIgnoreCase(m.mediaType);
+            if (matchesId || isNcx) return m.href;
+        }
+        return null;
+    }
+
+    @Nullable
+    private static String findNav(@NonNull List<ManifestItem> manifest) {
+        for (ManifestItem m : manifest) {
+            if (m.properties.isEmpty()) continue;
+            if (EpubTocParser.hasWhitespaceSeparatedToken(m.properties, EpubTocParser.NAV_PROPERTY)) return m.href;
+        }
+        return null;
+    }
+
+    @NonNull
+    private static String nonNull(@Nullable String s) {
+        return s != null ? s : "";
+    }
+
+    @NonNull
+    JSONObject toJson() throws JSONException {
+        JSONObject o = new JSONObject();
+        o.put("version", FORMAT_VERSION);
+        if (opfPath != null) o.put("opfPath", opfPath);
+        o.put("encryption", encryption.name());
+
+        JSONArray names = new JSONArray();
+        JSONArray sizes = new JSONArray();
+        for (Map.Entry<String, Long> e : entries.entrySet()) {
+            names.put(e.getKey());
+            sizes.put(e.getValue().longValue());
+        }
+        o.put("entryNames", names);
+        o.put("entrySizes", sizes);
+
+        JSONArray man = new JSONArray();
+        for (ManifestItem m : manifest) {
+            man.put(new JSONObject()
+                    .put("id", m.id)
+                    .put("href", m.href)
+                    .put("mediaType", m.mediaType)
+                    .put("properties", m.properties));
+        }
+        o.put("manifest", man);
+
+        JSONArray sp = new JSONArray();
+        for (SpineItem s : spine) {
+            sp.put(new JSONObject().put("href", s.href).put("size", s.sizeBytes));
+        }
+        o.put("spine", sp);
+
+        JSONArray t = new JSONArray();
+        for (EpubTocParser.TocEntry e : toc) {
+            t.put(new JSONObject().put("level", e.level).put("title", e.title).put("href", e.href));
+        }
+        o.put("toc", t);
+        return o;
+    }
+
+    /** Returns null for malformed input or a different {@link #FORMAT_VERSION}. */
+    @Nullable
+    static EpubMetadata fromJson(@NonNull JSONObject o) {
+        if (o.optInt("version", -1) != FORMAT_VERSION) return null;
+        EpubEncryptionDetector.EncryptionKind encryption;
+        try {
+            encryption = EpubEncryptionDetector.EncryptionKind.valueOf(o.optString("encryption", ""));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        LinkedHashMap<String, Long> entries = new LinkedHashMap<>();
+        JSONArray names = o.optJSONArray("entryNames");
+        JSONArray sizes = o.optJSONArray("entrySizes");
+        if (names == null || sizes == null || names.length() != sizes.length()) return null;
+        for (int i = 0; i < names.length(); i++) {
+            entries.put(names.optString(i, ""), sizes.optLong(i, -1L));
+        }
+
+        ArrayList<ManifestItem> manifest = new ArrayList<>();
+        JSONArray man = o.optJSONArray("manifest");
+        for (int i = 0; man != null && i < man.length(); i++) {
+            JSONObject m = man.optJSONObject(i);
+            if (m == null) continue;
+            manifest.add(new ManifestItem(m.optString("id", ""), m.optString("href", ""),
+                    m.optString("mediaType", ""), m.optString("properties", "")));
+        }
+
+        ArrayList<SpineItem> spine = new ArrayList<>();
+        JSONArray sp = o.optJSONArray("spine");
+        for (int i = 0; sp != null && i < sp.length(); i++) {
+            JSONObject s = sp.optJSONObject(i);
+            if (s != null) spine.add(new SpineItem(s.optString("href", ""), s.optLong("size", -1L)));
+        }
+
+        ArrayList<EpubTocParser.TocEntry> toc = new ArrayList<>();
+        JSONArray t = o.optJSONArray("toc");
+        for (int i = 0; t != null && i < t.length(); i++) {
+            JSONObject e = t.optJSONObject(i);
+            if (e == null) continue;
+            toc.add(new EpubTocParser.TocEntry(e.optInt("level", 0), e.optString("title", ""), e.optString("href", "")));
+        }
+
+        String opfPath = o.has("opfPath") ? o.optString("opfPath", null) : null;
+        return new EpubMetadata(opfPath, entries, manifest, spine, toc, encryption);
+    }
+}
@@ -0,0 +1,192 @@
+package org.opendroidpdf.app.epub;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONObject;
+import org.opendroidpdf.app.AppCoroutines;
+import org.opendroidpdf.app.document.DocumentIdentityResolver;
+import org.opendroidpdf.app.storage.KeyedFileCache;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipFile;
+
+/**
+ * Per-document {@link EpubMetadata}, built in the background after the first open and reused by
+ * the TOC dialog and, on later opens, by the DRM check ({@link #cachedOrNull}).
+ *
+ * <p>Entries are keyed by the content-derived document id, kept in a small in-memory LRU and
+ * persisted as JSON under {@code cacheDir/epub_meta}, so reopening an unchanged book skips the
+ * archive entirely. Documents without a content id (hashing failed) are parsed but not
+ * persisted.</p>
+ */
+public final class EpubMetadataCache {
+    private static final String TAG = "EpubMetadataCache";
+    private static final String DIR_NAME = "epub_meta";
+    private static final int MAX_IN_MEMORY = 8;
+    private static final int MAX_ON_DISK = 64;
+    private static final int MAX_FILE_BYTES = 4 * 1024 * 1024;
+
+    private static volatile EpubMetadataCache instance;
+
+    @NonNull
+    public static EpubMetadataCache get(@NonNull Context context) {
+        EpubMetadataCache c = instance;
+        if (c == null) {
+            synchronized (EpubMetadataCache.class) {
+                c = instance;
+                if (c == null) {
+                    Context app = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+                    c = new EpubMetadataCache(app);
+                    instance = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    private final Context appContext;
+    private final KeyedFileCache disk;
+    private final Map<String, EpubMetadata> memory = new LinkedHashMap<String, EpubMetadata>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, EpubMetadata> eldest) {
+            return size() > MAX_IN_MEMORY;
+        }
+    };
+
+    private EpubMetadataCache(@NonNull Context appContext) {
+        this.appContext = appContext;
+        this.disk = new KeyedFileCache(new File(appContext.getCacheDir(), DIR_NAME), ".json", MAX_ON_DISK, MAX_FILE_BYTES);
+    }
+
+    /**
+     * Metadata for a local EPUB path, or null if it cannot be read. Same threading rules as
+     * {@link #forUri}. The path's {@code file:} URI is a different identity input than the URI
+     * the document was opened with, so prefer {@link #forUri} with that URI when there is one.
+     */
+    @Nullable
+    public EpubMetadata forPath(@Nullable String path) {
+        if (path == null || path.trim().isEmpty()) return null;
+        File f = new File(path);
+        if (!f.isFile()) return null;
+        return forUri(Uri.fromFile(f));
+    }
+
+    /**
+     * Fills the cache for {@code uri} in the background, so a later {@link #forUri} or
+     * {@link #forPath} for the same document is served without touching the archive.
+     */
+    public void prefetch(@NonNull Uri uri) {
+        AppCoroutines.launchIo(AppCoroutines.ioScope(), () -> {
+            try {
+                forUri(uri);
+            } catch (Throwable t) {
+                Log.w(TAG, "EPUB metadata prefetch failed", t);
+            }
+        });
+    }
+
+    /**
+     * Metadata for {@code uri} if it was built before and the document's content id is already
+     * known, else null. Never hashes or opens the archive.
+     */
+    @Nullable
+    public EpubMetadata cachedOrNull(@NonNull Uri uri) {
+        String docId = DocumentIdentityResolver.cachedContentIdOrNull(appContext, uri);
+        if (!DocumentIdentityResolver.isContentId(docId)) return null;
+        synchronized (memory) {
+            EpubMetadata hit = memory.get(docId);
+            if (hit != null) return hit;
+        }
+        EpubMetadata meta = readPersisted(docId);
+        if (meta == null) return null;
+        synchronized (memory) {
+            memory.put(docId, meta);
+        }
+        return meta;
+    }
+
+    /**
+     * Metadata for {@code uri}, or null when the archive cannot be opened as a seekable ZIP (callers
+     * then fall back to their streaming paths). May hash and parse the document, so it must not run
+     * on the UI thread.
+     */
+    @Nullable
+    public EpubMetadata forUri(@NonNull Uri uri) {
+        String docId;
+        try {
+            // Joins the open path's in-flight hash of the same document instead of hashing again.
+            docId = DocumentIdentityResolver.resolveAsync(appContext, uri).get().docId();
+        } catch (Throwable t) {
+            docId = null;
+        }
+        boolean persistable = DocumentIdentityResolver.isContentId(docId);
+        String key = persistable ? docId : uri.toString();
+
+        synchronized (memory) {
+            EpubMetadata hit = memory.get(key);
+            if (hit != null) return hit;
+        }
+
+        EpubMetadata meta = persistable ? readPersisted(docId) : null;
+        if (meta == null) {
+            meta = build(uri);
+            if (meta == null) return null;
+            if (persistable) persist(docId, meta);
+        }
+        synchronized (memory) {
+            memory.put(key, meta);
+        }
+        return meta;
+    }
+
+    @Nullable
+    private EpubMetadata build(@NonNull Uri uri) {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && uri.getPath() != null) {
+            try (ZipFile zip = new ZipFile(new File(uri.getPath()))) {
+                return EpubMetadata.read(zip);
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+        // Content URIs: ZipFile needs a path, and the fd link gives one without copying the book.
+        try (ParcelFileDescriptor pfd = appContext.getContentResolver().openFileDescriptor(uri, "r")) {
+            if (pfd == null) return null;
+            try (ZipFile zip = new ZipFile(new File("/proc/self/fd/" + pfd.getFd()))) {
+                return EpubMetadata.read(zip);
+            }
+        } catch (SecurityException se) {
+            throw se;
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private EpubMetadata readPersisted(@NonNull String docId) {
+        String text = disk.read(docId);
+        if (text == null) return null;
+        try {
+            EpubMetadata meta = EpubMetadata.fromJson(new JSONObject(text));
+            if (meta != null) return meta;
+        } catch (Throwable ignore) {
+        }
+        disk.remove(docId);
+        return null;
+    }
+
+    private void persist(@NonNull String docId, @NonNull EpubMetadata meta) {
+        try {
+            disk.write(docId, meta.toJson().toString());
+        } catch (Throwable t) {
+            Log.w(TAG, "failed to persist EPUB metadata", t);
+        }
+    }
+}
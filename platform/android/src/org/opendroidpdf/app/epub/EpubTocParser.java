@@ -12,7 +12,6 @@ import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.Locale;
 import java.util.zip.ZipEntry;
@@ -43,8 +42,8 @@ public final class EpubTocParser {
 
     private static final String CONTAINER_XML = "META-INF/container.xml";
     private static final String OPF_MEDIA_TYPE = "application/oebps-package+xml";
-    private static final String NCX_MEDIA_TYPE = "application/x-dtbncx+xml";
-    private static final String NAV_PROPERTY = "nav";
+    static final String NCX_MEDIA_TYPE = "application/x-dtbncx+xml";
+    static final String NAV_PROPERTY = "nav";
 
     private EpubTocParser() {}
 
@@ -54,40 +53,34 @@ public final class EpubTocParser {
         File file = new File(epubPath);
         if (!file.isFile()) return new ArrayList<>();
 
-        ZipFile zip = null;
-        try {
-            zip = new ZipFile(file);
-            String opfPath = findOpfPath(zip);
-            if (opfPath == null) return new ArrayList<>();
-
-            String tocPath = findNcxPath(zip, opfPath);
-            if (tocPath == null) tocPath = firstEntryEndingWith(zip, ".ncx");
-            if (tocPath == null) tocPath = findNavXhtmlPath(zip, opfPath);
-            if (tocPath == null) return new ArrayList<>();
-
-            ZipEntry tocEntry = zip.getEntry(tocPath);
-            if (tocEntry == null) return new ArrayList<>();
-
-            String tocDir = dirOf(tocPath);
-            try (InputStream is = zip.getInputStream(tocEntry)) {
-                Document doc = parseXml(is);
-                if (doc == null) return new ArrayList<>();
-                if (tocPath.toLowerCase(Locale.US).endsWith(".ncx")) {
-                    return parseNcx(doc, tocDir);
-                }
-                return parseNavXhtml(doc, tocDir);
-            }
+        try (ZipFile zip = new ZipFile(file)) {
+            return new ArrayList<>(EpubMetadata.read(zip).toc);
         } catch (Throwable t) {
             return new ArrayList<>();
-        } finally {
-            if (zip != null) {
-                try { zip.close(); } catch (Throwable ignore) {}
+        }
+    }
+
+    /** Parses the NCX or nav document at {@code tocPath}; empty when missing or malformed. */
+    @NonNull
+    static List<TocEntry> parseTocDocument(@NonNull ZipFile zip, @NonNull String tocPath) {
+        ZipEntry tocEntry = zip.getEntry(tocPath);
+        if (tocEntry == null) return new ArrayList<>();
+
+        String tocDir = dirOf(tocPath);
+        try (InputStream is = zip.getInputStream(tocEntry)) {
+            Document doc = parseXml(is);
+            if (doc == null) return new ArrayList<>();
+            if (tocPath.toLowerCase(Locale.US).endsWith(".ncx")) {
+                return parseNcx(doc, tocDir);
             }
+            return parseNavXhtml(doc, tocDir);
+        } catch (Throwable t) {
+            return new ArrayList<>();
         }
     }
 
     @Nullable
-    private static String findOpfPath(@NonNull ZipFile zip) {
+    static String findOpfPath(@NonNull ZipFile zip) {
         ZipEntry container = zip.getEntry(CONTAINER_XML);
         if (container == null) return null;
 
@@ -119,92 +112,6 @@ public final class EpubTocParser {
         }
     }
 
-    @Nullable
-    private static String findNcxPath(@NonNull ZipFile zip, @NonNull String opfPath) {
-        ZipEntry opfEntry = zip.getEntry(opfPath);
-        if (opfEntry == null) return null;
-
-        String opfDir = dirOf(opfPath);
-        try (InputStream is = zip.getInputStream(opfEntry)) {
-            Document doc = parseXml(is);
-            if (doc == null) return null;
-
-            String tocId = null;
-            NodeList spineNodes = doc.getElementsByTagNameNS("*", "spine");
-            if (spineNodes.getLength() > 0 && spineNodes.item(0) instanceof Element) {
-                tocId = ((Element) spineNodes.item(0)).getAttribute("toc");
-                if (tocId != null && tocId.trim().isEmpty()) tocId = null;
-            }
-
-            String ncxHref = null;
-            NodeList itemNodes = doc.getElementsByTagNameNS("*", "item");
-            for (int i = 0; i < itemNodes.getLength(); i++) {
-                Node n = itemNodes.item(i);
-                if (!(n instanceof Element)) continue;
-                Element item = (Element) n;
-                String id = item.getAttribute("id");
-                String href = item.getAttribute("href");
-                String media = item.getAttribute("media-type");
-                if (href == null || href.trim().isEmpty()) continue;
-
-                boolean matchesId = tocId != null && tocId.equals(id);
-                boolean isNcx = media != null && NCX_MEDIA_TYPE.equalsIgnoreCase(media.trim());
-                if (matchesId || isNcx) {
-                    ncxHref = href.trim();
-                    break;
-                }
-            }
-
-            if (ncxHref == null || ncxHref.isEmpty()) return null;
-            return normalizeZipHref(opfDir, ncxHref);
-        } catch (Throwable t) {
-            return null;
-        }
-    }
-
-    @Nullable
-    private static String findNavXhtmlPath(@NonNull ZipFile zip, @NonNull String opfPath) {
-        ZipEntry opfEntry = zip.getEntry(opfPath);
-        if (opfEntry == null) return null;
-
-        String opfDir = dirOf(opfPath);
-        try (InputStream is = zip.getInputStream(opfEntry)) {
-            Document doc = parseXml(is);
-            if (doc == null) return null;
-
-            NodeList itemNodes = doc.getElementsByTagNameNS("*", "item");
-            for (int i = 0; i < itemNodes.getLength(); i++) {
-                Node n = itemNodes.item(i);
-                if (!(n instanceof Element)) continue;
-                Element item = (Element) n;
-                String href = item.getAttribute("href");
-                if (href == null || href.trim().isEmpty()) continue;
-
-                String props = item.getAttribute("properties");
-                if (props == null || props.trim().isEmpty()) continue;
-
-                if (hasWhitespaceSeparatedToken(props, NAV_PROPERTY)) {
-                    return normalizeZipHref(opfDir, href.trim());
-                }
-            }
-            return null;
-        } catch (Throwable t) {
-            return null;
-        }
-    }
-
-    @Nullable
-    private static String firstEntryEndingWith(@NonNull ZipFile zip, @NonNull String suffixLower) {
-        Enumeration<? extends ZipEntry> entries = zip.entries();
-        while (entries.hasMoreElements()) {
-            ZipEntry e = entries.nextElement();
-            String name = e != null ? e.getName() : null;
-            if (name == null) continue;
-            if (name.toLowerCase(Locale.US).endsWith(suffixLower)) return name;
-        }
-        return null;
-    }
-
     @NonNull
     private static List<TocEntry> parseNavXhtml(@NonNull Document doc, @NonNull String navDir) {
         List<TocEntry> out = new ArrayList<>();
@@ -328,7 +235,7 @@ public final class EpubTocParser {
         return text != null ? text : null;
     }
 
-    private static boolean hasWhitespaceSeparatedToken(@NonNull String raw, @NonNull String tokenLower) {
+    static boolean hasWhitespaceSeparatedToken(@NonNull String raw, @NonNull String tokenLower) {
         String[] parts = raw.trim().split("\\s+");
         for (String p : parts) {
             if (p == null) continue;
@@ -397,7 +304,7 @@ public final class EpubTocParser {
     }
 
     @NonNull
-    private static String normalizeZipHref(@NonNull String baseDir, @NonNull String href) {
+    static String normalizeZipHref(@NonNull String baseDir, @NonNull String href) {
         // Preserve fragments (#id), but resolve the path portion relative to baseDir.
         String path = href;
         String fragment = "";
@@ -438,7 +345,7 @@ public final class EpubTocParser {
     }
 
     @NonNull
-    private static String dirOf(@NonNull String path) {
+    static String dirOf(@NonNull String path) {
         int idx = path.lastIndexOf('/');
         if (idx < 0) return "";
         return path.substring(0, idx + 1);
@@ -455,7 +362,7 @@ public final class EpubTocParser {
     }
 
     @Nullable
-    private static Document parseXml(@NonNull InputStream is) throws Exception {
+    static Document parseXml(@NonNull InputStream is) throws Exception {
         DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
         f.setNamespaceAware(true);
         // Best-effort XXE hardening for both Android + JVM.
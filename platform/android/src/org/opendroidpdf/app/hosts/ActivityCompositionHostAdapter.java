@@ -39,9 +39,6 @@ import org.opendroidpdf.app.navigation.NavigationDelegate;
 import org.opendroidpdf.app.notes.NotesController;
 import org.opendroidpdf.app.notes.NotesDelegate;
 import org.opendroidpdf.app.preferences.PreferencesCoordinator;
-import org.opendroidpdf.app.preferences.SharedPreferencesAppPrefsStore;
-import org.opendroidpdf.app.preferences.SharedPreferencesEditorPrefsStore;
-import org.opendroidpdf.app.preferences.SharedPreferencesViewerPrefsStore;
 import org.opendroidpdf.app.reflow.SharedPreferencesReflowPrefsStore;
 import org.opendroidpdf.app.reflow.ReflowPrefsStore;
 import org.opendroidpdf.app.search.SearchToolbarController;
@@ -75,6 +72,8 @@ public final class ActivityCompositionHostAdapter {
 
         // These are used by multiple controllers/host adapters; initialize first.
         c.saveFlagController = new SaveFlagController();
+        org.opendroidpdf.app.sidecar.WriteBehindSidecarAnnotationStore.get(activity)
+                .addDurabilityListener(c.saveFlagController);
         org.opendroidpdf.app.hosts.DocumentAccessHostAdapter documentAccessHostAdapter =
                 new org.opendroidpdf.app.hosts.DocumentAccessHostAdapter(activity);
         c.documentViewHostAdapter = new DocumentViewHostAdapter(activity::getDocView, activity::getCore);
@@ -98,11 +97,7 @@ public final class ActivityCompositionHostAdapter {
                     @Override public org.opendroidpdf.MuPDFReaderView docViewOrNull() { return activity.getDocView(); }
                     @Override public org.opendroidpdf.OpenDroidPDFCore coreOrNull() { return activity.getCore(); }
                 },
-                new SharedPreferencesAppPrefsStore(activity),
-                new SharedPreferencesViewerPrefsStore(activity),
-                new SharedPreferencesEditorPrefsStore(activity),
-                c.penPreferences,
-                c.textStylePreferences);
+                c.appServices.preferences());
         c.reflowPrefsStore = new SharedPreferencesReflowPrefsStore(activity);
         c.searchService = new SearchServiceImpl(activity);
         c.drawingService = new DrawingServiceImpl(activity::getDocView);
@@ -9,6 +9,7 @@ import org.opendroidpdf.OpenDroidPDFCore;
 import org.opendroidpdf.app.document.SaveUiDelegate;
 import org.opendroidpdf.app.lifecycle.LifecycleHooks;
 import org.opendroidpdf.app.lifecycle.SaveFlagController;
+import org.opendroidpdf.app.sidecar.WriteBehindSidecarAnnotationStore;
 
 import java.util.concurrent.Callable;
 
@@ -45,6 +46,10 @@ public final class ActivityLifecycleHostAdapter implements LifecycleHooks.Host {
         if (core != null) core.stopAlerts();
     }
     @Override public void destroyAlertWaiter() { activity.destroyAlertWaiter(); }
+    @Override public void commitAnnotationWritesSoon() {
+        WriteBehindSidecarAnnotationStore store = WriteBehindSidecarAnnotationStore.peek();
+        if (store != null) store.commitSoon();
+    }
 
     @Override public boolean isChangingConfigurations() { return activity.isChangingConfigurations(); }
     @Override public boolean hasUnsavedChanges() { return activity.hasUnsavedChanges(); }
@@ -59,6 +64,12 @@ public final class ActivityLifecycleHostAdapter implements LifecycleHooks.Host {
     }
     @Override public void showInfo(@NonNull String message) { activity.showInfo(message); }
     @Override public void cancelRenderThumbnailJob() { activity.cancelRenderThumbnailJob(); }
+    @Override public boolean hasUndurableAnnotationWrites() { return saveFlags != null && saveFlags.hasUndurableAnnotationWrites(); }
+    @Override public boolean annotationWriteFailed() { return saveFlags != null && saveFlags.annotationWriteFailed(); }
+    @Override public void flushAnnotationWrites() {
+        WriteBehindSidecarAnnotationStore store = WriteBehindSidecarAnnotationStore.peek();
+        if (store != null) store.flush();
+    }
 
     @Override public boolean getSaveOnDestroy() { return saveFlags != null && saveFlags.shouldSaveOnDestroy(); }
     @Override public boolean getIgnoreSaveOnDestroyThisTime() { return saveFlags != null && saveFlags.shouldIgnoreSaveOnDestroyOnce(); }
@@ -22,8 +22,10 @@ import org.opendroidpdf.app.AppCoroutines;
 import org.opendroidpdf.core.MuPdfController;
 import org.opendroidpdf.app.sidecar.SidecarAnnotationProvider;
 import org.opendroidpdf.app.sidecar.SidecarAnnotationSession;
+import org.opendroidpdf.app.document.ConversionProgress;
 import org.opendroidpdf.app.document.DocumentIdentity;
 import org.opendroidpdf.app.document.DocumentIdentityResolver;
+import org.opendroidpdf.app.document.DocumentLifecycleManager;
 import org.opendroidpdf.app.document.DocumentOrigin;
 import org.opendroidpdf.app.document.DocumentSetupController;
 import org.opendroidpdf.app.document.DocumentType;
@@ -63,10 +65,12 @@ public final class DocumentSetupHostAdapter implements DocumentSetupController.H
     @Nullable @Override public OpenDroidPDFCore getCore() { return activity.getCore(); }
     @Override public void setCoreInstance(OpenDroidPDFCore core) { activity.setCoreInstance(core); }
     @Override public void setCurrentDocumentIdentity(@NonNull DocumentIdentity identity) { activity.setCurrentDocumentIdentity(identity); }
+    @Override public void setCurrentDocumentIdentityFuture(@NonNull java.util.concurrent.Future<DocumentIdentity> identity) { activity.setCurrentDocumentIdentityFuture(identity); }
     @Override public void setCurrentDocumentOrigin(@NonNull DocumentOrigin origin) { activity.setCurrentDocumentOrigin(origin); }
     @Override public void setSaveToCurrentUriDisabledByPolicy(boolean disabled) { activity.setSaveToCurrentUriDisabledByPolicy(disabled); }
     @Override public void setCurrentUserFacingDocument(@Nullable Uri uri, @Nullable String displayName) { activity.setCurrentUserFacingDocument(uri, displayName); }
-    @Nullable @Override public DocumentIdentity currentDocumentIdentityOrNull() { return activity.currentDocumentIdentityOrNull(); }
+    @Nullable @Override public DocumentIdentity resolvedDocumentIdentityOrNull() { return activity.resolvedDocumentIdentityOrNull(); }
+    @Override public void whenDocumentIdentityReady(@NonNull DocumentLifecycleManager.IdentityCallback callback) { activity.whenDocumentIdentityReady(callback); }
     @Override public androidx.appcompat.app.AlertDialog.Builder alertBuilder() { return activity.getAlertBuilder(); }
     @Override public void requestPassword() { activity.requestPassword(); }
     @Override public org.opendroidpdf.core.SearchController getSearchController() { return activity.getSearchController(); }
@@ -138,6 +142,10 @@ public final class DocumentSetupHostAdapter implements DocumentSetupController.H
         org.opendroidpdf.app.document.DocumentViewDelegate dvd = activity.getDocumentViewDelegate();
         if (dvd != null) dvd.syncPreferences();
     }
+    @Override public void onReflowPaginationCorrected() {
+        org.opendroidpdf.app.document.DocumentViewDelegate dvd = activity.getDocumentViewDelegate();
+        if (dvd != null) dvd.recreateAdapterPreservingViewport(null);
+    }
 
     @Override
     public void promptReopenWithPermission(Uri failedUri) {
@@ -391,14 +399,18 @@ public final class DocumentSetupHostAdapter implements DocumentSetupController.H
         } catch (Throwable ignore) {
         }
 
-        activity.showInfo(activity.getString(org.opendroidpdf.R.string.xfa_pack_converting));
-
         final Context appContext = activity.getApplicationContext();
         final Uri inUri = uri;
         final String passwordFinal = password;
+        // Only show progress when XFA Pack actually runs; cached outputs open directly.
+        final ConversionProgress progress = new ConversionProgress(
+                activity, activity.getString(org.opendroidpdf.R.string.xfa_pack_converting));
         AppCoroutines.launchIo(AppCoroutines.ioScope(), () -> {
-            XfaPackConversionPipeline.Result result = XfaPackConversionPipeline.convert(appContext, inUri, mode, passwordFinal);
+            XfaPackConversionPipeline.Result result = XfaPackConversionPipeline.convert(
+                    appContext, inUri, mode, passwordFinal, progress);
             AppCoroutines.launchMain(AppCoroutines.mainScope(), () -> {
+                progress.finish();
+                if (progress.isCancelled()) return;
                 if (result.outputUri != null) {
                     openConvertedPdf(result.outputUri);
                     return;
@@ -5,10 +5,13 @@ import androidx.appcompat.app.AlertDialog;
 
 import org.opendroidpdf.MuPDFReaderView;
 import org.opendroidpdf.OpenDroidPDFActivity;
+import org.opendroidpdf.app.AppCoroutines;
 import org.opendroidpdf.app.document.ExportController;
 import org.opendroidpdf.app.document.DocumentToolbarController;
 import org.opendroidpdf.app.document.DocumentType;
 import org.opendroidpdf.app.document.OrganizePagesController;
+import org.opendroidpdf.app.epub.EpubMetadata;
+import org.opendroidpdf.app.epub.EpubMetadataCache;
 import org.opendroidpdf.app.epub.EpubTocParser;
 import org.opendroidpdf.app.navigation.DashboardDelegate;
 import org.opendroidpdf.app.reader.gesture.ReaderMode;
@@ -105,7 +108,7 @@ public final class DocumentToolbarHostAdapter implements DocumentToolbarControll
             org.opendroidpdf.OutlineItem[] outline = core.getOutline();
             if (outline == null || outline.length == 0) {
                 if (DocumentType.fromFileFormat(core.fileFormat()) == DocumentType.EPUB) {
-                    if (showEpubTocOrFallback(core, doc)) return;
+                    if (showEpubTocAsync(core, doc)) return;
                 }
                 activity.showInfo(activity.getString(org.opendroidpdf.R.string.toc_empty));
                 return;
@@ -307,12 +310,43 @@ public final class DocumentToolbarHostAdapter implements DocumentToolbarControll
         return true;
     }
 
-    private boolean showEpubTocOrFallback(org.opendroidpdf.OpenDroidPDFCore core,
-                                         org.opendroidpdf.MuPDFReaderView doc) {
+    /**
+     * Loads the EPUB's TOC off the UI thread (a cache miss hashes and indexes the archive) and
+     * shows it when ready. Looks the metadata up by the URI the document was opened with, as the
+     * open path's prefetch did, so both resolve the same identity. Returns false when there is
+     * nothing to read it from.
+     */
+    private boolean showEpubTocAsync(org.opendroidpdf.OpenDroidPDFCore core,
+                                     org.opendroidpdf.MuPDFReaderView doc) {
+        android.net.Uri uri = core.getUri();
         String path = core.getPath();
-        if (path == null || path.trim().isEmpty()) return false;
+        boolean hasPath = path != null && !path.trim().isEmpty();
+        if (uri == null && !hasPath) return false;
+
+        AppCoroutines.launchIo(AppCoroutines.ioScope(), () -> {
+            EpubMetadata meta;
+            try {
+                EpubMetadataCache cache = EpubMetadataCache.get(activity);
+                meta = uri != null ? cache.forUri(uri) : cache.forPath(path);
+            } catch (Throwable t) {
+                meta = null;
+            }
+            java.util.List<EpubTocParser.TocEntry> toc = meta != null
+                    ? meta.toc
+                    : hasPath ? EpubTocParser.parseFromEpubPath(path) : java.util.Collections.emptyList();
+            AppCoroutines.launchMain(AppCoroutines.mainScope(), () -> {
+                if (activity.isFinishing() || activity.getCore() != core || activity.getDocView() != doc) return;
+                if (!showEpubToc(core, doc, toc)) {
+                    activity.showInfo(activity.getString(org.opendroidpdf.R.string.toc_empty));
+                }
+            });
+        });
+        return true;
+    }
 
-        java.util.List<EpubTocParser.TocEntry> toc = EpubTocParser.parseFromEpubPath(path);
+    private boolean showEpubToc(org.opendroidpdf.OpenDroidPDFCore core,
+                                org.opendroidpdf.MuPDFReaderView doc,
+                                java.util.List<EpubTocParser.TocEntry> toc) {
         if (toc.isEmpty()) return false;
 
         java.util.ArrayList<CharSequence> items = new java.util.ArrayList<>();
@@ -9,7 +9,7 @@ import org.opendroidpdf.FilePicker;
 import org.opendroidpdf.MuPDFReaderView;
 import org.opendroidpdf.OpenDroidPDFActivity;
 import org.opendroidpdf.OpenDroidPDFCore;
-import org.opendroidpdf.app.document.DocumentIdentity;
+import org.opendroidpdf.app.document.DocumentLifecycleManager;
 import org.opendroidpdf.app.document.DocumentViewDelegate;
 import org.opendroidpdf.core.MuPdfController;
 import org.opendroidpdf.core.MuPdfRepository;
@@ -63,10 +63,9 @@ public final class DocumentViewDelegateHostAdapter implements DocumentViewDelega
         return host;
     }
 
-    @Nullable
     @Override
-    public DocumentIdentity currentDocumentIdentityOrNull() {
-        return activity.currentDocumentIdentityOrNull();
+    public void whenDocumentIdentityReady(@NonNull DocumentLifecycleManager.IdentityCallback callback) {
+        activity.whenDocumentIdentityReady(callback);
     }
 
     @Override
@@ -10,6 +10,8 @@ import androidx.appcompat.app.AlertDialog;
 import org.opendroidpdf.MuPDFReaderView;
 import org.opendroidpdf.OpenDroidPDFActivity;
 import org.opendroidpdf.OpenDroidPDFCore;
+import org.opendroidpdf.app.document.DocumentIdentity;
+import org.opendroidpdf.app.document.DocumentLifecycleManager;
 import org.opendroidpdf.app.reflow.ReflowSettingsController;
 import org.opendroidpdf.core.MuPdfRepository;
 
@@ -24,7 +26,8 @@ public final class ReflowSettingsHostAdapter implements ReflowSettingsController
     @Nullable @Override public OpenDroidPDFCore getCore() { return activity.getCore(); }
     @Nullable @Override public MuPDFReaderView getDocView() { return activity.getDocView(); }
     @Nullable @Override public MuPdfRepository getRepository() { return activity.getRepository(); }
-    @Nullable @Override public org.opendroidpdf.app.document.DocumentIdentity currentDocumentIdentityOrNull() { return activity.currentDocumentIdentityOrNull(); }
+    @Nullable @Override public DocumentIdentity resolvedDocumentIdentityOrNull() { return activity.resolvedDocumentIdentityOrNull(); }
+    @Override public void whenDocumentIdentityReady(@NonNull DocumentLifecycleManager.IdentityCallback callback) { activity.whenDocumentIdentityReady(callback); }
     @Nullable @Override public org.opendroidpdf.app.ui.UiStateDelegate getUiStateDelegate() { return activity.getUiStateDelegate(); }
     @NonNull @Override public AlertDialog.Builder alertBuilder() { return activity.getAlertBuilder(); }
     @Override public void stopSearchTasks() { activity.stopSearchTasks(); }
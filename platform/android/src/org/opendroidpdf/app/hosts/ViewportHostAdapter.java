@@ -7,6 +7,7 @@ import androidx.annotation.Nullable;
 
 import org.opendroidpdf.MuPDFReaderView;
 import org.opendroidpdf.OpenDroidPDFActivity;
+import org.opendroidpdf.app.document.DocumentLifecycleManager;
 import org.opendroidpdf.app.document.DocumentViewportController;
 import org.opendroidpdf.app.document.DocumentType;
 import org.opendroidpdf.app.services.RecentFilesService;
@@ -47,10 +48,9 @@ public final class ViewportHostAdapter implements DocumentViewportController.Hos
         return documentViewHostAdapter != null ? documentViewHostAdapter.sidecarAnnotationProviderOrNull() : null;
     }
 
-    @Nullable
     @Override
-    public org.opendroidpdf.app.document.DocumentIdentity currentDocumentIdentityOrNull() {
-        return activity.currentDocumentIdentityOrNull();
+    public void whenDocumentIdentityReady(@NonNull DocumentLifecycleManager.IdentityCallback callback) {
+        activity.whenDocumentIdentityReady(callback);
     }
 
     @Nullable
@@ -19,6 +19,8 @@ public final class LifecycleHooks {
         void saveViewport(@NonNull Uri uri);
         void coreStopAlerts();
         void destroyAlertWaiter();
+        /** Starts committing queued sidecar annotation writes without waiting for the usual delay. */
+        void commitAnnotationWritesSoon();
 
         // onStop
         boolean isChangingConfigurations();
@@ -30,6 +32,10 @@ public final class LifecycleHooks {
         void saveInBackground(Callable<?> ok, Callable<?> err);
         void showInfo(@NonNull String message);
         void cancelRenderThumbnailJob();
+        boolean hasUndurableAnnotationWrites();
+        boolean annotationWriteFailed();
+        /** Commits queued sidecar annotation writes and waits for them. */
+        void flushAnnotationWrites();
 
         // onDestroy core/save
         boolean getSaveOnDestroy();
@@ -46,6 +52,7 @@ public final class LifecycleHooks {
 
     public void onPause() {
         host.stopSearchTasks();
+        host.commitAnnotationWritesSoon();
         if (host.hasCore()) {
             Uri uri = host.coreUri();
             if (uri != null) host.saveViewport(uri);
@@ -65,6 +72,11 @@ public final class LifecycleHooks {
                 });
             }
         }
+        // The process may be killed once stopped; sidecar edits must be on disk by then.
+        if (host.hasUndurableAnnotationWrites()) {
+            host.flushAnnotationWrites();
+            if (host.annotationWriteFailed()) host.showInfo("Error saving annotations");
+        }
         host.clearIgnoreSaveOnStopFlag();
         host.cancelRenderThumbnailJob();
     }
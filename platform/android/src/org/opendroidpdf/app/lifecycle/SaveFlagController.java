@@ -1,12 +1,19 @@
 package org.opendroidpdf.app.lifecycle;
 
-/** Manages save/ignore flags and recent-files count, keeping them out of the activity. */
-public final class SaveFlagController {
+import org.opendroidpdf.app.sidecar.WriteBehindSidecarAnnotationStore;
+
+/**
+ * Manages save/ignore flags and recent-files count, keeping them out of the activity. Also tracks
+ * whether sidecar annotation edits are durable yet, since those are committed in the background.
+ */
+public final class SaveFlagController implements WriteBehindSidecarAnnotationStore.DurabilityListener {
     private boolean saveOnStop;
     private boolean saveOnDestroy;
     private boolean ignoreSaveOnStopOnce;
     private boolean ignoreSaveOnDestroyOnce;
     private int numberRecentFiles = 20;
+    private volatile boolean annotationWritesPending;
+    private volatile boolean annotationWriteFailed;
 
     public boolean shouldSaveOnStop() { return saveOnStop; }
     public boolean shouldSaveOnDestroy() { return saveOnDestroy; }
@@ -24,4 +31,14 @@ public final class SaveFlagController {
     }
 
     public int maxRecentFiles() { return numberRecentFiles; }
+
+    @Override
+    public void onAnnotationDurabilityChanged(boolean pending, boolean failed) {
+        annotationWritesPending = pending;
+        annotationWriteFailed = failed;
+    }
+
+    /** True while sidecar annotation edits are queued, being committed, or failed to commit. */
+    public boolean hasUndurableAnnotationWrites() { return annotationWritesPending || annotationWriteFailed; }
+    public boolean annotationWriteFailed() { return annotationWriteFailed; }
 }
@@ -45,9 +45,7 @@ public final class StartupBootstrap {
 
         // Register preference listener (lifecycle-owned) and trigger initial apply
         org.opendroidpdf.app.preferences.PreferencesSubscription subscription =
-                org.opendroidpdf.app.preferences.PreferencesSubscription.start(
-                        ctx,
-                        preferencesCoordinator);
+                org.opendroidpdf.app.preferences.PreferencesSubscription.start(preferencesCoordinator);
         preferencesCoordinator.refreshAndApply();
 
         // Alert builder used across dialogs
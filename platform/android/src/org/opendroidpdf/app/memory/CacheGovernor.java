@@ -0,0 +1,293 @@
+package org.opendroidpdf.app.memory;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Central owner of the in-memory cache budget.
+ * <p>
+ * Caches register with a trim priority and a share of a budget derived from the device's memory
+ * class, report their estimated size, and support trimming to a fraction of that size. On memory
+ * pressure the governor trims caches in priority order (lowest first) until the estimated total
+ * fits the level's target, so cheap-to-rebuild data goes before data that needs the core or the
+ * database to come back.
+ * <p>
+ * Registrations are held weakly: the owner keeps its {@link Registration} in a field, and a cache
+ * that is garbage collected drops out without an explicit {@link Registration#unregister()}.
+ * {@link Trimmable#trimToFraction} is called on the thread that delivered the trim callback (the
+ * main thread for {@code onTrimMemory}); caches whose state is guarded by a long-held lock should
+ * hand the work off rather than block.
+ */
+public final class CacheGovernor {
+    /** Pooled bitmaps nothing displays; dropping them only costs future allocations. */
+    public static final int PRIORITY_POOL = 0;
+    /** Thumbnails in dialogs; re-rendered on demand. */
+    public static final int PRIORITY_THUMBNAILS = 10;
+    /** Text layouts and page geometry; cheap CPU work to rebuild. */
+    public static final int PRIORITY_LAYOUT = 20;
+    /** Data rebuilt through the MuPDF core (store, page sizes); rebuilding takes the core lock. */
+    public static final int PRIORITY_NATIVE = 30;
+    /** Per-page annotation lists; rebuilding reads the sidecar database. */
+    public static final int PRIORITY_ANNOTATIONS = 40;
+
+    /** Returned by {@link Trimmable#sizeBytes()} when a cache cannot estimate its size. */
+    public static final long UNKNOWN_SIZE = -1L;
+
+    /** Fraction of the memory class the governed caches may use together. */
+    private static final int BUDGET_DIVISOR = 4;
+
+    public interface Trimmable {
+        /** Estimated retained bytes, or {@link #UNKNOWN_SIZE}. */
+        long sizeBytes();
+
+        /** Drops entries until roughly {@code fraction} of the current size remains; 0 clears. */
+        void trimToFraction(float fraction);
+    }
+
+    public static final class Registration {
+        private final CacheGovernor governor;
+        @NonNull final String name;
+        final int priority;
+        final float share;
+        @NonNull final Trimmable cache;
+        private volatile boolean registered = true;
+        private long trims;
+
+        Registration(@NonNull CacheGovernor governor, @NonNull String name, int priority, float share,
+                     @NonNull Trimmable cache) {
+            this.governor = governor;
+            this.name = name;
+            this.priority = priority;
+            this.share = share;
+            this.cache = cache;
+        }
+
+        /** This cache's share of the governor budget; 0 when it registered without one. */
+        public long budgetBytes() {
+            return (long) (governor.budgetBytes() * (double) share);
+        }
+
+        public void unregister() {
+            registered = false;
+            governor.remove(this);
+        }
+    }
+
+    private static volatile CacheGovernor instance;
+
+    /** Derives the budget from {@link ActivityManager#getMemoryClass()}; call from the Application. */
+    public static CacheGovernor init(@NonNull Context context) {
+        synchronized (CacheGovernor.class) {
+            if (instance == null) {
+                long budget = 0L;
+                try {
+                    ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+                    if (am != null) budget = am.getMemoryClass() * 1024L * 1024L / BUDGET_DIVISOR;
+                } catch (Throwable ignore) {
+                }
+                if (budget <= 0L) budget = defaultBudget();
+                instance = new CacheGovernor(budget);
+            }
+            return instance;
+        }
+    }
+
+    @NonNull
+    public static CacheGovernor get() {
+        CacheGovernor g = instance;
+        if (g == null) {
+            synchronized (CacheGovernor.class) {
+                g = instance;
+                if (g == null) {
+                    g = new CacheGovernor(defaultBudget());
+                    instance = g;
+                }
+            }
+        }
+        return g;
+    }
+
+    private static long defaultBudget() {
+        return Runtime.getRuntime().maxMemory() / BUDGET_DIVISOR;
+    }
+
+    private final long budgetBytes;
+    private final List<WeakReference<Registration>> registrations = new ArrayList<>();
+    private long trimCalls;
+    private int lastTrimLevel = -1;
+
+    CacheGovernor(long budgetBytes) {
+        this.budgetBytes = Math.max(0L, budgetBytes);
+    }
+
+    public long budgetBytes() {
+        return budgetBytes;
+    }
+
+    /**
+     * Registers {@code cache}. {@code share} is the fraction of {@link #budgetBytes()} the cache
+     * sizes itself to (see {@link Registration#budgetBytes()}); pass 0 for caches bounded some
+     * other way that should still be trimmed and reported.
+     */
+    @NonNull
+    public Registration register(@NonNull String name, int priority, float share, @NonNull Trimmable cache) {
+        Registration r = new Registration(this, name, priority, Math.max(0f, Math.min(1f, share)), cache);
+        synchronized (registrations) {
+            registrations.add(new WeakReference<>(r));
+        }
+        return r;
+    }
+
+    private void remove(@NonNull Registration r) {
+        synchronized (registrations) {
+            for (Iterator<WeakReference<Registration>> it = registrations.iterator(); it.hasNext(); ) {
+                Registration live = it.next().get();
+                if (live == null || live == r) it.remove();
+            }
+        }
+    }
+
+    /** Reacts to {@link ComponentCallbacks2#onTrimMemory(int)}. */
+    public void onTrimMemory(int level) {
+        long target;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            target = 0L;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            target = budgetBytes / 2;
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            target = budgetBytes;
+        } else {
+            return;
+        }
+        synchronized (this) {
+            lastTrimLevel = level;
+        }
+        trimTo(target);
+    }
+
+    public void clear() {
+        trimTo(0L);
+    }
+
+    /**
+     * Trims caches in priority order until the estimated total is at most {@code targetBytes}.
+     * Caches of unknown size are trimmed to {@code targetBytes / budget} when the walk reaches
+     * them, since their share of the total cannot be known.
+     */
+    void trimTo(long targetBytes) {
+        List<Registration> ordered = snapshot();
+        Collections.sort(ordered, BY_PRIORITY);
+        synchronized (this) {
+            trimCalls++;
+        }
+        long total = knownTotal(ordered);
+        float unknownFraction = budgetBytes > 0L ? Math.min(1f, targetBytes / (float) budgetBytes) : 0f;
+        for (Registration r : ordered) {
+            if (!r.registered) continue;
+            long size = sizeOf(r);
+            if (size == UNKNOWN_SIZE) {
+                if (unknownFraction < 1f) trim(r, unknownFraction);
+                continue;
+            }
+            if (total <= targetBytes) continue;
+            if (size <= 0L) continue;
+            long keep = Math.max(0L, size - (total - targetBytes));
+            trim(r, keep / (float) size);
+            long after = sizeOf(r);
+            total -= size - Math.max(0L, after);
+        }
+    }
+
+    /** Estimated total of the caches that report a size. */
+    public long totalBytes() {
+        return knownTotal(snapshot());
+    }
+
+    /** Serializes the budget and each live cache's size; used by the debug metrics export. */
+    @NonNull
+    public JSONObject toJson() throws JSONException {
+        List<Registration> ordered = snapshot();
+        Collections.sort(ordered, BY_PRIORITY);
+        JSONObject o = new JSONObject();
+        o.put("budgetBytes", budgetBytes);
+        o.put("totalBytes", knownTotal(ordered));
+        synchronized (this) {
+            o.put("trimCalls", trimCalls);
+            o.put("lastTrimLevel", lastTrimLevel);
+        }
+        JSONArray caches = new JSONArray();
+        for (Registration r : ordered) {
+            JSONObject c = new JSONObject();
+            c.put("name", r.name);
+            c.put("priority", r.priority);
+            c.put("sizeBytes", sizeOf(r));
+            c.put("budgetBytes", r.budgetBytes());
+            synchronized (this) {
+                c.put("trims", r.trims);
+            }
+            caches.put(c);
+        }
+        o.put("caches", caches);
+        return o;
+    }
+
+    private void trim(@NonNull Registration r, float fraction) {
+        try {
+            r.cache.trimToFraction(Math.max(0f, Math.min(1f, fraction)));
+        } catch (Throwable ignore) {
+            // A cache failing to trim must not stop the rest from trimming.
+        }
+        synchronized (this) {
+            r.trims++;
+        }
+    }
+
+    private static long sizeOf(@NonNull Registration r) {
+        try {
+            return r.cache.sizeBytes();
+        } catch (Throwable t) {
+            return UNKNOWN_SIZE;
+        }
+    }
+
+    private static long knownTotal(@NonNull List<Registration> regs) {
+        long total = 0L;
+        for (Registration r : regs) {
+            long size = sizeOf(r);
+            if (size > 0L) total += size;
+        }
+        return total;
+    }
+
+    @NonNull
+    private List<Registration> snapshot() {
+        ArrayList<Registration> out = new ArrayList<>();
+        synchronized (registrations) {
+            for (Iterator<WeakReference<Registration>> it = registrations.iterator(); it.hasNext(); ) {
+                Registration r = it.next().get();
+                if (r == null) it.remove();
+                else out.add(r);
+            }
+        }
+        return out;
+    }
+
+    private static final Comparator<Registration> BY_PRIORITY =
+            (a, b) -> Integer.compare(a.priority, b.priority);
+}
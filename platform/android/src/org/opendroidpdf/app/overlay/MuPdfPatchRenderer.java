@@ -1,6 +1,7 @@
 package org.opendroidpdf.app.overlay;
 
 import android.graphics.Bitmap;
+import android.graphics.Rect;
 import android.os.Build;
 import android.util.Log;
 
@@ -9,6 +10,7 @@ import org.opendroidpdf.CancellableTaskDefinition;
 import org.opendroidpdf.MuPDFCancellableTaskDefinition;
 import org.opendroidpdf.MuPDFCore;
 import org.opendroidpdf.PatchInfo;
+import org.opendroidpdf.app.render.BitmapPool;
 import org.opendroidpdf.core.MuPdfController;
 
 /**
@@ -47,6 +49,12 @@ public final class MuPdfPatchRenderer {
                 // Workaround bug in Android Honeycomb 3.x, where the bitmap generation count
                 // is not incremented when drawing.
                 //Careful: We must not let the native code draw to a bitmap that is alreay set to the view. The view might redraw itself (this can even happen without draw() or onDraw() beeing called) and then immediately appear with the new content of the bitmap. This leads to flicker if the view would have to be moved before showing the new content. This is avoided by the ReaderView providing one of two bitmaps in a smart way such that v[0].patchBm is always set to the one not currently set.
+                if (patchInfo.dirtyArea != null) {
+                    // Annotation edit: only the pixels under the changed annotations are redrawn,
+                    // offscreen; the view copies them into the bitmap it shows (see above).
+                    if (patchInfo.dirtyArea.isEmpty()) return patchInfo;
+                    return renderRegion(pageNumber, patchInfo, cookie);
+                }
                 if (patchInfo.completeRedraw) {
                     patchInfo.patchBm.eraseColor(0xFFFFFFFF);
                     drawPage(pageNumber,
@@ -111,6 +119,24 @@ public final class MuPdfPatchRenderer {
         }
     }
 
+    private PatchInfo renderRegion(int pageNumber, PatchInfo patchInfo, MuPDFCore.Cookie cookie) {
+        Rect region = patchInfo.dirtyArea;
+        Bitmap bm = BitmapPool.get().acquire(region.width(), region.height(), patchInfo.patchBm.getConfig());
+        boolean rendered = false;
+        try {
+            bm.eraseColor(0xFFFFFFFF);
+            drawPage(pageNumber,
+                    bm, patchInfo.viewArea.width(), patchInfo.viewArea.height(),
+                    patchInfo.patchArea.left + region.left, patchInfo.patchArea.top + region.top,
+                    region.width(), region.height(),
+                    cookie);
+            rendered = true;
+            return patchInfo.withRegionBitmap(bm);
+        } finally {
+            if (!rendered) BitmapPool.get().release(bm);
+        }
+    }
+
     private static boolean looksUniform(Bitmap bm) {
         if (bm == null) return false;
         int w = bm.getWidth();
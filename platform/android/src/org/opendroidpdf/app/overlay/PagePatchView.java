@@ -4,15 +4,20 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.graphics.ColorFilter;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import androidx.appcompat.widget.AppCompatImageView;
 
-import kotlinx.coroutines.Job;
-import org.opendroidpdf.app.AppCoroutines;
 import org.opendroidpdf.CancellableTaskDefinition;
 import org.opendroidpdf.PatchInfo;
 import org.opendroidpdf.BuildConfig;
+import org.opendroidpdf.app.render.BitmapPool;
+import org.opendroidpdf.app.render.RenderScheduler;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicLong;
 
 // ImageView that renders either the full-page bitmap or the hi‑res patch asynchronously.
@@ -29,13 +34,19 @@ public class PagePatchView extends AppCompatImageView {
     private final Host host;
     private Rect area;
     private Rect patchArea;
-    private Job drawPatchJob;
-    private CancellableTaskDefinition<PatchInfo, PatchInfo> drawPatchTask;
+    private RenderScheduler.Handle drawPatchHandle;
+    private PatchRenderWork drawPatchWork;
+    private RenderScheduler.Priority renderPriority = RenderScheduler.Priority.VISIBLE_ENTIRE;
     private Bitmap bitmap;
     private Bitmap inFlightBitmap;
     private boolean hasNotifiedFirstPatch = false;
+    private ColorFilter pageColorFilter;
     private final AtomicLong renderGeneration = new AtomicLong(0L);
     private volatile long activeGeneration = 0L;
+    /** Bitmaps targeted by submitted renders that have not finished or been dropped (UI thread). */
+    private final IdentityHashMap<Bitmap, Integer> renderTargets = new IdentityHashMap<>();
+    /** Bitmaps the owner no longer needs; returned to the pool once idle (UI thread). */
+    private final ArrayList<Bitmap> retiredBitmaps = new ArrayList<>();
 
     public PagePatchView(Context context, Host host) {
         super(context);
@@ -49,12 +60,28 @@ public class PagePatchView extends AppCompatImageView {
     @Override
     public boolean isOpaque() { return true; }
 
+    /**
+     * Recolors the displayed bitmap at draw time (reflow themes). The bitmap itself is untouched,
+     * so changing the filter only needs a redraw, not a re-render.
+     */
+    public void setPageColorFilter(ColorFilter filter, int paperColor) {
+        if (filter == pageColorFilter) return;
+        pageColorFilter = filter;
+        setColorFilter(filter);
+        setBackgroundColor(paperColor);
+    }
+
     public void setArea(Rect area) { this.area = area; }
     public Rect getArea() { return area; }
 
     public void setPatchArea(Rect patchArea) { this.patchArea = patchArea; }
     public Rect getPatchArea() { return patchArea; }
 
+    /** Scheduler class used for subsequent {@link #renderInBackground} calls. */
+    public void setRenderPriority(RenderScheduler.Priority priority) {
+        if (priority != null) this.renderPriority = priority;
+    }
+
     public void reset() {
         cancelRenderInBackground();
         setArea(null);
@@ -73,6 +100,7 @@ public class PagePatchView extends AppCompatImageView {
         if (BuildConfig.DEBUG) logBitmapEvent("setImageBitmap", bitmap);
         maybeMarkBlank(bitmap);
         super.setImageBitmap(bitmap);
+        releaseIdleRetiredBitmaps();
         if (!hasNotifiedFirstPatch && bitmap != null) {
             hasNotifiedFirstPatch = true;
             host.onFirstPatchRendered(bitmap);
@@ -91,7 +119,12 @@ public class PagePatchView extends AppCompatImageView {
         // even if the ImageView's normal path is being over-painted elsewhere.
         Rect fullDst = new Rect(0, 0, getWidth(), getHeight());
         Rect fullSrc = new Rect(0, 0, bitmap.getWidth(), bitmap.getHeight());
-        canvas.drawBitmap(bitmap, fullSrc, fullDst, null);
+        Paint fullPaint = null;
+        if (pageColorFilter != null) {
+            fullPaint = new Paint();
+            fullPaint.setColorFilter(pageColorFilter);
+        }
+        canvas.drawBitmap(bitmap, fullSrc, fullDst, fullPaint);
 
         final int thumbSize = Math.min(240, Math.min(bitmap.getWidth(), bitmap.getHeight()));
         if (thumbSize > 0) {
@@ -124,6 +157,44 @@ public class PagePatchView extends AppCompatImageView {
 
     public Bitmap getImageBitmap() { return bitmap; }
 
+    /** Whether a render submitted by {@link #renderInBackground} has not been applied yet. */
+    public boolean isRenderPending() { return drawPatchHandle != null; }
+
+    /**
+     * Hands a bitmap this view may still display or render into back to {@link BitmapPool} once it
+     * is neither displayed nor the target of an unfinished render. UI thread only.
+     */
+    public void retireBitmap(Bitmap bm) {
+        if (bm == null) return;
+        retiredBitmaps.add(bm);
+        releaseIdleRetiredBitmaps();
+    }
+
+    private void releaseIdleRetiredBitmaps() {
+        for (Iterator<Bitmap> it = retiredBitmaps.iterator(); it.hasNext(); ) {
+            Bitmap bm = it.next();
+            if (bm == bitmap || renderTargets.containsKey(bm)) continue;
+            it.remove();
+            BitmapPool.get().release(bm);
+        }
+    }
+
+    private void addRenderTarget(Bitmap bm) {
+        Integer n = renderTargets.get(bm);
+        renderTargets.put(bm, n == null ? 1 : n + 1);
+    }
+
+    private void removeRenderTarget(Bitmap bm) {
+        Integer n = renderTargets.get(bm);
+        if (n == null) return;
+        if (n <= 1) {
+            renderTargets.remove(bm);
+            releaseIdleRetiredBitmaps();
+        } else {
+            renderTargets.put(bm, n - 1);
+        }
+    }
+
     public void renderInBackground(PatchInfo patchInfo) {
         if (patchInfo == null || patchInfo.viewArea == null || patchInfo.patchBm == null) {
             return;
@@ -146,78 +217,142 @@ public class PagePatchView extends AppCompatImageView {
         // Stop the drawing of previous patch if still going
         cancelRenderInBackground();
 
-        setPatchArea(null);
+        // A region update is copied into the bitmap on screen, so the patch stays laid out.
+        if (patchInfo.dirtyArea == null) setPatchArea(null);
         final long generation = renderGeneration.incrementAndGet();
         activeGeneration = generation;
 
         inFlightBitmap = patchInfo.patchBm;
-        final CancellableTaskDefinition<PatchInfo, PatchInfo> task = host.getRenderTask(patchInfo);
-        drawPatchTask = task;
-        final PatchInfo[] resultHolder = new PatchInfo[1];
-        drawPatchJob = AppCoroutines.launchIo(AppCoroutines.ioScope(), new Runnable() {
-            @Override public void run() {
-                try {
-                    PatchInfo result = task.doInBackground(patchInfo);
-                    resultHolder[0] = result;
-                } catch (Throwable ignore) {
-                } finally {
-                    post(new Runnable() {
-                        @Override public void run() {
-                            try {
-                                if (resultHolder[0] != null && activeGeneration == generation) {
-                                    PatchInfo pi = resultHolder[0];
-                                    host.removeBusyIndicator();
-                                    setArea(pi.viewArea);
-                                    setPatchArea(pi.patchArea);
-                                    setImageBitmap(pi.patchBm);
-                                    requestLayout();
-                                    inFlightBitmap = null;
-                                } else {
-                                    host.removeBusyIndicator();
-                                }
-                            } finally {
-                                try { task.doCleanup(); } catch (Throwable ignore) {}
-                                if (drawPatchTask == task) {
-                                    drawPatchTask = null;
-                                    drawPatchJob = null;
-                                }
-                                if (inFlightBitmap == piForCleanup(resultHolder)) {
-                                    inFlightBitmap = null;
+        addRenderTarget(patchInfo.patchBm);
+        final PatchRenderWork work = new PatchRenderWork(patchInfo, generation, host.getRenderTask(patchInfo));
+        drawPatchWork = work;
+        RenderScheduler.Request request = new RenderScheduler.Request(renderPriority, work).coalesceKey(this);
+        if (renderPriority == RenderScheduler.Priority.PREFETCH) {
+            // Prefetch renders are preempted by visible work; re-render once the queue drains.
+            request.restartOnPreempt();
+        }
+        drawPatchHandle = RenderScheduler.get().submit(request);
+    }
+
+    /**
+     * One patch render. The first attempt uses the task created on the UI thread; attempts after
+     * a preemption create a fresh task (and cookie).
+     */
+    private final class PatchRenderWork implements RenderScheduler.Work {
+        private final PatchInfo patchInfo;
+        private final long generation;
+        private CancellableTaskDefinition<PatchInfo, PatchInfo> initialTask;
+        private volatile CancellableTaskDefinition<PatchInfo, PatchInfo> task;
+        private volatile boolean attemptAborted;
+
+        PatchRenderWork(PatchInfo patchInfo, long generation, CancellableTaskDefinition<PatchInfo, PatchInfo> initialTask) {
+            this.patchInfo = patchInfo;
+            this.generation = generation;
+            this.initialTask = initialTask;
+        }
+
+        @Override public void run() {
+            CancellableTaskDefinition<PatchInfo, PatchInfo> t = initialTask;
+            initialTask = null;
+            if (t == null) t = host.getRenderTask(patchInfo);
+            attemptAborted = false;
+            task = t;
+            PatchInfo result = null;
+            try {
+                result = t.doInBackground(patchInfo);
+            } catch (Throwable ignore) {
+            } finally {
+                task = null;
+                final CancellableTaskDefinition<PatchInfo, PatchInfo> finished = t;
+                final boolean aborted = attemptAborted;
+                final PatchInfo rendered = result;
+                final PatchInfo applied = aborted ? null : result;
+                post(new Runnable() {
+                    @Override public void run() {
+                        try {
+                            if (applied != null && applied.dirtyArea != null) {
+                                // Region update: copy the offscreen render into the bitmap on screen.
+                                host.removeBusyIndicator();
+                                if (activeGeneration == generation && applied.regionBm != null
+                                        && bitmap == applied.patchBm) {
+                                    new Canvas(bitmap).drawBitmap(applied.regionBm,
+                                            applied.dirtyArea.left, applied.dirtyArea.top, null);
+                                    invalidate();
                                 }
+                                inFlightBitmap = null;
+                            } else if (applied != null && activeGeneration == generation) {
+                                host.removeBusyIndicator();
+                                setArea(applied.viewArea);
+                                setPatchArea(applied.patchArea);
+                                setImageBitmap(applied.patchBm);
+                                requestLayout();
+                                inFlightBitmap = null;
+                            } else {
+                                host.removeBusyIndicator();
+                            }
+                        } finally {
+                            try { finished.doCleanup(); } catch (Throwable ignore) {}
+                            // A preempted attempt is re-queued by the scheduler; keep the handle so it stays cancellable.
+                            if (!aborted && drawPatchWork == PatchRenderWork.this) {
+                                drawPatchWork = null;
+                                drawPatchHandle = null;
+                            }
+                            if (applied != null && inFlightBitmap == applied.patchBm) {
+                                inFlightBitmap = null;
+                            }
+                            if (rendered != null && rendered.regionBm != null) {
+                                BitmapPool.get().release(rendered.regionBm);
                             }
                         }
-                    });
-                }
+                    }
+                });
             }
-        });
-    }
+        }
 
-    private static Bitmap piForCleanup(PatchInfo[] holder) {
-        if (holder == null || holder.length == 0) return null;
-        PatchInfo pi = holder[0];
-        return pi != null ? pi.patchBm : null;
+        @Override public void abort() {
+            attemptAborted = true;
+            CancellableTaskDefinition<PatchInfo, PatchInfo> t = task;
+            if (t != null) {
+                try { t.doCancel(); } catch (Throwable ignore) {}
+            }
+        }
+
+        @Override public void onDropped() {
+            final CancellableTaskDefinition<PatchInfo, PatchInfo> t = initialTask;
+            initialTask = null;
+            post(new Runnable() {
+                @Override public void run() {
+                    host.removeBusyIndicator();
+                    if (t != null) {
+                        try { t.doCleanup(); } catch (Throwable ignore) {}
+                    }
+                    removeRenderTarget(patchInfo.patchBm);
+                }
+            });
+        }
+
+        @Override public void onFinished() {
+            post(new Runnable() {
+                @Override public void run() {
+                    removeRenderTarget(patchInfo.patchBm);
+                }
+            });
+        }
     }
 
     public void cancelRenderInBackground() {
         // Invalidate any queued UI apply from the previous render job.
         activeGeneration = renderGeneration.incrementAndGet();
 
-        if (drawPatchJob != null) {
-            drawPatchJob.cancel(null);
-            drawPatchJob = null;
-        }
-        if (drawPatchTask != null) {
+        if (drawPatchHandle != null) {
             // Abort the native Cookie when the in-flight render targets a bitmap that is not
             // currently displayed. This prevents concurrent renders into our 2-bitmap pool
             // (common during pinch-zoom) from racing and crashing native rendering.
-            try {
-                if (inFlightBitmap != null && inFlightBitmap != bitmap) {
-                    drawPatchTask.doCancel();
-                }
-            } catch (Throwable ignore) {
-            }
-            drawPatchTask = null;
+            boolean abort = inFlightBitmap != null && inFlightBitmap != bitmap;
+            drawPatchHandle.cancel(abort);
+            drawPatchHandle = null;
         }
+        drawPatchWork = null;
         inFlightBitmap = null;
     }
 
@@ -7,6 +7,7 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import org.opendroidpdf.PatchInfo;
+import org.opendroidpdf.app.render.RenderScheduler;
 
 public final class PageRenderOrchestrator {
     private PageRenderOrchestrator() {}
@@ -19,7 +20,8 @@ public final class PageRenderOrchestrator {
             Bitmap bitmap,
             boolean update,
             PagePatchView.Host host,
-            View overlayToFront) {
+            View overlayToFront,
+            RenderScheduler.Priority priority) {
         PatchInfo patchInfo = new PatchInfo(viewArea, bitmap, current == null ? null : current.getArea(), update);
         if (!patchInfo.intersects) return current;
         if (!patchInfo.areaChanged && !update) return current;
@@ -28,10 +30,33 @@ public final class PageRenderOrchestrator {
             parent.addView(current);
             if (overlayToFront != null) overlayToFront.bringToFront();
         }
+        current.setRenderPriority(priority);
         current.renderInBackground(patchInfo);
         return current;
     }
 
+    /**
+     * Re-renders {@code dirtyPageArea} (page view pixels) of the patch {@code current} shows. The
+     * region is rendered offscreen and copied into {@code bitmap} on the UI thread. Returns false
+     * when there is no settled patch of {@code viewArea} to update; the caller then renders the
+     * view from scratch.
+     */
+    public static boolean renderRegion(
+            PagePatchView current,
+            Rect viewArea,
+            Bitmap bitmap,
+            Rect dirtyPageArea,
+            RenderScheduler.Priority priority) {
+        if (current == null || bitmap == null || current.getImageBitmap() != bitmap) return false;
+        if (current.isRenderPending()) return false;
+        PatchInfo patchInfo = new PatchInfo(viewArea, bitmap, current.getArea(), dirtyPageArea);
+        if (patchInfo.dirtyArea == null) return false;
+        if (!patchInfo.intersects || patchInfo.dirtyArea.isEmpty()) return true;
+        current.setRenderPriority(priority);
+        current.renderInBackground(patchInfo);
+        return true;
+    }
+
     /**
      * If an existing hi‑res patch still matches the current container size, lay it out and
      * make it visible; otherwise hide and reset it so a fresh patch can be rendered.
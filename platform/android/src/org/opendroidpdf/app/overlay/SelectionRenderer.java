@@ -6,11 +6,17 @@ import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.RectF;
 
+import androidx.annotation.Nullable;
+
 import org.opendroidpdf.TextWord;
+import org.opendroidpdf.app.selection.TextBounds;
+import org.opendroidpdf.app.selection.TextLineIndex;
+import org.opendroidpdf.app.selection.TextSelectionModel;
 
 public final class SelectionRenderer {
     private final Path leftMarker = new Path();
     private final Path rightMarker = new Path();
+    @Nullable private TextSelectionModel selection;
 
     public void draw(Canvas canvas,
                      Resources res,
@@ -34,43 +40,23 @@ public final class SelectionRenderer {
         float docRelXmaxSelection = Float.NEGATIVE_INFINITY;
         float docRelXminSelection = Float.POSITIVE_INFINITY;
 
-        for (TextWord[] line : text) {
-            if (line == null || line.length == 0) continue;
-            if (!(line[0].bottom > selectBox.top && line[0].top < selectBox.bottom)) continue;
-
-            boolean firstLine = line[0].top < selectBox.top;
-            boolean lastLine = line[0].bottom > selectBox.bottom;
-            float start;
-            float end;
-            if (firstLine && lastLine) {
-                start = Math.min(selectBox.left, selectBox.right);
-                end = Math.max(selectBox.left, selectBox.right);
-            } else if (firstLine) {
-                start = selectBox.left;
-                end = Float.POSITIVE_INFINITY;
-            } else if (lastLine) {
-                start = Float.NEGATIVE_INFINITY;
-                end = selectBox.right;
-            } else {
-                start = Float.NEGATIVE_INFINITY;
-                end = Float.POSITIVE_INFINITY;
-            }
-
-            RectF rect = new RectF();
-            for (TextWord word : line) {
-                if (word.right > start && word.left < end) {
-                    rect.union(word);
-                }
-            }
+        // Handle drags only recompute the lines whose span changed since the last frame.
+        if (selection == null || selection.index().text() != text) {
+            selection = new TextSelectionModel(TextLineIndex.of(text));
+        }
+        selection.update(selectBox.left, selectBox.top, selectBox.right, selectBox.bottom,
+                Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
 
+        for (int i = 0, n = selection.lineCount(); i < n; i++) {
+            TextBounds rect = selection.lineRect(i);
             if (!rect.isEmpty()) {
                 if (firstLineRect == null || firstLineRect.top > rect.top) {
                     if (firstLineRect == null) firstLineRect = new RectF();
-                    firstLineRect.set(rect);
+                    firstLineRect.set(rect.left, rect.top, rect.right, rect.bottom);
                 }
                 if (lastLineRect == null || lastLineRect.bottom < rect.bottom) {
                     if (lastLineRect == null) lastLineRect = new RectF();
-                    lastLineRect.set(rect);
+                    lastLineRect.set(rect.left, rect.top, rect.right, rect.bottom);
                 }
 
                 canvas.drawRect(rect.left * scale, rect.top * scale,
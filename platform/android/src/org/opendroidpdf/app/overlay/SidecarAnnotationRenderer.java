@@ -18,11 +18,13 @@ import androidx.annotation.NonNull;
 import org.opendroidpdf.Annotation;
 import org.opendroidpdf.app.annotation.TextFontFamily;
 import org.opendroidpdf.app.annotation.TextStyleFlags;
+import org.opendroidpdf.app.memory.CacheGovernor;
 import org.opendroidpdf.app.sidecar.SidecarAnnotationProvider;
 import org.opendroidpdf.app.sidecar.model.SidecarHighlight;
 import org.opendroidpdf.app.sidecar.model.SidecarInkStroke;
 import org.opendroidpdf.app.sidecar.model.SidecarNote;
 
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -47,12 +49,19 @@ public final class SidecarAnnotationRenderer {
     private final TextPaint noteTextPaint = new TextPaint();
 
     private static final int NOTE_LAYOUT_CACHE_MAX = 64;
+    private static final long NOTE_LAYOUT_BASE_BYTES = 512L;
+    private static final long NOTE_LAYOUT_LINE_BYTES = 32L;
     private final Map<NoteLayoutKey, StaticLayout> noteLayoutCache = new LinkedHashMap<NoteLayoutKey, StaticLayout>(16, 0.75f, true) {
         @Override
         protected boolean removeEldestEntry(Map.Entry<NoteLayoutKey, StaticLayout> eldest) {
             return size() > NOTE_LAYOUT_CACHE_MAX;
         }
     };
+    private final CacheGovernor.Registration noteLayoutRegistration = CacheGovernor.get().register(
+            "noteLayouts", CacheGovernor.PRIORITY_LAYOUT, 0f, new CacheGovernor.Trimmable() {
+                @Override public long sizeBytes() { return noteLayoutBytes(); }
+                @Override public void trimToFraction(float fraction) { trimNoteLayouts(fraction); }
+            });
 
     public SidecarAnnotationRenderer() {
         inkPaint.setAntiAlias(true);
@@ -338,7 +347,10 @@ public final class SidecarAnnotationRenderer {
                                    float lineHeight,
                                    float textIndentPt) {
         NoteLayoutKey key = new NoteLayoutKey(noteId, text, widthDocPx, fontSizeDoc, color, fontFamily, fontStyleFlags, lineHeight, textIndentPt);
-        StaticLayout cached = noteLayoutCache.get(key);
+        StaticLayout cached;
+        synchronized (noteLayoutCache) {
+            cached = noteLayoutCache.get(key);
+        }
         if (cached != null) return cached;
 
         // StaticLayout keeps a reference to the paint; don't reuse a mutable shared TextPaint.
@@ -367,10 +379,36 @@ public final class SidecarAnnotationRenderer {
                 0.0f,
                 false
         );
-        noteLayoutCache.put(key, layout);
+        synchronized (noteLayoutCache) {
+            noteLayoutCache.put(key, layout);
+        }
         return layout;
     }
 
+    /** Rough estimate: the text plus per-line bookkeeping; the layouts share their paint. */
+    private long noteLayoutBytes() {
+        long total = 0L;
+        synchronized (noteLayoutCache) {
+            for (Map.Entry<NoteLayoutKey, StaticLayout> e : noteLayoutCache.entrySet()) {
+                total += NOTE_LAYOUT_BASE_BYTES + 2L * e.getKey().text.length()
+                        + NOTE_LAYOUT_LINE_BYTES * e.getValue().getLineCount();
+            }
+        }
+        return total;
+    }
+
+    /** Evicts least recently used layouts first. */
+    private void trimNoteLayouts(float fraction) {
+        synchronized (noteLayoutCache) {
+            int keep = (int) (noteLayoutCache.size() * fraction);
+            Iterator<NoteLayoutKey> it = noteLayoutCache.keySet().iterator();
+            while (noteLayoutCache.size() > keep && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
     private static final class NoteLayoutKey {
         private final String noteId;
         private final String text;
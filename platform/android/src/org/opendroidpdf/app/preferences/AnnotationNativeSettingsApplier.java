@@ -8,19 +8,32 @@ public final class AnnotationNativeSettingsApplier {
     private AnnotationNativeSettingsApplier() {}
 
     public static void apply(MuPDFCore core, EditorPrefsSnapshot snap) {
+        apply(core, null, snap);
+    }
+
+    /** Pushes only the colors that differ from {@code applied} (all of them when it is null). */
+    public static void apply(MuPDFCore core, EditorPrefsSnapshot applied, EditorPrefsSnapshot snap) {
         if (core == null || snap == null) return;
 
         int idx = snap.highlightColorIndex;
-        core.setHighlightColor(ColorPalette.getR(idx), ColorPalette.getG(idx), ColorPalette.getB(idx));
+        if (applied == null || applied.highlightColorIndex != idx) {
+            core.setHighlightColor(ColorPalette.getR(idx), ColorPalette.getG(idx), ColorPalette.getB(idx));
+        }
 
         idx = snap.underlineColorIndex;
-        core.setUnderlineColor(ColorPalette.getR(idx), ColorPalette.getG(idx), ColorPalette.getB(idx));
+        if (applied == null || applied.underlineColorIndex != idx) {
+            core.setUnderlineColor(ColorPalette.getR(idx), ColorPalette.getG(idx), ColorPalette.getB(idx));
+        }
 
         idx = snap.strikeoutColorIndex;
-        core.setStrikeoutColor(ColorPalette.getR(idx), ColorPalette.getG(idx), ColorPalette.getB(idx));
+        if (applied == null || applied.strikeoutColorIndex != idx) {
+            core.setStrikeoutColor(ColorPalette.getR(idx), ColorPalette.getG(idx), ColorPalette.getB(idx));
+        }
 
         idx = snap.textAnnotIconColorIndex;
-        core.setTextAnnotIconColor(ColorPalette.getR(idx), ColorPalette.getG(idx), ColorPalette.getB(idx));
+        if (applied == null || applied.textAnnotIconColorIndex != idx) {
+            core.setTextAnnotIconColor(ColorPalette.getR(idx), ColorPalette.getG(idx), ColorPalette.getB(idx));
+        }
     }
 }
 
@@ -1,5 +1,7 @@
 package org.opendroidpdf.app.preferences;
 
+import java.util.Objects;
+
 /** Immutable snapshot of activity-level preferences. */
 public final class AppPrefsSnapshot {
     public final boolean keepScreenOn;
@@ -16,5 +18,20 @@ public final class AppPrefsSnapshot {
         this.saveOnDestroy = saveOnDestroy;
         this.numberRecentFiles = numberRecentFiles;
     }
-}
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AppPrefsSnapshot)) return false;
+        AppPrefsSnapshot that = (AppPrefsSnapshot) o;
+        return keepScreenOn == that.keepScreenOn
+                && saveOnStop == that.saveOnStop
+                && saveOnDestroy == that.saveOnDestroy
+                && numberRecentFiles == that.numberRecentFiles;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(keepScreenOn, saveOnStop, saveOnDestroy, numberRecentFiles);
+    }
+}
@@ -1,5 +1,7 @@
 package org.opendroidpdf.app.preferences;
 
+import java.util.Objects;
+
 /** Immutable snapshot of editor/annotation preferences (excluding pen thickness/color). */
 public final class EditorPrefsSnapshot {
     public final float eraserThickness;
@@ -23,5 +25,23 @@ public final class EditorPrefsSnapshot {
         this.strikeoutColorIndex = strikeoutColorIndex;
         this.textAnnotIconColorIndex = textAnnotIconColorIndex;
     }
-}
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EditorPrefsSnapshot)) return false;
+        EditorPrefsSnapshot that = (EditorPrefsSnapshot) o;
+        return Float.compare(eraserThickness, that.eraserThickness) == 0
+                && smartTextSelectionEnabled == that.smartTextSelectionEnabled
+                && highlightColorIndex == that.highlightColorIndex
+                && underlineColorIndex == that.underlineColorIndex
+                && strikeoutColorIndex == that.strikeoutColorIndex
+                && textAnnotIconColorIndex == that.textAnnotIconColorIndex;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(eraserThickness, smartTextSelectionEnabled, highlightColorIndex,
+                underlineColorIndex, strikeoutColorIndex, textAnnotIconColorIndex);
+    }
+}
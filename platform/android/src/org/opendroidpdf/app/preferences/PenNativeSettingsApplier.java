@@ -14,10 +14,19 @@ public final class PenNativeSettingsApplier {
     private PenNativeSettingsApplier() {}
 
     public static void apply(MuPDFCore core, PenPrefsSnapshot snap) {
+        apply(core, null, snap);
+    }
+
+    /** Pushes only the values that differ from {@code applied} (everything when it is null). */
+    public static void apply(MuPDFCore core, PenPrefsSnapshot applied, PenPrefsSnapshot snap) {
         if (core == null || snap == null) return;
-        // Match legacy behavior: MuPDF expects a slightly smaller value than the UI-facing thickness.
-        core.setInkThickness(snap.thickness * 0.5f);
-        int idx = snap.colorIndex;
-        core.setInkColor(ColorPalette.getR(idx), ColorPalette.getG(idx), ColorPalette.getB(idx));
+        if (applied == null || Float.compare(applied.thickness, snap.thickness) != 0) {
+            // Match legacy behavior: MuPDF expects a slightly smaller value than the UI-facing thickness.
+            core.setInkThickness(snap.thickness * 0.5f);
+        }
+        if (applied == null || applied.colorIndex != snap.colorIndex) {
+            int idx = snap.colorIndex;
+            core.setInkColor(ColorPalette.getR(idx), ColorPalette.getG(idx), ColorPalette.getB(idx));
+        }
     }
 }
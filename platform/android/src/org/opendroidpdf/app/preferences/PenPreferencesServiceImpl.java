@@ -3,30 +3,28 @@ package org.opendroidpdf.app.preferences;
 import org.opendroidpdf.app.services.PenPreferencesService;
 
 /**
- * Default pen prefs service backed by a PenPrefsStore. All Android storage
- * concerns live in the store, not the service interface.
+ * Default pen prefs service over {@link PreferencesRepository}. Reads come from the in-memory
+ * snapshot; writes update it immediately and are persisted in the background.
  */
 public class PenPreferencesServiceImpl implements PenPreferencesService {
-    private final PenPrefsStore store;
+    private final PreferencesRepository preferences;
 
-    public PenPreferencesServiceImpl(PenPrefsStore store) {
-        this.store = store;
+    public PenPreferencesServiceImpl(PreferencesRepository preferences) {
+        this.preferences = preferences;
     }
 
     @Override
     public PenPrefsSnapshot get() {
-        return store.load();
+        return preferences.pen();
     }
 
     @Override
     public void setThickness(float value) {
-        PenPrefsSnapshot snap = store.load().withThickness(value);
-        store.save(snap);
+        preferences.updatePen(preferences.pen().withThickness(value));
     }
 
     @Override
     public void setColorIndex(int index) {
-        PenPrefsSnapshot snap = store.load().withColorIndex(index);
-        store.save(snap);
+        preferences.updatePen(preferences.pen().withColorIndex(index));
     }
 }
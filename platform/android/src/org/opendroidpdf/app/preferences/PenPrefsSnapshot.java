@@ -1,5 +1,7 @@
 package org.opendroidpdf.app.preferences;
 
+import java.util.Objects;
+
 /**
  * Immutable view of current pen preferences. Keeps the service API free of
  * Android storage types so callers can consume plain data.
@@ -33,4 +35,22 @@ public final class PenPrefsSnapshot {
     public PenPrefsSnapshot withColorIndex(int idx) {
         return new PenPrefsSnapshot(thickness, idx, minThickness, maxThickness, stepThickness, defaultThickness);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PenPrefsSnapshot)) return false;
+        PenPrefsSnapshot that = (PenPrefsSnapshot) o;
+        return Float.compare(thickness, that.thickness) == 0
+                && colorIndex == that.colorIndex
+                && Float.compare(minThickness, that.minThickness) == 0
+                && Float.compare(maxThickness, that.maxThickness) == 0
+                && Float.compare(stepThickness, that.stepThickness) == 0
+                && Float.compare(defaultThickness, that.defaultThickness) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(thickness, colorIndex, minThickness, maxThickness, stepThickness, defaultThickness);
+    }
 }
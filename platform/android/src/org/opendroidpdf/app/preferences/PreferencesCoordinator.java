@@ -7,13 +7,14 @@ import androidx.annotation.Nullable;
 
 import org.opendroidpdf.MuPDFReaderView;
 import org.opendroidpdf.OpenDroidPDFCore;
-import org.opendroidpdf.app.services.PenPreferencesService;
-import org.opendroidpdf.app.services.TextStylePreferencesService;
+
+import java.lang.ref.WeakReference;
 
 /**
- * Single owner for preference snapshots and their application to the active activity/docView/core.
+ * Single owner for applying preference snapshots to the active activity/docView/core.
  * <p>
- * Stores own persistence; this class owns "how settings affect runtime objects".
+ * {@link PreferencesRepository} owns the snapshots and their persistence; this class owns "how
+ * settings affect runtime objects".
  */
 public final class PreferencesCoordinator {
 
@@ -25,115 +26,77 @@ public final class PreferencesCoordinator {
     }
 
     private final Host host;
-    private final AppPrefsStore appPrefsStore;
-    private final ViewerPrefsStore viewerPrefsStore;
-    private final EditorPrefsStore editorPrefsStore;
-    private final PenPreferencesService penPreferences;
-    private final TextStylePreferencesService textStylePreferences;
-
-    // Cached snapshots for view/controller consumption (avoid SharedPreferences reads in views).
-    private volatile PenPrefsSnapshot cachedPenPrefs;
-    private volatile EditorPrefsSnapshot cachedEditorPrefs;
-    private volatile TextStylePrefsSnapshot cachedTextStylePrefs;
-
-    public PreferencesCoordinator(Host host,
-                                  AppPrefsStore appPrefsStore,
-                                  ViewerPrefsStore viewerPrefsStore,
-                                  EditorPrefsStore editorPrefsStore,
-                                  PenPreferencesService penPreferences,
-                                  TextStylePreferencesService textStylePreferences) {
+    private final PreferencesRepository preferences;
+
+    // What the last core saw, so refreshes only push changed values across JNI. Main thread only.
+    @Nullable private WeakReference<OpenDroidPDFCore> appliedCore;
+    @Nullable private PenPrefsSnapshot appliedPen;
+    @Nullable private EditorPrefsSnapshot appliedEditor;
+    @Nullable private TextStylePrefsSnapshot appliedTextStyle;
+
+    public PreferencesCoordinator(Host host, PreferencesRepository preferences) {
         this.host = host;
-        this.appPrefsStore = appPrefsStore;
-        this.viewerPrefsStore = viewerPrefsStore;
-        this.editorPrefsStore = editorPrefsStore;
-        this.penPreferences = penPreferences;
-        this.textStylePreferences = textStylePreferences;
-
-        // Best-effort eager snapshot to avoid nulls before first refreshAndApply().
-        try {
-            this.cachedPenPrefs = penPreferences != null ? penPreferences.get() : null;
-        } catch (Throwable ignore) {
-            this.cachedPenPrefs = null;
-        }
-        try {
-            this.cachedEditorPrefs = editorPrefsStore != null ? editorPrefsStore.load() : null;
-        } catch (Throwable ignore) {
-            this.cachedEditorPrefs = null;
-        }
-        try {
-            this.cachedTextStylePrefs = textStylePreferences != null ? textStylePreferences.get() : null;
-        } catch (Throwable ignore) {
-            this.cachedTextStylePrefs = null;
-        }
+        this.preferences = preferences;
     }
 
-    /** Current pen prefs snapshot (cached; refreshed on {@link #refreshAndApply()}). */
+    public PreferencesRepository preferences() {
+        return preferences;
+    }
+
+    /** Current pen prefs snapshot (served from memory by {@link PreferencesRepository}). */
     public PenPrefsSnapshot penPrefsSnapshot() {
-        PenPrefsSnapshot snap = cachedPenPrefs;
-        if (snap != null) return snap;
-        snap = penPreferences.get();
-        cachedPenPrefs = snap;
-        return snap;
+        return preferences.pen();
     }
 
-    /** Current editor prefs snapshot (cached; refreshed on {@link #refreshAndApply()}). */
+    /** Current editor prefs snapshot (served from memory by {@link PreferencesRepository}). */
     public EditorPrefsSnapshot editorPrefsSnapshot() {
-        EditorPrefsSnapshot snap = cachedEditorPrefs;
-        if (snap != null) return snap;
-        snap = editorPrefsStore.load();
-        cachedEditorPrefs = snap;
-        return snap;
+        return preferences.editor();
     }
 
-    /** Current FreeText style prefs snapshot (cached; refreshed on {@link #refreshAndApply()}). */
+    /** Current FreeText style prefs snapshot (served from memory by {@link PreferencesRepository}). */
     public TextStylePrefsSnapshot textStylePrefsSnapshot() {
-        TextStylePrefsSnapshot snap = cachedTextStylePrefs;
-        if (snap != null) return snap;
-        snap = textStylePreferences.get();
-        cachedTextStylePrefs = snap;
-        return snap;
+        return preferences.textStyle();
     }
 
-    /** Reloads snapshots from stores and applies them to the current activity/docView/core. */
+    /** Applies the current snapshots to the current activity/docView/core. */
     public void refreshAndApply() {
-        AppPrefsSnapshot app = appPrefsStore.load();
-        ViewerPrefsSnapshot viewer = viewerPrefsStore.load();
-        PenPrefsSnapshot pen = penPreferences.get();
-        EditorPrefsSnapshot editor = editorPrefsStore.load();
-        TextStylePrefsSnapshot textStyle = textStylePreferences.get();
-        cachedPenPrefs = pen;
-        cachedEditorPrefs = editor;
-        cachedTextStylePrefs = textStyle;
-
+        AppPrefsSnapshot app = preferences.app();
         applyKeepScreenOn(host.activity(), app.keepScreenOn);
         host.setSaveFlags(app.saveOnStop, app.saveOnDestroy, app.numberRecentFiles);
 
         MuPDFReaderView docView = host.docViewOrNull();
         if (docView != null) {
-            docView.applyViewerPrefs(viewer);
+            docView.applyViewerPrefs(preferences.viewer());
         }
 
-        OpenDroidPDFCore core = host.coreOrNull();
-        if (core != null) {
-            // Pen settings must be applied via the service snapshot so native/core settings can't drift.
-            PenNativeSettingsApplier.apply(core, pen);
-            AnnotationNativeSettingsApplier.apply(core, editor);
-            TextStyleNativeSettingsApplier.apply(core, textStyle);
-        }
+        applyChangedToCore(host.coreOrNull());
     }
 
     /** Apply current preferences to the new core (e.g., after opening a document). */
     public void applyToCore(@Nullable OpenDroidPDFCore core) {
+        applyChangedToCore(core);
+    }
+
+    private void applyChangedToCore(@Nullable OpenDroidPDFCore core) {
         if (core == null) return;
-        PenNativeSettingsApplier.apply(core, penPrefsSnapshot());
-        AnnotationNativeSettingsApplier.apply(core, editorPrefsSnapshot());
-        TextStyleNativeSettingsApplier.apply(core, textStylePrefsSnapshot());
+        boolean sameCore = appliedCore != null && appliedCore.get() == core;
+        PenPrefsSnapshot pen = preferences.pen();
+        EditorPrefsSnapshot editor = preferences.editor();
+        TextStylePrefsSnapshot textStyle = preferences.textStyle();
+        // Pen settings must be applied via the service snapshot so native/core settings can't drift.
+        PenNativeSettingsApplier.apply(core, sameCore ? appliedPen : null, pen);
+        AnnotationNativeSettingsApplier.apply(core, sameCore ? appliedEditor : null, editor);
+        TextStyleNativeSettingsApplier.apply(core, sameCore ? appliedTextStyle : null, textStyle);
+        if (!sameCore) appliedCore = new WeakReference<>(core);
+        appliedPen = pen;
+        appliedEditor = editor;
+        appliedTextStyle = textStyle;
     }
 
     /** Apply current viewer preferences to the docView (e.g., after creating/attaching it). */
     public void applyToDocView(@Nullable MuPDFReaderView docView) {
         if (docView == null) return;
-        docView.applyViewerPrefs(viewerPrefsStore.load());
+        docView.applyViewerPrefs(preferences.viewer());
     }
 
     private static void applyKeepScreenOn(Activity activity, boolean keepScreenOn) {
@@ -0,0 +1,191 @@
+package org.opendroidpdf.app.preferences;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * App-scoped, in-memory owner of the typed preference snapshots.
+ *
+ * <p>Each snapshot is loaded from its store once and then served from memory. Pen and FreeText
+ * style updates swap the snapshot right away and notify listeners. They are written back on
+ * {@code persistExecutor} {@link #PERSIST_DELAY_MS} later, so a slider drag costs one write.
+ * Changes made elsewhere (the settings screen) arrive through the SharedPreferences listener.
+ * Snapshots are reloaded then, and listeners hear only about values that actually changed.</p>
+ */
+public final class PreferencesRepository implements SharedPreferences.OnSharedPreferenceChangeListener {
+    static final long PERSIST_DELAY_MS = 250L;
+
+    /** Called on the thread that made the change, after the new snapshots are visible. */
+    public interface Listener {
+        void onPreferencesChanged(@NonNull PreferencesRepository preferences);
+    }
+
+    private final PenPrefsStore penStore;
+    private final TextStylePrefsStore textStyleStore;
+    private final EditorPrefsStore editorStore;
+    private final ViewerPrefsStore viewerStore;
+    private final AppPrefsStore appStore;
+    @Nullable private final ScheduledExecutorService persistExecutor;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this; null until first read.
+    private PenPrefsSnapshot pen;
+    private TextStylePrefsSnapshot textStyle;
+    private EditorPrefsSnapshot editor;
+    private ViewerPrefsSnapshot viewer;
+    private AppPrefsSnapshot app;
+
+    // Written by this class but not yet handed to the store; guarded by this.
+    @Nullable private PenPrefsSnapshot unsavedPen;
+    @Nullable private TextStylePrefsSnapshot unsavedTextStyle;
+    private int savesInFlight;
+    private boolean persistScheduled;
+
+    /** {@code persistExecutor} null: updates are written only on {@link #flush()} (tests). */
+    public PreferencesRepository(@NonNull PenPrefsStore penStore,
+                                 @NonNull TextStylePrefsStore textStyleStore,
+                                 @NonNull EditorPrefsStore editorStore,
+                                 @NonNull ViewerPrefsStore viewerStore,
+                                 @NonNull AppPrefsStore appStore,
+                                 @Nullable ScheduledExecutorService persistExecutor) {
+        this.penStore = penStore;
+        this.textStyleStore = textStyleStore;
+        this.editorStore = editorStore;
+        this.viewerStore = viewerStore;
+        this.appStore = appStore;
+        this.persistExecutor = persistExecutor;
+    }
+
+    @NonNull
+    public synchronized PenPrefsSnapshot pen() {
+        if (pen == null) pen = penStore.load();
+        return pen;
+    }
+
+    @NonNull
+    public synchronized TextStylePrefsSnapshot textStyle() {
+        if (textStyle == null) textStyle = textStyleStore.load();
+        return textStyle;
+    }
+
+    @NonNull
+    public synchronized EditorPrefsSnapshot editor() {
+        if (editor == null) editor = editorStore.load();
+        return editor;
+    }
+
+    @NonNull
+    public synchronized ViewerPrefsSnapshot viewer() {
+        if (viewer == null) viewer = viewerStore.load();
+        return viewer;
+    }
+
+    @NonNull
+    public synchronized AppPrefsSnapshot app() {
+        if (app == null) app = appStore.load();
+        return app;
+    }
+
+    public void updatePen(@NonNull PenPrefsSnapshot next) {
+        synchronized (this) {
+            if (next.equals(pen())) return;
+            pen = next;
+            unsavedPen = next;
+        }
+        schedulePersist();
+        notifyListeners();
+    }
+
+    public void updateTextStyle(@NonNull TextStylePrefsSnapshot next) {
+        synchronized (this) {
+            if (next.equals(textStyle())) return;
+            textStyle = next;
+            unsavedTextStyle = next;
+        }
+        schedulePersist();
+        notifyListeners();
+    }
+
+    public void addListener(@NonNull Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(@NonNull Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Hands pending updates to the stores on the calling thread. */
+    public void flush() {
+        PenPrefsSnapshot penToSave;
+        TextStylePrefsSnapshot textStyleToSave;
+        synchronized (this) {
+            persistScheduled = false;
+            penToSave = unsavedPen;
+            textStyleToSave = unsavedTextStyle;
+            unsavedPen = null;
+            unsavedTextStyle = null;
+            if (penToSave == null && textStyleToSave == null) return;
+            savesInFlight++;
+        }
+        try {
+            if (penToSave != null) penStore.save(penToSave);
+            if (textStyleToSave != null) textStyleStore.save(textStyleToSave);
+        } finally {
+            synchronized (this) {
+                savesInFlight--;
+            }
+        }
+    }
+
+    /** Reloads every snapshot that was read before and notifies listeners if any changed. */
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        boolean changed = false;
+        synchronized (this) {
+            // Our own writes echo back here; while one is pending the in-memory value is newer.
+            boolean writing = unsavedPen != null || unsavedTextStyle != null || savesInFlight > 0;
+            if (pen != null && !writing) {
+                PenPrefsSnapshot loaded = penStore.load();
+                if (!loaded.equals(pen)) { pen = loaded; changed = true; }
+            }
+            if (textStyle != null && !writing) {
+                TextStylePrefsSnapshot loaded = textStyleStore.load();
+                if (!loaded.equals(textStyle)) { textStyle = loaded; changed = true; }
+            }
+            if (editor != null) {
+                EditorPrefsSnapshot loaded = editorStore.load();
+                if (!loaded.equals(editor)) { editor = loaded; changed = true; }
+            }
+            if (viewer != null) {
+                ViewerPrefsSnapshot loaded = viewerStore.load();
+                if (!loaded.equals(viewer)) { viewer = loaded; changed = true; }
+            }
+            if (app != null) {
+                AppPrefsSnapshot loaded = appStore.load();
+                if (!loaded.equals(app)) { app = loaded; changed = true; }
+            }
+        }
+        if (changed) notifyListeners();
+    }
+
+    private void schedulePersist() {
+        if (persistExecutor == null) return;
+        synchronized (this) {
+            if (persistScheduled) return;
+            persistScheduled = true;
+        }
+        persistExecutor.schedule(this::flush, PERSIST_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void notifyListeners() {
+        for (Listener l : listeners) {
+            l.onPreferencesChanged(this);
+        }
+    }
+}
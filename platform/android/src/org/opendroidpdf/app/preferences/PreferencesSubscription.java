@@ -1,54 +1,54 @@
 package org.opendroidpdf.app.preferences;
 
-import android.content.Context;
-import android.content.SharedPreferences;
+import org.opendroidpdf.app.AppCoroutines;
 
 /**
- * Lifecycle-owned SharedPreferences listener registration for applying preference snapshots.
+ * Lifecycle-owned {@link PreferencesRepository} listener registration for applying preference
+ * snapshots.
  * <p>
- * This keeps SharedPreferences plumbing out of UI types (Activity/Fragment) and ensures we always
- * unregister on teardown.
+ * This keeps preference plumbing out of UI types (Activity/Fragment) and ensures we always
+ * unregister (and flush pending writes) on teardown.
  */
 public final class PreferencesSubscription {
 
-    private final SharedPreferences prefs;
-    private final SharedPreferences.OnSharedPreferenceChangeListener listener;
+    private final PreferencesCoordinator coordinator;
+    private final PreferencesRepository preferences;
+    private final PreferencesRepository.Listener listener = this::onPreferencesChanged;
     private boolean active;
 
-    private PreferencesSubscription(SharedPreferences prefs,
-                                    SharedPreferences.OnSharedPreferenceChangeListener listener) {
-        this.prefs = prefs;
-        this.listener = listener;
+    private PreferencesSubscription(PreferencesCoordinator coordinator) {
+        this.coordinator = coordinator;
+        this.preferences = coordinator.preferences();
     }
 
-    public static PreferencesSubscription start(Context context,
-                                                PreferencesCoordinator preferencesCoordinator) {
-        return start(context.getSharedPreferences(PreferencesNames.CURRENT, Context.MODE_MULTI_PROCESS),
-                preferencesCoordinator);
-    }
-
-    public static PreferencesSubscription start(SharedPreferences prefs,
-                                                PreferencesCoordinator preferencesCoordinator) {
-        SharedPreferences.OnSharedPreferenceChangeListener listener =
-                (sharedPrefs, key) -> preferencesCoordinator.refreshAndApply();
-        PreferencesSubscription subscription = new PreferencesSubscription(prefs, listener);
+    public static PreferencesSubscription start(PreferencesCoordinator preferencesCoordinator) {
+        PreferencesSubscription subscription = new PreferencesSubscription(preferencesCoordinator);
         subscription.register();
         return subscription;
     }
 
+    private void onPreferencesChanged(PreferencesRepository preferences) {
+        // Changes can arrive on the SharedPreferences echo of another thread; apply on main, and
+        // only while still subscribed.
+        AppCoroutines.launchMain(AppCoroutines.mainScope(), () -> {
+            if (active) coordinator.refreshAndApply();
+        });
+    }
+
     public void stop() {
         unregister();
+        preferences.flush();
     }
 
     private void register() {
         if (active) return;
-        prefs.registerOnSharedPreferenceChangeListener(listener);
+        preferences.addListener(listener);
         active = true;
     }
 
     private void unregister() {
         if (!active) return;
-        prefs.unregisterOnSharedPreferenceChangeListener(listener);
+        preferences.removeListener(listener);
         active = false;
     }
 }
@@ -14,7 +14,13 @@ public final class TextStyleNativeSettingsApplier {
     private TextStyleNativeSettingsApplier() {}
 
     public static void apply(MuPDFCore core, TextStylePrefsSnapshot snap) {
+        apply(core, null, snap);
+    }
+
+    /** Skips the native call when {@code applied} already carries the same defaults. */
+    public static void apply(MuPDFCore core, TextStylePrefsSnapshot applied, TextStylePrefsSnapshot snap) {
         if (core == null || snap == null) return;
+        if (snap.equals(applied)) return;
 
         int textIdx = snap.colorIndex;
         int bgIdx = snap.backgroundColorIndex;
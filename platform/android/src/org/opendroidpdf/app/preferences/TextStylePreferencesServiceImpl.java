@@ -3,90 +3,78 @@ package org.opendroidpdf.app.preferences;
 import org.opendroidpdf.app.services.TextStylePreferencesService;
 
 /**
- * Default FreeText style prefs service backed by a TextStylePrefsStore.
- * All Android storage concerns live in the store, not the service interface.
+ * Default FreeText style prefs service over {@link PreferencesRepository}. Reads come from the in-memory
+ * snapshot; writes update it immediately and are persisted in the background.
  */
 public class TextStylePreferencesServiceImpl implements TextStylePreferencesService {
-    private final TextStylePrefsStore store;
+    private final PreferencesRepository preferences;
 
-    public TextStylePreferencesServiceImpl(TextStylePrefsStore store) {
-        this.store = store;
+    public TextStylePreferencesServiceImpl(PreferencesRepository preferences) {
+        this.preferences = preferences;
     }
 
     @Override
     public TextStylePrefsSnapshot get() {
-        return store.load();
+        return preferences.textStyle();
     }
 
     @Override
     public void setFontFamily(int family) {
-        TextStylePrefsSnapshot snap = store.load().withFontFamily(family);
-        store.save(snap);
+        preferences.updateTextStyle(preferences.textStyle().withFontFamily(family));
     }
 
     @Override
     public void setFontStyleFlags(int flags) {
-        TextStylePrefsSnapshot snap = store.load().withFontStyleFlags(flags);
-        store.save(snap);
+        preferences.updateTextStyle(preferences.textStyle().withFontStyleFlags(flags));
     }
 
     @Override
     public void setFontSize(float value) {
-        TextStylePrefsSnapshot snap = store.load().withFontSize(value);
-        store.save(snap);
+        preferences.updateTextStyle(preferences.textStyle().withFontSize(value));
     }
 
     @Override
     public void setLineHeight(float value) {
-        TextStylePrefsSnapshot snap = store.load().withLineHeight(value);
-        store.save(snap);
+        preferences.updateTextStyle(preferences.textStyle().withLineHeight(value));
     }
 
     @Override
     public void setTextIndentPt(float value) {
-        TextStylePrefsSnapshot snap = store.load().withTextIndentPt(value);
-        store.save(snap);
+        preferences.updateTextStyle(preferences.textStyle().withTextIndentPt(value));
     }
 
     @Override
     public void setColorIndex(int index) {
-        TextStylePrefsSnapshot snap = store.load().withColorIndex(index);
-        store.save(snap);
+        preferences.updateTextStyle(preferences.textStyle().withColorIndex(index));
     }
 
     @Override
     public void setBackgroundColorIndex(int index) {
-        TextStylePrefsSnapshot snap = store.load().withBackgroundColorIndex(index);
-        store.save(snap);
+        preferences.updateTextStyle(preferences.textStyle().withBackgroundColorIndex(index));
     }
 
     @Override
     public void setBackgroundOpacity(float value) {
-        TextStylePrefsSnapshot snap = store.load().withBackgroundOpacity(value);
-        store.save(snap);
+        preferences.updateTextStyle(preferences.textStyle().withBackgroundOpacity(value));
     }
 
     @Override
     public void setBorderColorIndex(int index) {
-        TextStylePrefsSnapshot snap = store.load().withBorderColorIndex(index);
-        store.save(snap);
+        preferences.updateTextStyle(preferences.textStyle().withBorderColorIndex(index));
     }
 
     @Override
     public void setBorderWidthPt(float value) {
-        TextStylePrefsSnapshot snap = store.load().withBorderWidthPt(value);
-        store.save(snap);
+        preferences.updateTextStyle(preferences.textStyle().withBorderWidthPt(value));
     }
 
     @Override
     public void setBorderStyle(int style) {
-        TextStylePrefsSnapshot snap = store.load().withBorderStyle(style);
-        store.save(snap);
+        preferences.updateTextStyle(preferences.textStyle().withBorderStyle(style));
     }
 
     @Override
     public void setBorderRadiusPt(float value) {
-        TextStylePrefsSnapshot snap = store.load().withBorderRadiusPt(value);
-        store.save(snap);
+        preferences.updateTextStyle(preferences.textStyle().withBorderRadiusPt(value));
     }
 }
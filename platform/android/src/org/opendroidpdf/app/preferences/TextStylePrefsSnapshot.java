@@ -1,5 +1,7 @@
 package org.opendroidpdf.app.preferences;
 
+import java.util.Objects;
+
 /**
  * Immutable view of current FreeText style preferences (font size + color).
  * Keeps the service API free of Android storage types so callers can consume plain data.
@@ -110,4 +112,33 @@ public final class TextStylePrefsSnapshot {
     public TextStylePrefsSnapshot withBorderRadiusPt(float value) {
         return new TextStylePrefsSnapshot(fontFamily, fontStyleFlags, fontSize, lineHeight, textIndentPt, colorIndex, backgroundColorIndex, backgroundOpacity, borderColorIndex, borderWidthPt, borderStyle, value, minFontSize, maxFontSize, stepFontSize, defaultFontSize);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TextStylePrefsSnapshot)) return false;
+        TextStylePrefsSnapshot that = (TextStylePrefsSnapshot) o;
+        return fontFamily == that.fontFamily
+                && fontStyleFlags == that.fontStyleFlags
+                && Float.compare(fontSize, that.fontSize) == 0
+                && Float.compare(lineHeight, that.lineHeight) == 0
+                && Float.compare(textIndentPt, that.textIndentPt) == 0
+                && colorIndex == that.colorIndex
+                && backgroundColorIndex == that.backgroundColorIndex
+                && Float.compare(backgroundOpacity, that.backgroundOpacity) == 0
+                && borderColorIndex == that.borderColorIndex
+                && Float.compare(borderWidthPt, that.borderWidthPt) == 0
+                && borderStyle == that.borderStyle
+                && Float.compare(borderRadiusPt, that.borderRadiusPt) == 0
+                && Float.compare(minFontSize, that.minFontSize) == 0
+                && Float.compare(maxFontSize, that.maxFontSize) == 0
+                && Float.compare(stepFontSize, that.stepFontSize) == 0
+                && Float.compare(defaultFontSize, that.defaultFontSize) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fontFamily, fontStyleFlags, fontSize, lineHeight, textIndentPt, colorIndex,
+                backgroundColorIndex, backgroundOpacity, borderColorIndex, borderWidthPt, borderStyle, borderRadiusPt);
+    }
 }
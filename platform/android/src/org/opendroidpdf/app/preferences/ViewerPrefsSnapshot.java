@@ -2,6 +2,8 @@ package org.opendroidpdf.app.preferences;
 
 import org.opendroidpdf.app.reader.PagingAxis;
 
+import java.util.Objects;
+
 /** Immutable snapshot of viewer/navigation preferences. */
 public final class ViewerPrefsSnapshot {
     public final boolean useStylus;
@@ -13,4 +15,17 @@ public final class ViewerPrefsSnapshot {
         this.fitWidth = fitWidth;
         this.pagingAxis = pagingAxis != null ? pagingAxis : PagingAxis.HORIZONTAL;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ViewerPrefsSnapshot)) return false;
+        ViewerPrefsSnapshot that = (ViewerPrefsSnapshot) o;
+        return useStylus == that.useStylus && fitWidth == that.fitWidth && pagingAxis == that.pagingAxis;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(useStylus, fitWidth, pagingAxis);
+    }
 }
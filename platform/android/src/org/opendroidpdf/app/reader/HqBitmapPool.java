@@ -2,8 +2,13 @@ package org.opendroidpdf.app.reader;
 
 import android.graphics.Bitmap;
 
+import org.opendroidpdf.app.render.BitmapPool;
+
 /**
  * Alternates between two reusable HQ bitmaps sized to the container.
+ * <p>
+ * Replacements are taken from {@link BitmapPool}. Replaced bitmaps are not given back: the HQ view
+ * may still display or render into them, so they are left to the GC.
  */
 public final class HqBitmapPool {
     private Bitmap bm1;
@@ -21,7 +26,7 @@ public final class HqBitmapPool {
 
     private Bitmap ensureSize(Bitmap b, int width, int height) {
         if (b == null || b.getWidth() != width || b.getHeight() != height) {
-            return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            return BitmapPool.get().acquire(width, height, Bitmap.Config.ARGB_8888);
         }
         return b;
     }
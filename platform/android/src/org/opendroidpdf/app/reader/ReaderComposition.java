@@ -19,7 +19,7 @@ import org.opendroidpdf.app.reflow.ReflowPrefsSnapshot;
 import org.opendroidpdf.app.reflow.ReflowPrefsStore;
 import org.opendroidpdf.app.reflow.SharedPreferencesReflowPrefsStore;
 import org.opendroidpdf.app.sidecar.SidecarAnnotationSession;
-import org.opendroidpdf.app.sidecar.SQLiteSidecarAnnotationStore;
+import org.opendroidpdf.app.sidecar.WriteBehindSidecarAnnotationStore;
 import org.opendroidpdf.app.preferences.EditorPreferences;
 
 /**
@@ -121,7 +121,7 @@ public class ReaderComposition {
                 docId,
                 legacyDocId,
                 layoutProfileId,
-                new SQLiteSidecarAnnotationStore(context),
+                WriteBehindSidecarAnnotationStore.get(context),
                 reflowPrefsStore,
                 reflowPrefsSnapshot);
     }
@@ -36,6 +36,7 @@ public class AnnotationHitHelper {
     }
 
     /**
+     * @param hitIndex spatial index built from {@code annotations}; null falls back to a linear scan
      * @param rotateOffset 0 for stable ordering (peek), 1 to rotate (like previous behavior in passClickEvent)
      * @param applySelection whether to apply selection side-effects (selection box + text annot callback)
      */
@@ -43,6 +44,7 @@ public class AnnotationHitHelper {
                       float docRelY,
                       long tapDurationMs,
                       Annotation[] annotations,
+                      PageHitIndex hitIndex,
                       Host host,
                       int rotateOffset,
                       boolean applySelection,
@@ -60,19 +62,9 @@ public class AnnotationHitHelper {
             return Hit.Nothing;
         }
 
-        boolean hit = false;
-        int targetIndex = -1;
-
-        for (int i = 0; i < annotations.length; i++) {
-            int j = (i + lastHitAnnotation + rotateOffset) % annotations.length;
-            Annotation candidate = annotations[j];
-            if (candidate != null && hitBounds(candidate, docRelX, docRelY, hitSlopDoc)) {
-                hit = true;
-                targetIndex = j;
-                if (applySelection) lastHitAnnotation = j;
-                break;
-            }
-        }
+        int targetIndex = findTarget(docRelX, docRelY, annotations, hitIndex, rotateOffset, hitSlopDoc);
+        boolean hit = targetIndex >= 0;
+        if (hit && applySelection) lastHitAnnotation = targetIndex;
 
         if (!hit) {
             if (applySelection && host != null) {
@@ -237,6 +229,38 @@ public class AnnotationHitHelper {
         return result;
     }
 
+    /**
+     * Returns the first annotation hit when cycling from {@code lastHitAnnotation + rotateOffset},
+     * so repeated taps on overlapping annotations step through them; -1 on a miss.
+     */
+    private int findTarget(float x, float y, Annotation[] annotations, PageHitIndex hitIndex,
+                           int rotateOffset, float hitSlopDoc) {
+        final int n = annotations.length;
+        final int start = (lastHitAnnotation + rotateOffset) % n;
+        if (hitIndex == null) {
+            for (int i = 0; i < n; i++) {
+                int j = (i + start) % n;
+                Annotation candidate = annotations[j];
+                if (candidate != null && hitBounds(candidate, x, y, hitSlopDoc)) return j;
+            }
+            return -1;
+        }
+        int best = -1;
+        int bestDistance = Integer.MAX_VALUE;
+        for (PageHitIndex.Entry e : hitIndex.hitsAt(PageHitIndex.Kind.ANNOTATION, x, y, Math.max(0f, hitSlopDoc))) {
+            int j = e.index;
+            if (j < 0 || j >= n) continue;
+            Annotation candidate = annotations[j];
+            if (candidate == null || !hitBounds(candidate, x, y, hitSlopDoc)) continue;
+            int distance = (j - start + n) % n;
+            if (distance < bestDistance) {
+                best = j;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
     private static boolean isTextHandleTap(Annotation annotation, float docX, float docY, float hitSlopDoc) {
         if (annotation == null) return false;
         if (annotation.type != Annotation.Type.TEXT && annotation.type != Annotation.Type.FREETEXT) return false;
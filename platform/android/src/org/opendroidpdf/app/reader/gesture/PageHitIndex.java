@@ -0,0 +1,263 @@
+package org.opendroidpdf.app.reader.gesture;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable spatial index over the tappable items of one page (links, embedded annotations,
+ * widgets, sidecar notes and highlights), in document space.
+ *
+ * <p>Entries are bucketed into a uniform grid sized to the entry count, so tap and long-press
+ * routing only test the handful of rects near the touch point. Query results are always returned
+ * in insertion order, which lets callers keep their existing "first match wins" priorities.</p>
+ */
+public final class PageHitIndex {
+
+    public enum Kind { LINK, ANNOTATION, WIDGET, SIDECAR_NOTE, SIDECAR_HIGHLIGHT }
+
+    public static final class Entry {
+        @NonNull public final Kind kind;
+        /** Position of the item in the source array/list it was built from. */
+        public final int index;
+        @Nullable public final String id;
+        public final float left;
+        public final float top;
+        public final float right;
+        public final float bottom;
+        final int order;
+
+        Entry(@NonNull Kind kind, int index, @Nullable String id,
+              float left, float top, float right, float bottom, int order) {
+            this.kind = kind;
+            this.index = index;
+            this.id = id;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.order = order;
+        }
+
+        public boolean contains(float x, float y, float slop) {
+            return x >= left - slop && x <= right + slop && y >= top - slop && y <= bottom + slop;
+        }
+
+        boolean intersects(float l, float t, float r, float b) {
+            return left <= r && right >= l && top <= b && bottom >= t;
+        }
+
+        /** Distance from (x, y) to this rect; 0 when inside. */
+        float distanceTo(float x, float y) {
+            float dx = x < left ? left - x : (x > right ? x - right : 0f);
+            float dy = y < top ? top - y : (y > bottom ? y - bottom : 0f);
+            return (float) Math.sqrt(dx * dx + dy * dy);
+        }
+    }
+
+    public static final class Builder {
+        private final List<Entry> entries = new ArrayList<>();
+
+        /** Adds an entry; empty, inverted or non-finite rects are ignored. */
+        @NonNull
+        public Builder add(@NonNull Kind kind, int index, @Nullable String id,
+                           float left, float top, float right, float bottom) {
+            if (!(right >= left) || !(bottom >= top)) return this;
+            if (Float.isInfinite(left) || Float.isInfinite(top)
+                    || Float.isInfinite(right) || Float.isInfinite(bottom)) {
+                return this;
+            }
+            entries.add(new Entry(kind, index, id, left, top, right, bottom, entries.size()));
+            return this;
+        }
+
+        @NonNull
+        public PageHitIndex build() {
+            return entries.isEmpty() ? EMPTY : new PageHitIndex(entries.toArray(new Entry[0]));
+        }
+    }
+
+    public static final PageHitIndex EMPTY = new PageHitIndex(new Entry[0]);
+
+    private static final int MAX_CELLS_PER_AXIS = 32;
+
+    private final Entry[] entries;
+    private final float minX;
+    private final float minY;
+    private final float maxX;
+    private final float maxY;
+    private final int cols;
+    private final int rows;
+    private final float cellW;
+    private final float cellH;
+    /** Entry positions per cell, ascending. */
+    private final int[][] cells;
+    private final Map<String, float[]> unions = new HashMap<>();
+
+    private PageHitIndex(@NonNull Entry[] entries) {
+        this.entries = entries;
+        float l = Float.POSITIVE_INFINITY, t = Float.POSITIVE_INFINITY;
+        float r = Float.NEGATIVE_INFINITY, b = Float.NEGATIVE_INFINITY;
+        for (Entry e : entries) {
+            l = Math.min(l, e.left);
+            t = Math.min(t, e.top);
+            r = Math.max(r, e.right);
+            b = Math.max(b, e.bottom);
+            if (e.id != null) {
+                String key = unionKey(e.kind, e.id);
+                float[] u = unions.get(key);
+                if (u == null) {
+                    unions.put(key, new float[]{e.left, e.top, e.right, e.bottom});
+                } else {
+                    u[0] = Math.min(u[0], e.left);
+                    u[1] = Math.min(u[1], e.top);
+                    u[2] = Math.max(u[2], e.right);
+                    u[3] = Math.max(u[3], e.bottom);
+                }
+            }
+        }
+        if (entries.length == 0) {
+            minX = minY = maxX = maxY = 0f;
+            cols = rows = 0;
+            cellW = cellH = 1f;
+            cells = new int[0][];
+            return;
+        }
+        minX = l;
+        minY = t;
+        maxX = r;
+        maxY = b;
+        int perAxis = Math.max(1, Math.min(MAX_CELLS_PER_AXIS, (int) Math.ceil(Math.sqrt(entries.length))));
+        cols = perAxis;
+        rows = perAxis;
+        cellW = Math.max((maxX - minX) / cols, 1e-3f);
+        cellH = Math.max((maxY - minY) / rows, 1e-3f);
+
+        int[] counts = new int[cols * rows];
+        for (Entry e : entries) {
+            for (int cy = row(e.top); cy <= row(e.bottom); cy++) {
+                for (int cx = col(e.left); cx <= col(e.right); cx++) counts[cy * cols + cx]++;
+            }
+        }
+        cells = new int[cols * rows][];
+        for (int i = 0; i < cells.length; i++) cells[i] = new int[counts[i]];
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < entries.length; i++) {
+            Entry e = entries[i];
+            for (int cy = row(e.top); cy <= row(e.bottom); cy++) {
+                for (int cx = col(e.left); cx <= col(e.right); cx++) {
+                    int c = cy * cols + cx;
+                    cells[c][counts[c]++] = i;
+                }
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return entries.length == 0;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    /** Entries of {@code kind} whose rect, grown by {@code slop} on every side, contains (x, y). */
+    @NonNull
+    public List<Entry> hitsAt(@Nullable Kind kind, float x, float y, float slop) {
+        float s = Math.max(0f, slop);
+        return intersecting(kind, x - s, y - s, x + s, y + s);
+    }
+
+    /** First entry of {@code kind} (in insertion order) hit by (x, y), or null. */
+    @Nullable
+    public Entry firstAt(@Nullable Kind kind, float x, float y) {
+        List<Entry> hits = hitsAt(kind, x, y, 0f);
+        return hits.isEmpty() ? null : hits.get(0);
+    }
+
+    /** Entries of {@code kind} (any kind when null) intersecting the given rect, in insertion order. */
+    @NonNull
+    public List<Entry> intersecting(@Nullable Kind kind, float l, float t, float r, float b) {
+        if (entries.length == 0 || r < minX || l > maxX || b < minY || t > maxY) {
+            return Collections.emptyList();
+        }
+        int c0 = col(l), c1 = col(r), r0 = row(t), r1 = row(b);
+        int[] candidates;
+        if (c0 == c1 && r0 == r1) {
+            candidates = cells[r0 * cols + c0];
+        } else {
+            int total = 0;
+            for (int cy = r0; cy <= r1; cy++) {
+                for (int cx = c0; cx <= c1; cx++) total += cells[cy * cols + cx].length;
+            }
+            candidates = new int[total];
+            int n = 0;
+            for (int cy = r0; cy <= r1; cy++) {
+                for (int cx = c0; cx <= c1; cx++) {
+                    int[] cell = cells[cy * cols + cx];
+                    System.arraycopy(cell, 0, candidates, n, cell.length);
+                    n += cell.length;
+                }
+            }
+            Arrays.sort(candidates);
+        }
+        List<Entry> out = null;
+        int last = -1;
+        for (int i : candidates) {
+            if (i == last) continue;
+            last = i;
+            Entry e = entries[i];
+            if (kind != null && e.kind != kind) continue;
+            if (!e.intersects(l, t, r, b)) continue;
+            if (out == null) out = new ArrayList<>(4);
+            out.add(e);
+        }
+        return out != null ? out : Collections.<Entry>emptyList();
+    }
+
+    /**
+     * Closest entry of {@code kind} within {@code maxDistance} of (x, y); entries containing the
+     * point have distance 0. Ties go to the earlier entry.
+     */
+    @Nullable
+    public Entry nearest(@Nullable Kind kind, float x, float y, float maxDistance) {
+        Entry best = null;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (Entry e : hitsAt(kind, x, y, maxDistance)) {
+            float d = e.distanceTo(x, y);
+            if (d <= maxDistance && d < bestDistance) {
+                best = e;
+                bestDistance = d;
+            }
+        }
+        return best;
+    }
+
+    /** Union of all rects added for ({@code kind}, {@code id}) as {left, top, right, bottom}, or null. */
+    @Nullable
+    public float[] unionBounds(@NonNull Kind kind, @Nullable String id) {
+        if (id == null) return null;
+        float[] u = unions.get(unionKey(kind, id));
+        return u != null ? u.clone() : null;
+    }
+
+    private int col(float x) {
+        int c = (int) ((x - minX) / cellW);
+        return c < 0 ? 0 : (c >= cols ? cols - 1 : c);
+    }
+
+    private int row(float y) {
+        int r = (int) ((y - minY) / cellH);
+        return r < 0 ? 0 : (r >= rows ? rows - 1 : r);
+    }
+
+    private static String unionKey(Kind kind, String id) {
+        return kind.ordinal() + ":" + id;
+    }
+}
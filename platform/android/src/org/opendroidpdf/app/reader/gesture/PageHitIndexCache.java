@@ -0,0 +1,145 @@
+package org.opendroidpdf.app.reader.gesture;
+
+import android.graphics.PointF;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.opendroidpdf.Annotation;
+import org.opendroidpdf.LinkInfo;
+import org.opendroidpdf.app.sidecar.model.SidecarHighlight;
+import org.opendroidpdf.app.sidecar.model.SidecarNote;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Holds the {@link PageHitIndex} for one page view.
+ *
+ * <p>Page content arrives piecemeal (links, annotations and widget areas load asynchronously, and
+ * the sidecar session swaps in new immutable lists on edits), so the index is rebuilt on the first
+ * query after any source array/list is replaced, and reused for every tap until then. UI thread
+ * only.</p>
+ */
+public final class PageHitIndexCache {
+
+    public interface Sources {
+        @Nullable LinkInfo[] links();
+        @Nullable Annotation[] annotations();
+        @Nullable RectF[] widgetAreas();
+        @Nullable List<SidecarNote> sidecarNotes();
+        @Nullable List<SidecarHighlight> sidecarHighlights();
+    }
+
+    private final Sources sources;
+    @NonNull private PageHitIndex index = PageHitIndex.EMPTY;
+    private boolean built = false;
+    @Nullable private LinkInfo[] links;
+    @Nullable private Annotation[] annotations;
+    @Nullable private RectF[] widgetAreas;
+    @Nullable private List<SidecarNote> notes;
+    @Nullable private List<SidecarHighlight> highlights;
+
+    public PageHitIndexCache(@NonNull Sources sources) {
+        this.sources = Objects.requireNonNull(sources, "sources required");
+    }
+
+    @NonNull
+    public PageHitIndex get() {
+        LinkInfo[] l = sources.links();
+        Annotation[] a = sources.annotations();
+        RectF[] w = sources.widgetAreas();
+        List<SidecarNote> n = sources.sidecarNotes();
+        List<SidecarHighlight> h = sources.sidecarHighlights();
+        if (built && l == links && a == annotations && w == widgetAreas && n == notes && h == highlights) {
+            return index;
+        }
+        links = l;
+        annotations = a;
+        widgetAreas = w;
+        notes = n;
+        highlights = h;
+        index = build(l, a, w, n, h);
+        built = true;
+        return index;
+    }
+
+    @NonNull
+    private static PageHitIndex build(@Nullable LinkInfo[] links,
+                                      @Nullable Annotation[] annotations,
+                                      @Nullable RectF[] widgetAreas,
+                                      @Nullable List<SidecarNote> notes,
+                                      @Nullable List<SidecarHighlight> highlights) {
+        PageHitIndex.Builder b = new PageHitIndex.Builder();
+        if (links != null) {
+            for (int i = 0; i < links.length; i++) {
+                LinkInfo link = links[i];
+                if (link != null && link.rect != null) add(b, PageHitIndex.Kind.LINK, i, null, link.rect);
+            }
+        }
+        if (annotations != null) {
+            for (int i = 0; i < annotations.length; i++) {
+                Annotation annot = annotations[i];
+                if (annot != null) add(b, PageHitIndex.Kind.ANNOTATION, i, null, annot);
+            }
+        }
+        if (widgetAreas != null) {
+            for (int i = 0; i < widgetAreas.length; i++) {
+                if (widgetAreas[i] != null) add(b, PageHitIndex.Kind.WIDGET, i, null, widgetAreas[i]);
+            }
+        }
+        if (notes != null) {
+            for (int i = 0; i < notes.size(); i++) {
+                SidecarNote note = notes.get(i);
+                if (note != null && note.id != null && note.bounds != null) {
+                    add(b, PageHitIndex.Kind.SIDECAR_NOTE, i, note.id, note.bounds);
+                }
+            }
+        }
+        if (highlights != null) {
+            // One entry per quad so taps between lines of a multi-line highlight miss; the union
+            // of a highlight's quads is available via PageHitIndex#unionBounds.
+            for (int i = 0; i < highlights.size(); i++) {
+                SidecarHighlight hl = highlights.get(i);
+                if (hl == null || hl.id == null || hl.quadPoints == null) continue;
+                int n = hl.quadPoints.length - (hl.quadPoints.length % 4);
+                for (int q = 0; q < n; q += 4) {
+                    RectF r = quadRect(hl.quadPoints, q);
+                    if (r != null) add(b, PageHitIndex.Kind.SIDECAR_HIGHLIGHT, i, hl.id, r);
+                }
+            }
+        }
+        return b.build();
+    }
+
+    private static void add(PageHitIndex.Builder b, PageHitIndex.Kind kind, int index,
+                            @Nullable String id, RectF r) {
+        b.add(kind, index, id, r.left, r.top, r.right, r.bottom);
+    }
+
+    @Nullable
+    private static RectF quadRect(PointF[] points, int start) {
+        if (points == null || points.length < start + 4) return null;
+        float left = Float.POSITIVE_INFINITY;
+        float top = Float.POSITIVE_INFINITY;
+        float right = Float.NEGATIVE_INFINITY;
+        float bottom = Float.NEGATIVE_INFINITY;
+        for (int j = 0; j < 4; j++) {
+            PointF p = points[start + j];
+            if (p == null) continue;
+            if (p.x < left) left = p.x;
+            if (p.y < top) top = p.y;
+            if (p.x > right) right = p.x;
+            if (p.y > bottom) bottom = p.y;
+        }
+        if (Float.isNaN(left) || Float.isInfinite(left)
+                || Float.isNaN(top) || Float.isInfinite(top)
+                || Float.isNaN(right) || Float.isInfinite(right)
+                || Float.isNaN(bottom) || Float.isInfinite(bottom)) {
+            return null;
+        }
+        if (right <= left || bottom <= top) return null;
+        return new RectF(left, top, right, bottom);
+    }
+}
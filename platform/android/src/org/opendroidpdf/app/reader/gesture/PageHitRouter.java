@@ -35,6 +35,8 @@ public final class PageHitRouter {
         LinkInfo[] links();
         Annotation[] annotations();
         RectF[] widgetAreas();
+        /** Spatial index over the same links/annotations/widget areas (see {@link PageHitIndexCache}). */
+        PageHitIndex hitIndex();
 
         AnnotationHitHelper annotationHitHelper();
         WidgetController widgetController();
@@ -124,7 +126,8 @@ public final class PageHitRouter {
     private boolean widgetAreaHit(float docRelX, float docRelY) {
         RectF[] areas = host.widgetAreas();
         if (areas == null) return false;
-        for (RectF area : areas) {
+        for (PageHitIndex.Entry e : host.hitIndex().hitsAt(PageHitIndex.Kind.WIDGET, docRelX, docRelY, 0f)) {
+            RectF area = e.index < areas.length ? areas[e.index] : null;
             if (area != null && area.contains(docRelX, docRelY)) return true;
         }
         return false;
@@ -145,7 +148,8 @@ public final class PageHitRouter {
     private LinkInfo linkInfoAt(float docRelX, float docRelY) {
         LinkInfo[] links = host.links();
         if (links == null) return null;
-        for (LinkInfo l : links) {
+        for (PageHitIndex.Entry e : host.hitIndex().hitsAt(PageHitIndex.Kind.LINK, docRelX, docRelY, 0f)) {
+            LinkInfo l = e.index < links.length ? links[e.index] : null;
             if (l != null && l.rect != null && l.rect.contains(docRelX, docRelY)) {
                 return l;
             }
@@ -170,6 +174,7 @@ public final class PageHitRouter {
                 docRelY,
                 tapDurationMs,
                 annots,
+                host.hitIndex(),
                 applySelection ? new AnnotationHitHelper.Host() {
                     @Override public void deselectAnnotation() { host.deselectAnnotation(); }
                     @Override public void selectAnnotation(int index, RectF bounds) { host.selectAnnotation(index, bounds); }
@@ -0,0 +1,137 @@
+package org.opendroidpdf.app.reflow;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * Page map of a reflowable document under one layout profile: how many pages each chapter
+ * (spine item) lays out to.
+ *
+ * <p>That is enough to answer page count and {@code fz_location} (chapter, page) &harr; page number
+ * conversions without asking MuPDF, which needs the core lock and, for chapters not laid out yet,
+ * a layout pass. Locations use the same {@code (chapter<<32) | page} encoding as
+ * {@code MuPDFCore.locationFromPageNumber}.</p>
+ */
+public final class ReflowPagination {
+    private static final int VERSION = 1;
+
+    @NonNull public final String layoutProfileId;
+    private final int[] chapterPageCounts;
+    private final int[] chapterStarts;
+    private final int pageCount;
+
+    private ReflowPagination(@NonNull String layoutProfileId, @NonNull int[] chapterPageCounts) {
+        this.layoutProfileId = layoutProfileId;
+        this.chapterPageCounts = chapterPageCounts;
+        this.chapterStarts = new int[chapterPageCounts.length];
+        int total = 0;
+        for (int i = 0; i < chapterPageCounts.length; i++) {
+            chapterStarts[i] = total;
+            total += chapterPageCounts[i];
+        }
+        this.pageCount = total;
+    }
+
+    /** Returns null when the counts cannot describe a document (no chapters, negative counts). */
+    @Nullable
+    public static ReflowPagination of(@NonNull String layoutProfileId, @Nullable int[] chapterPageCounts) {
+        if (chapterPageCounts == null || chapterPageCounts.length == 0) return null;
+        for (int c : chapterPageCounts) {
+            if (c < 0) return null;
+        }
+        return new ReflowPagination(layoutProfileId, chapterPageCounts.clone());
+    }
+
+    public int pageCount() {
+        return pageCount;
+    }
+
+    public int chapterCount() {
+        return chapterPageCounts.length;
+    }
+
+    /** Pages of {@code chapter}, or -1 when out of range. */
+    public int chapterPageCount(int chapter) {
+        if (chapter < 0 || chapter >= chapterPageCounts.length) return -1;
+        return chapterPageCounts[chapter];
+    }
+
+    /**
+     * The chapter with the most pages (the first, on ties); the one most likely to show a
+     * pagination drift, used to spot-check a stored map.
+     */
+    public int longestChapter() {
+        int best = 0;
+        for (int i = 1; i < chapterPageCounts.length; i++) {
+            if (chapterPageCounts[i] > chapterPageCounts[best]) best = i;
+        }
+        return best;
+    }
+
+    /** First page of {@code chapter}, or -1 when out of range. */
+    public int chapterStartPage(int chapter) {
+        if (chapter < 0 || chapter >= chapterStarts.length) return -1;
+        return chapterStarts[chapter];
+    }
+
+    /** Encoded location of {@code pageNumber}, or -1 when out of range. */
+    public long locationFromPageNumber(int pageNumber) {
+        if (pageNumber < 0 || pageNumber >= pageCount) return -1L;
+        int lo = 0;
+        int hi = chapterStarts.length - 1;
+        // Last chapter starting at or before the page; empty chapters share a start with the next.
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (chapterStarts[mid] <= pageNumber) lo = mid;
+            else hi = mid - 1;
+        }
+        return (((long) lo) << 32) | ((pageNumber - chapterStarts[lo]) & 0xffffffffL);
+    }
+
+    /**
+     * Page number for an encoded location, or -1 when the chapter does not exist. A page past the
+     * end of its chapter (a location saved under a longer layout) maps to the chapter's last page.
+     */
+    public int pageNumberFromLocation(long encodedLocation) {
+        if (encodedLocation == -1L) return -1;
+        int chapter = (int) (encodedLocation >> 32);
+        int page = (int) (encodedLocation & 0xffffffffL);
+        if (chapter < 0 || chapter >= chapterPageCounts.length || page < 0) return -1;
+        int n = chapterPageCounts[chapter];
+        if (n == 0) return chapterStarts[chapter] < pageCount ? chapterStarts[chapter] : -1;
+        return chapterStarts[chapter] + Math.min(page, n - 1);
+    }
+
+    /** True when both maps paginate the document identically. */
+    public boolean sameLayoutAs(@Nullable ReflowPagination other) {
+        return other != null && Arrays.equals(chapterPageCounts, other.chapterPageCounts);
+    }
+
+    @NonNull
+    public JSONObject toJson() throws JSONException {
+        JSONObject o = new JSONObject();
+        o.put("v", VERSION);
+        o.put("profile", layoutProfileId);
+        JSONArray counts = new JSONArray();
+        for (int c : chapterPageCounts) counts.put(c);
+        o.put("chapters", counts);
+        return o;
+    }
+
+    @Nullable
+    public static ReflowPagination fromJson(@Nullable JSONObject o) {
+        if (o == null || o.optInt("v", -1) != VERSION) return null;
+        String profile = o.optString("profile", "");
+        JSONArray counts = o.optJSONArray("chapters");
+        if (profile.isEmpty() || counts == null) return null;
+        int[] c = new int[counts.length()];
+        for (int i = 0; i < c.length; i++) c[i] = counts.optInt(i, -1);
+        return of(profile, c);
+    }
+}
@@ -0,0 +1,153 @@
+package org.opendroidpdf.app.reflow;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONObject;
+import org.opendroidpdf.MuPDFCore;
+import org.opendroidpdf.app.AppCoroutines;
+import org.opendroidpdf.app.document.DocumentIdentityResolver;
+import org.opendroidpdf.app.storage.KeyedFileCache;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Persisted {@link ReflowPagination} per document and layout profile.
+ *
+ * <p>Entries are keyed by document id plus {@link ReflowLayoutProfileId}, kept in a small
+ * in-memory LRU and stored as JSON under {@code cacheDir/reflow_pagination}. After a relayout,
+ * {@link #applyAfterLayout} installs the stored map on the core right away, so page count and
+ * location lookups are answered without the core. In the background it then spot-checks the map
+ * (chapter count plus its longest chapter) and counts every chapter only when that check fails,
+ * nothing is stored yet, or the document id is not content-derived; a recount that differs
+ * corrects the stored map (and the caller).</p>
+ */
+public final class ReflowPaginationCache {
+    private static final String TAG = "ReflowPaginationCache";
+    private static final String DIR_NAME = "reflow_pagination";
+    private static final int MAX_IN_MEMORY = 16;
+    private static final int MAX_ON_DISK = 128;
+    private static final int MAX_FILE_BYTES = 256 * 1024;
+
+    private static volatile ReflowPaginationCache instance;
+
+    @NonNull
+    public static ReflowPaginationCache get(@NonNull Context context) {
+        ReflowPaginationCache c = instance;
+        if (c == null) {
+            synchronized (ReflowPaginationCache.class) {
+                c = instance;
+                if (c == null) {
+                    Context app = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+                    c = new ReflowPaginationCache(new File(app.getCacheDir(), DIR_NAME));
+                    instance = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    private final KeyedFileCache disk;
+    private final Map<String, ReflowPagination> memory = new LinkedHashMap<String, ReflowPagination>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, ReflowPagination> eldest) {
+            return size() > MAX_IN_MEMORY;
+        }
+    };
+
+    ReflowPaginationCache(@NonNull File dir) {
+        this.disk = new KeyedFileCache(dir, ".json", MAX_ON_DISK, MAX_FILE_BYTES);
+    }
+
+    /**
+     * Installs the stored pagination for the layout {@code core} was just given and checks it off
+     * the UI thread. {@code onCorrected} runs on the main thread when a stored map turned out
+     * to be wrong and the core now reports a different page count; callers rebuild their adapter.
+     */
+    public void applyAfterLayout(@NonNull MuPDFCore core,
+                                 @NonNull String docId,
+                                 @NonNull String layoutProfileId,
+                                 @Nullable Runnable onCorrected) {
+        final int generation = core.layoutGeneration();
+        final ReflowPagination stored = load(docId, layoutProfileId);
+        if (stored != null) core.setReflowPagination(generation, stored);
+        // A uri-based id can name different content over time; only a content id vouches for the map.
+        final boolean trustedKey = DocumentIdentityResolver.isContentId(docId);
+
+        AppCoroutines.launchIo(AppCoroutines.ioScope(), () -> {
+            if (core.layoutGeneration() != generation) return;
+            if (stored != null && trustedKey
+                    && core.reflowPaginationMatches(stored, stored.longestChapter())) {
+                return;
+            }
+            ReflowPagination actual = core.computeReflowPagination(layoutProfileId);
+            if (actual == null) {
+                // The document could not be counted; do not keep answering from a stale map.
+                if (stored != null) core.setReflowPagination(generation, null);
+                return;
+            }
+            boolean current = core.setReflowPagination(generation, actual);
+            if (stored != null && stored.sameLayoutAs(actual)) return;
+            save(docId, actual);
+            if (current && stored != null && onCorrected != null) {
+                Log.i(TAG, "stored pagination for " + layoutProfileId + " was stale: "
+                        + stored.pageCount() + " -> " + actual.pageCount() + " pages");
+                AppCoroutines.launchMain(AppCoroutines.mainScope(), onCorrected);
+            }
+        });
+    }
+
+    @Nullable
+    public ReflowPagination load(@NonNull String docId, @NonNull String layoutProfileId) {
+        String key = key(docId, layoutProfileId);
+        synchronized (memory) {
+            ReflowPagination hit = memory.get(key);
+            if (hit != null) return hit;
+        }
+        ReflowPagination p = readPersisted(key, layoutProfileId);
+        if (p != null) {
+            synchronized (memory) {
+                memory.put(key, p);
+            }
+        }
+        return p;
+    }
+
+    public void save(@NonNull String docId, @NonNull ReflowPagination pagination) {
+        String key = key(docId, pagination.layoutProfileId);
+        synchronized (memory) {
+            memory.put(key, pagination);
+        }
+        persist(key, pagination);
+    }
+
+    @NonNull
+    private static String key(@NonNull String docId, @NonNull String layoutProfileId) {
+        return docId + '\n' + layoutProfileId;
+    }
+
+    @Nullable
+    private ReflowPagination readPersisted(@NonNull String key, @NonNull String layoutProfileId) {
+        String text = disk.read(key);
+        if (text == null) return null;
+        try {
+            ReflowPagination p = ReflowPagination.fromJson(new JSONObject(text));
+            if (p != null && layoutProfileId.equals(p.layoutProfileId)) return p;
+        } catch (Throwable ignore) {
+        }
+        disk.remove(key);
+        return null;
+    }
+
+    private void persist(@NonNull String key, @NonNull ReflowPagination pagination) {
+        try {
+            disk.write(key, pagination.toJson().toString());
+        } catch (Throwable t) {
+            Log.w(TAG, "failed to persist reflow pagination", t);
+        }
+    }
+}
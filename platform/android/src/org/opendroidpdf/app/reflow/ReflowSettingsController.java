@@ -16,7 +16,8 @@ import androidx.appcompat.app.AlertDialog;
 import org.opendroidpdf.MuPDFReaderView;
 import org.opendroidpdf.OpenDroidPDFCore;
 import org.opendroidpdf.R;
-import org.opendroidpdf.app.document.DocumentIds;
+import org.opendroidpdf.app.document.DocumentIdentity;
+import org.opendroidpdf.app.document.DocumentLifecycleManager;
 import org.opendroidpdf.app.document.DocumentType;
 import org.opendroidpdf.app.document.DocumentViewDelegate;
 import org.opendroidpdf.app.document.ViewportHelper;
@@ -45,7 +46,10 @@ public final class ReflowSettingsController {
         @Nullable OpenDroidPDFCore getCore();
         @Nullable MuPDFReaderView getDocView();
         @Nullable MuPdfRepository getRepository();
-        @Nullable org.opendroidpdf.app.document.DocumentIdentity currentDocumentIdentityOrNull();
+        /** Identity if already resolved; never waits for the hash. */
+        @Nullable DocumentIdentity resolvedDocumentIdentityOrNull();
+        /** Runs {@code callback} on the main thread once the identity is resolved. */
+        void whenDocumentIdentityReady(@NonNull DocumentLifecycleManager.IdentityCallback callback);
         @Nullable org.opendroidpdf.app.ui.UiStateDelegate getUiStateDelegate();
         @NonNull AlertDialog.Builder alertBuilder();
         void stopSearchTasks();
@@ -75,8 +79,13 @@ public final class ReflowSettingsController {
         if (core == null || core.getUri() == null) return;
         if (DocumentType.fromFileFormat(core.fileFormat()) != DocumentType.EPUB) return;
 
-        org.opendroidpdf.app.document.DocumentIdentity ident = host.currentDocumentIdentityOrNull();
-        String docId = ident != null ? ident.docId() : DocumentIds.fromUri(core.getUri());
+        // Prefs are keyed by the content id; open the dialog once it is known.
+        host.whenDocumentIdentityReady(ident -> {
+            if (host.getCore() == core) showForDocument(ident.docId());
+        });
+    }
+
+    private void showForDocument(@NonNull String docId) {
         ReflowPrefsSnapshot initial = store.load(docId);
 
         View view = LayoutInflater.from(host.context()).inflate(R.layout.dialog_reflow_settings, null);
@@ -201,8 +210,10 @@ public final class ReflowSettingsController {
         if (core == null || core.getUri() == null) return false;
         if (DocumentType.fromFileFormat(core.fileFormat()) != DocumentType.EPUB) return false;
 
-        org.opendroidpdf.app.document.DocumentIdentity ident = host.currentDocumentIdentityOrNull();
-        String docId = ident != null ? ident.docId() : DocumentIds.fromUri(core.getUri());
+        // Annotated layouts are recorded under the resolved id, so nothing can match before it.
+        DocumentIdentity ident = host.resolvedDocumentIdentityOrNull();
+        if (ident == null) return false;
+        String docId = ident.docId();
         ReflowAnnotatedLayout annotated = store.loadAnnotatedLayoutOrNull(docId);
         if (annotated == null) return false;
 
@@ -219,23 +230,16 @@ public final class ReflowSettingsController {
         return true;
     }
 
+    /**
+     * Theme is paint-only: pages are recolored by the reader view's filter, so the core's CSS,
+     * pagination, render caches and the layout profile all stay as they are.
+     */
     private void applyThemeOnly(@NonNull ReflowPrefsSnapshot prefs) {
-        OpenDroidPDFCore core = host.getCore();
-        if (core == null) return;
-
-        float em = prefs.fontDp * 72f / 160f;
-        String css = ReflowCss.compose(prefs, em);
-        core.setUserCss(css);
-
         MuPDFReaderView docView = host.getDocView();
         if (docView == null) return;
-        int cur = docView.getSelectedItemPosition();
-        for (int page = cur - 1; page <= cur + 1; page++) {
-            View v = docView.getView(page);
-            if (v instanceof org.opendroidpdf.MuPDFView) {
-                ((org.opendroidpdf.MuPDFView) v).redraw(true);
-            }
-        }
+        docView.setPageColorFilter(
+                ReflowThemePaint.colorFilter(prefs.theme),
+                ReflowThemePaint.paperColor(prefs.theme));
     }
 
     private void applyWithRelayout(@NonNull ReflowPrefsSnapshot prefs) {
@@ -290,7 +294,18 @@ public final class ReflowSettingsController {
         boolean ok = core.layoutDocument(pageW, pageH, em);
         if (!ok) {
             host.showInfo(host.t(R.string.cannot_open_document));
+        } else {
+            // Switching back to a font size used before serves pagination from the stored map.
+            // The map is keyed by the resolved id; while the document still hashes, just lay out.
+            DocumentIdentity ident = host.resolvedDocumentIdentityOrNull();
+            if (ident != null) {
+                String profileId = ReflowLayoutProfileId.from(prefs, core.getPageSize(0), em);
+                ReflowPaginationCache.get(host.context()).applyAfterLayout(core, ident.docId(), profileId, () -> {
+                    if (documentViewDelegate != null) documentViewDelegate.recreateAdapterPreservingViewport(null);
+                });
+            }
         }
+        applyThemeOnly(prefs);
         if (org.opendroidpdf.BuildConfig.DEBUG) {
             try {
                 android.graphics.PointF sz0 = core.getPageSize(0);
@@ -0,0 +1,77 @@
+package org.opendroidpdf.app.reflow;
+
+import android.graphics.ColorFilter;
+import android.graphics.ColorMatrixColorFilter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Paint-time colors for reflow themes (EPUB/HTML).
+ *
+ * <p>Themes are applied as a color matrix on the page bitmaps when they are composited, not as
+ * user CSS: a CSS change makes MuPDF drop the HTML layout and display lists for the whole book,
+ * while a color filter only needs the views to redraw. Each theme maps white paper to
+ * {@link #paperColor} and black text to its ink color, interpolating every channel in between,
+ * so anti-aliased text keeps its edges. Images are mapped the same way (inverted under
+ * {@link ReflowTheme#DARK}).</p>
+ */
+public final class ReflowThemePaint {
+    private ReflowThemePaint() {}
+
+    private static final int DARK_PAPER = 0xFF000000;
+    private static final int DARK_INK = 0xFFFFFFFF;
+    private static final int SEPIA_PAPER = 0xFFF4ECD8;
+    private static final int SEPIA_INK = 0xFF5B4636;
+
+    /** Background drawn behind pages before and around the rendered bitmap. */
+    public static int paperColor(@Nullable ReflowTheme theme) {
+        if (theme == null) return 0xFFFFFFFF;
+        switch (theme) {
+            case DARK:
+                return DARK_PAPER;
+            case SEPIA:
+                return SEPIA_PAPER;
+            case LIGHT:
+            default:
+                return 0xFFFFFFFF;
+        }
+    }
+
+    /** Filter for the page bitmaps, or null when pages are drawn as rendered. */
+    @Nullable
+    public static ColorFilter colorFilter(@Nullable ReflowTheme theme) {
+        float[] m = colorMatrix(theme);
+        return m != null ? new ColorMatrixColorFilter(m) : null;
+    }
+
+    /** 4x5 {@link android.graphics.ColorMatrix} values for {@code theme}; null for no change. */
+    @Nullable
+    static float[] colorMatrix(@Nullable ReflowTheme theme) {
+        if (theme == null) return null;
+        switch (theme) {
+            case DARK:
+                return paperToInk(DARK_PAPER, DARK_INK);
+            case SEPIA:
+                return paperToInk(SEPIA_PAPER, SEPIA_INK);
+            case LIGHT:
+            default:
+                return null;
+        }
+    }
+
+    /** Maps each channel linearly so that 255 becomes {@code paper} and 0 becomes {@code ink}. */
+    @NonNull
+    private static float[] paperToInk(int paper, int ink) {
+        float[] m = new float[20];
+        for (int c = 0; c < 3; c++) {
+            int shift = 16 - 8 * c;
+            float p = (paper >> shift) & 0xFF;
+            float i = (ink >> shift) & 0xFF;
+            m[c * 5 + c] = (p - i) / 255f;
+            m[c * 5 + 4] = i;
+        }
+        m[18] = 1f;
+        return m;
+    }
+}
@@ -0,0 +1,64 @@
+package org.opendroidpdf.app.render;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Picks bitmap configurations for page renders.
+ * <p>
+ * MuPDF composites every render onto opaque white, so the alpha channel of a page bitmap is never
+ * used. Pages without transparency groups/blending are rendered into {@code RGB_565} (half the
+ * memory of {@code ARGB_8888}; the native side converts and dithers). Pages that use transparency
+ * usually carry smooth shading that bands at 16 bits, so they stay in {@code ARGB_8888}, as do HQ
+ * zoom patches where fidelity matters more than memory.
+ * <p>
+ * Thumbnails are never drawn into after rendering, so on API 26+ they are moved to hardware
+ * bitmaps, which keeps their pixels out of the Java heap entirely.
+ */
+public final class BitmapFormats {
+    private BitmapFormats() {}
+
+    /** Config for a min-zoom (entire page) or thumbnail render of a page. */
+    @NonNull
+    public static Bitmap.Config forPage(boolean pageKnownOpaque) {
+        return pageKnownOpaque ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+    }
+
+    @NonNull
+    public static Bitmap createForPage(int width, int height, boolean pageKnownOpaque) {
+        return BitmapPool.get().acquire(width, height, forPage(pageKnownOpaque));
+    }
+
+    /**
+     * Converts a finished, display-only render to a hardware bitmap when supported and returns the
+     * source to {@link BitmapPool}. Returns {@code bitmap} unchanged on older releases or if the copy
+     * fails.
+     */
+    @Nullable
+    public static Bitmap toDisplayOnly(@Nullable Bitmap bitmap) {
+        if (bitmap == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return bitmap;
+        if (bitmap.getConfig() == Bitmap.Config.HARDWARE) return bitmap;
+        Bitmap hw = null;
+        try {
+            hw = bitmap.copy(Bitmap.Config.HARDWARE, false);
+        } catch (Throwable ignore) {
+        }
+        if (hw == null) return bitmap;
+        BitmapPool.get().release(bitmap);
+        return hw;
+    }
+
+    /** Decode options for cached thumbnails, which are always opaque PNGs. */
+    @NonNull
+    public static BitmapFactory.Options thumbnailDecodeOptions() {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                ? Bitmap.Config.HARDWARE
+                : Bitmap.Config.RGB_565;
+        return options;
+    }
+}
@@ -0,0 +1,239 @@
+package org.opendroidpdf.app.render;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.opendroidpdf.app.memory.CacheGovernor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * App-wide pool of mutable bitmaps for page renders.
+ * <p>
+ * Entire-page bitmaps are dropped whenever a page is re-rendered after an edit or a zoom/layout
+ * change, and exports allocate one bitmap per page; reusing them avoids large-object GC pauses
+ * while scrolling. Pooled bitmaps are grouped in power-of-two byte-size buckets. {@link #acquire}
+ * prefers an exact (width, height, config) match and otherwise reconfigures a bitmap from the
+ * same bucket whose allocation is large enough. The pool is bounded by a byte budget and evicts
+ * (recycles) least recently released bitmaps first.
+ * <p>
+ * Only release bitmaps that nothing displays or renders into anymore; see
+ * {@code PagePatchView#retireBitmap}. Acquired bitmaps have undefined contents.
+ * <p>
+ * The budget is a share of the {@link CacheGovernor} budget, and the pool is the first cache the
+ * governor trims under memory pressure.
+ */
+public final class BitmapPool {
+    private static final long MAX_BUDGET_BYTES = 64L * 1024 * 1024;
+    private static final int BUCKETS = 64;
+    private static final float BUDGET_SHARE = 0.5f;
+
+    private static volatile BitmapPool instance;
+
+    public static BitmapPool get() {
+        BitmapPool p = instance;
+        if (p == null) {
+            synchronized (BitmapPool.class) {
+                p = instance;
+                if (p == null) {
+                    CacheGovernor governor = CacheGovernor.get();
+                    long budget = Math.min(MAX_BUDGET_BYTES, (long) (governor.budgetBytes() * (double) BUDGET_SHARE));
+                    p = new BitmapPool(budget);
+                    p.governed = governor.register("bitmapPool",
+                            CacheGovernor.PRIORITY_POOL, BUDGET_SHARE, p.trimmable());
+                    instance = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    private final long budgetBytes;
+    @SuppressWarnings("unchecked")
+    private final List<Bitmap>[] buckets = new List[BUCKETS];
+    /** Release order, oldest first; eviction walks from the head. */
+    private final ArrayDeque<Bitmap> lru = new ArrayDeque<>();
+    /** Allocation size recorded at release, so accounting survives an external recycle(). */
+    private final IdentityHashMap<Bitmap, Long> pooledSizes = new IdentityHashMap<>();
+    private long pooledBytes;
+    private long hits;
+    private long reconfigured;
+    private long misses;
+    private long evictions;
+    /** Held so the governor's weak reference stays live. */
+    @Nullable private CacheGovernor.Registration governed;
+
+    BitmapPool(long budgetBytes) {
+        this.budgetBytes = Math.max(0L, budgetBytes);
+    }
+
+    /** Returns a mutable bitmap of the requested size and config, reusing a pooled one if possible. */
+    @NonNull
+    public Bitmap acquire(int width, int height, @NonNull Bitmap.Config config) {
+        long needed = (long) width * height * bytesPerPixel(config);
+        synchronized (this) {
+            Bitmap reuse = takeLocked(width, height, config, needed);
+            if (reuse != null) return reuse;
+            misses++;
+        }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Hands a bitmap back to the pool. Immutable, hardware or recycled bitmaps are ignored; bitmaps
+     * that do not fit the budget are recycled.
+     */
+    public void release(@Nullable Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled() || !bitmap.isMutable()) return;
+        if (bitmap.getConfig() == null || bitmap.getConfig() == Bitmap.Config.HARDWARE) return;
+        long bytes = bitmap.getAllocationByteCount();
+        if (bytes > budgetBytes) {
+            bitmap.recycle();
+            return;
+        }
+        List<Bitmap> evicted;
+        synchronized (this) {
+            if (pooledSizes.containsKey(bitmap)) return;
+            int b = bucketFor(bytes);
+            if (buckets[b] == null) buckets[b] = new ArrayList<>(4);
+            buckets[b].add(bitmap);
+            lru.addLast(bitmap);
+            pooledSizes.put(bitmap, bytes);
+            pooledBytes += bytes;
+            evicted = trimToLocked(budgetBytes);
+        }
+        recycleAll(evicted);
+    }
+
+    /** Evicts least recently released bitmaps until at most {@code targetBytes} remain pooled. */
+    public void trimTo(long targetBytes) {
+        List<Bitmap> evicted;
+        synchronized (this) {
+            evicted = trimToLocked(Math.max(0L, targetBytes));
+        }
+        recycleAll(evicted);
+    }
+
+    public void clear() {
+        trimTo(0L);
+    }
+
+    @NonNull
+    private CacheGovernor.Trimmable trimmable() {
+        return new CacheGovernor.Trimmable() {
+            @Override public long sizeBytes() {
+                return pooledBytes();
+            }
+
+            @Override public void trimToFraction(float fraction) {
+                trimTo((long) (pooledBytes() * (double) fraction));
+            }
+        };
+    }
+
+    public synchronized long pooledBytes() {
+        return pooledBytes;
+    }
+
+    public long budgetBytes() {
+        return budgetBytes;
+    }
+
+    /** Serializes pool counters; used by the debug metrics export. */
+    public synchronized JSONObject toJson() throws JSONException {
+        JSONObject o = new JSONObject();
+        o.put("budgetBytes", budgetBytes);
+        o.put("pooledBytes", pooledBytes);
+        o.put("pooledCount", lru.size());
+        o.put("hits", hits);
+        o.put("reconfigured", reconfigured);
+        o.put("misses", misses);
+        o.put("evictions", evictions);
+        return o;
+    }
+
+    @Nullable
+    private Bitmap takeLocked(int width, int height, Bitmap.Config config, long needed) {
+        List<Bitmap> bucket = buckets[bucketFor(needed)];
+        if (bucket == null || bucket.isEmpty()) return null;
+        Bitmap fallback = null;
+        for (Iterator<Bitmap> it = bucket.iterator(); it.hasNext(); ) {
+            Bitmap bm = it.next();
+            if (bm.isRecycled()) {
+                it.remove();
+                forgetLocked(bm);
+                continue;
+            }
+            if (bm.getWidth() == width && bm.getHeight() == height && bm.getConfig() == config) {
+                it.remove();
+                forgetLocked(bm);
+                hits++;
+                return bm;
+            }
+            if (fallback == null && bm.getAllocationByteCount() >= needed) {
+                fallback = bm;
+            }
+        }
+        if (fallback == null) return null;
+        bucket.remove(fallback);
+        forgetLocked(fallback);
+        try {
+            fallback.reconfigure(width, height, config);
+        } catch (IllegalArgumentException e) {
+            fallback.recycle();
+            return null;
+        }
+        reconfigured++;
+        return fallback;
+    }
+
+    private void forgetLocked(Bitmap bm) {
+        lru.remove(bm);
+        Long bytes = pooledSizes.remove(bm);
+        if (bytes != null) pooledBytes -= bytes;
+    }
+
+    @Nullable
+    private List<Bitmap> trimToLocked(long targetBytes) {
+        List<Bitmap> evicted = null;
+        while (pooledBytes > targetBytes && !lru.isEmpty()) {
+            Bitmap oldest = lru.peekFirst();
+            Long bytes = pooledSizes.get(oldest);
+            List<Bitmap> bucket = buckets[bucketFor(bytes != null ? bytes : 0L)];
+            if (bucket != null) bucket.remove(oldest);
+            forgetLocked(oldest);
+            if (evicted == null) evicted = new ArrayList<>();
+            evicted.add(oldest);
+            evictions++;
+        }
+        return evicted;
+    }
+
+    private static void recycleAll(@Nullable List<Bitmap> bitmaps) {
+        if (bitmaps == null) return;
+        for (Bitmap bm : bitmaps) {
+            if (!bm.isRecycled()) bm.recycle();
+        }
+    }
+
+    /** Bucket index: ceil(log2(bytes)). */
+    static int bucketFor(long bytes) {
+        if (bytes <= 1) return 0;
+        int b = 64 - Long.numberOfLeadingZeros(bytes - 1);
+        return Math.min(b, BUCKETS - 1);
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) return 2;
+        if (config == Bitmap.Config.ALPHA_8) return 1;
+        return 4;
+    }
+}
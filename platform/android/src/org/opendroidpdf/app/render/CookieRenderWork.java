@@ -0,0 +1,52 @@
+package org.opendroidpdf.app.render;
+
+import androidx.annotation.NonNull;
+
+import org.opendroidpdf.MuPDFCore;
+import org.opendroidpdf.core.MuPdfRepository;
+
+/**
+ * {@link RenderScheduler.Work} that renders with a fresh MuPDF cookie per attempt, so it can be
+ * aborted and later re-run after preemption.
+ */
+public abstract class CookieRenderWork implements RenderScheduler.Work {
+    private final MuPdfRepository repository;
+    private final Object cookieLock = new Object();
+    private MuPDFCore.Cookie cookie;
+
+    protected CookieRenderWork(@NonNull MuPdfRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Renders using {@code cookie}. Implementations must not publish results when
+     * {@link MuPDFCore.Cookie#aborted()} is true afterwards.
+     */
+    protected abstract void render(@NonNull MuPDFCore.Cookie cookie) throws Exception;
+
+    @Override
+    public final void run() throws Exception {
+        MuPDFCore.Cookie c = repository.newRenderCookie();
+        synchronized (cookieLock) {
+            cookie = c;
+        }
+        try {
+            render(c);
+        } finally {
+            // Clear and destroy under the same lock so abort() can't race with destroy().
+            synchronized (cookieLock) {
+                cookie = null;
+                try { c.destroy(); } catch (Throwable ignore) {}
+            }
+        }
+    }
+
+    @Override
+    public final void abort() {
+        synchronized (cookieLock) {
+            if (cookie != null) {
+                try { cookie.abort(); } catch (Throwable ignore) {}
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package org.opendroidpdf.app.render;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * App-wide queue for MuPDF render work.
+ * <p>
+ * All renders contend for the same core lock, so instead of launching an independent IO job per
+ * patch/thumbnail/export page, callers submit {@link Work} here with a {@link Priority}. Work runs
+ * in priority order (FIFO within a priority) on a small set of worker threads.
+ * <ul>
+ *   <li>Requests with the same dedupe key share one execution while pending or running.</li>
+ *   <li>A request with the same coalesce key as a pending one replaces it (the older work is
+ *   dropped); a running one is left to finish but will not be restarted.</li>
+ *   <li>Submitting visible work aborts running background work (prefetch/thumbnail/export) via
+ *   {@link Work#abort()}, i.e. a cookie abort. Preempted requests marked restartable are
+ *   re-queued.</li>
+ * </ul>
+ */
+public final class RenderScheduler {
+    private static final String TAG = "RenderScheduler";
+    private static final int WORKER_COUNT = 2;
+
+    /** Render classes in descending priority. */
+    public enum Priority {
+        VISIBLE_HQ,
+        VISIBLE_ENTIRE,
+        PREFETCH,
+        THUMBNAIL,
+        EXPORT;
+
+        boolean preemptible() {
+            return ordinal() >= PREFETCH.ordinal();
+        }
+    }
+
+    /** A unit of render work. */
+    public interface Work {
+        /** Performs the render on a scheduler thread. May be invoked again after preemption. */
+        void run() throws Exception;
+
+        /** Requests a running {@link #run()} to stop early (typically a cookie abort). Any thread. */
+        void abort();
+
+        /** Called instead of {@link #run()} when the work is dropped (cancelled, coalesced, or deduped). */
+        default void onDropped() {}
+
+        /**
+         * Called once on the scheduler thread after the last {@link #run()} attempt returned, i.e.
+         * not after a preempted attempt that is re-queued. Exactly one of this and
+         * {@link #onDropped()} is called for every submitted work.
+         */
+        default void onFinished() {}
+    }
+
+    public static final class Request {
+        final Priority priority;
+        final Work work;
+        @Nullable Object dedupeKey;
+        @Nullable Object coalesceKey;
+        boolean restartOnPreempt;
+
+        public Request(@NonNull Priority priority, @NonNull Work work) {
+            this.priority = priority;
+            this.work = work;
+        }
+
+        /** Identical requests (equal keys) share a single execution. */
+        public Request dedupeKey(@Nullable Object key) {
+            this.dedupeKey = key;
+            return this;
+        }
+
+        /** Newer requests with an equal key supersede older pending ones (e.g. one per patch view). */
+        public Request coalesceKey(@Nullable Object key) {
+            this.coalesceKey = key;
+            return this;
+        }
+
+        /** Re-queue the work if it is aborted because higher-priority work arrived. */
+        public Request restartOnPreempt() {
+            this.restartOnPreempt = true;
+            return this;
+        }
+    }
+
+    /** Caller-side handle for a submitted request. */
+    public static final class Handle {
+        private final Entry entry;
+
+        Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * Cancels the request. Pending work is dropped; running work is aborted only when
+         * {@code abortIfRunning} is set, and is never restarted.
+         */
+        public void cancel(boolean abortIfRunning) {
+            entry.owner.cancel(entry, abortIfRunning);
+        }
+
+        public boolean isDone() {
+            return entry.done.getCount() == 0;
+        }
+
+        /**
+         * Blocks until the work finished or was dropped. Returns false when dropped; rethrows
+         * failures from {@link Work#run()}.
+         */
+        public boolean await() throws Exception {
+            entry.done.await();
+            Throwable t = entry.failure;
+            if (t instanceof Exception) throw (Exception) t;
+            if (t instanceof Error) throw (Error) t;
+            return !entry.dropped;
+        }
+    }
+
+    private enum State { PENDING, RUNNING, FINISHED }
+
+    private static final class Entry {
+        final RenderScheduler owner;
+        final Work work;
+        final long seq;
+        final Handle handle;
+        final CountDownLatch done = new CountDownLatch(1);
+        final @Nullable Object dedupeKey;
+        final @Nullable Object coalesceKey;
+        final boolean restartOnPreempt;
+        Priority priority;
+        State state = State.PENDING;
+        boolean preempted;
+        boolean cancelled;
+        volatile boolean dropped;
+        volatile Throwable failure;
+
+        Entry(RenderScheduler owner, Request request, long seq) {
+            this.owner = owner;
+            this.work = request.work;
+            this.priority = request.priority;
+            this.dedupeKey = request.dedupeKey;
+            this.coalesceKey = request.coalesceKey;
+            this.restartOnPreempt = request.restartOnPreempt;
+            this.seq = seq;
+            this.handle = new Handle(this);
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override public int compare(Entry a, Entry b) {
+            int c = Integer.compare(a.priority.ordinal(), b.priority.ordinal());
+            return c != 0 ? c : Long.compare(a.seq, b.seq);
+        }
+    };
+
+    private static volatile RenderScheduler instance;
+
+    public static RenderScheduler get() {
+        RenderScheduler s = instance;
+        if (s == null) {
+            synchronized (RenderScheduler.class) {
+                s = instance;
+                if (s == null) {
+                    s = new RenderScheduler(WORKER_COUNT);
+                    instance = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    private final Object lock = new Object();
+    private final PriorityQueue<Entry> pending = new PriorityQueue<>(16, ORDER);
+    private final Map<Object, Entry> byDedupeKey = new HashMap<>();
+    private final Map<Object, Entry> byCoalesceKey = new HashMap<>();
+    private final List<Entry> running = new ArrayList<>();
+    private long nextSeq;
+
+    RenderScheduler(int workers) {
+        for (int i = 0; i < workers; i++) {
+            Thread t = new Thread(this::workerLoop, "odp-render-" + i);
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            t.start();
+        }
+    }
+
+    @NonNull
+    public Handle submit(@NonNull Request request) {
+        List<Entry> dropped = null;
+        Entry result;
+        synchronized (lock) {
+            Entry existing = request.dedupeKey != null ? byDedupeKey.get(request.dedupeKey) : null;
+            if (existing != null) {
+                if (existing.state == State.PENDING && request.priority.ordinal() < existing.priority.ordinal()) {
+                    pending.remove(existing);
+                    existing.priority = request.priority;
+                    pending.add(existing);
+                }
+                result = existing;
+            } else {
+                Entry superseded = request.coalesceKey != null ? byCoalesceKey.remove(request.coalesceKey) : null;
+                if (superseded != null) {
+                    if (superseded.state == State.PENDING) {
+                        pending.remove(superseded);
+                        unmapLocked(superseded);
+                        superseded.state = State.FINISHED;
+                        dropped = new ArrayList<>(1);
+                        dropped.add(superseded);
+                    } else {
+                        superseded.cancelled = true;
+                    }
+                }
+                result = new Entry(this, request, nextSeq++);
+                if (result.dedupeKey != null) byDedupeKey.put(result.dedupeKey, result);
+                if (result.coalesceKey != null) byCoalesceKey.put(result.coalesceKey, result);
+                pending.add(result);
+                if (!request.priority.preemptible()) {
+                    preemptBackgroundLocked();
+                }
+                lock.notify();
+            }
+        }
+        if (result.work != request.work) {
+            dropWork(request.work);
+        }
+        if (dropped != null) {
+            for (Entry e : dropped) finishDropped(e);
+        }
+        return result.handle;
+    }
+
+    private void preemptBackgroundLocked() {
+        for (Entry e : running) {
+            if (e.priority.preemptible() && !e.preempted && !e.cancelled) {
+                e.preempted = true;
+                try {
+                    e.work.abort();
+                } catch (Throwable t) {
+                    Log.w(TAG, "abort failed during preemption", t);
+                }
+            }
+        }
+    }
+
+    private void cancel(Entry e, boolean abortIfRunning) {
+        boolean drop = false;
+        synchronized (lock) {
+            if (e.state == State.PENDING) {
+                pending.remove(e);
+                unmapLocked(e);
+                e.state = State.FINISHED;
+                drop = true;
+            } else if (e.state == State.RUNNING) {
+                e.cancelled = true;
+                unmapLocked(e);
+                if (abortIfRunning) {
+                    try {
+                        e.work.abort();
+                    } catch (Throwable t) {
+                        Log.w(TAG, "abort failed during cancel", t);
+                    }
+                }
+            }
+        }
+        if (drop) finishDropped(e);
+    }
+
+    private void unmapLocked(Entry e) {
+        if (e.dedupeKey != null && byDedupeKey.get(e.dedupeKey) == e) byDedupeKey.remove(e.dedupeKey);
+        if (e.coalesceKey != null && byCoalesceKey.get(e.coalesceKey) == e) byCoalesceKey.remove(e.coalesceKey);
+    }
+
+    private static void dropWork(Work work) {
+        try {
+            work.onDropped();
+        } catch (Throwable t) {
+            Log.w(TAG, "onDropped failed", t);
+        }
+    }
+
+    private static void finishDropped(Entry e) {
+        e.dropped = true;
+        dropWork(e.work);
+        e.done.countDown();
+    }
+
+    private void workerLoop() {
+        while (true) {
+            Entry e;
+            synchronized (lock) {
+                while (pending.isEmpty()) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+                e = pending.poll();
+                e.state = State.RUNNING;
+                e.preempted = false;
+                running.add(e);
+            }
+
+            Throwable failure = null;
+            try {
+                e.work.run();
+            } catch (Throwable t) {
+                failure = t;
+            }
+
+            boolean requeued = false;
+            synchronized (lock) {
+                running.remove(e);
+                if (e.preempted && e.restartOnPreempt && !e.cancelled) {
+                    e.state = State.PENDING;
+                    pending.add(e);
+                    requeued = true;
+                    lock.notify();
+                } else {
+                    e.state = State.FINISHED;
+                    unmapLocked(e);
+                }
+            }
+            if (!requeued) {
+                if (failure != null) {
+                    Log.w(TAG, "render work failed priority=" + e.priority, failure);
+                }
+                try {
+                    e.work.onFinished();
+                } catch (Throwable t) {
+                    Log.w(TAG, "onFinished failed", t);
+                }
+                e.failure = failure;
+                e.done.countDown();
+            }
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.opendroidpdf.app.selection;
 
-import android.graphics.PointF;
 import android.graphics.RectF;
 import android.view.MotionEvent;
 
@@ -8,6 +7,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import org.opendroidpdf.Annotation;
+import org.opendroidpdf.app.reader.gesture.PageHitIndex;
 import org.opendroidpdf.app.sidecar.SidecarAnnotationSession;
 import org.opendroidpdf.app.sidecar.model.SidecarHighlight;
 import org.opendroidpdf.app.sidecar.model.SidecarNote;
@@ -39,6 +39,9 @@ public final class SidecarSelectionController {
         void setItemSelectBox(@Nullable RectF rect);
 
         void forwardTextAnnotation(@NonNull Annotation annotation);
+
+        /** Page hit index, including this page's sidecar notes and highlight quads. */
+        @NonNull PageHitIndex hitIndex();
     }
 
     public enum Kind { NOTE, HIGHLIGHT }
@@ -129,14 +132,7 @@ public final class SidecarSelectionController {
         for (SidecarHighlight h : highlights) {
             if (h == null || h.id == null || h.quadPoints == null || h.quadPoints.length < 4) continue;
             if (!highlightId.equals(h.id)) continue;
-            RectF bounds = null;
-            int n = h.quadPoints.length - (h.quadPoints.length % 4);
-            for (int i = 0; i < n; i += 4) {
-                RectF r = quadRect(h.quadPoints, i);
-                if (r == null) continue;
-                if (bounds == null) bounds = new RectF(r);
-                else bounds.union(r);
-            }
+            RectF bounds = highlightBounds(h.id);
             if (bounds == null) return false;
             Selection sel = new Selection(Kind.HIGHLIGHT, h.id, bounds);
             selection = sel;
@@ -292,7 +288,10 @@ public final class SidecarSelectionController {
     private Selection hitTestNotes(@NonNull SidecarAnnotationSession sidecar, float docRelX, float docRelY, float scale) {
         List<SidecarNote> notes = sidecar.notesForPage(host.pageNumber());
         if (notes == null || notes.isEmpty()) return null;
-        for (SidecarNote n : notes) {
+        // The marker sits just outside the note's top-left corner, so grow the query by its size.
+        float markerSlop = scale > 0f ? Math.max(10f, 18f / scale) : 0f;
+        for (PageHitIndex.Entry e : host.hitIndex().hitsAt(PageHitIndex.Kind.SIDECAR_NOTE, docRelX, docRelY, markerSlop)) {
+            SidecarNote n = e.index < notes.size() ? notes.get(e.index) : null;
             if (n == null || n.id == null || n.bounds == null) continue;
             RectF marker = noteMarkerRectDoc(n.bounds, scale);
             if (marker != null && marker.contains(docRelX, docRelY)) {
@@ -309,50 +308,21 @@ public final class SidecarSelectionController {
     private Selection hitTestHighlights(@NonNull SidecarAnnotationSession sidecar, float docRelX, float docRelY) {
         List<SidecarHighlight> highlights = sidecar.highlightsForPage(host.pageNumber());
         if (highlights == null || highlights.isEmpty()) return null;
-        for (SidecarHighlight h : highlights) {
-            if (h == null || h.id == null || h.quadPoints == null || h.quadPoints.length < 4) continue;
-            RectF union = null;
-            boolean hit = false;
-            int n = h.quadPoints.length - (h.quadPoints.length % 4);
-            for (int i = 0; i < n; i += 4) {
-                RectF r = quadRect(h.quadPoints, i);
-                if (r == null) continue;
-                if (union == null) union = new RectF(r);
-                else union.union(r);
-                if (r.contains(docRelX, docRelY)) {
-                    hit = true;
-                }
-            }
-            if (hit && union != null) {
-                return new Selection(Kind.HIGHLIGHT, h.id, union);
-            }
+        for (PageHitIndex.Entry e : host.hitIndex().hitsAt(PageHitIndex.Kind.SIDECAR_HIGHLIGHT, docRelX, docRelY, 0f)) {
+            if (e.id == null) continue;
+            // Same semantics as RectF#contains for the quad rect.
+            if (docRelX >= e.right || docRelY >= e.bottom) continue;
+            RectF union = highlightBounds(e.id);
+            if (union != null) return new Selection(Kind.HIGHLIGHT, e.id, union);
         }
         return null;
     }
 
+    /** Union of the highlight's quads, precomputed by the page hit index. */
     @Nullable
-    private static RectF quadRect(PointF[] points, int start) {
-        if (points == null || points.length < start + 4) return null;
-        float left = Float.POSITIVE_INFINITY;
-        float top = Float.POSITIVE_INFINITY;
-        float right = Float.NEGATIVE_INFINITY;
-        float bottom = Float.NEGATIVE_INFINITY;
-        for (int j = 0; j < 4; j++) {
-            PointF p = points[start + j];
-            if (p == null) continue;
-            if (p.x < left) left = p.x;
-            if (p.y < top) top = p.y;
-            if (p.x > right) right = p.x;
-            if (p.y > bottom) bottom = p.y;
-        }
-        if (Float.isNaN(left) || Float.isInfinite(left)
-                || Float.isNaN(top) || Float.isInfinite(top)
-                || Float.isNaN(right) || Float.isInfinite(right)
-                || Float.isNaN(bottom) || Float.isInfinite(bottom)) {
-            return null;
-        }
-        if (right <= left || bottom <= top) return null;
-        return new RectF(left, top, right, bottom);
+    private RectF highlightBounds(@NonNull String highlightId) {
+        float[] u = host.hitIndex().unionBounds(PageHitIndex.Kind.SIDECAR_HIGHLIGHT, highlightId);
+        return u != null ? new RectF(u[0], u[1], u[2], u[3]) : null;
     }
 
     @Nullable
@@ -0,0 +1,35 @@
+package org.opendroidpdf.app.selection;
+
+/**
+ * Immutable rect in document coordinates for selection highlights. Kept free
+ * of android.graphics so the selection model runs (and is tested) on a plain JVM.
+ */
+public final class TextBounds {
+    public static final TextBounds EMPTY = new TextBounds(0f, 0f, 0f, 0f);
+
+    public final float left;
+    public final float top;
+    public final float right;
+    public final float bottom;
+
+    public TextBounds(float left, float top, float right, float bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    /** Same test as {@code RectF.isEmpty()}. */
+    public boolean isEmpty() {
+        return left >= right || top >= bottom;
+    }
+
+    boolean sameAs(TextBounds other) {
+        return left == other.left && top == other.top && right == other.right && bottom == other.bottom;
+    }
+
+    @Override
+    public String toString() {
+        return "TextBounds(" + left + ", " + top + ", " + right + ", " + bottom + ")";
+    }
+}
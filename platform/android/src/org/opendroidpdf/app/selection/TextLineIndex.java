@@ -0,0 +1,183 @@
+package org.opendroidpdf.app.selection;
+
+import androidx.annotation.NonNull;
+
+import org.opendroidpdf.TextProcessor;
+import org.opendroidpdf.TextWord;
+
+import java.util.Arrays;
+
+/**
+ * Vertical index over a page's text lines, so a selection box maps to its lines and words by
+ * binary search instead of a scan of the page.
+ * <p>
+ * A line's extent is its first word's top/bottom, matching {@link org.opendroidpdf.TextSelector}.
+ * Lines are sorted by top; since no line is taller than {@link #maxLineHeight}, the lines that
+ * overlap a band are found between two binary searches. Within a line, words are usually laid out
+ * left to right; for such lines the words overlapping a horizontal span form a contiguous range
+ * that is also found by binary search. Other lines fall back to a scan of that line.
+ * <p>
+ * The indexes of the last few text arrays are cached (by identity), so page views, renderers and
+ * selectors working on the same extracted text share one.
+ */
+public final class TextLineIndex {
+    /** The page views on screen plus one; indexes hold their text, so this stays small. */
+    private static final int CACHED_INDEXES = 4;
+    /** Most recently used first; matched by text array identity. */
+    private static final TextLineIndex[] CACHE = new TextLineIndex[CACHED_INDEXES];
+
+    private final TextWord[][] text;
+    /** Non-empty line indices sorted by top. */
+    private final int[] byTop;
+    private final float[] sortedTops;
+    private final float maxLineHeight;
+    /** Whether a line's words have non-decreasing left and right edges. */
+    private final boolean[] ordered;
+
+    /** Cached index for {@code text}, built on the calling thread if needed (O(n log n) in lines). */
+    @NonNull
+    public static TextLineIndex of(@NonNull TextWord[][] text) {
+        synchronized (CACHE) {
+            for (int i = 0; i < CACHE.length; i++) {
+                TextLineIndex index = CACHE[i];
+                if (index != null && index.text == text) {
+                    System.arraycopy(CACHE, 0, CACHE, 1, i);
+                    CACHE[0] = index;
+                    return index;
+                }
+            }
+        }
+        TextLineIndex index = new TextLineIndex(text);
+        synchronized (CACHE) {
+            System.arraycopy(CACHE, 0, CACHE, 1, CACHE.length - 1);
+            CACHE[0] = index;
+        }
+        return index;
+    }
+
+    TextLineIndex(@NonNull TextWord[][] text) {
+        this.text = text;
+        int n = 0;
+        for (TextWord[] line : text) {
+            if (line != null && line.length > 0) n++;
+        }
+        Integer[] lines = new Integer[n];
+        ordered = new boolean[text.length];
+        float maxHeight = 0f;
+        int k = 0;
+        for (int i = 0; i < text.length; i++) {
+            TextWord[] line = text[i];
+            if (line == null || line.length == 0) continue;
+            lines[k++] = i;
+            maxHeight = Math.max(maxHeight, line[0].bottom - line[0].top);
+            ordered[i] = isOrdered(line);
+        }
+        Arrays.sort(lines, (a, b) -> Float.compare(text[a][0].top, text[b][0].top));
+        byTop = new int[n];
+        sortedTops = new float[n];
+        for (int i = 0; i < n; i++) {
+            byTop[i] = lines[i];
+            sortedTops[i] = text[lines[i]][0].top;
+        }
+        maxLineHeight = maxHeight;
+    }
+
+    @NonNull
+    public TextWord[][] text() {
+        return text;
+    }
+
+    /**
+     * Indices of the lines with {@code bottom > top && top < bottom} (same test as
+     * {@link org.opendroidpdf.TextSelector}), in reading (array) order.
+     */
+    @NonNull
+    public int[] linesOverlapping(float top, float bottom) {
+        int from = firstTopAbove(top - maxLineHeight);
+        int to = firstTopAtLeast(bottom);
+        if (from >= to) return new int[0];
+        int[] out = new int[to - from];
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            int line = byTop[i];
+            if (text[line][0].bottom > top) out[n++] = line;
+        }
+        Arrays.sort(out, 0, n);
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /** Whether the words of {@code line} overlapping a span form one range found by search. */
+    public boolean isOrdered(int line) {
+        return ordered[line];
+    }
+
+    /**
+     * First word of an ordered line with {@code right > start}; {@code line.length} if none.
+     */
+    public int firstWordEndingAfter(int line, float start) {
+        TextWord[] words = text[line];
+        int lo = 0;
+        int hi = words.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (words[mid].right > start) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    /** End (exclusive) of the words of an ordered line with {@code left < end}. */
+    public int endOfWordsStartingBefore(int line, float end) {
+        TextWord[] words = text[line];
+        int lo = 0;
+        int hi = words.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (words[mid].left < end) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** Sends the words of {@code line} with {@code right > start && left < end} to {@code tp}. */
+    public void emitWords(int line, float start, float end, @NonNull TextProcessor tp) {
+        TextWord[] words = text[line];
+        if (ordered[line]) {
+            int to = endOfWordsStartingBefore(line, end);
+            for (int w = firstWordEndingAfter(line, start); w < to; w++) tp.onWord(words[w]);
+        } else {
+            for (TextWord word : words) {
+                if (word.right > start && word.left < end) tp.onWord(word);
+            }
+        }
+    }
+
+    private int firstTopAbove(float value) {
+        int lo = 0;
+        int hi = sortedTops.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedTops[mid] > value) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    private int firstTopAtLeast(float value) {
+        int lo = 0;
+        int hi = sortedTops.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedTops[mid] >= value) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    private static boolean isOrdered(@NonNull TextWord[] line) {
+        for (int i = 1; i < line.length; i++) {
+            if (line[i].left < line[i - 1].left || line[i].right < line[i - 1].right) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+package org.opendroidpdf.app.selection;
+
+import androidx.annotation.NonNull;
+
+import org.opendroidpdf.TextProcessor;
+import org.opendroidpdf.TextWord;
+
+/**
+ * Incrementally maintained text selection over one page's {@link TextLineIndex}.
+ * <p>
+ * Each {@link #update} maps the selection box to lines by binary search and, per line, to a word
+ * span. Lines whose span did not change keep their word range and highlight rect from the previous
+ * update, so dragging a handle only recomputes the lines at the moving ends (and lines entering or
+ * leaving the box).
+ */
+public final class TextSelectionModel {
+    private final TextLineIndex index;
+    private final TextWord[][] text;
+
+    // Current selection, one slot per selected line in reading order.
+    private int count;
+    private int[] lines = new int[0];
+    private float[] spanStarts = new float[0];
+    private float[] spanEnds = new float[0];
+    private TextBounds[] rects = new TextBounds[0];
+
+    public TextSelectionModel(@NonNull TextLineIndex index) {
+        this.index = index;
+        this.text = index.text();
+    }
+
+    @NonNull
+    public TextLineIndex index() {
+        return index;
+    }
+
+    /**
+     * Selects the words of the box the way {@link org.opendroidpdf.TextSelector} does with the
+     * given limits. Returns whether any line's highlight changed.
+     */
+    public boolean update(float boxLeft, float boxTop, float boxRight, float boxBottom,
+                          float startLimit, float endLimit) {
+        int[] next = index.linesOverlapping(boxTop, boxBottom);
+        int n = next.length;
+        float[] nextStarts = new float[n];
+        float[] nextEnds = new float[n];
+        TextBounds[] nextRects = new TextBounds[n];
+
+        boolean changed = false;
+
+        int j = 0; // walks the previous selection, which is sorted by line too
+        for (int i = 0; i < n; i++) {
+            int line = next[i];
+            TextWord first = text[line][0];
+            float start = startLimit;
+            float end = endLimit;
+            boolean firstLine = first.top < boxTop;
+            boolean lastLine = first.bottom > boxBottom;
+            if (firstLine && lastLine) {
+                start = Math.min(boxLeft, boxRight);
+                end = Math.max(boxLeft, boxRight);
+            } else if (firstLine) {
+                start = boxLeft;
+            } else if (lastLine) {
+                end = boxRight;
+            }
+            nextStarts[i] = start;
+            nextEnds[i] = end;
+
+            while (j < count && lines[j] < line) {
+                // Dropped from the selection.
+                if (!rects[j].isEmpty()) changed = true;
+                j++;
+            }
+            TextBounds previous = null;
+            if (j < count && lines[j] == line) {
+                if (spanStarts[j] == start && spanEnds[j] == end) {
+                    nextRects[i] = rects[j++];
+                    continue;
+                }
+                previous = rects[j++];
+            }
+
+            TextBounds rect = lineRect(line, start, end);
+            nextRects[i] = rect;
+            boolean same = previous != null ? previous.sameAs(rect) : rect.isEmpty();
+            if (!same) changed = true;
+        }
+        for (; j < count; j++) {
+            if (!rects[j].isEmpty()) changed = true;
+        }
+
+        count = n;
+        lines = next;
+        spanStarts = nextStarts;
+        spanEnds = nextEnds;
+        rects = nextRects;
+        return changed;
+    }
+
+    /** Drops the selection (e.g. when the box is cleared). */
+    public void clear() {
+        count = 0;
+        lines = new int[0];
+        spanStarts = new float[0];
+        spanEnds = new float[0];
+        rects = new TextBounds[0];
+    }
+
+    /** Number of lines the box overlaps, including lines with no selected word. */
+    public int lineCount() {
+        return count;
+    }
+
+    /** Highlight rect of the i-th selected line (document coordinates); empty if no word matched. */
+    @NonNull
+    public TextBounds lineRect(int i) {
+        return rects[i];
+    }
+
+    /** Streams the current selection in the {@link org.opendroidpdf.TextSelector} order. */
+    public void select(@NonNull TextProcessor tp) {
+        for (int i = 0; i < count; i++) {
+            tp.onStartLine();
+            index.emitWords(lines[i], spanStarts[i], spanEnds[i], tp);
+            tp.onEndLine();
+        }
+        tp.onEndText();
+    }
+
+    @NonNull
+    private TextBounds lineRect(int line, float start, float end) {
+        TextWord[] words = text[line];
+        float l = Float.POSITIVE_INFINITY, t = Float.POSITIVE_INFINITY;
+        float r = Float.NEGATIVE_INFINITY, b = Float.NEGATIVE_INFINITY;
+        int from = 0;
+        int to = words.length;
+        boolean ordered = index.isOrdered(line);
+        if (ordered) {
+            from = index.firstWordEndingAfter(line, start);
+            to = index.endOfWordsStartingBefore(line, end);
+        }
+        for (int w = from; w < to; w++) {
+            TextWord word = words[w];
+            if (!ordered && !(word.right > start && word.left < end)) continue;
+            // Like RectF.union(): empty boxes (e.g. zero-width spaces) do not extend the highlight.
+            if (word.left >= word.right || word.top >= word.bottom) continue;
+            l = Math.min(l, word.left); t = Math.min(t, word.top);
+            r = Math.max(r, word.right); b = Math.max(b, word.bottom);
+        }
+        return l <= r ? new TextBounds(l, t, r, b) : TextBounds.EMPTY;
+    }
+}
@@ -0,0 +1,137 @@
+package org.opendroidpdf.app.services.recent;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * SQLite schema for recents and per-document viewport snapshots.
+ *
+ * <p>{@code recents} holds the ordered list (one row per slot); {@code viewports} is keyed by doc
+ * id and trimmed by {@code updated_at_ms}. On first creation, rows are copied from the legacy
+ * SharedPreferences schema.</p>
+ */
+final class RecentFilesDbHelper extends SQLiteOpenHelper {
+    private static final String DB_NAME = "recent_files.db";
+    private static final int DB_VERSION = 1;
+
+    @Nullable private final SharedPreferencesRecentFilesStore legacy;
+    private boolean importedLegacy;
+
+    RecentFilesDbHelper(@NonNull Context context, @Nullable SharedPreferencesRecentFilesStore legacy) {
+        super(context, DB_NAME, null, DB_VERSION);
+        this.legacy = legacy;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        try {
+            db.enableWriteAheadLogging();
+        } catch (Throwable ignore) {
+        }
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS recents (" +
+                        "position INTEGER PRIMARY KEY," +
+                        "doc_id TEXT NOT NULL," +
+                        "uri TEXT NOT NULL," +
+                        "display_name TEXT," +
+                        "last_opened_ms INTEGER NOT NULL," +
+                        "thumbnail TEXT" +
+                        ")"
+        );
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS viewports (" +
+                        "doc_id TEXT PRIMARY KEY," +
+                        "page INTEGER NOT NULL," +
+                        "scale REAL NOT NULL," +
+                        "x_scroll REAL NOT NULL," +
+                        "y_scroll REAL NOT NULL," +
+                        "doc_progress REAL," +
+                        "layout_profile_id TEXT," +
+                        "reflow_location INTEGER," +
+                        "updated_at_ms INTEGER NOT NULL" +
+                        ")"
+        );
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_viewports_updated ON viewports(updated_at_ms)");
+
+        if (legacy != null) importLegacy(db, legacy);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // v1 is the first schema.
+    }
+
+    /** True once, after {@link #onCreate} copied legacy rows; the caller then drops the old keys. */
+    synchronized boolean takeImportedLegacy() {
+        boolean imported = importedLegacy;
+        importedLegacy = false;
+        return imported;
+    }
+
+    private void importLegacy(@NonNull SQLiteDatabase db, @NonNull SharedPreferencesRecentFilesStore legacy) {
+        List<RecentEntry> recents = legacy.loadRecents();
+        writeRecents(db, recents);
+        // Legacy viewports carry no timestamp; recents keep their open time so trimming keeps them.
+        HashMap<String, Long> openedAt = new HashMap<>();
+        for (RecentEntry e : recents) {
+            openedAt.put(e.docId(), e.lastOpenedEpochMs());
+            openedAt.put(e.uriString(), e.lastOpenedEpochMs());
+        }
+        for (String docId : legacy.viewportDocIds()) {
+            ViewportSnapshot vp = legacy.loadViewport(docId);
+            if (vp == null) continue;
+            Long at = openedAt.get(docId);
+            writeViewport(db, docId, vp, at != null ? at : 0L);
+        }
+        synchronized (this) {
+            importedLegacy = true;
+        }
+    }
+
+    static void writeRecents(@NonNull SQLiteDatabase db, @NonNull List<RecentEntry> entries) {
+        db.delete("recents", null, null);
+        for (int i = 0; i < entries.size(); i++) {
+            RecentEntry e = entries.get(i);
+            ContentValues v = new ContentValues();
+            v.put("position", i);
+            v.put("doc_id", e.docId());
+            v.put("uri", e.uriString());
+            v.put("display_name", e.displayName());
+            v.put("last_opened_ms", e.lastOpenedEpochMs());
+            v.put("thumbnail", e.thumbnailString());
+            db.insert("recents", null, v);
+        }
+    }
+
+    static void writeViewport(@NonNull SQLiteDatabase db,
+                              @NonNull String docId,
+                              @NonNull ViewportSnapshot vp,
+                              long updatedAtMs) {
+        ContentValues v = new ContentValues();
+        v.put("doc_id", docId);
+        v.put("page", vp.page());
+        v.put("scale", vp.normalizedScale());
+        v.put("x_scroll", vp.normalizedXScroll());
+        v.put("y_scroll", vp.normalizedYScroll());
+        if (vp.docProgress01() >= 0f) v.put("doc_progress", vp.docProgress01());
+        else v.putNull("doc_progress");
+        v.put("layout_profile_id", vp.layoutProfileId());
+        if (vp.reflowLocation() != -1L) v.put("reflow_location", vp.reflowLocation());
+        else v.putNull("reflow_location");
+        v.put("updated_at_ms", updatedAtMs);
+        db.insertWithOnConflict("viewports", null, v, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
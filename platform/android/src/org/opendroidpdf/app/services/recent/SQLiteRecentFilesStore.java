@@ -0,0 +1,373 @@
+package org.opendroidpdf.app.services.recent;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.opendroidpdf.PdfThumbnailManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * SQLite-backed {@link RecentFilesStore}.
+ *
+ * <p>The database is opened on a single background thread as soon as the store is created, and
+ * the recents list (at most {@link #MAX_RECENT_FILES} rows) is read there together with its
+ * viewports. Both are then served from memory, so {@link #loadRecents()} does no I/O on the
+ * caller; a call that comes before that first read waits for it. Other viewports are looked up
+ * by doc id, and history is capped at {@link #MAX_VIEWPORTS}; snapshots for documents in the
+ * recents list are never trimmed. Writes go to the same thread in call order. Reads see them
+ * straight away, because unwritten values are kept in memory until they commit.</p>
+ *
+ * <p>On first open, data from {@link SharedPreferencesRecentFilesStore} is copied over and the
+ * legacy keys are removed.</p>
+ */
+public final class SQLiteRecentFilesStore implements RecentFilesStore {
+    private static final String TAG = "SQLiteRecentFilesStore";
+    static final int MAX_RECENT_FILES = 100;
+    static final int MAX_VIEWPORTS = 500;
+
+    private final Context appContext;
+    private final RecentFilesDbHelper helper;
+    @Nullable private final SharedPreferencesRecentFilesStore legacy;
+    private final ExecutorService writer;
+    /** Opens the database and reads the recents; submitted to {@link #writer} on construction. */
+    private final Future<?> initialRead;
+
+    /** Recents without viewports, in display order; null until first read. Guarded by {@code this}. */
+    @Nullable private List<RecentEntry> recents;
+    /**
+     * Viewports of {@link #recents}, keyed by doc id or, for older entries, by uri string. Guarded
+     * by {@code this}.
+     */
+    private final HashMap<String, ViewportSnapshot> recentViewports = new HashMap<>();
+    /** Latest list not yet written; null when the table is current. Guarded by {@code this}. */
+    @Nullable private List<RecentEntry> unwrittenRecents;
+    /** Viewports not yet written, by doc id. Guarded by {@code this}. */
+    private final HashMap<String, ViewportSnapshot> unwrittenViewports = new HashMap<>();
+    private boolean viewportWriteScheduled;
+
+    public SQLiteRecentFilesStore(@NonNull Context context,
+                                  @Nullable SharedPreferencesRecentFilesStore legacy) {
+        this.appContext = context.getApplicationContext();
+        this.legacy = legacy;
+        this.helper = new RecentFilesDbHelper(appContext, legacy);
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "recents-writes");
+            t.setDaemon(true);
+            return t;
+        });
+        this.initialRead = writer.submit(this::readRecents);
+    }
+
+    @Override
+    public List<RecentEntry> loadRecents() {
+        List<RecentEntry> rows = recentRows();
+        if (rows.isEmpty()) return new ArrayList<>(0);
+
+        List<RecentEntry> entries = new ArrayList<>(rows.size());
+        synchronized (this) {
+            for (RecentEntry e : rows) {
+                ViewportSnapshot vp = cachedViewport(e.docId());
+                if (vp == null) vp = cachedViewport(e.uriString());
+                entries.add(new RecentEntry(
+                        e.docId(),
+                        e.uriString(),
+                        e.displayName(),
+                        e.lastOpenedEpochMs(),
+                        vp != null ? vp.page() : 0,
+                        vp,
+                        e.thumbnailString()));
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void persistRecents(List<RecentEntry> entries) {
+        if (entries == null) return;
+        // Outside the lock: this may wait for the initial read, which takes the lock.
+        recentRows();
+        synchronized (this) {
+            persistRecentsLocked(entries);
+        }
+    }
+
+    private void persistRecentsLocked(@NonNull List<RecentEntry> entries) {
+        List<RecentEntry> previous = recents != null ? recents : Collections.<RecentEntry>emptyList();
+
+        // If a recent is re-recorded without a thumbnail, keep the one stored for that docId.
+        Map<String, String> previousThumbnailByDocId = new HashMap<>();
+        Set<String> previousThumbnails = new HashSet<>();
+        for (RecentEntry e : previous) {
+            String thumb = e.thumbnailString();
+            if (thumb == null) continue;
+            previousThumbnails.add(thumb);
+            if (!previousThumbnailByDocId.containsKey(e.docId())) previousThumbnailByDocId.put(e.docId(), thumb);
+            if (!previousThumbnailByDocId.containsKey(e.uriString())) previousThumbnailByDocId.put(e.uriString(), thumb);
+        }
+
+        List<RecentEntry> normalized = new ArrayList<>();
+        Set<String> newThumbnails = new HashSet<>();
+        for (RecentEntry e : entries) {
+            if (e == null || e.uriString() == null) continue;
+            if (normalized.size() >= MAX_RECENT_FILES) break;
+
+            String docId = e.docId() != null ? e.docId() : e.uriString();
+            String thumb = e.thumbnailString();
+            if (thumb == null) thumb = previousThumbnailByDocId.get(docId);
+            if (thumb != null) newThumbnails.add(thumb);
+            normalized.add(new RecentEntry(docId, e.uriString(), e.displayName(), e.lastOpenedEpochMs(), 0, null, thumb));
+        }
+        final List<RecentEntry> snapshot = Collections.unmodifiableList(normalized);
+
+        final List<String> orphanedThumbnails = new ArrayList<>();
+        for (String oldThumb : previousThumbnails) {
+            if (!newThumbnails.contains(oldThumb)) orphanedThumbnails.add(oldThumb);
+        }
+
+        recents = snapshot;
+        unwrittenRecents = snapshot;
+
+        // Keep viewports for the new list only; read the ones not in memory yet after the write.
+        Set<String> keys = keysOf(snapshot);
+        recentViewports.keySet().retainAll(keys);
+        final Set<String> missing = new HashSet<>(keys);
+        missing.removeAll(recentViewports.keySet());
+
+        writer.execute(() -> {
+            writeRecents();
+            if (!missing.isEmpty()) readRecentViewports(missing);
+            // Delete thumbnails that are no longer referenced by any stored recent.
+            if (orphanedThumbnails.isEmpty()) return;
+            PdfThumbnailManager pdfThumbnailManager = new PdfThumbnailManager(appContext);
+            for (String thumb : orphanedThumbnails) {
+                try {
+                    pdfThumbnailManager.delete(thumb);
+                } catch (Throwable ignore) {
+                }
+            }
+        });
+    }
+
+    @Override
+    public void saveViewport(String docId, ViewportSnapshot snapshot) {
+        if (docId == null || snapshot == null) return;
+        synchronized (this) {
+            unwrittenViewports.put(docId, snapshot);
+            if (recents != null && keysOf(recents).contains(docId)) recentViewports.put(docId, snapshot);
+            if (viewportWriteScheduled) return;
+            viewportWriteScheduled = true;
+        }
+        writer.execute(this::writeViewports);
+    }
+
+    @Nullable
+    @Override
+    public ViewportSnapshot loadViewport(String docId) {
+        if (docId == null) return null;
+        synchronized (this) {
+            ViewportSnapshot cached = cachedViewport(docId);
+            if (cached != null) return cached;
+        }
+        return queryViewports(Collections.singleton(docId)).get(docId);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    /** Caller holds {@code this}. */
+    @Nullable
+    private ViewportSnapshot cachedViewport(@Nullable String key) {
+        if (key == null) return null;
+        ViewportSnapshot unwritten = unwrittenViewports.get(key);
+        return unwritten != null ? unwritten : recentViewports.get(key);
+    }
+
+    @NonNull
+    private static Set<String> keysOf(@NonNull List<RecentEntry> rows) {
+        Set<String> keys = new HashSet<>();
+        for (RecentEntry e : rows) {
+            keys.add(e.docId());
+            keys.add(e.uriString());
+        }
+        return keys;
+    }
+
+    /** The recents, waiting for the initial read if it is still running. */
+    @NonNull
+    private List<RecentEntry> recentRows() {
+        synchronized (this) {
+            if (recents != null) return recents;
+        }
+        try {
+            initialRead.get();
+        } catch (Exception e) {
+            Log.w(TAG, "reading recents failed", e);
+        }
+        synchronized (this) {
+            if (recents != null) return recents;
+        }
+        // The initial read failed; try again on the caller.
+        readRecents();
+        synchronized (this) {
+            return recents != null ? recents : Collections.<RecentEntry>emptyList();
+        }
+    }
+
+    /** Reads the recents and their viewports into memory, opening the database first if needed. */
+    private void readRecents() {
+        List<RecentEntry> rows = new ArrayList<>();
+        try (Cursor c = db().query("recents",
+                new String[]{"doc_id", "uri", "display_name", "last_opened_ms", "thumbnail"},
+                null, null, null, null,
+                "position ASC")) {
+            while (c.moveToNext()) {
+                rows.add(new RecentEntry(
+                        c.getString(0),
+                        c.getString(1),
+                        c.isNull(2) ? null : c.getString(2),
+                        c.getLong(3),
+                        0,
+                        null,
+                        c.isNull(4) ? null : c.getString(4)));
+            }
+        }
+        // One query for every viewport the list can use (docId, or uriString for older entries).
+        Set<String> keys = keysOf(rows);
+        Map<String, ViewportSnapshot> viewports = queryViewports(keys);
+        synchronized (this) {
+            // A persistRecents() that raced with this read wins.
+            if (recents != null) return;
+            recents = Collections.unmodifiableList(rows);
+            recentViewports.putAll(viewports);
+            // Snapshots saved since the query; they stay current once written.
+            for (Map.Entry<String, ViewportSnapshot> e : unwrittenViewports.entrySet()) {
+                if (keys.contains(e.getKey())) recentViewports.put(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /** Runs on {@link #writer}: fills in viewports for entries that joined the recents. */
+    private void readRecentViewports(@NonNull Set<String> keys) {
+        Map<String, ViewportSnapshot> viewports;
+        try {
+            viewports = queryViewports(keys);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "reading viewports failed", e);
+            return;
+        }
+        synchronized (this) {
+            if (recents == null) return;
+            Set<String> current = keysOf(recents);
+            for (Map.Entry<String, ViewportSnapshot> e : viewports.entrySet()) {
+                // A snapshot saved since the query is newer.
+                if (current.contains(e.getKey()) && !recentViewports.containsKey(e.getKey())) {
+                    recentViewports.put(e.getKey(), e.getValue());
+                }
+            }
+        }
+    }
+
+    @NonNull
+    private Map<String, ViewportSnapshot> queryViewports(@NonNull Set<String> docIds) {
+        HashMap<String, ViewportSnapshot> out = new HashMap<>();
+        if (docIds.isEmpty()) return out;
+        String[] args = docIds.toArray(new String[0]);
+        StringBuilder where = new StringBuilder("doc_id IN (");
+        for (int i = 0; i < args.length; i++) where.append(i == 0 ? "?" : ",?");
+        where.append(')');
+        try (Cursor c = db().query("viewports",
+                new String[]{"doc_id", "page", "scale", "x_scroll", "y_scroll", "doc_progress", "layout_profile_id", "reflow_location"},
+                where.toString(), args, null, null, null)) {
+            while (c.moveToNext()) {
+                out.put(c.getString(0), new ViewportSnapshot(
+                        c.getInt(1),
+                        c.getFloat(2),
+                        c.getFloat(3),
+                        c.getFloat(4),
+                        c.isNull(5) ? -1f : c.getFloat(5),
+                        c.isNull(6) ? null : c.getString(6),
+                        c.isNull(7) ? -1L : c.getLong(7)));
+            }
+        }
+        synchronized (this) {
+            for (Map.Entry<String, ViewportSnapshot> e : unwrittenViewports.entrySet()) {
+                if (docIds.contains(e.getKey())) out.put(e.getKey(), e.getValue());
+            }
+        }
+        return out;
+    }
+
+    /** Runs on {@link #writer}. */
+    private void writeRecents() {
+        List<RecentEntry> rows;
+        synchronized (this) {
+            rows = unwrittenRecents;
+            unwrittenRecents = null;
+        }
+        if (rows == null) return;
+        SQLiteDatabase db = db();
+        db.beginTransaction();
+        try {
+            RecentFilesDbHelper.writeRecents(db, rows);
+            db.setTransactionSuccessful();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "writing recents failed", e);
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Runs on {@link #writer}. */
+    private void writeViewports() {
+        HashMap<String, ViewportSnapshot> batch;
+        synchronized (this) {
+            viewportWriteScheduled = false;
+            batch = new HashMap<>(unwrittenViewports);
+        }
+        if (batch.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        SQLiteDatabase db = db();
+        db.beginTransaction();
+        try {
+            for (Map.Entry<String, ViewportSnapshot> e : batch.entrySet()) {
+                RecentFilesDbHelper.writeViewport(db, e.getKey(), e.getValue(), now);
+            }
+            db.execSQL("DELETE FROM viewports WHERE doc_id IN ("
+                    + "SELECT doc_id FROM viewports ORDER BY updated_at_ms DESC LIMIT -1 OFFSET " + MAX_VIEWPORTS
+                    + ") AND doc_id NOT IN (SELECT doc_id FROM recents) AND doc_id NOT IN (SELECT uri FROM recents)");
+            db.setTransactionSuccessful();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "writing viewports failed", e);
+            return;
+        } finally {
+            db.endTransaction();
+        }
+        synchronized (this) {
+            // Keep anything saved again while this batch was being written.
+            for (Map.Entry<String, ViewportSnapshot> e : batch.entrySet()) {
+                if (unwrittenViewports.get(e.getKey()) == e.getValue()) unwrittenViewports.remove(e.getKey());
+            }
+        }
+    }
+
+    @NonNull
+    private SQLiteDatabase db() {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        if (legacy != null && helper.takeImportedLegacy()) legacy.clear();
+        return db;
+    }
+}
@@ -18,8 +18,10 @@ import java.util.Map;
 import java.util.Set;
 
 /**
- * SharedPreferences-backed store using the legacy schema so existing data
- * migrates seamlessly.
+ * SharedPreferences-backed store using the legacy schema.
+ *
+ * <p>Kept as the migration source for {@link SQLiteRecentFilesStore}: the legacy schema rewrites
+ * every recents key on each save and never drops per-document viewport keys.</p>
  */
 public final class SharedPreferencesRecentFilesStore implements RecentFilesStore {
     private static final int MAX_RECENT_FILES = 100;
@@ -28,6 +30,7 @@ public final class SharedPreferencesRecentFilesStore implements RecentFilesStore
     private static final String KEY_RECENTFILE_LAST_OPENED = "recentfile_lastModified";
     private static final String KEY_RECENTFILE_DISPLAY_NAME = "recentfile_displayName";
     private static final String KEY_RECENTFILE_THUMBNAIL = "recentfile_thumbnailString";
+    private static final String KEY_VIEWPORT_SCALE = "normalizedscale";
 
     private final Context appContext;
     private final SharedPreferences prefs;
@@ -170,7 +173,7 @@ public final class SharedPreferencesRecentFilesStore implements RecentFilesStore
     public void saveViewport(String docId, ViewportSnapshot snapshot) {
         SharedPreferences.Editor edit = prefs.edit();
         edit.putInt("page" + docId, snapshot.page());
-        edit.putFloat("normalizedscale" + docId, snapshot.normalizedScale());
+        edit.putFloat(KEY_VIEWPORT_SCALE + docId, snapshot.normalizedScale());
         edit.putFloat("normalizedxscroll" + docId, snapshot.normalizedXScroll());
         edit.putFloat("normalizedyscroll" + docId, snapshot.normalizedYScroll());
         float docProgress01 = snapshot.docProgress01();
@@ -200,7 +203,7 @@ public final class SharedPreferencesRecentFilesStore implements RecentFilesStore
         String pageKey = "page" + docId;
         if (!prefs.contains(pageKey)) return null;
         int page = prefs.getInt(pageKey, 0);
-        float scale = prefs.getFloat("normalizedscale" + docId, 0f);
+        float scale = prefs.getFloat(KEY_VIEWPORT_SCALE + docId, 0f);
         float nx = prefs.getFloat("normalizedxscroll" + docId, 0f);
         float ny = prefs.getFloat("normalizedyscroll" + docId, 0f);
         float docProgress01 = prefs.getFloat("docprogress" + docId, -1f);
@@ -208,4 +211,37 @@ public final class SharedPreferencesRecentFilesStore implements RecentFilesStore
         long reflowLocation = prefs.getLong("reflowLocation" + docId, -1L);
         return new ViewportSnapshot(page, scale, nx, ny, docProgress01, layoutProfileId, reflowLocation);
     }
+
+    /** Doc ids that have a stored viewport. */
+    @NonNull
+    Set<String> viewportDocIds() {
+        Set<String> out = new HashSet<>();
+        for (String key : prefs.getAll().keySet()) {
+            if (key.startsWith(KEY_VIEWPORT_SCALE)) out.add(key.substring(KEY_VIEWPORT_SCALE.length()));
+        }
+        return out;
+    }
+
+    /** Removes all recents and viewport keys once they have been migrated. */
+    void clear() {
+        Set<String> viewportDocIds = viewportDocIds();
+        SharedPreferences.Editor edit = prefs.edit();
+        for (int i = 0; i < MAX_RECENT_FILES; i++) {
+            edit.remove(KEY_RECENTFILE + i);
+            edit.remove(KEY_RECENTFILE_DOC_ID + i);
+            edit.remove(KEY_RECENTFILE_LAST_OPENED + i);
+            edit.remove(KEY_RECENTFILE_DISPLAY_NAME + i);
+            edit.remove(KEY_RECENTFILE_THUMBNAIL + i);
+        }
+        for (String docId : viewportDocIds) {
+            edit.remove("page" + docId);
+            edit.remove(KEY_VIEWPORT_SCALE + docId);
+            edit.remove("normalizedxscroll" + docId);
+            edit.remove("normalizedyscroll" + docId);
+            edit.remove("docprogress" + docId);
+            edit.remove("layoutProfileId" + docId);
+            edit.remove("reflowLocation" + docId);
+        }
+        edit.apply();
+    }
 }
@@ -21,8 +21,8 @@ import java.util.List;
 /**
  * SQLite-backed implementation of {@link SidecarAnnotationStore}.
  *
- * <p>All methods are synchronous; callers should keep payloads small or move usage off the UI
- * thread if they observe jank.</p>
+ * <p>All methods are synchronous. The app reaches it through
+ * {@link WriteBehindSidecarAnnotationStore}, which moves mutations off the calling thread.</p>
  */
 public final class SQLiteSidecarAnnotationStore implements SidecarAnnotationStore {
     private final SidecarDbHelper helper;
@@ -64,15 +64,26 @@ public final class SQLiteSidecarAnnotationStore implements SidecarAnnotationStor
     @Override
     @NonNull
     public List<SidecarInkStroke> listAllInk(@NonNull String docId) {
-        SQLiteDatabase db = helper.getReadableDatabase();
         ArrayList<SidecarInkStroke> out = new ArrayList<>();
-        try (Cursor c = db.query("ink_strokes",
-                new String[]{"id", "page_index", "layout_profile_id", "color", "thickness", "created_at_ms", "points"},
-                "doc_id=?",
-                new String[]{docId},
-                null, null,
-                "created_at_ms ASC")) {
-            while (c.moveToNext()) {
+        try (RowCursor<SidecarInkStroke> rows = openAllInk(docId)) {
+            for (SidecarInkStroke row; (row = rows.next()) != null; ) out.add(row);
+        }
+        return out;
+    }
+
+    @Override
+    @NonNull
+    public RowCursor<SidecarInkStroke> openAllInk(@NonNull String docId) {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        return new CursorRows<SidecarInkStroke>(db.query("ink_strokes",
+                        new String[]{"id", "page_index", "layout_profile_id", "color", "thickness", "created_at_ms", "points"},
+                        "doc_id=?",
+                        new String[]{docId},
+                        null, null,
+                        "created_at_ms ASC")) {
+            @Override
+            @Nullable
+            SidecarInkStroke read(@NonNull Cursor c) {
                 String id = c.getString(0);
                 int pageIndex = c.getInt(1);
                 String layout = c.isNull(2) ? null : c.getString(2);
@@ -81,11 +92,10 @@ public final class SQLiteSidecarAnnotationStore implements SidecarAnnotationStor
                 long createdAt = c.getLong(5);
                 byte[] blob = c.getBlob(6);
                 PointF[] points = SidecarPointCodec.decodePoints(blob);
-                if (id == null || points == null) continue;
-                out.add(new SidecarInkStroke(id, pageIndex, layout, color, thickness, createdAt, points));
+                if (id == null || points == null) return null;
+                return new SidecarInkStroke(id, pageIndex, layout, color, thickness, createdAt, points);
             }
-        }
-        return out;
+        };
     }
 
     @Override
@@ -170,15 +180,26 @@ public final class SQLiteSidecarAnnotationStore implements SidecarAnnotationStor
     @Override
     @NonNull
     public List<SidecarHighlight> listAllHighlights(@NonNull String docId) {
-        SQLiteDatabase db = helper.getReadableDatabase();
         ArrayList<SidecarHighlight> out = new ArrayList<>();
-        try (Cursor c = db.query("highlights",
-                new String[]{"id", "page_index", "layout_profile_id", "type_ordinal", "color", "opacity", "created_at_ms", "quad_points", "quote", "quote_prefix", "quote_suffix", "doc_progress", "reflow_location", "anchor_start_word", "anchor_end_word_excl"},
-                "doc_id=?",
-                new String[]{docId},
-                null, null,
-                "created_at_ms ASC")) {
-            while (c.moveToNext()) {
+        try (RowCursor<SidecarHighlight> rows = openAllHighlights(docId)) {
+            for (SidecarHighlight row; (row = rows.next()) != null; ) out.add(row);
+        }
+        return out;
+    }
+
+    @Override
+    @NonNull
+    public RowCursor<SidecarHighlight> openAllHighlights(@NonNull String docId) {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        return new CursorRows<SidecarHighlight>(db.query("highlights",
+                        new String[]{"id", "page_index", "layout_profile_id", "type_ordinal", "color", "opacity", "created_at_ms", "quad_points", "quote", "quote_prefix", "quote_suffix", "doc_progress", "reflow_location", "anchor_start_word", "anchor_end_word_excl"},
+                        "doc_id=?",
+                        new String[]{docId},
+                        null, null,
+                        "created_at_ms ASC")) {
+            @Override
+            @Nullable
+            SidecarHighlight read(@NonNull Cursor c) {
                 String id = c.getString(0);
                 int pageIndex = c.getInt(1);
                 String layout = c.isNull(2) ? null : c.getString(2);
@@ -198,11 +219,10 @@ public final class SQLiteSidecarAnnotationStore implements SidecarAnnotationStor
                 Annotation.Type type = (typeOrdinal >= 0 && typeOrdinal < Annotation.Type.values().length)
                         ? Annotation.Type.values()[typeOrdinal]
                         : null;
-                if (id == null || type == null || points == null) continue;
-                out.add(new SidecarHighlight(id, pageIndex, layout, type, color, opacity, createdAt, points, quote, quotePrefix, quoteSuffix, docProgress01, reflowLocation, anchorStartWord, anchorEndWordExcl));
+                if (id == null || type == null || points == null) return null;
+                return new SidecarHighlight(id, pageIndex, layout, type, color, opacity, createdAt, points, quote, quotePrefix, quoteSuffix, docProgress01, reflowLocation, anchorStartWord, anchorEndWordExcl);
             }
-        }
-        return out;
+        };
     }
 
     @Override
@@ -316,15 +336,26 @@ public final class SQLiteSidecarAnnotationStore implements SidecarAnnotationStor
     @Override
     @NonNull
     public List<SidecarNote> listAllNotes(@NonNull String docId) {
-        SQLiteDatabase db = helper.getReadableDatabase();
         ArrayList<SidecarNote> out = new ArrayList<>();
-        try (Cursor c = db.query("notes",
-                new String[]{"id", "page_index", "layout_profile_id", "left", "top", "right", "bottom", "text", "created_at_ms", "color", "font_family", "font_style_flags", "font_size", "line_height", "text_indent_pt", "user_resized", "bg_color", "bg_opacity", "border_color", "border_width_pt", "border_style", "border_radius_pt", "lock_position_size", "lock_contents", "rotation_deg"},
-                "doc_id=?",
-                new String[]{docId},
-                null, null,
-                "created_at_ms ASC")) {
-            while (c.moveToNext()) {
+        try (RowCursor<SidecarNote> rows = openAllNotes(docId)) {
+            for (SidecarNote row; (row = rows.next()) != null; ) out.add(row);
+        }
+        return out;
+    }
+
+    @Override
+    @NonNull
+    public RowCursor<SidecarNote> openAllNotes(@NonNull String docId) {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        return new CursorRows<SidecarNote>(db.query("notes",
+                        new String[]{"id", "page_index", "layout_profile_id", "left", "top", "right", "bottom", "text", "created_at_ms", "color", "font_family", "font_style_flags", "font_size", "line_height", "text_indent_pt", "user_resized", "bg_color", "bg_opacity", "border_color", "border_width_pt", "border_style", "border_radius_pt", "lock_position_size", "lock_contents", "rotation_deg"},
+                        "doc_id=?",
+                        new String[]{docId},
+                        null, null,
+                        "created_at_ms ASC")) {
+            @Override
+            @Nullable
+            SidecarNote read(@NonNull Cursor c) {
                 String id = c.getString(0);
                 int pageIndex = c.getInt(1);
                 String layout = c.isNull(2) ? null : c.getString(2);
@@ -350,10 +381,9 @@ public final class SQLiteSidecarAnnotationStore implements SidecarAnnotationStor
                 boolean lockPositionSize = !c.isNull(22) && c.getInt(22) != 0;
                 boolean lockContents = !c.isNull(23) && c.getInt(23) != 0;
                 int rotationDeg = c.isNull(24) ? SidecarNote.DEFAULT_ROTATION_DEG : c.getInt(24);
-                out.add(new SidecarNote(id, pageIndex, layout, new RectF(left, top, right, bottom), text, createdAt, color, fontFamily, fontStyleFlags, fontSize, lineHeight, textIndentPt, userResized, bgColor, bgOpacity, borderColor, borderWidthPt, borderStyle, borderRadiusPt, lockPositionSize, lockContents, rotationDeg));
+                return new SidecarNote(id, pageIndex, layout, new RectF(left, top, right, bottom), text, createdAt, color, fontFamily, fontStyleFlags, fontSize, lineHeight, textIndentPt, userResized, bgColor, bgOpacity, borderColor, borderWidthPt, borderStyle, borderRadiusPt, lockPositionSize, lockContents, rotationDeg);
             }
-        }
-        return out;
+        };
     }
 
     @Override
@@ -486,4 +516,94 @@ public final class SQLiteSidecarAnnotationStore implements SidecarAnnotationStor
             db.endTransaction();
         }
     }
+
+    @Override
+    public long countAnnotations(@NonNull String docId) {
+        SQLiteDatabase db = helper.getReadableDatabase();
+        String[] args = new String[]{docId};
+        long total = 0;
+        for (String table : new String[]{"ink_strokes", "highlights", "notes"}) {
+            try (Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + table + " WHERE doc_id=?", args)) {
+                if (c.moveToFirst()) total += c.getLong(0);
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void runInTransaction(@NonNull Runnable work) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            work.run();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public boolean putUndoSpill(@NonNull String docId, long sequence, @NonNull String payload) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        ContentValues v = new ContentValues();
+        v.put("doc_id", docId);
+        v.put("seq", sequence);
+        v.put("payload", payload);
+        return db.insertWithOnConflict("undo_spill", null, v, SQLiteDatabase.CONFLICT_REPLACE) != -1;
+    }
+
+    @Override
+    @Nullable
+    public SpilledUndo takeNewestUndoSpill(@NonNull String docId) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        SpilledUndo out = null;
+        try (Cursor c = db.query("undo_spill",
+                new String[]{"seq", "payload"},
+                "doc_id=?",
+                new String[]{docId},
+                null, null,
+                "seq DESC",
+                "1")) {
+            if (c.moveToFirst() && !c.isNull(1)) {
+                out = new SpilledUndo(c.getLong(0), c.getString(1));
+            }
+        }
+        if (out != null) {
+            db.delete("undo_spill", "doc_id=? AND seq=?", new String[]{docId, String.valueOf(out.sequence)});
+        }
+        return out;
+    }
+
+    @Override
+    public void clearUndoSpill(@NonNull String docId) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.delete("undo_spill", "doc_id=?", new String[]{docId});
+    }
+
+    /** Streams rows out of an open cursor; {@link #read} returns null for rows that fail to decode. */
+    private abstract static class CursorRows<T> implements RowCursor<T> {
+        private final Cursor cursor;
+
+        CursorRows(@NonNull Cursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Nullable
+        abstract T read(@NonNull Cursor c);
+
+        @Override
+        @Nullable
+        public T next() {
+            while (cursor.moveToNext()) {
+                T row = read(cursor);
+                if (row != null) return row;
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
+        }
+    }
 }
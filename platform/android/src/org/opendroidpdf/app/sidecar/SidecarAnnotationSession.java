@@ -8,19 +8,24 @@ import androidx.annotation.Nullable;
 
 import org.opendroidpdf.Annotation;
 import org.opendroidpdf.TextWord;
+import org.opendroidpdf.app.annotation.UndoJournal;
+import org.opendroidpdf.app.memory.CacheGovernor;
 import org.opendroidpdf.app.reflow.ReflowPrefsSnapshot;
 import org.opendroidpdf.app.reflow.ReflowPrefsStore;
 import org.opendroidpdf.app.sidecar.model.SidecarHighlight;
 import org.opendroidpdf.app.sidecar.model.SidecarInkStroke;
 import org.opendroidpdf.app.sidecar.model.SidecarNote;
 
-import java.util.ArrayDeque;
+import org.json.JSONObject;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.io.InputStream;
 import java.io.OutputStream;
 
 /**
@@ -36,34 +41,86 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
     @Nullable private final ReflowPrefsStore reflowPrefsStore;
     @Nullable private final ReflowPrefsSnapshot reflowPrefsSnapshot;
 
-    private final ArrayDeque<UndoOp> undoStack = new ArrayDeque<>();
-    private final ArrayDeque<UndoOp> redoStack = new ArrayDeque<>();
+    /** In-memory undo budget; older entries spill to the store (see {@link UndoSpill}). */
+    private static final int UNDO_MAX_ENTRIES = 100;
+    private static final long UNDO_MAX_BYTES = 1024L * 1024;
+
+    private final UndoJournal<SidecarUndoOp> undoJournal;
+    private final SidecarUndoOp.Target undoTarget = new SidecarUndoOp.Target() {
+        @Override public SidecarInkStroke removeInkStroke(int pageIndex, @NonNull String strokeId) {
+            return SidecarAnnotationSession.this.removeInkStroke(pageIndex, strokeId);
+        }
+        @Override public void restoreInkStroke(@NonNull SidecarInkStroke stroke) {
+            SidecarAnnotationSession.this.restoreInkStroke(stroke);
+        }
+        @Override public SidecarHighlight removeHighlight(int pageIndex, @NonNull String highlightId) {
+            return SidecarAnnotationSession.this.removeHighlight(pageIndex, highlightId);
+        }
+        @Override public void restoreHighlight(@NonNull SidecarHighlight highlight) {
+            SidecarAnnotationSession.this.restoreHighlight(highlight);
+        }
+        @Override public SidecarNote removeNote(int pageIndex, @NonNull String noteId) {
+            return SidecarAnnotationSession.this.removeNote(pageIndex, noteId);
+        }
+        @Override public void restoreNote(@NonNull SidecarNote note) {
+            SidecarAnnotationSession.this.restoreNote(note);
+        }
+        @Override public SidecarNote findNote(int pageIndex, @NonNull String noteId) {
+            return SidecarAnnotationSession.this.findNote(pageIndex, noteId);
+        }
+    };
 
     private final Map<Integer, List<SidecarInkStroke>> inkCache = new HashMap<>();
     private final Map<Integer, List<SidecarHighlight>> highlightCache = new HashMap<>();
     private final Map<Integer, List<SidecarNote>> noteCache = new HashMap<>();
+    private final CacheGovernor.Registration pageCacheRegistration;
 
-    public interface UndoOp {
-        void undo();
-        void redo();
-    }
+    /**
+     * Spills undo entries evicted from memory to the store as JSON. Only undo-side entries are
+     * spilled, and those hold ids and prior states rather than anything captured by an undo.
+     */
+    private static final class UndoSpill implements UndoJournal.Spill<SidecarUndoOp> {
+        private final String docId;
+        private final SidecarAnnotationStore store;
 
-    private static final class DualOp implements UndoOp {
-        private final Runnable undo;
-        private final Runnable redo;
+        UndoSpill(@NonNull String docId, @NonNull SidecarAnnotationStore store) {
+            this.docId = docId;
+            this.store = store;
+        }
 
-        DualOp(@NonNull Runnable undo, @NonNull Runnable redo) {
-            this.undo = undo;
-            this.redo = redo;
+        @Override
+        public boolean spill(long sequence, @NonNull SidecarUndoOp value) {
+            try {
+                return store.putUndoSpill(docId, sequence, value.toJson().toString());
+            } catch (Throwable t) {
+                return false;
+            }
         }
 
-        @Override public void undo() { undo.run(); }
-        @Override public void redo() { redo.run(); }
+        @Override
+        @Nullable
+        public UndoJournal.Entry<SidecarUndoOp> restoreNewest() {
+            try {
+                SidecarAnnotationStore.SpilledUndo spilled = store.takeNewestUndoSpill(docId);
+                if (spilled == null) return null;
+                SidecarUndoOp op = SidecarUndoOp.fromJson(new JSONObject(spilled.payload));
+                return op != null ? new UndoJournal.Entry<>(spilled.sequence, op) : null;
+            } catch (Throwable t) {
+                return null;
+            }
+        }
+
+        @Override
+        public void clear() {
+            try {
+                store.clearUndoSpill(docId);
+            } catch (Throwable ignore) {
+            }
+        }
     }
 
-    private void pushUndo(@NonNull UndoOp op) {
-        undoStack.push(op);
-        redoStack.clear();
+    private void pushUndo(@NonNull SidecarUndoOp op) {
+        undoJournal.push(op);
     }
 
     public SidecarAnnotationSession(@NonNull String docId,
@@ -91,6 +148,50 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
         this.store = store;
         this.reflowPrefsStore = reflowPrefsStore;
         this.reflowPrefsSnapshot = reflowPrefsSnapshot;
+        UndoSpill spill = new UndoSpill(docId, store);
+        // Spilled history belongs to the session that wrote it.
+        spill.clear();
+        this.undoJournal = new UndoJournal<>(UNDO_MAX_ENTRIES, UNDO_MAX_BYTES,
+                new UndoJournal.Sizer<SidecarUndoOp>() {
+                    @Override public long retainedBytes(@NonNull SidecarUndoOp op) { return op.retainedBytes(); }
+                },
+                spill);
+        this.pageCacheRegistration = CacheGovernor.get().register("sidecarPages",
+                CacheGovernor.PRIORITY_ANNOTATIONS, 0f, new CacheGovernor.Trimmable() {
+                    @Override public long sizeBytes() { return pageCacheBytes(); }
+                    @Override public void trimToFraction(float fraction) { trimPageCaches(fraction); }
+                });
+    }
+
+    /** Estimated size of the per-page lists; they mirror the store, so trimming only costs reads. */
+    private long pageCacheBytes() {
+        long total = 0L;
+        for (List<SidecarInkStroke> page : inkCache.values()) total += SidecarUndoOp.inkBytes(page);
+        for (List<SidecarHighlight> page : highlightCache.values()) {
+            for (SidecarHighlight h : page) total += SidecarUndoOp.highlightBytes(h);
+        }
+        for (List<SidecarNote> page : noteCache.values()) {
+            for (SidecarNote n : page) total += SidecarUndoOp.noteBytes(n);
+        }
+        return total;
+    }
+
+    private void trimPageCaches(float fraction) {
+        trimPages(inkCache, fraction);
+        trimPages(highlightCache, fraction);
+        trimPages(noteCache, fraction);
+    }
+
+    private static void trimPages(@NonNull Map<Integer, ?> cache, float fraction) {
+        int keep = (int) (cache.size() * fraction);
+        if (keep <= 0) {
+            cache.clear();
+            return;
+        }
+        for (Iterator<Integer> it = cache.keySet().iterator(); it.hasNext() && cache.size() > keep; ) {
+            it.next();
+            it.remove();
+        }
     }
 
     @NonNull public String docId() { return docId; }
@@ -101,45 +202,60 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
      *
      * <p>Intended for backup/sync. This does not include pending (uncommitted) ink.</p>
      */
-    public void writeBundleJson(@NonNull OutputStream outputStream) throws Exception {
-        SidecarBundleJson.writeBundleJson(docId, store, outputStream);
+    public void writeBundleJson(@NonNull OutputStream outputStream,
+                                @Nullable SidecarBundleJson.Progress progress) throws Exception {
+        SidecarBundleJson.writeBundleJson(docId, store, outputStream, progress);
     }
     /**
-     * Imports the provided bundle into this session's document (ignores {@link SidecarBundleJson.SidecarBundle#docId}).
+     * Streams a bundle into this session's document (ignores the bundle's own doc id).
+     *
+     * <p>Runs on a worker thread. Caches are dropped even when the import is cancelled or fails,
+     * since batches committed before that point stay in the store.</p>
      */
     @NonNull
-    public SidecarBundleJson.ImportStats importBundleIntoThisDoc(@NonNull SidecarBundleJson.SidecarBundle bundle) {
-        SidecarBundleJson.ImportStats stats = SidecarBundleJson.importIntoDoc(docId, store, bundle);
-        if (stats.total() == 0) return stats;
+    public SidecarBundleJson.ImportStats importBundleIntoThisDoc(@NonNull InputStream inputStream,
+                                                                 long totalBytes,
+                                                                 @Nullable SidecarBundleJson.Progress progress) throws Exception {
+        SidecarBundleJson.ImportStats stats = null;
+        try {
+            stats = SidecarBundleJson.importBundleJson(docId, store, inputStream, totalBytes, progress);
+            return stats;
+        } finally {
+            if (stats == null || stats.total() > 0) {
+                // Drop any cached per-page results so the next draw/query picks up imported rows.
+                inkCache.clear();
+                highlightCache.clear();
+                noteCache.clear();
+                undoJournal.clear();
+
+                SidecarReflowUtils.recordAnnotatedLayoutIfPossible(docId, layoutProfileId, reflowPrefsStore, reflowPrefsSnapshot);
+            }
+        }
+    }
 
-        // Drop any cached per-page results so the next draw/query picks up imported rows.
-        inkCache.clear();
-        highlightCache.clear();
-        noteCache.clear();
-        undoStack.clear();
-        redoStack.clear();
+    public boolean hasUndo() { return undoJournal.hasUndo(); }
 
-        SidecarReflowUtils.recordAnnotatedLayoutIfPossible(docId, layoutProfileId, reflowPrefsStore, reflowPrefsSnapshot);
-        return stats;
-    }
+    public boolean hasRedo() { return undoJournal.hasRedo(); }
 
-    public boolean hasUndo() { return !undoStack.isEmpty(); }
+    /** Sequence of the newest undoable edit (see {@link UndoJournal#peekUndoSequence()}). */
+    public long peekUndoSequence() { return undoJournal.peekUndoSequence(); }
 
-    public boolean hasRedo() { return !redoStack.isEmpty(); }
+    /** Sequence of the most recently undone edit (see {@link UndoJournal#peekRedoSequence()}). */
+    public long peekRedoSequence() { return undoJournal.peekRedoSequence(); }
 
     public boolean undoLast() {
-        UndoOp op = undoStack.poll();
-        if (op == null) return false;
-        op.undo();
-        redoStack.push(op);
+        UndoJournal.Entry<SidecarUndoOp> e = undoJournal.popUndo();
+        if (e == null) return false;
+        e.value.undo(undoTarget);
+        undoJournal.pushRedo(e);
         return true;
     }
 
     public boolean redoLast() {
-        UndoOp op = redoStack.poll();
-        if (op == null) return false;
-        op.redo();
-        undoStack.push(op);
+        UndoJournal.Entry<SidecarUndoOp> e = undoJournal.popRedo();
+        if (e == null) return false;
+        e.value.redo(undoTarget);
+        undoJournal.pushUndo(e);
         return true;
     }
 
@@ -229,51 +345,23 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
     }
 
     public void recordUndoInkAdded(int pageIndex, @NonNull List<SidecarInkStroke> inserted) {
-        if (inserted.isEmpty()) return;
-        ArrayList<String> ids = new ArrayList<>();
-        for (SidecarInkStroke s : inserted) {
-            if (s != null && s.id != null) ids.add(s.id);
-        }
-        if (ids.isEmpty()) return;
-        pushUndo(new DualOp(
-                () -> {
-                    for (String id : ids) {
-                        if (id == null) continue;
-                        removeInkStroke(pageIndex, id);
-                    }
-                },
-                () -> {
-                    for (SidecarInkStroke s : inserted) {
-                        if (s == null) continue;
-                        restoreInkStroke(s);
-                    }
-                }
-        ));
+        String[] ids = strokeIds(inserted);
+        if (ids.length == 0) return;
+        pushUndo(new SidecarUndoOp.InkAdded(pageIndex, ids));
     }
 
     public void recordUndoInkReplaced(int pageIndex, @NonNull SidecarInkStroke original, @NonNull List<SidecarInkStroke> inserted) {
-        ArrayList<String> insertedIds = new ArrayList<>();
-        for (SidecarInkStroke s : inserted) {
-            if (s != null && s.id != null) insertedIds.add(s.id);
-        }
-        pushUndo(new DualOp(
-                () -> {
-                    for (String id : insertedIds) {
-                        if (id == null) continue;
-                        removeInkStroke(pageIndex, id);
-                    }
-                    restoreInkStroke(original);
-                },
-                () -> {
-                    if (original != null && original.id != null) {
-                        removeInkStroke(pageIndex, original.id);
-                    }
-                    for (SidecarInkStroke s : inserted) {
-                        if (s == null) continue;
-                        restoreInkStroke(s);
-                    }
-                }
-        ));
+        if (original.id == null) return;
+        pushUndo(new SidecarUndoOp.InkReplaced(pageIndex, original, strokeIds(inserted)));
+    }
+
+    @NonNull
+    private static String[] strokeIds(@NonNull List<SidecarInkStroke> strokes) {
+        ArrayList<String> ids = new ArrayList<>(strokes.size());
+        for (SidecarInkStroke s : strokes) {
+            if (s != null && s.id != null) ids.add(s.id);
+        }
+        return ids.toArray(new String[0]);
     }
 
     @Nullable
@@ -362,17 +450,11 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
     }
 
     public void recordUndoHighlightAdded(@NonNull SidecarHighlight highlight) {
-        pushUndo(new DualOp(
-                () -> removeHighlight(highlight.pageIndex, highlight.id),
-                () -> restoreHighlight(highlight)
-        ));
+        pushUndo(new SidecarUndoOp.HighlightAdded(highlight.pageIndex, highlight.id));
     }
 
     public void recordUndoHighlightDeleted(@NonNull SidecarHighlight highlight) {
-        pushUndo(new DualOp(
-                () -> restoreHighlight(highlight),
-                () -> removeHighlight(highlight.pageIndex, highlight.id)
-        ));
+        pushUndo(new SidecarUndoOp.HighlightDeleted(highlight));
     }
 
     @Nullable
@@ -439,17 +521,11 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
     }
 
     public void recordUndoNoteAdded(@NonNull SidecarNote note) {
-        pushUndo(new DualOp(
-                () -> removeNote(note.pageIndex, note.id),
-                () -> restoreNote(note)
-        ));
+        pushUndo(new SidecarUndoOp.NoteAdded(note.pageIndex, note.id));
     }
 
     public void recordUndoNoteDeleted(@NonNull SidecarNote note) {
-        pushUndo(new DualOp(
-                () -> restoreNote(note),
-                () -> removeNote(note.pageIndex, note.id)
-        ));
+        pushUndo(new SidecarUndoOp.NoteDeleted(note));
     }
 
     @Nullable
@@ -508,7 +584,7 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
                 prior.rotationDeg);
         store.insertNote(docId, updated);
         putNoteInCache(updated);
-        recordUndoNoteUpdated(prior, updated);
+        recordUndoNoteUpdated(prior);
         return updated;
     }
 
@@ -542,7 +618,7 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
                 prior.rotationDeg);
         store.insertNote(docId, updated);
         putNoteInCache(updated);
-        recordUndoNoteUpdated(prior, updated);
+        recordUndoNoteUpdated(prior);
         return updated;
     }
 
@@ -576,7 +652,7 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
                 prior.rotationDeg);
         store.insertNote(docId, updated);
         putNoteInCache(updated);
-        recordUndoNoteUpdated(prior, updated);
+        recordUndoNoteUpdated(prior);
         return updated;
     }
 
@@ -613,7 +689,7 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
                 prior.rotationDeg);
         store.insertNote(docId, updated);
         putNoteInCache(updated);
-        recordUndoNoteUpdated(prior, updated);
+        recordUndoNoteUpdated(prior);
         return updated;
     }
 
@@ -649,7 +725,7 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
                 prior.rotationDeg);
         store.insertNote(docId, updated);
         putNoteInCache(updated);
-        recordUndoNoteUpdated(prior, updated);
+        recordUndoNoteUpdated(prior);
         return updated;
     }
 
@@ -683,7 +759,7 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
                 prior.rotationDeg);
         store.insertNote(docId, updated);
         putNoteInCache(updated);
-        recordUndoNoteUpdated(prior, updated);
+        recordUndoNoteUpdated(prior);
         return updated;
     }
 
@@ -719,7 +795,7 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
                 prior.rotationDeg);
         store.insertNote(docId, updated);
         putNoteInCache(updated);
-        recordUndoNoteUpdated(prior, updated);
+        recordUndoNoteUpdated(prior);
         return updated;
     }
 
@@ -762,7 +838,7 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
                 prior.rotationDeg);
         store.insertNote(docId, updated);
         putNoteInCache(updated);
-        recordUndoNoteUpdated(prior, updated);
+        recordUndoNoteUpdated(prior);
         return updated;
     }
 
@@ -799,7 +875,7 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
                 prior.rotationDeg);
         store.insertNote(docId, updated);
         putNoteInCache(updated);
-        recordUndoNoteUpdated(prior, updated);
+        recordUndoNoteUpdated(prior);
         return updated;
     }
 
@@ -843,7 +919,7 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
                 rotationDeg);
         store.insertNote(docId, updated);
         putNoteInCache(updated);
-        recordUndoNoteUpdated(prior, updated);
+        recordUndoNoteUpdated(prior);
         return updated;
     }
 
@@ -852,17 +928,8 @@ public final class SidecarAnnotationSession implements SidecarAnnotationProvider
         putNoteInCache(note);
     }
 
-    private void recordUndoNoteUpdated(@NonNull SidecarNote prior, @NonNull SidecarNote updated) {
-        pushUndo(new DualOp(
-                () -> {
-                    store.insertNote(docId, prior);
-                    putNoteInCache(prior);
-                },
-                () -> {
-                    store.insertNote(docId, updated);
-                    putNoteInCache(updated);
-                }
-        ));
+    private void recordUndoNoteUpdated(@NonNull SidecarNote prior) {
+        pushUndo(new SidecarUndoOp.NoteUpdated(prior));
     }
 
     @Nullable
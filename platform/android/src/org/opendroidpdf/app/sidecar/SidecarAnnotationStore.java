@@ -7,6 +7,8 @@ import org.opendroidpdf.app.sidecar.model.SidecarHighlight;
 import org.opendroidpdf.app.sidecar.model.SidecarInkStroke;
 import org.opendroidpdf.app.sidecar.model.SidecarNote;
 
+import java.io.Closeable;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -46,6 +48,34 @@ public interface SidecarAnnotationStore {
     }
     void deleteNote(@NonNull String docId, @NonNull String noteId);
 
+    /**
+     * Streams every ink stroke for this document, oldest first. Callers must close the cursor.
+     *
+     * <p>The default materializes {@link #listAllInk}; backends should override it so bulk
+     * export does not hold the whole document in memory.</p>
+     */
+    @NonNull
+    default RowCursor<SidecarInkStroke> openAllInk(@NonNull String docId) {
+        return RowCursor.over(listAllInk(docId));
+    }
+
+    /** Streams every highlight for this document; see {@link #openAllInk}. */
+    @NonNull
+    default RowCursor<SidecarHighlight> openAllHighlights(@NonNull String docId) {
+        return RowCursor.over(listAllHighlights(docId));
+    }
+
+    /** Streams every note for this document; see {@link #openAllInk}. */
+    @NonNull
+    default RowCursor<SidecarNote> openAllNotes(@NonNull String docId) {
+        return RowCursor.over(listAllNotes(docId));
+    }
+
+    /** Returns the number of ink strokes, highlights and notes stored for this document. */
+    default long countAnnotations(@NonNull String docId) {
+        return (long) listAllInk(docId).size() + listAllHighlights(docId).size() + listAllNotes(docId).size();
+    }
+
     /** Returns true if this document has any annotations for the provided layout profile. */
     boolean hasAnyAnnotationsInLayout(@NonNull String docId, @Nullable String layoutProfileId);
 
@@ -66,4 +96,72 @@ public interface SidecarAnnotationStore {
     default void migrateDocId(@NonNull String fromDocId, @NonNull String toDocId) {
         // no-op by default
     }
+
+    /** Runs {@code work} as one transaction where the backend supports it. */
+    default void runInTransaction(@NonNull Runnable work) {
+        work.run();
+    }
+
+    /**
+     * Makes previously issued mutations durable before returning. Synchronous stores have nothing
+     * to do; see {@link WriteBehindSidecarAnnotationStore}.
+     */
+    default void flush() {
+        // no-op by default
+    }
+
+    /**
+     * Undo history evicted from memory by {@link SidecarAnnotationSession}.
+     *
+     * <p>Spilled entries are scoped to one session and cleared when a session for the document
+     * opens. Returns false when the store cannot keep the entry (the default).</p>
+     */
+    default boolean putUndoSpill(@NonNull String docId, long sequence, @NonNull String payload) {
+        return false;
+    }
+
+    /** Removes and returns the newest spilled undo entry for {@code docId}, or null. */
+    @Nullable
+    default SpilledUndo takeNewestUndoSpill(@NonNull String docId) {
+        return null;
+    }
+
+    default void clearUndoSpill(@NonNull String docId) {
+        // no-op by default
+    }
+
+    /** Forward-only row iterator returned by the {@code openAll*} methods. */
+    interface RowCursor<T> extends Closeable {
+        /** Returns the next row, or null once the cursor is exhausted. */
+        @Nullable T next();
+
+        @Override
+        void close();
+
+        @NonNull
+        static <T> RowCursor<T> over(@NonNull List<T> rows) {
+            final Iterator<T> it = rows.iterator();
+            return new RowCursor<T>() {
+                @Override
+                @Nullable
+                public T next() {
+                    return it.hasNext() ? it.next() : null;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+    }
+
+    final class SpilledUndo {
+        public final long sequence;
+        @NonNull public final String payload;
+
+        public SpilledUndo(long sequence, @NonNull String payload) {
+            this.sequence = sequence;
+            this.payload = payload;
+        }
+    }
 }
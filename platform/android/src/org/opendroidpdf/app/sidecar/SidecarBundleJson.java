@@ -3,137 +3,119 @@ package org.opendroidpdf.app.sidecar;
 import android.graphics.PointF;
 import android.graphics.RectF;
 import android.util.Base64;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.opendroidpdf.Annotation;
 import org.opendroidpdf.app.sidecar.model.SidecarHighlight;
 import org.opendroidpdf.app.sidecar.model.SidecarInkStroke;
 import org.opendroidpdf.app.sidecar.model.SidecarNote;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Iterator;
+import java.util.concurrent.CancellationException;
 
 public final class SidecarBundleJson {
     private SidecarBundleJson() {}
 
+    static final String FORMAT = "opendroidpdf-sidecar";
+    static final int VERSION = 1;
+
+    /** Rows inserted per store transaction while importing. */
+    static final int IMPORT_BATCH_ROWS = 200;
+    /** Rows between {@link Progress#onProgress} callbacks. */
+    private static final int PROGRESS_EVERY_ROWS = 64;
+
+    /**
+     * Progress sink for bundle export/import. Polled between rows from the worker thread; a
+     * cancelled operation throws {@link CancellationException}.
+     */
+    public interface Progress {
+        /** {@code total} is rows for export and bytes for import, or -1 when unknown. */
+        void onProgress(long done, long total);
+
+        boolean isCancelled();
+    }
+
     /**
      * Exports all sidecar annotations for the provided document id across layouts as a JSON bundle.
      *
-     * <p>Intended for backup/sync. This does not include pending (uncommitted) ink.</p>
+     * <p>Intended for backup/sync. This does not include pending (uncommitted) ink. Rows are
+     * streamed from store cursors straight to {@code outputStream}, which is flushed but not
+     * closed.</p>
      */
     public static void writeBundleJson(@NonNull String docId,
                                        @NonNull SidecarAnnotationStore store,
-                                       @NonNull OutputStream outputStream) throws Exception {
-        JSONObject root = new JSONObject();
-        root.put("format", "opendroidpdf-sidecar");
-        root.put("version", 1);
-        root.put("docId", docId);
-        root.put("createdAtEpochMs", System.currentTimeMillis());
-
-        JSONArray ink = new JSONArray();
-        for (SidecarInkStroke s : store.listAllInk(docId)) {
-            if (s == null || s.id == null || s.points == null) continue;
-            JSONObject o = new JSONObject();
-            o.put("id", s.id);
-            o.put("pageIndex", s.pageIndex);
-            if (s.layoutProfileId != null) o.put("layoutProfileId", s.layoutProfileId);
-            o.put("color", s.color);
-            o.put("thickness", (double) s.thickness);
-            o.put("createdAtEpochMs", s.createdAtEpochMs);
-            byte[] blob = SidecarPointCodec.encodePoints(s.points);
-            o.put("pointsB64", Base64.encodeToString(blob, Base64.NO_WRAP));
-            ink.put(o);
+                                       @NonNull OutputStream outputStream,
+                                       @Nullable Progress progress) throws Exception {
+        long total = progress != null ? store.countAnnotations(docId) : -1L;
+        long done = 0;
+        JsonWriter w = new JsonWriter(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)));
+        w.beginObject();
+        // Header first so readBundleHeader() can stop before the row arrays.
+        w.name("format").value(FORMAT);
+        w.name("version").value(VERSION);
+        w.name("docId").value(docId);
+        w.name("createdAtEpochMs").value(System.currentTimeMillis());
+
+        w.name("ink").beginArray();
+        try (SidecarAnnotationStore.RowCursor<SidecarInkStroke> rows = store.openAllInk(docId)) {
+            for (SidecarInkStroke s; (s = rows.next()) != null; ) {
+                JSONObject o = inkToJson(s);
+                if (o != null) writeValue(w, o);
+                done = step(progress, done, total);
+            }
         }
-        root.put("ink", ink);
-
-        JSONArray highlights = new JSONArray();
-        for (SidecarHighlight h : store.listAllHighlights(docId)) {
-            if (h == null || h.id == null || h.quadPoints == null) continue;
-            JSONObject o = new JSONObject();
-            o.put("id", h.id);
-            o.put("pageIndex", h.pageIndex);
-            if (h.layoutProfileId != null) o.put("layoutProfileId", h.layoutProfileId);
-            o.put("type", h.type != null ? h.type.name() : "HIGHLIGHT");
-            o.put("color", h.color);
-            o.put("opacity", (double) h.opacity);
-            o.put("createdAtEpochMs", h.createdAtEpochMs);
-            o.put("quadPointsB64", Base64.encodeToString(SidecarPointCodec.encodePoints(h.quadPoints), Base64.NO_WRAP));
-            if (h.quote != null) o.put("quote", h.quote);
-            if (h.quotePrefix != null) o.put("quotePrefix", h.quotePrefix);
-            if (h.quoteSuffix != null) o.put("quoteSuffix", h.quoteSuffix);
-            if (h.docProgress01 >= 0f) o.put("docProgress01", (double) h.docProgress01);
-            if (h.reflowLocation != -1L) o.put("reflowLocation", h.reflowLocation);
-            if (h.anchorStartWord >= 0) o.put("anchorStartWord", h.anchorStartWord);
-            if (h.anchorEndWordExclusive >= 0) o.put("anchorEndWordExclusive", h.anchorEndWordExclusive);
-            highlights.put(o);
+        w.endArray();
+
+        w.name("highlights").beginArray();
+        try (SidecarAnnotationStore.RowCursor<SidecarHighlight> rows = store.openAllHighlights(docId)) {
+            for (SidecarHighlight h; (h = rows.next()) != null; ) {
+                JSONObject o = highlightToJson(h);
+                if (o != null) writeValue(w, o);
+                done = step(progress, done, total);
+            }
         }
-        root.put("highlights", highlights);
-
-        JSONArray notes = new JSONArray();
-        for (SidecarNote n : store.listAllNotes(docId)) {
-            if (n == null || n.id == null || n.bounds == null) continue;
-            JSONObject o = new JSONObject();
-            o.put("id", n.id);
-            o.put("pageIndex", n.pageIndex);
-            if (n.layoutProfileId != null) o.put("layoutProfileId", n.layoutProfileId);
-            JSONObject b = new JSONObject();
-            b.put("left", (double) n.bounds.left);
-            b.put("top", (double) n.bounds.top);
-            b.put("right", (double) n.bounds.right);
-            b.put("bottom", (double) n.bounds.bottom);
-            o.put("bounds", b);
-            if (n.text != null) o.put("text", n.text);
-            o.put("createdAtEpochMs", n.createdAtEpochMs);
-            o.put("color", n.color);
-            if (n.fontFamily != SidecarNote.DEFAULT_FONT_FAMILY) o.put("fontFamily", n.fontFamily);
-            if (n.fontStyleFlags != SidecarNote.DEFAULT_FONT_STYLE_FLAGS) o.put("fontStyleFlags", n.fontStyleFlags);
-            o.put("fontSize", (double) n.fontSize);
-            if (n.lineHeight != SidecarNote.DEFAULT_LINE_HEIGHT) o.put("lineHeight", (double) n.lineHeight);
-            if (n.textIndentPt != SidecarNote.DEFAULT_TEXT_INDENT_PT) o.put("textIndentPt", (double) n.textIndentPt);
-            if (n.backgroundColor != SidecarNote.DEFAULT_BACKGROUND_COLOR) o.put("backgroundColor", n.backgroundColor);
-            if (n.backgroundOpacity != SidecarNote.DEFAULT_BACKGROUND_OPACITY) o.put("backgroundOpacity", (double) n.backgroundOpacity);
-            if (n.borderColor != SidecarNote.DEFAULT_BORDER_COLOR) o.put("borderColor", n.borderColor);
-            if (n.borderWidthPt != SidecarNote.DEFAULT_BORDER_WIDTH_PT) o.put("borderWidthPt", (double) n.borderWidthPt);
-            if (n.borderStyle != SidecarNote.DEFAULT_BORDER_STYLE) o.put("borderStyle", n.borderStyle);
-            if (n.borderRadiusPt != SidecarNote.DEFAULT_BORDER_RADIUS_PT) o.put("borderRadiusPt", (double) n.borderRadiusPt);
-            if (n.lockPositionSize != SidecarNote.DEFAULT_LOCK_POSITION_SIZE) o.put("lockPositionSize", n.lockPositionSize);
-            if (n.lockContents != SidecarNote.DEFAULT_LOCK_CONTENTS) o.put("lockContents", n.lockContents);
-            if (n.rotationDeg != SidecarNote.DEFAULT_ROTATION_DEG) o.put("rotationDeg", n.rotationDeg);
-            if (n.userResized) o.put("userResized", true);
-            notes.put(o);
+        w.endArray();
+
+        w.name("notes").beginArray();
+        try (SidecarAnnotationStore.RowCursor<SidecarNote> rows = store.openAllNotes(docId)) {
+            for (SidecarNote n; (n = rows.next()) != null; ) {
+                JSONObject o = noteToJson(n);
+                if (o != null) writeValue(w, o);
+                done = step(progress, done, total);
+            }
         }
-        root.put("notes", notes);
+        w.endArray();
 
-        byte[] bytes = root.toString().getBytes(StandardCharsets.UTF_8);
-        outputStream.write(bytes);
-        outputStream.flush();
+        w.endObject();
+        w.flush();
+        if (progress != null) progress.onProgress(done, total);
     }
 
-    /** Sidecar annotations bundle (JSON) parsed from {@link #writeBundleJson(String, SidecarAnnotationStore, OutputStream)}. */
-    public static final class SidecarBundle {
+    /** Identity of a bundle, read from its leading fields by {@link #readBundleHeader}. */
+    public static final class BundleHeader {
         @NonNull public final String docId;
         public final int version;
-        @NonNull public final List<SidecarInkStroke> ink;
-        @NonNull public final List<SidecarHighlight> highlights;
-        @NonNull public final List<SidecarNote> notes;
-
-        SidecarBundle(@NonNull String docId,
-                      int version,
-                      @NonNull List<SidecarInkStroke> ink,
-                      @NonNull List<SidecarHighlight> highlights,
-                      @NonNull List<SidecarNote> notes) {
+
+        BundleHeader(@NonNull String docId, int version) {
             this.docId = docId;
             this.version = version;
-            this.ink = ink;
-            this.highlights = highlights;
-            this.notes = notes;
         }
     }
 
@@ -152,161 +134,454 @@ public final class SidecarBundleJson {
         public int total() { return inkCount + highlightCount + noteCount; }
     }
 
-    /** Parses a JSON bundle created by {@link #writeBundleJson(String, SidecarAnnotationStore, OutputStream)}. */
+    /**
+     * Reads and validates the header of a bundle created by {@link #writeBundleJson}, without
+     * parsing its rows. The stream is left open.
+     */
+    @NonNull
+    public static BundleHeader readBundleHeader(@NonNull InputStream inputStream) throws Exception {
+        JsonReader r = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        String format = null;
+        int version = 0;
+        String docId = null;
+        r.beginObject();
+        while (r.hasNext() && (format == null || version == 0 || docId == null)) {
+            String name = r.nextName();
+            if ("format".equals(name)) format = nextStringOrNull(r);
+            else if ("version".equals(name)) version = r.nextInt();
+            else if ("docId".equals(name)) docId = nextStringOrNull(r);
+            else r.skipValue();
+        }
+        return checkHeader(format, version, docId);
+    }
+
+    /**
+     * Streams a bundle created by {@link #writeBundleJson} into {@code docId} (the bundle's own
+     * doc id is ignored) and returns counts.
+     *
+     * <p>Rows are inserted in transactions of {@link #IMPORT_BATCH_ROWS}, so memory stays bounded
+     * for large bundles. On cancellation or a parse error, batches already committed are kept.
+     * {@code totalBytes} is the stream length for progress, or -1 if unknown.</p>
+     */
+    @NonNull
+    public static ImportStats importBundleJson(@NonNull String docId,
+                                               @NonNull SidecarAnnotationStore store,
+                                               @NonNull InputStream inputStream,
+                                               long totalBytes,
+                                               @Nullable Progress progress) throws Exception {
+        CountingInputStream counted = new CountingInputStream(inputStream);
+        JsonReader r = new JsonReader(new InputStreamReader(counted, StandardCharsets.UTF_8));
+        ImportBatch batch = new ImportBatch(docId, store);
+        String format = null;
+        int version = 0;
+        String bundleDocId = null;
+        long rows = 0;
+        r.beginObject();
+        while (r.hasNext()) {
+            String name = r.nextName();
+            if ("format".equals(name)) {
+                format = nextStringOrNull(r);
+            } else if ("version".equals(name)) {
+                version = r.nextInt();
+            } else if ("docId".equals(name)) {
+                bundleDocId = nextStringOrNull(r);
+            } else if ("ink".equals(name) || "highlights".equals(name) || "notes".equals(name)) {
+                // Bundles always lead with their header; refuse to write rows from anything else.
+                checkHeader(format, version, bundleDocId);
+                if (r.peek() == JsonToken.NULL) {
+                    r.nextNull();
+                    continue;
+                }
+                r.beginArray();
+                while (r.hasNext()) {
+                    Object row = readValue(r);
+                    if (row instanceof JSONObject) batch.add(name, (JSONObject) row);
+                    if (batch.size() >= IMPORT_BATCH_ROWS) {
+                        checkCancelled(progress);
+                        batch.commit();
+                    }
+                    rows++;
+                    if (progress != null && rows % PROGRESS_EVERY_ROWS == 0) {
+                        checkCancelled(progress);
+                        progress.onProgress(counted.count, totalBytes);
+                    }
+                }
+                r.endArray();
+            } else {
+                r.skipValue();
+            }
+        }
+        r.endObject();
+        checkHeader(format, version, bundleDocId);
+        checkCancelled(progress);
+        batch.commit();
+        if (progress != null) progress.onProgress(counted.count, totalBytes);
+        return batch.stats();
+    }
+
+    /** Rows parsed but not yet inserted, flushed one store transaction at a time. */
+    private static final class ImportBatch {
+        private final String docId;
+        private final SidecarAnnotationStore store;
+        private final ArrayList<SidecarInkStroke> ink = new ArrayList<>();
+        private final ArrayList<SidecarHighlight> highlights = new ArrayList<>();
+        private final ArrayList<SidecarNote> notes = new ArrayList<>();
+        private int inkCount;
+        private int highlightCount;
+        private int noteCount;
+
+        ImportBatch(@NonNull String docId, @NonNull SidecarAnnotationStore store) {
+            this.docId = docId;
+            this.store = store;
+        }
+
+        void add(@NonNull String array, @NonNull JSONObject o) {
+            if ("ink".equals(array)) {
+                SidecarInkStroke s = inkFromJson(o);
+                if (s != null) ink.add(s);
+            } else if ("highlights".equals(array)) {
+                SidecarHighlight h = highlightFromJson(o);
+                if (h != null) highlights.add(h);
+            } else {
+                SidecarNote n = noteFromJson(o);
+                if (n != null) notes.add(n);
+            }
+        }
+
+        int size() {
+            return ink.size() + highlights.size() + notes.size();
+        }
+
+        void commit() {
+            if (size() == 0) return;
+            store.runInTransaction(() -> {
+                if (!ink.isEmpty()) store.insertInk(docId, ink);
+                if (!highlights.isEmpty()) store.insertHighlights(docId, highlights);
+                if (!notes.isEmpty()) store.insertNotes(docId, notes);
+            });
+            // Write-behind stores queue inside the transaction; make each batch durable here.
+            store.flush();
+            inkCount += ink.size();
+            highlightCount += highlights.size();
+            noteCount += notes.size();
+            ink.clear();
+            highlights.clear();
+            notes.clear();
+        }
+
+        @NonNull
+        ImportStats stats() {
+            return new ImportStats(inkCount, highlightCount, noteCount);
+        }
+    }
+
     @NonNull
-    public static SidecarBundle readBundleJson(@NonNull InputStream inputStream) throws Exception {
-        byte[] bytes = readAllBytes(inputStream);
-        JSONObject root = new JSONObject(new String(bytes, StandardCharsets.UTF_8));
-        String format = root.optString("format", "");
-        if (!"opendroidpdf-sidecar".equals(format)) {
+    private static BundleHeader checkHeader(@Nullable String format, int version, @Nullable String docId) {
+        if (!FORMAT.equals(format)) {
             throw new IllegalArgumentException("unexpected sidecar bundle format: " + format);
         }
-        int version = root.optInt("version", 0);
         if (version < 1) throw new IllegalArgumentException("unexpected sidecar bundle version: " + version);
-        String docId = root.optString("docId", null);
         if (docId == null || docId.trim().isEmpty()) throw new IllegalArgumentException("missing bundle docId");
+        return new BundleHeader(docId, version);
+    }
+
+    private static long step(@Nullable Progress progress, long done, long total) {
+        done++;
+        if (progress != null && done % PROGRESS_EVERY_ROWS == 0) {
+            checkCancelled(progress);
+            progress.onProgress(done, total);
+        }
+        return done;
+    }
 
-        ArrayList<SidecarInkStroke> ink = new ArrayList<>();
-        JSONArray inkArr = root.optJSONArray("ink");
-        if (inkArr != null) {
-            for (int i = 0; i < inkArr.length(); i++) {
-                JSONObject o = inkArr.optJSONObject(i);
-                if (o == null) continue;
-                String id = o.optString("id", null);
-                if (id == null || id.trim().isEmpty()) continue;
-                int pageIndex = o.optInt("pageIndex", -1);
-                if (pageIndex < 0) continue;
-                String layout = o.has("layoutProfileId") ? o.optString("layoutProfileId", null) : null;
-                int color = o.optInt("color", 0);
-                float thickness = (float) o.optDouble("thickness", 1.0);
-                long createdAt = o.optLong("createdAtEpochMs", 0L);
-                String b64 = o.optString("pointsB64", null);
-                if (b64 == null || b64.isEmpty()) continue;
-                byte[] blob = Base64.decode(b64, Base64.DEFAULT);
-                PointF[] points = SidecarPointCodec.decodePoints(blob);
-                if (points == null || points.length < 2) continue;
-                ink.add(new SidecarInkStroke(id, pageIndex, layout, color, thickness, createdAt, points));
+    private static void checkCancelled(@Nullable Progress progress) {
+        if (progress != null && progress.isCancelled()) throw new CancellationException();
+    }
+
+    /** Writes an org.json value (as produced by the *ToJson helpers) to {@code w}. */
+    private static void writeValue(@NonNull JsonWriter w, @Nullable Object v) throws Exception {
+        if (v == null || v == JSONObject.NULL) {
+            w.nullValue();
+        } else if (v instanceof JSONObject) {
+            JSONObject o = (JSONObject) v;
+            w.beginObject();
+            for (Iterator<String> keys = o.keys(); keys.hasNext(); ) {
+                String k = keys.next();
+                w.name(k);
+                writeValue(w, o.opt(k));
             }
+            w.endObject();
+        } else if (v instanceof JSONArray) {
+            JSONArray a = (JSONArray) v;
+            w.beginArray();
+            for (int i = 0; i < a.length(); i++) writeValue(w, a.opt(i));
+            w.endArray();
+        } else if (v instanceof Boolean) {
+            w.value((Boolean) v);
+        } else if (v instanceof Double || v instanceof Float) {
+            w.value(((Number) v).doubleValue());
+        } else if (v instanceof Number) {
+            w.value(((Number) v).longValue());
+        } else {
+            w.value(String.valueOf(v));
         }
+    }
 
-        ArrayList<SidecarHighlight> highlights = new ArrayList<>();
-        JSONArray hlArr = root.optJSONArray("highlights");
-        if (hlArr != null) {
-            for (int i = 0; i < hlArr.length(); i++) {
-                JSONObject o = hlArr.optJSONObject(i);
-                if (o == null) continue;
-                String id = o.optString("id", null);
-                if (id == null || id.trim().isEmpty()) continue;
-                int pageIndex = o.optInt("pageIndex", -1);
-                if (pageIndex < 0) continue;
-                String layout = o.has("layoutProfileId") ? o.optString("layoutProfileId", null) : null;
-                String typeName = o.optString("type", "HIGHLIGHT");
-                Annotation.Type type;
-                try {
-                    type = Annotation.Type.valueOf(typeName);
-                } catch (Throwable t) {
-                    type = Annotation.Type.HIGHLIGHT;
+    /** Reads the next value as org.json objects, so rows can go through the *FromJson helpers. */
+    @NonNull
+    private static Object readValue(@NonNull JsonReader r) throws Exception {
+        switch (r.peek()) {
+            case BEGIN_OBJECT: {
+                JSONObject o = new JSONObject();
+                r.beginObject();
+                while (r.hasNext()) {
+                    String k = r.nextName();
+                    o.put(k, readValue(r));
                 }
-                int color = o.optInt("color", 0);
-                float opacity = (float) o.optDouble("opacity", 1.0);
-                long createdAt = o.optLong("createdAtEpochMs", 0L);
-                String b64 = o.optString("quadPointsB64", null);
-                if (b64 == null || b64.isEmpty()) continue;
-                byte[] blob = Base64.decode(b64, Base64.DEFAULT);
-                PointF[] quadPoints = SidecarPointCodec.decodePoints(blob);
-                if (quadPoints == null || quadPoints.length < 4) continue;
-                String quote = o.has("quote") ? o.optString("quote", null) : null;
-                String quotePrefix = o.has("quotePrefix") ? o.optString("quotePrefix", null) : null;
-                String quoteSuffix = o.has("quoteSuffix") ? o.optString("quoteSuffix", null) : null;
-                float docProgress01 = o.has("docProgress01") ? (float) o.optDouble("docProgress01", -1.0) : -1f;
-                long reflowLocation = o.has("reflowLocation") ? o.optLong("reflowLocation", -1L) : -1L;
-                int anchorStartWord = o.has("anchorStartWord") ? o.optInt("anchorStartWord", -1) : -1;
-                int anchorEndWordExcl = o.has("anchorEndWordExclusive") ? o.optInt("anchorEndWordExclusive", -1) : -1;
-                highlights.add(new SidecarHighlight(
-                        id,
-                        pageIndex,
-                        layout,
-                        type,
-                        color,
-                        opacity,
-                        createdAt,
-                        quadPoints,
-                        quote,
-                        quotePrefix,
-                        quoteSuffix,
-                        docProgress01,
-                        reflowLocation,
-                        anchorStartWord,
-                        anchorEndWordExcl));
+                r.endObject();
+                return o;
+            }
+            case BEGIN_ARRAY: {
+                JSONArray a = new JSONArray();
+                r.beginArray();
+                while (r.hasNext()) a.put(readValue(r));
+                r.endArray();
+                return a;
             }
+            case STRING:
+                return r.nextString();
+            case NUMBER: {
+                String n = r.nextString();
+                if (n.indexOf('.') < 0 && n.indexOf('e') < 0 && n.indexOf('E') < 0) {
+                    try {
+                        return Long.parseLong(n);
+                    } catch (NumberFormatException ignore) {
+                        // fall through to double
+                    }
+                }
+                return Double.parseDouble(n);
+            }
+            case BOOLEAN:
+                return r.nextBoolean();
+            case NULL:
+                r.nextNull();
+                return JSONObject.NULL;
+            default:
+                r.skipValue();
+                return JSONObject.NULL;
         }
+    }
 
-        ArrayList<SidecarNote> notes = new ArrayList<>();
-        JSONArray noteArr = root.optJSONArray("notes");
-        if (noteArr != null) {
-            for (int i = 0; i < noteArr.length(); i++) {
-                JSONObject o = noteArr.optJSONObject(i);
-                if (o == null) continue;
-                String id = o.optString("id", null);
-                if (id == null || id.trim().isEmpty()) continue;
-                int pageIndex = o.optInt("pageIndex", -1);
-                if (pageIndex < 0) continue;
-                String layout = o.has("layoutProfileId") ? o.optString("layoutProfileId", null) : null;
-                JSONObject b = o.optJSONObject("bounds");
-                if (b == null) continue;
-                float left = (float) b.optDouble("left", 0.0);
-                float top = (float) b.optDouble("top", 0.0);
-                float right = (float) b.optDouble("right", 0.0);
-                float bottom = (float) b.optDouble("bottom", 0.0);
-                RectF bounds = new RectF(left, top, right, bottom);
-                String text = o.has("text") ? o.optString("text", null) : null;
-                long createdAt = o.optLong("createdAtEpochMs", 0L);
-                int color = o.has("color") ? o.optInt("color", SidecarNote.DEFAULT_COLOR) : SidecarNote.DEFAULT_COLOR;
-                int fontFamily = o.has("fontFamily") ? o.optInt("fontFamily", SidecarNote.DEFAULT_FONT_FAMILY) : SidecarNote.DEFAULT_FONT_FAMILY;
-                int fontStyleFlags = o.has("fontStyleFlags") ? o.optInt("fontStyleFlags", SidecarNote.DEFAULT_FONT_STYLE_FLAGS) : SidecarNote.DEFAULT_FONT_STYLE_FLAGS;
-                float fontSize = o.has("fontSize") ? (float) o.optDouble("fontSize", SidecarNote.DEFAULT_FONT_SIZE) : SidecarNote.DEFAULT_FONT_SIZE;
-                float lineHeight = o.has("lineHeight") ? (float) o.optDouble("lineHeight", SidecarNote.DEFAULT_LINE_HEIGHT) : SidecarNote.DEFAULT_LINE_HEIGHT;
-                float textIndentPt = o.has("textIndentPt") ? (float) o.optDouble("textIndentPt", SidecarNote.DEFAULT_TEXT_INDENT_PT) : SidecarNote.DEFAULT_TEXT_INDENT_PT;
-                int bgColor = o.has("backgroundColor") ? o.optInt("backgroundColor", SidecarNote.DEFAULT_BACKGROUND_COLOR) : SidecarNote.DEFAULT_BACKGROUND_COLOR;
-                float bgOpacity = o.has("backgroundOpacity") ? (float) o.optDouble("backgroundOpacity", SidecarNote.DEFAULT_BACKGROUND_OPACITY) : SidecarNote.DEFAULT_BACKGROUND_OPACITY;
-                int borderColor = o.has("borderColor") ? o.optInt("borderColor", SidecarNote.DEFAULT_BORDER_COLOR) : SidecarNote.DEFAULT_BORDER_COLOR;
-                float borderWidthPt = o.has("borderWidthPt") ? (float) o.optDouble("borderWidthPt", SidecarNote.DEFAULT_BORDER_WIDTH_PT) : SidecarNote.DEFAULT_BORDER_WIDTH_PT;
-                int borderStyle = o.has("borderStyle") ? o.optInt("borderStyle", SidecarNote.DEFAULT_BORDER_STYLE) : SidecarNote.DEFAULT_BORDER_STYLE;
-                float borderRadiusPt = o.has("borderRadiusPt") ? (float) o.optDouble("borderRadiusPt", SidecarNote.DEFAULT_BORDER_RADIUS_PT) : SidecarNote.DEFAULT_BORDER_RADIUS_PT;
-                boolean lockPositionSize = o.has("lockPositionSize") && o.optBoolean("lockPositionSize", SidecarNote.DEFAULT_LOCK_POSITION_SIZE);
-                boolean lockContents = o.has("lockContents") && o.optBoolean("lockContents", SidecarNote.DEFAULT_LOCK_CONTENTS);
-                int rotationDeg = o.has("rotationDeg") ? o.optInt("rotationDeg", SidecarNote.DEFAULT_ROTATION_DEG) : SidecarNote.DEFAULT_ROTATION_DEG;
-                boolean userResized = o.has("userResized") && o.optBoolean("userResized", false);
-                notes.add(new SidecarNote(id, pageIndex, layout, bounds, text, createdAt, color, fontFamily, fontStyleFlags, fontSize, lineHeight, textIndentPt, userResized, bgColor, bgOpacity, borderColor, borderWidthPt, borderStyle, borderRadiusPt, lockPositionSize, lockContents, rotationDeg));
-            }
+    @Nullable
+    private static String nextStringOrNull(@NonNull JsonReader r) throws Exception {
+        if (r.peek() == JsonToken.NULL) {
+            r.nextNull();
+            return null;
         }
+        return r.nextString();
+    }
 
-        return new SidecarBundle(docId, version, ink, highlights, notes);
+    @Nullable
+    static JSONObject inkToJson(@Nullable SidecarInkStroke s) throws JSONException {
+        if (s == null || s.id == null || s.points == null) return null;
+        JSONObject o = new JSONObject();
+        o.put("id", s.id);
+        o.put("pageIndex", s.pageIndex);
+        if (s.layoutProfileId != null) o.put("layoutProfileId", s.layoutProfileId);
+        o.put("color", s.color);
+        o.put("thickness", (double) s.thickness);
+        o.put("createdAtEpochMs", s.createdAtEpochMs);
+        byte[] blob = SidecarPointCodec.encodePoints(s.points);
+        o.put("pointsB64", Base64.encodeToString(blob, Base64.NO_WRAP));
+        return o;
     }
 
-    /** Inserts the bundle rows into the given doc id and returns counts. */
-    @NonNull
-    public static ImportStats importIntoDoc(@NonNull String docId,
-                                           @NonNull SidecarAnnotationStore store,
-                                           @NonNull SidecarBundle bundle) {
-        if (bundle.ink.isEmpty() && bundle.highlights.isEmpty() && bundle.notes.isEmpty()) {
-            return new ImportStats(0, 0, 0);
+    @Nullable
+    static SidecarInkStroke inkFromJson(@Nullable JSONObject o) {
+        if (o == null) return null;
+        String id = o.optString("id", null);
+        if (id == null || id.trim().isEmpty()) return null;
+        int pageIndex = o.optInt("pageIndex", -1);
+        if (pageIndex < 0) return null;
+        String layout = o.has("layoutProfileId") ? o.optString("layoutProfileId", null) : null;
+        int color = o.optInt("color", 0);
+        float thickness = (float) o.optDouble("thickness", 1.0);
+        long createdAt = o.optLong("createdAtEpochMs", 0L);
+        String b64 = o.optString("pointsB64", null);
+        if (b64 == null || b64.isEmpty()) return null;
+        byte[] blob = Base64.decode(b64, Base64.DEFAULT);
+        PointF[] points = SidecarPointCodec.decodePoints(blob);
+        if (points == null || points.length < 2) return null;
+        return new SidecarInkStroke(id, pageIndex, layout, color, thickness, createdAt, points);
+    }
+
+    @Nullable
+    static JSONObject highlightToJson(@Nullable SidecarHighlight h) throws JSONException {
+        if (h == null || h.id == null || h.quadPoints == null) return null;
+        JSONObject o = new JSONObject();
+        o.put("id", h.id);
+        o.put("pageIndex", h.pageIndex);
+        if (h.layoutProfileId != null) o.put("layoutProfileId", h.layoutProfileId);
+        o.put("type", h.type != null ? h.type.name() : "HIGHLIGHT");
+        o.put("color", h.color);
+        o.put("opacity", (double) h.opacity);
+        o.put("createdAtEpochMs", h.createdAtEpochMs);
+        o.put("quadPointsB64", Base64.encodeToString(SidecarPointCodec.encodePoints(h.quadPoints), Base64.NO_WRAP));
+        if (h.quote != null) o.put("quote", h.quote);
+        if (h.quotePrefix != null) o.put("quotePrefix", h.quotePrefix);
+        if (h.quoteSuffix != null) o.put("quoteSuffix", h.quoteSuffix);
+        if (h.docProgress01 >= 0f) o.put("docProgress01", (double) h.docProgress01);
+        if (h.reflowLocation != -1L) o.put("reflowLocation", h.reflowLocation);
+        if (h.anchorStartWord >= 0) o.put("anchorStartWord", h.anchorStartWord);
+        if (h.anchorEndWordExclusive >= 0) o.put("anchorEndWordExclusive", h.anchorEndWordExclusive);
+        return o;
+    }
+
+    @Nullable
+    static SidecarHighlight highlightFromJson(@Nullable JSONObject o) {
+        if (o == null) return null;
+        String id = o.optString("id", null);
+        if (id == null || id.trim().isEmpty()) return null;
+        int pageIndex = o.optInt("pageIndex", -1);
+        if (pageIndex < 0) return null;
+        String layout = o.has("layoutProfileId") ? o.optString("layoutProfileId", null) : null;
+        String typeName = o.optString("type", "HIGHLIGHT");
+        Annotation.Type type;
+        try {
+            type = Annotation.Type.valueOf(typeName);
+        } catch (Throwable t) {
+            type = Annotation.Type.HIGHLIGHT;
         }
-        store.insertInk(docId, bundle.ink);
-        store.insertHighlights(docId, bundle.highlights);
-        store.insertNotes(docId, bundle.notes);
-        return new ImportStats(bundle.ink.size(), bundle.highlights.size(), bundle.notes.size());
+        int color = o.optInt("color", 0);
+        float opacity = (float) o.optDouble("opacity", 1.0);
+        long createdAt = o.optLong("createdAtEpochMs", 0L);
+        String b64 = o.optString("quadPointsB64", null);
+        if (b64 == null || b64.isEmpty()) return null;
+        byte[] blob = Base64.decode(b64, Base64.DEFAULT);
+        PointF[] quadPoints = SidecarPointCodec.decodePoints(blob);
+        if (quadPoints == null || quadPoints.length < 4) return null;
+        String quote = o.has("quote") ? o.optString("quote", null) : null;
+        String quotePrefix = o.has("quotePrefix") ? o.optString("quotePrefix", null) : null;
+        String quoteSuffix = o.has("quoteSuffix") ? o.optString("quoteSuffix", null) : null;
+        float docProgress01 = o.has("docProgress01") ? (float) o.optDouble("docProgress01", -1.0) : -1f;
+        long reflowLocation = o.has("reflowLocation") ? o.optLong("reflowLocation", -1L) : -1L;
+        int anchorStartWord = o.has("anchorStartWord") ? o.optInt("anchorStartWord", -1) : -1;
+        int anchorEndWordExcl = o.has("anchorEndWordExclusive") ? o.optInt("anchorEndWordExclusive", -1) : -1;
+        return new SidecarHighlight(
+                id,
+                pageIndex,
+                layout,
+                type,
+                color,
+                opacity,
+                createdAt,
+                quadPoints,
+                quote,
+                quotePrefix,
+                quoteSuffix,
+                docProgress01,
+                reflowLocation,
+                anchorStartWord,
+                anchorEndWordExcl);
     }
 
-    @NonNull
-    private static byte[] readAllBytes(@NonNull InputStream in) throws java.io.IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        byte[] buf = new byte[8192];
-        int n;
-        while ((n = in.read(buf)) != -1) {
-            out.write(buf, 0, n);
+    @Nullable
+    static JSONObject noteToJson(@Nullable SidecarNote n) throws JSONException {
+        if (n == null || n.id == null || n.bounds == null) return null;
+        JSONObject o = new JSONObject();
+        o.put("id", n.id);
+        o.put("pageIndex", n.pageIndex);
+        if (n.layoutProfileId != null) o.put("layoutProfileId", n.layoutProfileId);
+        JSONObject b = new JSONObject();
+        b.put("left", (double) n.bounds.left);
+        b.put("top", (double) n.bounds.top);
+        b.put("right", (double) n.bounds.right);
+        b.put("bottom", (double) n.bounds.bottom);
+        o.put("bounds", b);
+        if (n.text != null) o.put("text", n.text);
+        o.put("createdAtEpochMs", n.createdAtEpochMs);
+        o.put("color", n.color);
+        if (n.fontFamily != SidecarNote.DEFAULT_FONT_FAMILY) o.put("fontFamily", n.fontFamily);
+        if (n.fontStyleFlags != SidecarNote.DEFAULT_FONT_STYLE_FLAGS) o.put("fontStyleFlags", n.fontStyleFlags);
+        o.put("fontSize", (double) n.fontSize);
+        if (n.lineHeight != SidecarNote.DEFAULT_LINE_HEIGHT) o.put("lineHeight", (double) n.lineHeight);
+        if (n.textIndentPt != SidecarNote.DEFAULT_TEXT_INDENT_PT) o.put("textIndentPt", (double) n.textIndentPt);
+        if (n.backgroundColor != SidecarNote.DEFAULT_BACKGROUND_COLOR) o.put("backgroundColor", n.backgroundColor);
+        if (n.backgroundOpacity != SidecarNote.DEFAULT_BACKGROUND_OPACITY) o.put("backgroundOpacity", (double) n.backgroundOpacity);
+        if (n.borderColor != SidecarNote.DEFAULT_BORDER_COLOR) o.put("borderColor", n.borderColor);
+        if (n.borderWidthPt != SidecarNote.DEFAULT_BORDER_WIDTH_PT) o.put("borderWidthPt", (double) n.borderWidthPt);
+        if (n.borderStyle != SidecarNote.DEFAULT_BORDER_STYLE) o.put("borderStyle", n.borderStyle);
+        if (n.borderRadiusPt != SidecarNote.DEFAULT_BORDER_RADIUS_PT) o.put("borderRadiusPt", (double) n.borderRadiusPt);
+        if (n.lockPositionSize != SidecarNote.DEFAULT_LOCK_POSITION_SIZE) o.put("lockPositionSize", n.lockPositionSize);
+        if (n.lockContents != SidecarNote.DEFAULT_LOCK_CONTENTS) o.put("lockContents", n.lockContents);
+        if (n.rotationDeg != SidecarNote.DEFAULT_ROTATION_DEG) o.put("rotationDeg", n.rotationDeg);
+        if (n.userResized) o.put("userResized", true);
+        return o;
+    }
+
+    @Nullable
+    static SidecarNote noteFromJson(@Nullable JSONObject o) {
+        if (o == null) return null;
+        String id = o.optString("id", null);
+        if (id == null || id.trim().isEmpty()) return null;
+        int pageIndex = o.optInt("pageIndex", -1);
+        if (pageIndex < 0) return null;
+        String layout = o.has("layoutProfileId") ? o.optString("layoutProfileId", null) : null;
+        JSONObject b = o.optJSONObject("bounds");
+        if (b == null) return null;
+        float left = (float) b.optDouble("left", 0.0);
+        float top = (float) b.optDouble("top", 0.0);
+        float right = (float) b.optDouble("right", 0.0);
+        float bottom = (float) b.optDouble("bottom", 0.0);
+        RectF bounds = new RectF(left, top, right, bottom);
+        String text = o.has("text") ? o.optString("text", null) : null;
+        long createdAt = o.optLong("createdAtEpochMs", 0L);
+        int color = o.has("color") ? o.optInt("color", SidecarNote.DEFAULT_COLOR) : SidecarNote.DEFAULT_COLOR;
+        int fontFamily = o.has("fontFamily") ? o.optInt("fontFamily", SidecarNote.DEFAULT_FONT_FAMILY) : SidecarNote.DEFAULT_FONT_FAMILY;
+        int fontStyleFlags = o.has("fontStyleFlags") ? o.optInt("fontStyleFlags", SidecarNote.DEFAULT_FONT_STYLE_FLAGS) : SidecarNote.DEFAULT_FONT_STYLE_FLAGS;
+        float fontSize = o.has("fontSize") ? (float) o.optDouble("fontSize", SidecarNote.DEFAULT_FONT_SIZE) : SidecarNote.DEFAULT_FONT_SIZE;
+        float lineHeight = o.has("lineHeight") ? (float) o.optDouble("lineHeight", SidecarNote.DEFAULT_LINE_HEIGHT) : SidecarNote.DEFAULT_LINE_HEIGHT;
+        float textIndentPt = o.has("textIndentPt") ? (float) o.optDouble("textIndentPt", SidecarNote.DEFAULT_TEXT_INDENT_PT) : SidecarNote.DEFAULT_TEXT_INDENT_PT;
+        int bgColor = o.has("backgroundColor") ? o.optInt("backgroundColor", SidecarNote.DEFAULT_BACKGROUND_COLOR) : SidecarNote.DEFAULT_BACKGROUND_COLOR;
+        float bgOpacity = o.has("backgroundOpacity") ? (float) o.optDouble("backgroundOpacity", SidecarNote.DEFAULT_BACKGROUND_OPACITY) : SidecarNote.DEFAULT_BACKGROUND_OPACITY;
+        int borderColor = o.has("borderColor") ? o.optInt("borderColor", SidecarNote.DEFAULT_BORDER_COLOR) : SidecarNote.DEFAULT_BORDER_COLOR;
+        float borderWidthPt = o.has("borderWidthPt") ? (float) o.optDouble("borderWidthPt", SidecarNote.DEFAULT_BORDER_WIDTH_PT) : SidecarNote.DEFAULT_BORDER_WIDTH_PT;
+        int borderStyle = o.has("borderStyle") ? o.optInt("borderStyle", SidecarNote.DEFAULT_BORDER_STYLE) : SidecarNote.DEFAULT_BORDER_STYLE;
+        float borderRadiusPt = o.has("borderRadiusPt") ? (float) o.optDouble("borderRadiusPt", SidecarNote.DEFAULT_BORDER_RADIUS_PT) : SidecarNote.DEFAULT_BORDER_RADIUS_PT;
+        boolean lockPositionSize = o.has("lockPositionSize") && o.optBoolean("lockPositionSize", SidecarNote.DEFAULT_LOCK_POSITION_SIZE);
+        boolean lockContents = o.has("lockContents") && o.optBoolean("lockContents", SidecarNote.DEFAULT_LOCK_CONTENTS);
+        int rotationDeg = o.has("rotationDeg") ? o.optInt("rotationDeg", SidecarNote.DEFAULT_ROTATION_DEG) : SidecarNote.DEFAULT_ROTATION_DEG;
+        boolean userResized = o.has("userResized") && o.optBoolean("userResized", false);
+        return new SidecarNote(id, pageIndex, layout, bounds, text, createdAt, color, fontFamily, fontStyleFlags, fontSize, lineHeight, textIndentPt, userResized, bgColor, bgOpacity, borderColor, borderWidthPt, borderStyle, borderRadiusPt, lockPositionSize, lockContents, rotationDeg);
+    }
+
+    /** Counts bytes pulled from the wrapped stream, for import progress. */
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(@NonNull InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            if (skipped > 0) count += skipped;
+            return skipped;
         }
-        return out.toByteArray();
     }
 }
-
@@ -12,7 +12,7 @@ import androidx.annotation.NonNull;
  */
 final class SidecarDbHelper extends SQLiteOpenHelper {
     private static final String DB_NAME = "sidecar_annotations.db";
-    private static final int DB_VERSION = 13;
+    private static final int DB_VERSION = 14;
 
     SidecarDbHelper(@NonNull Context context) {
         super(context, DB_NAME, null, DB_VERSION);
@@ -99,6 +99,20 @@ final class SidecarDbHelper extends SQLiteOpenHelper {
         );
         db.execSQL("CREATE INDEX IF NOT EXISTS idx_note_doc_page ON notes(doc_id, page_index)");
         db.execSQL("CREATE INDEX IF NOT EXISTS idx_note_doc_page_layout ON notes(doc_id, page_index, layout_profile_id)");
+
+        createUndoSpillTable(db);
+    }
+
+    /** Undo entries spilled by {@link SidecarAnnotationSession}; session-scoped, not user data. */
+    private static void createUndoSpillTable(SQLiteDatabase db) {
+        db.execSQL(
+                "CREATE TABLE IF NOT EXISTS undo_spill (" +
+                        "doc_id TEXT NOT NULL," +
+                        "seq INTEGER NOT NULL," +
+                        "payload TEXT NOT NULL," +
+                        "PRIMARY KEY (doc_id, seq)" +
+                        ")"
+        );
     }
 
     @Override
@@ -219,5 +233,11 @@ final class SidecarDbHelper extends SQLiteOpenHelper {
             } catch (Throwable ignore) {
             }
         }
+        if (oldVersion < 14) {
+            try {
+                createUndoSpillTable(db);
+            } catch (Throwable ignore) {
+            }
+        }
     }
 }
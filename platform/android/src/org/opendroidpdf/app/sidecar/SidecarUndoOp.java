@@ -0,0 +1,370 @@
+package org.opendroidpdf.app.sidecar;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.opendroidpdf.app.sidecar.model.SidecarHighlight;
+import org.opendroidpdf.app.sidecar.model.SidecarInkStroke;
+import org.opendroidpdf.app.sidecar.model.SidecarNote;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data-only undo entries for {@link SidecarAnnotationSession}.
+ *
+ * <p>An entry keeps only what is not in the store at that moment. Additions keep the ids of rows
+ * that still exist and pick the rows up when undone; deletions and edits keep a reference to the
+ * removed or prior (immutable) model object, never a copy. Entries on the undo side can be
+ * serialized to JSON so the session can spill them to the sidecar database.</p>
+ */
+abstract class SidecarUndoOp {
+
+    /** Session operations the entries replay against. */
+    interface Target {
+        @Nullable SidecarInkStroke removeInkStroke(int pageIndex, @NonNull String strokeId);
+        void restoreInkStroke(@NonNull SidecarInkStroke stroke);
+        @Nullable SidecarHighlight removeHighlight(int pageIndex, @NonNull String highlightId);
+        void restoreHighlight(@NonNull SidecarHighlight highlight);
+        @Nullable SidecarNote removeNote(int pageIndex, @NonNull String noteId);
+        void restoreNote(@NonNull SidecarNote note);
+        @Nullable SidecarNote findNote(int pageIndex, @NonNull String noteId);
+    }
+
+    private static final String INK_ADDED = "inkAdded";
+    private static final String INK_REPLACED = "inkReplaced";
+    private static final String HIGHLIGHT_ADDED = "highlightAdded";
+    private static final String HIGHLIGHT_DELETED = "highlightDeleted";
+    private static final String NOTE_ADDED = "noteAdded";
+    private static final String NOTE_DELETED = "noteDeleted";
+    private static final String NOTE_UPDATED = "noteUpdated";
+
+    private static final long ENTRY_BYTES = 48L;
+    private static final long ID_BYTES = 120L;
+    private static final long POINT_BYTES = 32L;
+    private static final long NOTE_BYTES = 220L;
+    private static final long HIGHLIGHT_BYTES = 180L;
+
+    final int pageIndex;
+
+    SidecarUndoOp(int pageIndex) {
+        this.pageIndex = pageIndex;
+    }
+
+    abstract void undo(@NonNull Target target);
+
+    abstract void redo(@NonNull Target target);
+
+    /** Rough heap retained by this entry, including referenced model objects. */
+    abstract long retainedBytes();
+
+    /** Serializes an entry that is on the undo side (i.e. not currently undone). */
+    @NonNull
+    abstract JSONObject toJson() throws JSONException;
+
+    @NonNull
+    JSONObject header(@NonNull String kind) throws JSONException {
+        JSONObject o = new JSONObject();
+        o.put("kind", kind);
+        o.put("pageIndex", pageIndex);
+        return o;
+    }
+
+    @Nullable
+    static SidecarUndoOp fromJson(@Nullable JSONObject o) {
+        if (o == null) return null;
+        int page = o.optInt("pageIndex", -1);
+        if (page < 0) return null;
+        String kind = o.optString("kind", "");
+        switch (kind) {
+            case INK_ADDED: {
+                String[] ids = ids(o.optJSONArray("ids"));
+                return ids.length > 0 ? new InkAdded(page, ids) : null;
+            }
+            case INK_REPLACED: {
+                SidecarInkStroke original = SidecarBundleJson.inkFromJson(o.optJSONObject("original"));
+                return original != null ? new InkReplaced(page, original, ids(o.optJSONArray("ids"))) : null;
+            }
+            case HIGHLIGHT_ADDED: {
+                String id = o.optString("id", null);
+                return id != null ? new HighlightAdded(page, id) : null;
+            }
+            case HIGHLIGHT_DELETED: {
+                SidecarHighlight h = SidecarBundleJson.highlightFromJson(o.optJSONObject("highlight"));
+                return h != null ? new HighlightDeleted(h) : null;
+            }
+            case NOTE_ADDED: {
+                String id = o.optString("id", null);
+                return id != null ? new NoteAdded(page, id) : null;
+            }
+            case NOTE_DELETED: {
+                SidecarNote n = SidecarBundleJson.noteFromJson(o.optJSONObject("note"));
+                return n != null ? new NoteDeleted(n) : null;
+            }
+            case NOTE_UPDATED: {
+                SidecarNote prior = SidecarBundleJson.noteFromJson(o.optJSONObject("prior"));
+                return prior != null ? new NoteUpdated(prior) : null;
+            }
+            default:
+                return null;
+        }
+    }
+
+    static final class InkAdded extends SidecarUndoOp {
+        @NonNull private final String[] ids;
+        /** Strokes removed by undo, held only while the entry is on the redo side. */
+        @Nullable private List<SidecarInkStroke> undone;
+
+        InkAdded(int pageIndex, @NonNull String[] ids) {
+            super(pageIndex);
+            this.ids = ids;
+        }
+
+        @Override void undo(@NonNull Target target) {
+            undone = removeAll(target, pageIndex, ids);
+        }
+
+        @Override void redo(@NonNull Target target) {
+            restoreAll(target, undone);
+            undone = null;
+        }
+
+        @Override long retainedBytes() {
+            return ENTRY_BYTES + ID_BYTES * ids.length + inkBytes(undone);
+        }
+
+        @NonNull @Override JSONObject toJson() throws JSONException {
+            return header(INK_ADDED).put("ids", idsJson(ids));
+        }
+    }
+
+    /** An eraser split {@code original} into {@code insertedIds}. */
+    static final class InkReplaced extends SidecarUndoOp {
+        @NonNull private final SidecarInkStroke original;
+        @NonNull private final String[] insertedIds;
+        @Nullable private List<SidecarInkStroke> undone;
+
+        InkReplaced(int pageIndex, @NonNull SidecarInkStroke original, @NonNull String[] insertedIds) {
+            super(pageIndex);
+            this.original = original;
+            this.insertedIds = insertedIds;
+        }
+
+        @Override void undo(@NonNull Target target) {
+            undone = removeAll(target, pageIndex, insertedIds);
+            target.restoreInkStroke(original);
+        }
+
+        @Override void redo(@NonNull Target target) {
+            target.removeInkStroke(pageIndex, original.id);
+            restoreAll(target, undone);
+            undone = null;
+        }
+
+        @Override long retainedBytes() {
+            return ENTRY_BYTES + ID_BYTES * (insertedIds.length + 1)
+                    + POINT_BYTES * original.points.length + inkBytes(undone);
+        }
+
+        @NonNull @Override JSONObject toJson() throws JSONException {
+            return header(INK_REPLACED)
+                    .put("original", SidecarBundleJson.inkToJson(original))
+                    .put("ids", idsJson(insertedIds));
+        }
+    }
+
+    static final class HighlightAdded extends SidecarUndoOp {
+        @NonNull private final String id;
+        @Nullable private SidecarHighlight undone;
+
+        HighlightAdded(int pageIndex, @NonNull String id) {
+            super(pageIndex);
+            this.id = id;
+        }
+
+        @Override void undo(@NonNull Target target) {
+            undone = target.removeHighlight(pageIndex, id);
+        }
+
+        @Override void redo(@NonNull Target target) {
+            if (undone != null) target.restoreHighlight(undone);
+            undone = null;
+        }
+
+        @Override long retainedBytes() {
+            return ENTRY_BYTES + ID_BYTES + highlightBytes(undone);
+        }
+
+        @NonNull @Override JSONObject toJson() throws JSONException {
+            return header(HIGHLIGHT_ADDED).put("id", id);
+        }
+    }
+
+    static final class HighlightDeleted extends SidecarUndoOp {
+        @NonNull private final SidecarHighlight highlight;
+
+        HighlightDeleted(@NonNull SidecarHighlight highlight) {
+            super(highlight.pageIndex);
+            this.highlight = highlight;
+        }
+
+        @Override void undo(@NonNull Target target) {
+            target.restoreHighlight(highlight);
+        }
+
+        @Override void redo(@NonNull Target target) {
+            target.removeHighlight(pageIndex, highlight.id);
+        }
+
+        @Override long retainedBytes() {
+            return ENTRY_BYTES + highlightBytes(highlight);
+        }
+
+        @NonNull @Override JSONObject toJson() throws JSONException {
+            return header(HIGHLIGHT_DELETED).put("highlight", SidecarBundleJson.highlightToJson(highlight));
+        }
+    }
+
+    static final class NoteAdded extends SidecarUndoOp {
+        @NonNull private final String id;
+        @Nullable private SidecarNote undone;
+
+        NoteAdded(int pageIndex, @NonNull String id) {
+            super(pageIndex);
+            this.id = id;
+        }
+
+        @Override void undo(@NonNull Target target) {
+            undone = target.removeNote(pageIndex, id);
+        }
+
+        @Override void redo(@NonNull Target target) {
+            if (undone != null) target.restoreNote(undone);
+            undone = null;
+        }
+
+        @Override long retainedBytes() {
+            return ENTRY_BYTES + ID_BYTES + noteBytes(undone);
+        }
+
+        @NonNull @Override JSONObject toJson() throws JSONException {
+            return header(NOTE_ADDED).put("id", id);
+        }
+    }
+
+    static final class NoteDeleted extends SidecarUndoOp {
+        @NonNull private final SidecarNote note;
+
+        NoteDeleted(@NonNull SidecarNote note) {
+            super(note.pageIndex);
+            this.note = note;
+        }
+
+        @Override void undo(@NonNull Target target) {
+            target.restoreNote(note);
+        }
+
+        @Override void redo(@NonNull Target target) {
+            target.removeNote(pageIndex, note.id);
+        }
+
+        @Override long retainedBytes() {
+            return ENTRY_BYTES + noteBytes(note);
+        }
+
+        @NonNull @Override JSONObject toJson() throws JSONException {
+            return header(NOTE_DELETED).put("note", SidecarBundleJson.noteToJson(note));
+        }
+    }
+
+    /**
+     * A note edit. Only the prior state is kept; the edited state is read back from the session
+     * when the entry is undone, since it is the current row until then.
+     */
+    static final class NoteUpdated extends SidecarUndoOp {
+        @NonNull private final SidecarNote prior;
+        @Nullable private SidecarNote undone;
+
+        NoteUpdated(@NonNull SidecarNote prior) {
+            super(prior.pageIndex);
+            this.prior = prior;
+        }
+
+        @Override void undo(@NonNull Target target) {
+            undone = target.findNote(pageIndex, prior.id);
+            target.restoreNote(prior);
+        }
+
+        @Override void redo(@NonNull Target target) {
+            if (undone != null) target.restoreNote(undone);
+            undone = null;
+        }
+
+        @Override long retainedBytes() {
+            return ENTRY_BYTES + noteBytes(prior) + noteBytes(undone);
+        }
+
+        @NonNull @Override JSONObject toJson() throws JSONException {
+            return header(NOTE_UPDATED).put("prior", SidecarBundleJson.noteToJson(prior));
+        }
+    }
+
+    @Nullable
+    private static List<SidecarInkStroke> removeAll(@NonNull Target target, int pageIndex, @NonNull String[] ids) {
+        List<SidecarInkStroke> removed = null;
+        for (String id : ids) {
+            SidecarInkStroke s = target.removeInkStroke(pageIndex, id);
+            if (s == null) continue;
+            if (removed == null) removed = new ArrayList<>(ids.length);
+            removed.add(s);
+        }
+        return removed;
+    }
+
+    private static void restoreAll(@NonNull Target target, @Nullable List<SidecarInkStroke> strokes) {
+        if (strokes == null) return;
+        for (SidecarInkStroke s : strokes) target.restoreInkStroke(s);
+    }
+
+    static long inkBytes(@Nullable List<SidecarInkStroke> strokes) {
+        if (strokes == null) return 0L;
+        long total = 0L;
+        for (SidecarInkStroke s : strokes) total += ID_BYTES + POINT_BYTES * s.points.length;
+        return total;
+    }
+
+    static long highlightBytes(@Nullable SidecarHighlight h) {
+        if (h == null) return 0L;
+        return HIGHLIGHT_BYTES + POINT_BYTES * h.quadPoints.length
+                + 2L * (length(h.quote) + length(h.quotePrefix) + length(h.quoteSuffix));
+    }
+
+    static long noteBytes(@Nullable SidecarNote n) {
+        return n != null ? NOTE_BYTES + 2L * length(n.text) : 0L;
+    }
+
+    private static int length(@Nullable String s) {
+        return s != null ? s.length() : 0;
+    }
+
+    @NonNull
+    private static JSONArray idsJson(@NonNull String[] ids) {
+        JSONArray a = new JSONArray();
+        for (String id : ids) a.put(id);
+        return a;
+    }
+
+    @NonNull
+    private static String[] ids(@Nullable JSONArray a) {
+        if (a == null) return new String[0];
+        ArrayList<String> out = new ArrayList<>(a.length());
+        for (int i = 0; i < a.length(); i++) {
+            String id = a.optString(i, null);
+            if (id != null && !id.isEmpty()) out.add(id);
+        }
+        return out.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,616 @@
+package org.opendroidpdf.app.sidecar;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.opendroidpdf.app.sidecar.model.SidecarHighlight;
+import org.opendroidpdf.app.sidecar.model.SidecarInkStroke;
+import org.opendroidpdf.app.sidecar.model.SidecarNote;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind front for the sidecar database.
+ *
+ * <p>Mutations return immediately: {@link SidecarAnnotationSession} has already applied them to
+ * its in-memory page lists, so the store only has to make them durable. Queued writes are keyed
+ * by row, so repeated updates to one note (typing, dragging) collapse into a single write of the
+ * latest state, and everything queued is committed in one transaction on a background thread
+ * {@link #COMMIT_DELAY_MS} after the first write, on {@link #commitSoon()} (lifecycle pause), or
+ * synchronously on {@link #flush()}.</p>
+ *
+ * <p>List reads lay the queued writes for their document over the stored rows, so a session that
+ * reloads a page (or a new session after a relayout) sees its own writes without waiting for a
+ * commit. Aggregate reads (counts, existence checks, export cursors) flush first, but only when
+ * that document has writes queued. There is one instance per process, so all sessions share the
+ * queue and one database connection.</p>
+ */
+public final class WriteBehindSidecarAnnotationStore implements SidecarAnnotationStore {
+    private static final String TAG = "SidecarWriteBehind";
+    static final long COMMIT_DELAY_MS = 300L;
+    private static final long RETRY_DELAY_MS = 2000L;
+
+    /** Notified when queued writes appear, become durable, or fail to commit. */
+    public interface DurabilityListener {
+        /**
+         * {@code pending}: writes are queued or being committed. {@code failed}: the last commit
+         * failed; the writes stay queued and are retried.
+         */
+        void onAnnotationDurabilityChanged(boolean pending, boolean failed);
+    }
+
+    /** Receives commit failures after the batch has been requeued. */
+    interface FailureLog {
+        void commitFailed(@NonNull Throwable t);
+    }
+
+    private static volatile WriteBehindSidecarAnnotationStore instance;
+
+    @NonNull
+    public static WriteBehindSidecarAnnotationStore get(@NonNull Context context) {
+        WriteBehindSidecarAnnotationStore s = instance;
+        if (s == null) {
+            synchronized (WriteBehindSidecarAnnotationStore.class) {
+                s = instance;
+                if (s == null) {
+                    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                        Thread t = new Thread(r, "sidecar-writes");
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    s = new WriteBehindSidecarAnnotationStore(
+                            new SQLiteSidecarAnnotationStore(context), executor,
+                            t -> Log.w(TAG, "sidecar commit failed; will retry", t));
+                    instance = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /** Returns the process-wide instance if one was created. */
+    @Nullable
+    public static WriteBehindSidecarAnnotationStore peek() {
+        return instance;
+    }
+
+    private final SidecarAnnotationStore delegate;
+    @Nullable private final ScheduledExecutorService executor;
+    @NonNull private final FailureLog failureLog;
+    /** Queued writes by row key; guarded by {@code this}. */
+    private LinkedHashMap<String, PendingWrite> pending = new LinkedHashMap<>();
+    /** The batch being committed, still overlaid on reads until it is durable; guarded by {@code this}. */
+    @Nullable private LinkedHashMap<String, PendingWrite> committing;
+    /** Held while a batch is being written, so flushes wait for in-flight commits. */
+    private final Object commitLock = new Object();
+    private final List<WeakReference<DurabilityListener>> listeners = new ArrayList<>();
+    private boolean commitScheduled;
+    private int inFlight;
+    private boolean lastCommitFailed;
+    private long commits;
+    private long coalesced;
+
+    /** {@code executor} null: nothing is committed until {@link #flush()} (tests). */
+    WriteBehindSidecarAnnotationStore(@NonNull SidecarAnnotationStore delegate,
+                                      @Nullable ScheduledExecutorService executor) {
+        this(delegate, executor, t -> { });
+    }
+
+    WriteBehindSidecarAnnotationStore(@NonNull SidecarAnnotationStore delegate,
+                                      @Nullable ScheduledExecutorService executor,
+                                      @NonNull FailureLog failureLog) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.failureLog = failureLog;
+    }
+
+    /**
+     * Listeners are held weakly; keep a strong reference for as long as updates are wanted. The
+     * listener is called right away with the current state.
+     */
+    public void addDurabilityListener(@NonNull DurabilityListener listener) {
+        boolean pendingNow;
+        boolean failedNow;
+        synchronized (this) {
+            listeners.add(new WeakReference<>(listener));
+            pendingNow = !pending.isEmpty() || inFlight > 0;
+            failedNow = lastCommitFailed;
+        }
+        listener.onAnnotationDurabilityChanged(pendingNow, failedNow);
+    }
+
+    public synchronized boolean hasPendingWrites() {
+        return !pending.isEmpty() || inFlight > 0;
+    }
+
+    public synchronized boolean lastCommitFailed() {
+        return lastCommitFailed;
+    }
+
+    /** Number of queued writes that were replaced by a later write to the same row. */
+    public synchronized long coalescedWrites() {
+        return coalesced;
+    }
+
+    public synchronized long commits() {
+        return commits;
+    }
+
+    /** Commits queued writes on the background thread without waiting for the usual delay. */
+    public void commitSoon() {
+        if (executor == null) return;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+        }
+        executor.execute(this::commitPending);
+    }
+
+    /** Commits queued writes on the calling thread and returns once they are durable (or failed). */
+    @Override
+    public void flush() {
+        commitPending();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Mutations: queued.
+
+    @Override
+    public void insertInk(@NonNull String docId, @NonNull List<SidecarInkStroke> strokes) {
+        if (strokes.isEmpty()) return;
+        ArrayList<PendingWrite> writes = new ArrayList<>(strokes.size());
+        for (SidecarInkStroke s : strokes) {
+            if (s != null) writes.add(new PutInk(docId, s));
+        }
+        enqueue(writes);
+    }
+
+    @Override
+    public void deleteInk(@NonNull String docId, @NonNull String strokeId) {
+        enqueue(Collections.singletonList(new Delete(INK, docId, strokeId)));
+    }
+
+    @Override
+    public void insertHighlight(@NonNull String docId, @NonNull SidecarHighlight highlight) {
+        enqueue(Collections.singletonList(new PutHighlight(docId, highlight)));
+    }
+
+    @Override
+    public void insertHighlights(@NonNull String docId, @NonNull List<SidecarHighlight> highlights) {
+        ArrayList<PendingWrite> writes = new ArrayList<>(highlights.size());
+        for (SidecarHighlight h : highlights) {
+            if (h != null) writes.add(new PutHighlight(docId, h));
+        }
+        enqueue(writes);
+    }
+
+    @Override
+    public void deleteHighlight(@NonNull String docId, @NonNull String highlightId) {
+        enqueue(Collections.singletonList(new Delete(HIGHLIGHT, docId, highlightId)));
+    }
+
+    @Override
+    public void insertNote(@NonNull String docId, @NonNull SidecarNote note) {
+        enqueue(Collections.singletonList(new PutNote(docId, note)));
+    }
+
+    @Override
+    public void insertNotes(@NonNull String docId, @NonNull List<SidecarNote> notes) {
+        ArrayList<PendingWrite> writes = new ArrayList<>(notes.size());
+        for (SidecarNote n : notes) {
+            if (n != null) writes.add(new PutNote(docId, n));
+        }
+        enqueue(writes);
+    }
+
+    @Override
+    public void deleteNote(@NonNull String docId, @NonNull String noteId) {
+        enqueue(Collections.singletonList(new Delete(NOTE, docId, noteId)));
+    }
+
+    @Override
+    public void migrateDocId(@NonNull String fromDocId, @NonNull String toDocId) {
+        flush();
+        delegate.migrateDocId(fromDocId, toDocId);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Lists: stored rows with the queued writes laid over them.
+
+    @NonNull @Override
+    public List<SidecarInkStroke> listInk(@NonNull String docId, int pageIndex, @Nullable String layoutProfileId) {
+        List<PendingWrite> queued = queuedFor(INK, docId);
+        return overlay(delegate.listInk(docId, pageIndex, layoutProfileId), queued, INK_ROWS,
+                true, pageIndex, layoutProfileId);
+    }
+
+    @NonNull @Override
+    public List<SidecarInkStroke> listAllInk(@NonNull String docId) {
+        List<PendingWrite> queued = queuedFor(INK, docId);
+        return overlay(delegate.listAllInk(docId), queued, INK_ROWS, false, 0, null);
+    }
+
+    @NonNull @Override
+    public List<SidecarHighlight> listHighlights(@NonNull String docId, int pageIndex, @Nullable String layoutProfileId) {
+        List<PendingWrite> queued = queuedFor(HIGHLIGHT, docId);
+        return overlay(delegate.listHighlights(docId, pageIndex, layoutProfileId), queued, HIGHLIGHT_ROWS,
+                true, pageIndex, layoutProfileId);
+    }
+
+    @NonNull @Override
+    public List<SidecarHighlight> listAllHighlights(@NonNull String docId) {
+        List<PendingWrite> queued = queuedFor(HIGHLIGHT, docId);
+        return overlay(delegate.listAllHighlights(docId), queued, HIGHLIGHT_ROWS, false, 0, null);
+    }
+
+    @NonNull @Override
+    public List<SidecarNote> listNotes(@NonNull String docId, int pageIndex, @Nullable String layoutProfileId) {
+        List<PendingWrite> queued = queuedFor(NOTE, docId);
+        return overlay(delegate.listNotes(docId, pageIndex, layoutProfileId), queued, NOTE_ROWS,
+                true, pageIndex, layoutProfileId);
+    }
+
+    @NonNull @Override
+    public List<SidecarNote> listAllNotes(@NonNull String docId) {
+        List<PendingWrite> queued = queuedFor(NOTE, docId);
+        return overlay(delegate.listAllNotes(docId), queued, NOTE_ROWS, false, 0, null);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+    // Aggregates and cursors: flush when this document has writes queued, then read through.
+
+    @Override
+    public boolean hasAnyInk(@NonNull String docId) {
+        flushIfQueued(docId);
+        return delegate.hasAnyInk(docId);
+    }
+
+    @NonNull @Override
+    public RowCursor<SidecarInkStroke> openAllInk(@NonNull String docId) {
+        flushIfQueued(docId);
+        return delegate.openAllInk(docId);
+    }
+
+    @NonNull @Override
+    public RowCursor<SidecarHighlight> openAllHighlights(@NonNull String docId) {
+        flushIfQueued(docId);
+        return delegate.openAllHighlights(docId);
+    }
+
+    @NonNull @Override
+    public RowCursor<SidecarNote> openAllNotes(@NonNull String docId) {
+        flushIfQueued(docId);
+        return delegate.openAllNotes(docId);
+    }
+
+    @Override
+    public long countAnnotations(@NonNull String docId) {
+        flushIfQueued(docId);
+        return delegate.countAnnotations(docId);
+    }
+
+    @Override
+    public boolean hasAnyAnnotationsInLayout(@NonNull String docId, @Nullable String layoutProfileId) {
+        flushIfQueued(docId);
+        return delegate.hasAnyAnnotationsInLayout(docId, layoutProfileId);
+    }
+
+    @Override
+    public boolean hasAnyAnnotationsOutsideLayout(@NonNull String docId, @NonNull String layoutProfileId) {
+        flushIfQueued(docId);
+        return delegate.hasAnyAnnotationsOutsideLayout(docId, layoutProfileId);
+    }
+
+    // Undo spill rows are not annotation rows; they go straight through.
+
+    @Override
+    public boolean putUndoSpill(@NonNull String docId, long sequence, @NonNull String payload) {
+        return delegate.putUndoSpill(docId, sequence, payload);
+    }
+
+    @Nullable @Override
+    public SpilledUndo takeNewestUndoSpill(@NonNull String docId) {
+        return delegate.takeNewestUndoSpill(docId);
+    }
+
+    @Override
+    public void clearUndoSpill(@NonNull String docId) {
+        delegate.clearUndoSpill(docId);
+    }
+
+    @Override
+    public void runInTransaction(@NonNull Runnable work) {
+        delegate.runInTransaction(work);
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private void enqueue(@NonNull List<PendingWrite> writes) {
+        if (writes.isEmpty()) return;
+        boolean becamePending;
+        boolean schedule = false;
+        synchronized (this) {
+            becamePending = pending.isEmpty() && inFlight == 0;
+            for (PendingWrite w : writes) {
+                // Re-inserting moves the row to the end; order between rows does not matter.
+                if (pending.remove(w.key) != null) coalesced++;
+                pending.put(w.key, w);
+            }
+            if (!commitScheduled && executor != null) {
+                commitScheduled = true;
+                schedule = true;
+            }
+        }
+        if (schedule) executor.schedule(this::commitPending, COMMIT_DELAY_MS, TimeUnit.MILLISECONDS);
+        if (becamePending) notifyListeners();
+    }
+
+    private void flushIfQueued(@NonNull String docId) {
+        if (hasQueued(docId)) flush();
+    }
+
+    private synchronized boolean hasQueued(@NonNull String docId) {
+        if (committing != null) {
+            for (PendingWrite w : committing.values()) {
+                if (w.docId.equals(docId)) return true;
+            }
+        }
+        for (PendingWrite w : pending.values()) {
+            if (w.docId.equals(docId)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Queued writes of {@code kind} for {@code docId}, oldest first. Taken before the stored rows
+     * are read: a batch that commits in between is then in both, and laying it over again is
+     * harmless.
+     */
+    @NonNull
+    private synchronized List<PendingWrite> queuedFor(@NonNull String kind, @NonNull String docId) {
+        List<PendingWrite> out = Collections.emptyList();
+        for (int pass = 0; pass < 2; pass++) {
+            LinkedHashMap<String, PendingWrite> writes = pass == 0 ? committing : pending;
+            if (writes == null) continue;
+            for (PendingWrite w : writes.values()) {
+                if (!w.kind.equals(kind) || !w.docId.equals(docId)) continue;
+                if (out.isEmpty()) out = new ArrayList<>();
+                out.add(w);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Applies {@code queued} to {@code stored}: deletes drop the row, puts replace it in place or
+     * append it. With {@code onePage}, a put that now belongs elsewhere drops the row instead.
+     */
+    @NonNull
+    private static <T> List<T> overlay(@NonNull List<T> stored,
+                                       @NonNull List<PendingWrite> queued,
+                                       @NonNull Rows<T> rows,
+                                       boolean onePage,
+                                       int pageIndex,
+                                       @Nullable String layoutProfileId) {
+        if (queued.isEmpty()) return stored;
+        LinkedHashMap<String, T> byId = new LinkedHashMap<>();
+        for (T row : stored) byId.put(rows.id(row), row);
+        for (PendingWrite w : queued) {
+            T row = rows.of(w);
+            boolean keep = row != null && (!onePage
+                    || (rows.page(row) == pageIndex && equal(rows.layout(row), layoutProfileId)));
+            if (keep) byId.put(w.id, row);
+            else byId.remove(w.id);
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    private static boolean equal(@Nullable String a, @Nullable String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private void commitPending() {
+        Throwable failure = null;
+        synchronized (commitLock) {
+            LinkedHashMap<String, PendingWrite> batch;
+            synchronized (this) {
+                commitScheduled = false;
+                if (pending.isEmpty()) return;
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                committing = batch;
+                inFlight++;
+            }
+            boolean ok = false;
+            boolean retry = false;
+            try {
+                delegate.runInTransaction(() -> apply(batch.values()));
+                ok = true;
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                synchronized (this) {
+                    inFlight--;
+                    committing = null;
+                    if (ok) {
+                        commits++;
+                    } else {
+                        // Requeue rows that were not written again since this batch was taken.
+                        LinkedHashMap<String, PendingWrite> merged = new LinkedHashMap<>(batch);
+                        merged.putAll(pending);
+                        pending = merged;
+                        if (!commitScheduled && executor != null) {
+                            commitScheduled = true;
+                            retry = true;
+                        }
+                    }
+                    lastCommitFailed = !ok;
+                }
+            }
+            if (retry) executor.schedule(this::commitPending, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+        notifyListeners();
+        if (failure != null) failureLog.commitFailed(failure);
+    }
+
+    /** Groups consecutive puts of one kind and document so batch inserts can be used. */
+    private void apply(@NonNull Iterable<PendingWrite> writes) {
+        String inkDoc = null;
+        ArrayList<SidecarInkStroke> ink = new ArrayList<>();
+        for (PendingWrite w : writes) {
+            if (w instanceof PutInk) {
+                if (inkDoc != null && !inkDoc.equals(w.docId)) {
+                    delegate.insertInk(inkDoc, ink);
+                    ink = new ArrayList<>();
+                }
+                inkDoc = w.docId;
+                ink.add(((PutInk) w).stroke);
+            } else {
+                w.apply(delegate);
+            }
+        }
+        if (inkDoc != null && !ink.isEmpty()) delegate.insertInk(inkDoc, ink);
+    }
+
+    private void notifyListeners() {
+        ArrayList<DurabilityListener> live = new ArrayList<>();
+        boolean pendingNow;
+        boolean failedNow;
+        synchronized (this) {
+            for (Iterator<WeakReference<DurabilityListener>> it = listeners.iterator(); it.hasNext(); ) {
+                DurabilityListener l = it.next().get();
+                if (l == null) it.remove();
+                else live.add(l);
+            }
+            pendingNow = !pending.isEmpty() || inFlight > 0;
+            failedNow = lastCommitFailed;
+        }
+        for (DurabilityListener l : live) {
+            try {
+                l.onAnnotationDurabilityChanged(pendingNow, failedNow);
+            } catch (Throwable ignore) {
+            }
+        }
+    }
+
+    private static final String INK = "ink";
+    private static final String HIGHLIGHT = "highlight";
+    private static final String NOTE = "note";
+
+    /** Row access for {@link #overlay}; the three model classes share no interface. */
+    private interface Rows<T> {
+        @NonNull String id(@NonNull T row);
+        int page(@NonNull T row);
+        @Nullable String layout(@NonNull T row);
+        /** The row {@code w} writes, or null for a delete. */
+        @Nullable T of(@NonNull PendingWrite w);
+    }
+
+    private static final Rows<SidecarInkStroke> INK_ROWS = new Rows<SidecarInkStroke>() {
+        @NonNull @Override public String id(@NonNull SidecarInkStroke row) { return row.id; }
+        @Override public int page(@NonNull SidecarInkStroke row) { return row.pageIndex; }
+        @Nullable @Override public String layout(@NonNull SidecarInkStroke row) { return row.layoutProfileId; }
+        @Nullable @Override public SidecarInkStroke of(@NonNull PendingWrite w) {
+            return w instanceof PutInk ? ((PutInk) w).stroke : null;
+        }
+    };
+
+    private static final Rows<SidecarHighlight> HIGHLIGHT_ROWS = new Rows<SidecarHighlight>() {
+        @NonNull @Override public String id(@NonNull SidecarHighlight row) { return row.id; }
+        @Override public int page(@NonNull SidecarHighlight row) { return row.pageIndex; }
+        @Nullable @Override public String layout(@NonNull SidecarHighlight row) { return row.layoutProfileId; }
+        @Nullable @Override public SidecarHighlight of(@NonNull PendingWrite w) {
+            return w instanceof PutHighlight ? ((PutHighlight) w).highlight : null;
+        }
+    };
+
+    private static final Rows<SidecarNote> NOTE_ROWS = new Rows<SidecarNote>() {
+        @NonNull @Override public String id(@NonNull SidecarNote row) { return row.id; }
+        @Override public int page(@NonNull SidecarNote row) { return row.pageIndex; }
+        @Nullable @Override public String layout(@NonNull SidecarNote row) { return row.layoutProfileId; }
+        @Nullable @Override public SidecarNote of(@NonNull PendingWrite w) {
+            return w instanceof PutNote ? ((PutNote) w).note : null;
+        }
+    };
+
+    private abstract static class PendingWrite {
+        @NonNull final String kind;
+        @NonNull final String docId;
+        @NonNull final String id;
+        @NonNull final String key;
+
+        PendingWrite(@NonNull String kind, @NonNull String docId, @NonNull String id) {
+            this.kind = kind;
+            this.docId = docId;
+            this.id = id;
+            // Ids are UUIDs, but keep the parts unambiguous anyway.
+            this.key = kind + '\u0000' + docId + '\u0000' + id;
+        }
+
+        abstract void apply(@NonNull SidecarAnnotationStore store);
+    }
+
+    private static final class PutInk extends PendingWrite {
+        @NonNull final SidecarInkStroke stroke;
+
+        PutInk(@NonNull String docId, @NonNull SidecarInkStroke stroke) {
+            super(INK, docId, stroke.id);
+            this.stroke = stroke;
+        }
+
+        @Override void apply(@NonNull SidecarAnnotationStore store) {
+            store.insertInk(docId, Collections.singletonList(stroke));
+        }
+    }
+
+    private static final class PutHighlight extends PendingWrite {
+        @NonNull final SidecarHighlight highlight;
+
+        PutHighlight(@NonNull String docId, @NonNull SidecarHighlight highlight) {
+            super(HIGHLIGHT, docId, highlight.id);
+            this.highlight = highlight;
+        }
+
+        @Override void apply(@NonNull SidecarAnnotationStore store) {
+            store.insertHighlight(docId, highlight);
+        }
+    }
+
+    private static final class PutNote extends PendingWrite {
+        @NonNull final SidecarNote note;
+
+        PutNote(@NonNull String docId, @NonNull SidecarNote note) {
+            super(NOTE, docId, note.id);
+            this.note = note;
+        }
+
+        @Override void apply(@NonNull SidecarAnnotationStore store) {
+            store.insertNote(docId, note);
+        }
+    }
+
+    private static final class Delete extends PendingWrite {
+        Delete(@NonNull String kind, @NonNull String docId, @NonNull String id) {
+            super(kind, docId, id);
+        }
+
+        @Override void apply(@NonNull SidecarAnnotationStore store) {
+            switch (kind) {
+                case INK: store.deleteInk(docId, id); break;
+                case HIGHLIGHT: store.deleteHighlight(docId, id); break;
+                default: store.deleteNote(docId, id); break;
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.opendroidpdf.app.storage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.opendroidpdf.app.AppCoroutines;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import kotlinx.coroutines.CoroutineScope;
+
+/**
+ * Lists directories for the file and note browsers off the UI thread.
+ *
+ * <p>Names are read once and sorted case-insensitively before anything is stat'ed, then
+ * classified (directory or file) in batches that are posted to the UI as they complete. Every
+ * batch only holds names that sort after the previous batch, so a caller that appends each
+ * batch's directories after the directories it already has, and its files at the end, ends up
+ * with the same "directories first, then files, each alphabetical" order as a full listing.</p>
+ *
+ * <p>Finished listings are cached per directory and reused while the directory's modification
+ * time is unchanged; {@link #invalidate} drops an entry when a change is known to have happened
+ * (e.g. from a {@code FileObserver}) within the file system's mtime granularity.</p>
+ */
+public final class DirectoryScanner {
+
+    /** Receives listing batches on the UI thread. */
+    public interface Callback {
+        /** Names in this batch, each list sorted, all after the previous batch's names. */
+        void onBatch(@NonNull List<String> dirs, @NonNull List<String> files);
+
+        /** The listing is complete; {@code failed} when the directory could not be read. */
+        void onComplete(boolean failed);
+    }
+
+    /** Cancels delivery of a scan's remaining batches. */
+    public static final class Handle {
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        public void cancel() {
+            cancelled.set(true);
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
+
+    static final class Listing {
+        final long lastModified;
+        final List<String> dirs;
+        final List<String> files;
+
+        Listing(long lastModified, List<String> dirs, List<String> files) {
+            this.lastModified = lastModified;
+            this.dirs = dirs;
+            this.files = files;
+        }
+    }
+
+    /** Receives batches on the scanning thread; used by the async path and tests. */
+    interface Sink {
+        void batch(@NonNull List<String> dirs, @NonNull List<String> files);
+    }
+
+    static final int BATCH_SIZE = 256;
+    private static final int MAX_CACHED_DIRS = 32;
+
+    private static final DirectoryScanner INSTANCE = new DirectoryScanner();
+
+    @NonNull
+    public static DirectoryScanner get() {
+        return INSTANCE;
+    }
+
+    private final Map<String, Listing> cache = new LinkedHashMap<String, Listing>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Listing> eldest) {
+            return size() > MAX_CACHED_DIRS;
+        }
+    };
+
+    DirectoryScanner() {}
+
+    /**
+     * Scans {@code dir} on the IO dispatcher and delivers batches on {@code uiScope}. Batches for a
+     * cancelled handle are dropped, so callers cancel the previous scan when navigating.
+     */
+    @NonNull
+    public Handle scan(@NonNull CoroutineScope uiScope, @NonNull File dir, @NonNull Callback callback) {
+        final Handle handle = new Handle();
+        AppCoroutines.launchIo(AppCoroutines.ioScope(), () -> {
+            if (handle.isCancelled()) return;
+            Listing listing = list(dir, (dirs, files) -> {
+                if (handle.isCancelled()) return;
+                AppCoroutines.launchMain(uiScope, () -> {
+                    if (!handle.isCancelled()) callback.onBatch(dirs, files);
+                });
+            });
+            final boolean failed = listing == null;
+            AppCoroutines.launchMain(uiScope, () -> {
+                if (!handle.isCancelled()) callback.onComplete(failed);
+            });
+        });
+        return handle;
+    }
+
+    public void invalidate(@Nullable File dir) {
+        if (dir == null) return;
+        synchronized (cache) {
+            cache.remove(dir.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Blocking listing: replays a cached listing as one batch when {@code dir} is unchanged,
+     * otherwise scans in batches of {@link #BATCH_SIZE} and caches the result. Returns null when
+     * the directory cannot be read.
+     */
+    @Nullable
+    Listing list(@NonNull File dir, @NonNull Sink sink) {
+        String key = dir.getAbsolutePath();
+        long lastModified = dir.lastModified();
+        Listing cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null && cached.lastModified == lastModified && lastModified != 0L) {
+            sink.batch(cached.dirs, cached.files);
+            return cached;
+        }
+
+        String[] names = dir.list();
+        if (names == null) {
+            invalidate(dir);
+            return null;
+        }
+        Arrays.sort(names, String.CASE_INSENSITIVE_ORDER);
+        ArrayList<String> allDirs = new ArrayList<>();
+        ArrayList<String> allFiles = new ArrayList<>(names.length);
+        for (int start = 0; start < names.length; start += BATCH_SIZE) {
+            int end = Math.min(names.length, start + BATCH_SIZE);
+            ArrayList<String> dirs = new ArrayList<>();
+            ArrayList<String> files = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                String name = names[i];
+                if (new File(dir, name).isDirectory()) dirs.add(name);
+                else files.add(name);
+            }
+            allDirs.addAll(dirs);
+            allFiles.addAll(files);
+            sink.batch(Collections.unmodifiableList(dirs), Collections.unmodifiableList(files));
+        }
+
+        Listing listing = new Listing(lastModified,
+                Collections.unmodifiableList(allDirs),
+                Collections.unmodifiableList(allFiles));
+        if (lastModified != 0L) {
+            synchronized (cache) {
+                cache.put(key, listing);
+            }
+        }
+        return listing;
+    }
+}
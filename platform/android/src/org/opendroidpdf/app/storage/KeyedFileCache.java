@@ -0,0 +1,123 @@
+package org.opendroidpdf.app.storage;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * A bounded directory of small text files addressed by string keys; the disk layer of the
+ * per-document caches (EPUB metadata, reflow pagination).
+ *
+ * <p>File names are a hash of the key. Writes go to a temp file that is renamed into place, so a
+ * reader never sees a partial entry. Reads refresh the file's modification time and the directory
+ * keeps the {@code maxFiles} most recently used entries. Callers own the in-memory layer and the
+ * payload format.</p>
+ */
+public final class KeyedFileCache {
+    private final File dir;
+    private final String suffix;
+    private final int maxFiles;
+    private final int maxFileBytes;
+
+    public KeyedFileCache(@NonNull File dir, @NonNull String suffix, int maxFiles, int maxFileBytes) {
+        this.dir = dir;
+        this.suffix = suffix;
+        this.maxFiles = maxFiles;
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    /** The stored text for {@code key}, or null when absent, oversized or unreadable. */
+    @Nullable
+    public String read(@NonNull String key) {
+        File f = fileFor(key);
+        if (f == null || !f.isFile()) return null;
+        if (f.length() > maxFileBytes) {
+            //noinspection ResultOfMethodCallIgnored
+            f.delete();
+            return null;
+        }
+        try (InputStream in = new FileInputStream(f)) {
+            byte[] bytes = new byte[(int) f.length()];
+            int off = 0;
+            while (off < bytes.length) {
+                int n = in.read(bytes, off, bytes.length - off);
+                if (n < 0) break;
+                off += n;
+            }
+            //noinspection ResultOfMethodCallIgnored
+            f.setLastModified(System.currentTimeMillis());
+            return new String(bytes, 0, off, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            f.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stores {@code text} under {@code key}, replacing any previous entry, then trims the
+     * directory. Oversized payloads are not stored.
+     */
+    public void write(@NonNull String key, @NonNull String text) throws IOException {
+        File f = fileFor(key);
+        if (f == null) return;
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > maxFileBytes) return;
+        //noinspection ResultOfMethodCallIgnored
+        dir.mkdirs();
+        File tmp = new File(dir, f.getName() + ".tmp");
+        try {
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(bytes);
+            }
+            if (!tmp.renameTo(f)) throw new IOException("rename failed: " + tmp);
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+        }
+        trim();
+    }
+
+    /** Drops the entry for {@code key}, e.g. when its payload no longer parses. */
+    public void remove(@NonNull String key) {
+        File f = fileFor(key);
+        //noinspection ResultOfMethodCallIgnored
+        if (f != null) f.delete();
+    }
+
+    /** Keeps the {@link #maxFiles} most recently used files. */
+    private void trim() {
+        File[] files = dir.listFiles();
+        if (files == null || files.length <= maxFiles) return;
+        Arrays.sort(files, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        for (int i = maxFiles; i < files.length; i++) {
+            //noinspection ResultOfMethodCallIgnored
+            files[i].delete();
+        }
+    }
+
+    @Nullable
+    private File fileFor(@NonNull String key) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] hash = md.digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                sb.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(hash[i] & 0xF, 16));
+            }
+            return new File(dir, sb.append(suffix).toString());
+        } catch (Throwable t) {
+            return null;
+        }
+    }
+}
@@ -1,31 +1,52 @@
 package org.opendroidpdf.core
 
-import android.util.Log
 import kotlinx.coroutines.Job
-import kotlinx.coroutines.isActive
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.launch
 import org.opendroidpdf.MuPDFAlert
+import org.opendroidpdf.MuPDFCore
 import org.opendroidpdf.app.AppCoroutines
 
 /**
- * Listens for MuPDF alert callbacks off the UI thread and dispatches them to the host activity.
+ * Delivers MuPDF JavaScript alerts to the host activity.
+ *
+ * Alerts are pushed from native code on the thread running the script (see
+ * [org.opendroidpdf.MuPDFCore.AlertSink]); nothing parks a thread waiting for them, so any number
+ * of open cores costs no threads. The script thread itself waits until [reply] or [stop].
  */
 class AlertController(private val repository: MuPdfRepository) {
 
-    @Volatile private var listener: AlertListener? = null
     @Volatile private var active = false
-    @Volatile private var currentJob: Job? = null
+    private var collectJob: Job? = null
+
+    /**
+     * Alerts raised by this document. Collecting arms native delivery; cancelling the collector
+     * disarms it and releases a script still waiting for a reply.
+     */
+    val alerts: Flow<MuPDFAlert> = callbackFlow {
+        val sink = MuPDFCore.AlertSink { alert -> trySend(alert).isSuccess }
+        repository.setAlertSink(sink)
+        repository.startAlerts()
+        awaitClose {
+            // A newer collector may already own the core; leave its delivery armed.
+            if (repository.clearAlertSink(sink)) repository.stopAlerts()
+        }
+    }
 
     fun start(listener: AlertListener) {
-        this.listener = listener
+        stop()
         active = true
-        queueNext()
+        collectJob = AppCoroutines.mainScope().launch {
+            alerts.collect { alert -> if (active) listener.onAlert(alert) }
+        }
     }
 
     fun stop() {
         active = false
-        currentJob?.cancel()
-        currentJob = null
-        listener = null
+        collectJob?.cancel()
+        collectJob = null
     }
 
     fun shutdown() {
@@ -37,35 +58,9 @@ class AlertController(private val repository: MuPdfRepository) {
             return
         }
         repository.replyToAlert(alert)
-        queueNext()
-    }
-
-    private fun queueNext() {
-        if (!active) return
-        val host = listener ?: return
-        currentJob?.cancel()
-        currentJob = AppCoroutines.launchIo {
-            try {
-                val alert = repository.waitForAlert()
-                if (alert != null && active) {
-                    AppCoroutines.launchMain {
-                        if (active) host.onAlert(alert)
-                    }
-                }
-            } catch (t: Throwable) {
-                Log.w(TAG, "Failed to wait for MuPDF alert", t)
-                if (active) {
-                    AppCoroutines.launchMain { queueNext() }
-                }
-            }
-        }
     }
 
     fun interface AlertListener {
         fun onAlert(alert: MuPDFAlert)
     }
-
-    private companion object {
-        private const val TAG = "AlertController"
-    }
 }
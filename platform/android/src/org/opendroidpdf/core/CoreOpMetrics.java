@@ -0,0 +1,170 @@
+package org.opendroidpdf.core;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide latency counters for MuPDF core operations.
+ * <p>
+ * Each operation tracks a call count plus two log2-bucketed histograms: total wall time and the
+ * portion spent waiting to acquire the core lock. Recording is a handful of atomic increments so
+ * it stays enabled in release builds; {@link #toJson()} is only used by debug exports.
+ */
+public final class CoreOpMetrics {
+
+    public enum Op {
+        DRAW_PAGE("drawPage"),
+        UPDATE_PAGE("updatePage"),
+        SEARCH_PAGE("searchPage"),
+        TEXT_LINES("textLines"),
+        GET_ANNOTATIONS("getAnnotations"),
+        SAVE("save"),
+        LAYOUT_REFLOW("layoutReflow");
+
+        final String jsonName;
+
+        Op(String jsonName) {
+            this.jsonName = jsonName;
+        }
+    }
+
+    /** Bucket i holds samples in [2^i, 2^(i+1)) microseconds; bucket 0 also holds sub-microsecond samples. */
+    static final int BUCKETS = 32;
+
+    /** Lock-free log2 histogram over microsecond samples. */
+    static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong totalUs = new AtomicLong();
+        private final AtomicLong maxUs = new AtomicLong();
+
+        void record(long micros) {
+            if (micros < 0) micros = 0;
+            buckets.incrementAndGet(bucketFor(micros));
+            totalUs.addAndGet(micros);
+            long prev;
+            while (micros > (prev = maxUs.get())) {
+                if (maxUs.compareAndSet(prev, micros)) break;
+            }
+        }
+
+        long count() {
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) n += buckets.get(i);
+            return n;
+        }
+
+        long totalMicros() {
+            return totalUs.get();
+        }
+
+        long maxMicros() {
+            return maxUs.get();
+        }
+
+        /**
+         * Returns the upper bound (exclusive, in microseconds) of the bucket containing the given quantile,
+         * or 0 when empty. Buckets are read without a global snapshot, so concurrent writers may skew
+         * the result slightly; that is acceptable for diagnostics.
+         */
+        long quantileUpperBoundMicros(double q) {
+            long n = count();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(q * n);
+            if (rank < 1) rank = 1;
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return 1L << (i + 1);
+            }
+            return 1L << BUCKETS;
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+            totalUs.set(0);
+            maxUs.set(0);
+        }
+
+        static int bucketFor(long micros) {
+            if (micros <= 1) return 0;
+            int b = 63 - Long.numberOfLeadingZeros(micros);
+            return Math.min(b, BUCKETS - 1);
+        }
+    }
+
+    private static final Histogram[] WALL = newHistograms();
+    private static final Histogram[] LOCK_WAIT = newHistograms();
+
+    private CoreOpMetrics() {}
+
+    private static Histogram[] newHistograms() {
+        Histogram[] out = new Histogram[Op.values().length];
+        for (int i = 0; i < out.length; i++) out[i] = new Histogram();
+        return out;
+    }
+
+    /**
+     * Records one completed operation.
+     *
+     * @param startNanos    {@link System#nanoTime()} captured before requesting the core lock
+     * @param acquiredNanos {@link System#nanoTime()} captured right after the lock was acquired
+     */
+    public static void record(Op op, long startNanos, long acquiredNanos) {
+        if (op == null) return;
+        long end = System.nanoTime();
+        WALL[op.ordinal()].record((end - startNanos) / 1000L);
+        LOCK_WAIT[op.ordinal()].record((acquiredNanos - startNanos) / 1000L);
+    }
+
+    public static long count(Op op) {
+        return WALL[op.ordinal()].count();
+    }
+
+    static Histogram wall(Op op) {
+        return WALL[op.ordinal()];
+    }
+
+    static Histogram lockWait(Op op) {
+        return LOCK_WAIT[op.ordinal()];
+    }
+
+    public static void reset() {
+        for (Histogram h : WALL) h.reset();
+        for (Histogram h : LOCK_WAIT) h.reset();
+    }
+
+    /** Serializes all counters; used by the debug metrics export. */
+    public static JSONObject toJson() throws JSONException {
+        JSONObject root = new JSONObject();
+        root.put("unit", "us");
+        JSONObject ops = new JSONObject();
+        for (Op op : Op.values()) {
+            JSONObject o = new JSONObject();
+            o.put("count", count(op));
+            o.put("wall", histogramJson(WALL[op.ordinal()]));
+            o.put("lockWait", histogramJson(LOCK_WAIT[op.ordinal()]));
+            ops.put(op.jsonName, o);
+        }
+        root.put("ops", ops);
+        return root;
+    }
+
+    private static JSONObject histogramJson(Histogram h) throws JSONException {
+        JSONObject o = new JSONObject();
+        long n = h.count();
+        o.put("total", h.totalMicros());
+        o.put("mean", n > 0 ? h.totalMicros() / n : 0);
+        o.put("max", h.maxMicros());
+        o.put("p50", h.quantileUpperBoundMicros(0.50));
+        o.put("p90", h.quantileUpperBoundMicros(0.90));
+        o.put("p99", h.quantileUpperBoundMicros(0.99));
+        JSONArray buckets = new JSONArray();
+        for (int i = 0; i < BUCKETS; i++) buckets.put(h.buckets.get(i));
+        o.put("log2Buckets", buckets);
+        return o;
+    }
+}
@@ -5,6 +5,7 @@ import org.opendroidpdf.Annotation
 import org.opendroidpdf.LinkInfo
 import org.opendroidpdf.TextWord
 import org.opendroidpdf.app.AppCoroutines
+import org.opendroidpdf.app.selection.TextLineIndex
 
 /**
  * Handles document text/link/annotation loading off the UI thread so legacy AsyncTasks in
@@ -12,12 +13,17 @@ import org.opendroidpdf.app.AppCoroutines
  */
 class DocumentContentController(private val controller: MuPdfController) {
 
+    /** Already-extracted text for [pageIndex], or null; never waits for the core. */
+    fun cachedText(pageIndex: Int): Array<Array<TextWord>>? = controller.cachedTextLines(pageIndex)
+
     fun loadTextAsync(
         pageIndex: Int,
         callback: DocumentTextCallback
     ): DocumentJob {
         val job = AppCoroutines.launchIo {
             val text = controller.textLines(pageIndex)
+            // Index the lines here so the first selection drag does not pay for it.
+            if (text != null) TextLineIndex.of(text)
             AppCoroutines.launchMain { callback.onResult(text) }
         }
         return DocumentJob(job)
@@ -24,6 +24,9 @@ class MuPdfController(private val repository: MuPdfRepository) {
     fun textLines(pageIndex: Int): Array<Array<TextWord>>? =
         repository.extractTextLines(pageIndex)
 
+    fun cachedTextLines(pageIndex: Int): Array<Array<TextWord>>? =
+        repository.cachedTextLines(pageIndex)
+
     fun addMarkupAnnotation(pageIndex: Int, quadPoints: Array<PointF>, type: Annotation.Type) {
         repository.addMarkupAnnotation(pageIndex, quadPoints, type)
         repository.markDocumentDirty()
@@ -87,6 +90,8 @@ class MuPdfController(private val repository: MuPdfRepository) {
 
     fun pageSize(pageIndex: Int): PointF = repository.getPageSize(pageIndex)
 
+    fun isPageKnownOpaque(pageIndex: Int): Boolean = repository.isPageKnownOpaque(pageIndex)
+
     fun links(pageIndex: Int): Array<LinkInfo> = repository.getLinks(pageIndex)
 
     fun passClick(pageIndex: Int, x: Float, y: Float): PassClickResult =
@@ -142,5 +147,9 @@ class MuPdfController(private val repository: MuPdfRepository) {
         )
     }
 
+    /** Document-space bounds changed by annotation edits on [pageIndex], or null for the whole page. */
+    fun takeAnnotationChangeBounds(pageIndex: Int): RectF? =
+        repository.takeAnnotationChangeBounds(pageIndex)
+
     fun rawRepository(): MuPdfRepository = repository
 }
@@ -14,6 +14,7 @@ import org.opendroidpdf.OpenDroidPDFCore;
 import org.opendroidpdf.PassClickResult;
 import org.opendroidpdf.TextWord;
 import org.opendroidpdf.BuildConfig;
+import org.opendroidpdf.app.reflow.ReflowPagination;
 
 /**
  * Thin façade around {@link MuPDFCore} so upper layers do not talk to JNI bindings directly.
@@ -32,13 +33,22 @@ public final class MuPdfRepository {
             return new RectF[0];
         }
         RectF[] hits;
+        long start = System.nanoTime();
         synchronized (core) {
-            hits = core.searchPage(pageIndex, query);
+            long acquired = System.nanoTime();
+            try {
+                hits = core.searchPage(pageIndex, query);
+            } finally {
+                CoreOpMetrics.record(CoreOpMetrics.Op.SEARCH_PAGE, start, acquired);
+            }
         }
         return hits != null ? hits : new RectF[0];
     }
 
     public int getPageCount() {
+        // A known reflow page map answers without waiting for renders holding the core lock.
+        ReflowPagination pagination = core.reflowPagination();
+        if (pagination != null) return pagination.pageCount();
         synchronized (core) {
             return core.countPages();
         }
@@ -46,8 +56,14 @@ public final class MuPdfRepository {
 
     /** Applies MuPDF reflow layout (EPUB/HTML). Returns false for fixed-layout docs. */
     public boolean layoutReflow(float pageWidth, float pageHeight, float em) {
+        long start = System.nanoTime();
         synchronized (core) {
-            return core.layoutDocument(pageWidth, pageHeight, em);
+            long acquired = System.nanoTime();
+            try {
+                return core.layoutDocument(pageWidth, pageHeight, em);
+            } finally {
+                CoreOpMetrics.record(CoreOpMetrics.Op.LAYOUT_REFLOW, start, acquired);
+            }
         }
     }
 
@@ -70,12 +86,31 @@ public final class MuPdfRepository {
         }
     }
 
+    /** Lock-free: true once the page has been loaded and found to have no transparency. */
+    public boolean isPageKnownOpaque(int pageIndex) {
+        return core.isPageKnownOpaque(pageIndex);
+    }
+
     public TextWord[][] extractTextLines(int pageIndex) {
+        // Warmed pages are answered without queueing behind renders for the core lock.
+        TextWord[][] cached = core.cachedTextLines(pageIndex);
+        if (cached != null) return cached;
+        long start = System.nanoTime();
         synchronized (core) {
-            return core.textLines(pageIndex);
+            long acquired = System.nanoTime();
+            try {
+                return core.textLines(pageIndex);
+            } finally {
+                CoreOpMetrics.record(CoreOpMetrics.Op.TEXT_LINES, start, acquired);
+            }
         }
     }
 
+    /** Text lines of {@code pageIndex} if already extracted; never waits for the core. */
+    public TextWord[][] cachedTextLines(int pageIndex) {
+        return core.cachedTextLines(pageIndex);
+    }
+
     /**
      * Returns an encoded MuPDF {@code fz_location} for the given page number.
      * <p>
@@ -83,6 +118,8 @@ public final class MuPdfRepository {
      * viewports across relayout.
      */
     public long locationFromPageNumber(int pageIndex) {
+        ReflowPagination pagination = core.reflowPagination();
+        if (pagination != null) return pagination.locationFromPageNumber(pageIndex);
         synchronized (core) {
             return core.locationFromPageNumber(pageIndex);
         }
@@ -90,6 +127,8 @@ public final class MuPdfRepository {
 
     /** Converts an encoded MuPDF {@code fz_location} back into a page number for the current layout. */
     public int pageNumberFromLocation(long encodedLocation) {
+        ReflowPagination pagination = core.reflowPagination();
+        if (pagination != null) return pagination.pageNumberFromLocation(encodedLocation);
         synchronized (core) {
             return core.pageNumberFromLocation(encodedLocation);
         }
@@ -105,8 +144,14 @@ public final class MuPdfRepository {
         if (filesystemPath == null || filesystemPath.isEmpty()) {
             return false;
         }
+        long start = System.nanoTime();
         synchronized (core) {
-            return core.saveAs(filesystemPath) == 1;
+            long acquired = System.nanoTime();
+            try {
+                return core.saveAs(filesystemPath) == 1;
+            } finally {
+                CoreOpMetrics.record(CoreOpMetrics.Op.SAVE, start, acquired);
+            }
         }
     }
 
@@ -114,7 +159,18 @@ public final class MuPdfRepository {
         if (context == null || uri == null) {
             return false;
         }
-        requireExtendedCore().saveAs(context, uri);
+        OpenDroidPDFCore extended = requireExtendedCore();
+        // The extended core's save methods lock on the core themselves; taking the (reentrant) lock
+        // here lets us separate lock wait from the actual write.
+        long start = System.nanoTime();
+        synchronized (core) {
+            long acquired = System.nanoTime();
+            try {
+                extended.saveAs(context, uri);
+            } finally {
+                CoreOpMetrics.record(CoreOpMetrics.Op.SAVE, start, acquired);
+            }
+        }
         return true;
     }
 
@@ -126,7 +182,16 @@ public final class MuPdfRepository {
         if (BuildConfig.DEBUG && consumeDebugFailNextSave(context)) {
             throw new java.io.FileNotFoundException("open failed: EACCES (Permission denied)");
         }
-        requireExtendedCore().save(context);
+        OpenDroidPDFCore extended = requireExtendedCore();
+        long start = System.nanoTime();
+        synchronized (core) {
+            long acquired = System.nanoTime();
+            try {
+                extended.save(context);
+            } finally {
+                CoreOpMetrics.record(CoreOpMetrics.Op.SAVE, start, acquired);
+            }
+        }
     }
 
     public boolean insertBlankPageAtEnd() {
@@ -177,21 +242,20 @@ public final class MuPdfRepository {
     }
 
     public void refreshAnnotationAppearance(int pageIndex) {
-        Bitmap singlePixel = null;
-        MuPDFCore.Cookie cookie = newRenderCookie();
-        try {
-            singlePixel = Bitmap.createBitmap(1, 1, Bitmap.Config.ARGB_8888);
-            synchronized (core) {
-                core.drawPage(singlePixel, pageIndex, 1, 1, 0, 0, 1, 1, cookie);
-            }
-        } finally {
-            cookie.destroy();
-            if (singlePixel != null) {
-                singlePixel.recycle();
-            }
+        synchronized (core) {
+            core.updateAnnotationAppearances(pageIndex);
         }
     }
 
+    /**
+     * Document-space bounds of what annotation edits changed on {@code pageIndex} since the last
+     * call, or null when the whole page must be re-rendered. See
+     * {@link MuPDFCore#takeAnnotationChangeBounds}.
+     */
+    public RectF takeAnnotationChangeBounds(int pageIndex) {
+        return core.takeAnnotationChangeBounds(pageIndex);
+    }
+
     public boolean isPdfDocument() {
         synchronized (core) {
             return core.fileFormat().startsWith("PDF");
@@ -215,9 +279,17 @@ public final class MuPdfRepository {
     }
 
     public Annotation[] loadAnnotations(int pageIndex) {
-        Annotation[] annotations;
+        // Unchanged pages are answered from the core's snapshot without waiting for the lock.
+        Annotation[] annotations = core.cachedAnnotations(pageIndex);
+        if (annotations != null) return annotations;
+        long start = System.nanoTime();
         synchronized (core) {
-            annotations = core.getAnnoations(pageIndex);
+            long acquired = System.nanoTime();
+            try {
+                annotations = core.getAnnoations(pageIndex);
+            } finally {
+                CoreOpMetrics.record(CoreOpMetrics.Op.GET_ANNOTATIONS, start, acquired);
+            }
         }
         return annotations != null ? annotations : new Annotation[0];
     }
@@ -482,8 +554,14 @@ public final class MuPdfRepository {
             android.util.Log.d("MuPdfRepository", "drawPage page=" + page + " view=" + pageWidth + "x" + pageHeight
                     + " patch=" + patchWidth + "x" + patchHeight + "@" + patchX + "," + patchY);
         }
+        long start = System.nanoTime();
         synchronized (core) {
-            core.drawPage(bitmap, page, pageWidth, pageHeight, patchX, patchY, patchWidth, patchHeight, cookie);
+            long acquired = System.nanoTime();
+            try {
+                core.drawPage(bitmap, page, pageWidth, pageHeight, patchX, patchY, patchWidth, patchHeight, cookie);
+            } finally {
+                CoreOpMetrics.record(CoreOpMetrics.Op.DRAW_PAGE, start, acquired);
+            }
         }
         if (BuildConfig.DEBUG && looksUniform(bitmap)) {
             android.util.Log.w("MuPdfRepository", "drawPage produced uniform bitmap page=" + page
@@ -499,8 +577,14 @@ public final class MuPdfRepository {
             android.util.Log.d("MuPdfRepository", "updatePage page=" + page + " view=" + pageWidth + "x" + pageHeight
                     + " patch=" + patchWidth + "x" + patchHeight + "@" + patchX + "," + patchY);
         }
+        long start = System.nanoTime();
         synchronized (core) {
-            core.updatePage(bitmap, page, pageWidth, pageHeight, patchX, patchY, patchWidth, patchHeight, cookie);
+            long acquired = System.nanoTime();
+            try {
+                core.updatePage(bitmap, page, pageWidth, pageHeight, patchX, patchY, patchWidth, patchHeight, cookie);
+            } finally {
+                CoreOpMetrics.record(CoreOpMetrics.Op.UPDATE_PAGE, start, acquired);
+            }
         }
         if (BuildConfig.DEBUG && looksUniform(bitmap)) {
             android.util.Log.w("MuPdfRepository", "updatePage produced uniform bitmap page=" + page
@@ -562,19 +646,31 @@ public final class MuPdfRepository {
         }
     }
 
-    public MuPDFAlert waitForAlert() {
-        synchronized (core) {
-            return core.waitForAlert();
-        }
+    /**
+     * Alert plumbing is deliberately lock-free: alerts are raised while a core call (e.g.
+     * {@link #passClick}) holds the core lock and waits for the reply.
+     */
+    public void setAlertSink(MuPDFCore.AlertSink sink) {
+        core.setAlertSink(sink);
+    }
+
+    public boolean clearAlertSink(MuPDFCore.AlertSink sink) {
+        return core.clearAlertSink(sink);
+    }
+
+    public void startAlerts() {
+        core.startAlerts();
+    }
+
+    public void stopAlerts() {
+        core.stopAlerts();
     }
 
     public void replyToAlert(MuPDFAlert alert) {
         if (alert == null) {
             return;
         }
-        synchronized (core) {
-            core.replyToAlert(alert);
-        }
+        core.replyToAlert(alert);
     }
 
     public MuPDFCore getCore() {
@@ -0,0 +1,311 @@
+package org.opendroidpdf.core;
+
+import android.graphics.PointF;
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.opendroidpdf.Annotation;
+import org.opendroidpdf.app.memory.CacheGovernor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Embedded annotation lists per page, most recently used last.
+ * <p>
+ * Filled by {@link org.opendroidpdf.MuPDFCore#getAnnoations} and read without the core lock, so
+ * page views, ink undo, erasers and the comments list share one snapshot per page instead of each
+ * listing the page over JNI. Edits do not drop a page outright: the core marks it changed, and the
+ * next listing passes {@link #reusableArcs} to the native side, which then skips marshalling the
+ * arcs of annotations whose geometry the edit cannot have touched. {@link #merge} puts those arcs
+ * back, and reuses whole annotations that did not change. Edits that name an annotation (move,
+ * restyle) refetch that annotation in full.
+ * <p>
+ * The cache also tracks where edits changed the page: the bounds of the annotations an edit names
+ * plus those the next listing adds, removes or changes. Page views take these bounds to re-render
+ * only that part of their bitmaps (see {@link #takeChangedBounds}).
+ * <p>
+ * Snapshots are shared; callers must treat the arrays and the annotations in them as read-only.
+ */
+public final class PageAnnotationCache implements CacheGovernor.Trimmable {
+    /** Visible page, its neighbours and a few recently annotated pages. */
+    static final int MAX_PAGES = 12;
+    /** Rough retained size of one annotation: the object, its RectF fields and text header. */
+    private static final long ANNOTATION_OVERHEAD_BYTES = 80L;
+    /** Rough retained size of one PointF plus its array slot. */
+    private static final long POINT_BYTES = 28L;
+    private static final long[] NO_OBJECTS = new long[0];
+
+    private static final class Entry {
+        final Annotation[] annotations;
+        final long bytes;
+        /** Set by edits; the snapshot is then only a base for the next listing. */
+        boolean stale;
+        /** Objects named by edits since the snapshot; their arcs are refetched. */
+        @Nullable Set<Long> touched;
+
+        Entry(Annotation[] annotations, long bytes) {
+            this.annotations = annotations;
+            this.bytes = bytes;
+        }
+    }
+
+    private final LinkedHashMap<Integer, Entry> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    /**
+     * Pages edited since their bounds were last taken, with the bounds gathered so far as
+     * {left, top, right, bottom} (inverted, i.e. left > right, while nothing was gathered).
+     * {@link #UNKNOWN} when they cannot be derived.
+     */
+    private final HashMap<Integer, float[]> changed = new HashMap<>();
+    private static final float[] UNKNOWN = new float[0];
+
+    /** Current annotations of {@code page}, or null when unknown or changed since listed. */
+    @Nullable
+    public synchronized Annotation[] get(int page) {
+        Entry e = pages.get(page);
+        return e != null && !e.stale ? e.annotations : null;
+    }
+
+    /**
+     * Sorted object numbers of annotations in the last snapshot of {@code page} whose arcs are
+     * still current; empty when there is no snapshot.
+     */
+    @NonNull
+    public synchronized long[] reusableArcs(int page) {
+        Entry e = pages.get(page);
+        if (e == null) return NO_OBJECTS;
+        long[] ids = new long[e.annotations.length];
+        int n = 0;
+        for (Annotation a : e.annotations) {
+            if (a == null || a.objectNumber <= 0L) continue;
+            if (e.touched != null && e.touched.contains(a.objectNumber)) continue;
+            ids[n++] = a.objectNumber;
+        }
+        Arrays.sort(ids, 0, n);
+        return n == ids.length ? ids : Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * Completes a listing made with {@code reused} (see {@link #reusableArcs}) from the last
+     * snapshot of {@code page}, stores it and returns it. Returns null, storing nothing, when that
+     * snapshot was trimmed or replaced since {@link #reusableArcs}: the skipped arcs are gone and
+     * the caller has to list the page in full.
+     */
+    @Nullable
+    public synchronized Annotation[] merge(int page, @NonNull Annotation[] listed, @NonNull long[] reused) {
+        Entry e = pages.get(page);
+        Annotation[] merged = e != null ? merge(e.annotations, listed, reused)
+                : reused.length == 0 ? listed : null;
+        if (merged == null) return null;
+        float[] bounds = changed.get(page);
+        if (bounds != null && bounds != UNKNOWN) {
+            if (e == null) changed.put(page, UNKNOWN);
+            else includeDifferences(bounds, e.annotations, merged);
+        }
+        put(page, merged);
+        return merged;
+    }
+
+    public synchronized void put(int page, @NonNull Annotation[] annotations) {
+        Entry e = new Entry(annotations, estimateBytes(annotations));
+        Entry old = pages.put(page, e);
+        if (old != null) bytes -= old.bytes;
+        bytes += e.bytes;
+        Iterator<Map.Entry<Integer, Entry>> it = pages.entrySet().iterator();
+        while (pages.size() > MAX_PAGES && it.hasNext()) {
+            Map.Entry<Integer, Entry> evicted = it.next();
+            bytes -= evicted.getValue().bytes;
+            it.remove();
+            if (changed.containsKey(evicted.getKey())) changed.put(evicted.getKey(), UNKNOWN);
+        }
+    }
+
+    /** Annotations were added or removed on {@code page}; existing ones kept their geometry. */
+    public synchronized void markChanged(int page) {
+        Entry e = pages.get(page);
+        if (e == null) {
+            changed.put(page, UNKNOWN);
+            return;
+        }
+        e.stale = true;
+        pendingBounds(page);
+    }
+
+    /** Annotation {@code objectNumber} on {@code page} was edited and may have new arcs. */
+    public synchronized void markChanged(int page, long objectNumber) {
+        Entry e = pages.get(page);
+        if (e == null) {
+            changed.put(page, UNKNOWN);
+            return;
+        }
+        e.stale = true;
+        if (e.touched == null) e.touched = new HashSet<>();
+        e.touched.add(objectNumber);
+        float[] bounds = pendingBounds(page);
+        if (bounds == UNKNOWN) return;
+        // Restyles keep the listed fields, so the old bounds are the only trace of the edit.
+        Annotation edited = null;
+        for (Annotation a : e.annotations) {
+            if (a != null && a.objectNumber == objectNumber) edited = a;
+        }
+        if (edited != null) include(bounds, edited);
+        else changed.put(page, UNKNOWN);
+    }
+
+    /** Something on {@code page} changed where the annotation list cannot tell (e.g. widgets). */
+    public synchronized void markChangedUnknown(int page) {
+        Entry e = pages.get(page);
+        if (e != null) e.stale = true;
+        changed.put(page, UNKNOWN);
+    }
+
+    /**
+     * Bounds of what edits changed on {@code page} since the last call, as {left, top, right,
+     * bottom}, once the page has been listed again; all zero when they changed nothing visible.
+     * Null when there were no edits, when the page has not been listed since the last edit, or
+     * when the bounds are unknown: callers then re-render the whole page.
+     */
+    @Nullable
+    public synchronized float[] takeChangedBounds(int page) {
+        float[] bounds = changed.remove(page);
+        Entry e = pages.get(page);
+        if (bounds == null || bounds == UNKNOWN || e == null || e.stale) return null;
+        return bounds[0] <= bounds[2] ? bounds : new float[4];
+    }
+
+    public synchronized void invalidate(int page) {
+        Entry old = pages.remove(page);
+        if (old != null) bytes -= old.bytes;
+        if (changed.containsKey(page)) changed.put(page, UNKNOWN);
+    }
+
+    public synchronized void clear() {
+        pages.clear();
+        changed.clear();
+        bytes = 0L;
+    }
+
+    @NonNull
+    private float[] pendingBounds(int page) {
+        float[] bounds = changed.get(page);
+        if (bounds == null) {
+            bounds = new float[]{Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                    Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+            changed.put(page, bounds);
+        }
+        return bounds;
+    }
+
+    /** Adds the rects of annotations in only one of the two snapshots (by instance). */
+    private static void includeDifferences(@NonNull float[] bounds, @NonNull Annotation[] before, @NonNull Annotation[] after) {
+        Set<Annotation> kept = Collections.newSetFromMap(new IdentityHashMap<Annotation, Boolean>());
+        for (Annotation a : before) {
+            if (a != null) kept.add(a);
+        }
+        for (Annotation a : after) {
+            if (a != null && !kept.remove(a)) include(bounds, a);
+        }
+        for (Annotation a : kept) include(bounds, a);
+    }
+
+    /** Unions {@code r} into {@code bounds}, including zero-width or zero-height rects. */
+    private static void include(@NonNull float[] bounds, @NonNull RectF r) {
+        bounds[0] = Math.min(bounds[0], r.left);
+        bounds[1] = Math.min(bounds[1], r.top);
+        bounds[2] = Math.max(bounds[2], r.right);
+        bounds[3] = Math.max(bounds[3], r.bottom);
+    }
+
+    @Override
+    public synchronized long sizeBytes() {
+        return bytes;
+    }
+
+    /** Drops least recently used pages until at most {@code fraction} of the bytes remain. */
+    @Override
+    public synchronized void trimToFraction(float fraction) {
+        long target = (long) (bytes * (double) fraction);
+        Iterator<Map.Entry<Integer, Entry>> it = pages.entrySet().iterator();
+        while (bytes > target && it.hasNext()) {
+            Map.Entry<Integer, Entry> evicted = it.next();
+            bytes -= evicted.getValue().bytes;
+            it.remove();
+            if (changed.containsKey(evicted.getKey())) changed.put(evicted.getKey(), UNKNOWN);
+        }
+    }
+
+    /**
+     * Fills in the arcs the native listing skipped for {@code reused} objects from
+     * {@code previous}, and keeps previous instances that are unchanged so identity-keyed
+     * consumers (hit indexes, selections) stay valid across edits elsewhere on the page. Returns
+     * null when a listed {@code reused} object is missing from {@code previous}.
+     */
+    @Nullable
+    static Annotation[] merge(@NonNull Annotation[] previous, @NonNull Annotation[] listed, @NonNull long[] reused) {
+        Map<Long, Annotation> byObject = new HashMap<>();
+        for (Annotation a : previous) {
+            if (a != null && a.objectNumber > 0L) byObject.put(a.objectNumber, a);
+        }
+        Annotation[] out = new Annotation[listed.length];
+        for (int i = 0; i < listed.length; i++) {
+            Annotation a = listed[i];
+            Annotation prior = a != null && a.objectNumber > 0L ? byObject.get(a.objectNumber) : null;
+            if (prior == null) {
+                if (a != null && Arrays.binarySearch(reused, a.objectNumber) >= 0) return null;
+                out[i] = a;
+            } else if (Arrays.binarySearch(reused, a.objectNumber) >= 0) {
+                out[i] = sameFields(prior, a)
+                        ? prior
+                        : new Annotation(a.left, a.top, a.right, a.bottom, a.rawType, prior.arcs, a.text, a.objectNumber);
+            } else {
+                out[i] = sameFields(prior, a) && sameArcs(prior.arcs, a.arcs) ? prior : a;
+            }
+        }
+        return out;
+    }
+
+    private static boolean sameFields(@NonNull Annotation a, @NonNull Annotation b) {
+        return a.left == b.left && a.top == b.top && a.right == b.right && a.bottom == b.bottom
+                && a.rawType == b.rawType
+                && (a.text == null ? b.text == null : a.text.equals(b.text));
+    }
+
+    private static boolean sameArcs(@Nullable PointF[][] a, @Nullable PointF[][] b) {
+        if (a == b) return true;
+        if (a == null || b == null || a.length != b.length) return false;
+        for (int i = 0; i < a.length; i++) {
+            PointF[] x = a[i];
+            PointF[] y = b[i];
+            if (x == y) continue;
+            if (x == null || y == null || x.length != y.length) return false;
+            for (int j = 0; j < x.length; j++) {
+                if (x[j].x != y[j].x || x[j].y != y[j].y) return false;
+            }
+        }
+        return true;
+    }
+
+    static long estimateBytes(@NonNull Annotation[] annotations) {
+        long total = 16L + 8L * annotations.length;
+        for (Annotation a : annotations) {
+            if (a == null) continue;
+            total += ANNOTATION_OVERHEAD_BYTES;
+            if (a.text != null) total += 2L * a.text.length();
+            if (a.arcs == null) continue;
+            for (PointF[] arc : a.arcs) {
+                if (arc != null) total += 16L + POINT_BYTES * arc.length;
+            }
+        }
+        return total;
+    }
+}
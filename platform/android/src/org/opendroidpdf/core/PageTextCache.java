@@ -0,0 +1,97 @@
+package org.opendroidpdf.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.opendroidpdf.TextWord;
+import org.opendroidpdf.app.memory.CacheGovernor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Extracted text lines per page, most recently used last.
+ * <p>
+ * Filled by {@link org.opendroidpdf.MuPDFCore#textLines} (and therefore by
+ * {@link org.opendroidpdf.app.content.PageTextWarmup}) and read without the core lock, so
+ * selection and markup tools find the text of warmed pages without a JNI round trip. The core
+ * invalidates a page whenever its annotations or widgets change
+ * (extraction runs the whole page, annotations included) and clears everything on relayout. Cached
+ * arrays are shared; callers must treat them as read-only.
+ */
+public final class PageTextCache implements CacheGovernor.Trimmable {
+    /** Visible page, its neighbours and a few recently selected pages. */
+    static final int MAX_PAGES = 12;
+    /** Rough retained size of one word: the RectF, its String and the char array headers. */
+    private static final long WORD_OVERHEAD_BYTES = 96L;
+
+    private static final class Entry {
+        final TextWord[][] lines;
+        final long bytes;
+
+        Entry(TextWord[][] lines, long bytes) {
+            this.lines = lines;
+            this.bytes = bytes;
+        }
+    }
+
+    private final LinkedHashMap<Integer, Entry> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    @Nullable
+    public synchronized TextWord[][] get(int page) {
+        Entry e = pages.get(page);
+        return e != null ? e.lines : null;
+    }
+
+    public synchronized void put(int page, @NonNull TextWord[][] lines) {
+        Entry e = new Entry(lines, estimateBytes(lines));
+        Entry old = pages.put(page, e);
+        if (old != null) bytes -= old.bytes;
+        bytes += e.bytes;
+        Iterator<Entry> it = pages.values().iterator();
+        while (pages.size() > MAX_PAGES && it.hasNext()) {
+            bytes -= it.next().bytes;
+            it.remove();
+        }
+    }
+
+    public synchronized void invalidate(int page) {
+        Entry old = pages.remove(page);
+        if (old != null) bytes -= old.bytes;
+    }
+
+    public synchronized void clear() {
+        pages.clear();
+        bytes = 0L;
+    }
+
+    @Override
+    public synchronized long sizeBytes() {
+        return bytes;
+    }
+
+    /** Drops least recently used pages until at most {@code fraction} of the bytes remain. */
+    @Override
+    public synchronized void trimToFraction(float fraction) {
+        long target = (long) (bytes * (double) fraction);
+        Iterator<Map.Entry<Integer, Entry>> it = pages.entrySet().iterator();
+        while (bytes > target && it.hasNext()) {
+            bytes -= it.next().getValue().bytes;
+            it.remove();
+        }
+    }
+
+    static long estimateBytes(@NonNull TextWord[][] lines) {
+        long total = 16L + 16L * lines.length;
+        for (TextWord[] line : lines) {
+            if (line == null) continue;
+            for (TextWord w : line) {
+                total += WORD_OVERHEAD_BYTES;
+                if (w != null && w.w != null) total += 2L * w.w.length();
+            }
+        }
+        return total;
+    }
+}
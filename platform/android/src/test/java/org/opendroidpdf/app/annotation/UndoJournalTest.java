@@ -0,0 +1,103 @@
+package org.opendroidpdf.app.annotation;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+
+import static org.junit.Assert.*;
+
+public class UndoJournalTest {
+
+    private static final UndoJournal.Sizer<String> LENGTH = new UndoJournal.Sizer<String>() {
+        @Override public long retainedBytes(String value) { return value.length(); }
+    };
+
+    /** In-memory spill standing in for the sidecar database. */
+    private static final class StackSpill implements UndoJournal.Spill<String> {
+        final ArrayDeque<UndoJournal.Entry<String>> entries = new ArrayDeque<>();
+
+        @Override public boolean spill(long sequence, String value) {
+            entries.push(new UndoJournal.Entry<>(sequence, value));
+            return true;
+        }
+
+        @Override public UndoJournal.Entry<String> restoreNewest() {
+            // The journal evicts oldest first, so the newest spilled entry is the last one pushed.
+            return entries.poll();
+        }
+
+        @Override public void clear() {
+            entries.clear();
+        }
+    }
+
+    @Test
+    public void evictsOldestEntriesOverEntryAndByteBudget() {
+        UndoJournal<String> j = new UndoJournal<>(3, 1000, LENGTH, null);
+        j.push("a");
+        j.push("b");
+        j.push("c");
+        j.push("d");
+        assertEquals(3, j.size());
+        assertEquals(1, j.droppedCount());
+
+        UndoJournal<String> bytes = new UndoJournal<>(100, 10, LENGTH, null);
+        bytes.push("123456");
+        bytes.push("7890ab");
+        assertEquals(1, bytes.size());
+        assertEquals(6, bytes.retainedBytes());
+        // The newest entry always stays, even when it alone is over budget.
+        bytes.push("this one is too large");
+        assertEquals(1, bytes.size());
+        assertEquals("this one is too large", bytes.popUndo().value);
+        assertFalse(bytes.hasUndo());
+    }
+
+    @Test
+    public void spilledEntriesComeBackNewestFirst() {
+        StackSpill spill = new StackSpill();
+        UndoJournal<String> j = new UndoJournal<>(2, 1000, LENGTH, spill);
+        j.push("a");
+        j.push("b");
+        j.push("c");
+        j.push("d");
+        assertEquals(2, j.spilledCount());
+
+        StringBuilder order = new StringBuilder();
+        while (j.hasUndo()) order.append(j.popUndo().value);
+        assertEquals("dcba", order.toString());
+        assertEquals(0, j.spilledCount());
+    }
+
+    @Test
+    public void redoKeepsSequenceAndNewPushClearsIt() {
+        UndoJournal<String> j = new UndoJournal<>();
+        long seq = j.push("a");
+        UndoJournal.Entry<String> e = j.popUndo();
+        j.pushRedo(e);
+        assertEquals(seq, j.peekRedoSequence());
+        assertEquals(Long.MIN_VALUE, j.peekUndoSequence());
+
+        j.pushUndo(j.popRedo());
+        assertEquals(seq, j.peekUndoSequence());
+        assertEquals(Long.MAX_VALUE, j.peekRedoSequence());
+
+        j.pushRedo(j.popUndo());
+        j.push("b");
+        assertFalse(j.hasRedo());
+    }
+
+    @Test
+    public void sequencesOrderEditsAcrossJournals() {
+        UndoJournal<String> ink = new UndoJournal<>();
+        UndoJournal<String> text = new UndoJournal<>();
+        ink.push("stroke");
+        text.push("typing");
+        assertTrue(text.peekUndoSequence() > ink.peekUndoSequence());
+
+        text.pushRedo(text.popUndo());
+        ink.pushRedo(ink.popUndo());
+        // The stroke was undone last, so it is the first to redo.
+        assertTrue(ink.peekRedoSequence() < text.peekRedoSequence());
+    }
+}
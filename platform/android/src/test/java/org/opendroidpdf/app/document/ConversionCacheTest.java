@@ -0,0 +1,70 @@
+package org.opendroidpdf.app.document;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ConversionCacheTest {
+
+    @Test
+    public void keyRequiresContentIdAndSeparatesVersionsAndModes() {
+        String k = ConversionCache.key("sha256:abc", "pack", "3.100", 0);
+        assertNotNull(k);
+        assertEquals(k, ConversionCache.key("sha256:abc", "pack", "3.100", 0));
+        assertNotEquals(k, ConversionCache.key("sha256:abc", "pack", "4.100", 0));
+        assertNotEquals(k, ConversionCache.key("sha256:abc", "pack", "3.100", 1));
+        assertNotEquals(k, ConversionCache.key("sha256:abd", "pack", "3.100", 0));
+        assertNull(ConversionCache.key("content://docs/1", "pack", "3.100", 0));
+        assertNull(ConversionCache.key(null, "pack", "3.100", 0));
+    }
+
+    @Test
+    public void commitPublishesAndEvictsLeastRecentlyUsed() throws IOException {
+        File dir = Files.createTempDirectory("conv").toFile();
+        ConversionCache cache = new ConversionCache(dir, 250);
+
+        File a = commit(cache, "a", 100);
+        File b = commit(cache, "b", 100);
+        assertTrue(a.setLastModified(1000L));
+        assertTrue(b.setLastModified(2000L));
+        assertEquals(a, cache.lookup("a"));
+        assertTrue(b.setLastModified(3000L) && a.setLastModified(4000L));
+
+        commit(cache, "c", 100);
+        assertNull(cache.lookup("b"));
+        assertNotNull(cache.lookup("a"));
+        assertNotNull(cache.lookup("c"));
+        assertEquals(200L, cache.sizeBytes());
+
+        cache.trimTo(0L);
+        assertEquals(0L, cache.sizeBytes());
+    }
+
+    @Test
+    public void abortedTempIsNotVisible() throws IOException {
+        File dir = Files.createTempDirectory("conv").toFile();
+        ConversionCache cache = new ConversionCache(dir, 1000);
+        File temp = write(cache.newTempFile("x"), 10);
+        cache.abort(temp);
+        assertFalse(temp.exists());
+        assertNull(cache.lookup("x"));
+    }
+
+    private static File commit(ConversionCache cache, String key, int bytes) throws IOException {
+        File out = cache.commit(key, write(cache.newTempFile(key), bytes));
+        assertEquals(key + ".pdf", out.getName());
+        return out;
+    }
+
+    private static File write(File f, int bytes) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(f)) {
+            fos.write(new byte[bytes]);
+        }
+        return f;
+    }
+}
@@ -0,0 +1,39 @@
+package org.opendroidpdf.app.document;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DocumentIdentityCacheTest {
+
+    @Test
+    public void hitsOnlyWhenSizeAndMtimeMatch() {
+        DocumentIdentityCache cache = new DocumentIdentityCache(null);
+        cache.put("content://docs/1", 1000L, 5000L, "sha256:abc");
+
+        assertEquals("sha256:abc", cache.get("content://docs/1", 1000L, 5000L));
+        assertNull(cache.get("content://docs/1", 1001L, 5000L));
+        assertNull(cache.get("content://docs/1", 1000L, 5001L));
+        assertNull(cache.get("content://docs/2", 1000L, 5000L));
+    }
+
+    @Test
+    public void unknownModificationTimeIsNeverCached() {
+        DocumentIdentityCache cache = new DocumentIdentityCache(null);
+        cache.put("content://docs/1", 1000L, 0L, "sha256:abc");
+        assertNull(cache.get("content://docs/1", 1000L, 0L));
+    }
+
+    @Test
+    public void entryRoundTripsThroughEncoding() {
+        DocumentIdentityCache.Entry e = new DocumentIdentityCache.Entry(12L, 34L, 56L, "sha256:a|b");
+        DocumentIdentityCache.Entry back = DocumentIdentityCache.Entry.decode(e.encode());
+        assertNotNull(back);
+        assertEquals(12L, back.size);
+        assertEquals(34L, back.lastModified);
+        assertEquals(56L, back.lastUsedMs);
+        assertEquals("sha256:a|b", back.docId);
+        assertNull(DocumentIdentityCache.Entry.decode("garbage"));
+        assertNull(DocumentIdentityCache.Entry.decode(null));
+    }
+}
@@ -0,0 +1,115 @@
+package org.opendroidpdf.app.epub;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EpubMetadataTest {
+
+    private static final String CONTAINER = ""
+            + "<?xml version=\"1.0\"?>"
+            + "<container xmlns=\"urn:oasis:names:tc:opendocument:xmlns:container\" version=\"1.0\">"
+            + "  <rootfiles>"
+            + "    <rootfile full-path=\"OEBPS/content.opf\" media-type=\"application/oebps-package+xml\"/>"
+            + "  </rootfiles>"
+            + "</container>";
+
+    @Test
+    public void readsSpineSizesTocAndEncryptionInOnePass() throws Exception {
+        String opf = ""
+                + "<?xml version=\"1.0\"?>"
+                + "<package xmlns=\"http://www.idpf.org/2007/opf\" version=\"3.0\">"
+                + "  <manifest>"
+                + "    <item id=\"nav\" href=\"nav.xhtml\" media-type=\"application/xhtml+xml\" properties=\"nav\"/>"
+                + "    <item id=\"c1\" href=\"ch1.xhtml\" media-type=\"application/xhtml+xml\"/>"
+                + "    <item id=\"c2\" href=\"ch2.xhtml\" media-type=\"application/xhtml+xml\"/>"
+                + "  </manifest>"
+                + "  <spine>"
+                + "    <itemref idref=\"c2\"/>"
+                + "    <itemref idref=\"c1\"/>"
+                + "    <itemref idref=\"missing\"/>"
+                + "  </spine>"
+                + "</package>";
+
+        String nav = ""
+                + "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<html xmlns=\"http://www.w3.org/1999/xhtml\" xmlns:epub=\"http://www.idpf.org/2007/ops\">"
+                + "<body><nav epub:type=\"toc\"><ol>"
+                + "  <li><a href=\"ch2.xhtml\">Two</a></li>"
+                + "  <li><a href=\"ch1.xhtml\">One</a></li>"
+                + "</ol></nav></body></html>";
+
+        String encryption = ""
+                + "<?xml version=\"1.0\"?>"
+                + "<encryption>"
+                + "  <EncryptedData>"
+                + "    <EncryptionMethod Algorithm=\"http://www.idpf.org/2008/embedding\"/>"
+                + "    <CipherData><CipherReference URI=\"OEBPS/fonts/a.otf\"/></CipherData>"
+                + "  </EncryptedData>"
+                + "</encryption>";
+
+        File epub = writeTempEpub(new String[]{
+                "META-INF/container.xml", CONTAINER,
+                "META-INF/encryption.xml", encryption,
+                "OEBPS/content.opf", opf,
+                "OEBPS/nav.xhtml", nav,
+                "OEBPS/ch1.xhtml", "1234567890",
+                "OEBPS/ch2.xhtml", "12345",
+        });
+
+        EpubMetadata meta;
+        try (ZipFile zip = new ZipFile(epub)) {
+            meta = EpubMetadata.read(zip);
+        }
+        assertEquals("OEBPS/content.opf", meta.opfPath);
+        assertEquals(3, meta.manifest.size());
+        assertEquals(2, meta.spine.size());
+        assertEquals("OEBPS/ch2.xhtml", meta.spine.get(0).href);
+        assertEquals(5L, meta.spine.get(0).sizeBytes);
+        assertEquals(10L, meta.spine.get(1).sizeBytes);
+        assertEquals(15L, meta.totalSpineBytes());
+        assertEquals(2, meta.toc.size());
+        assertEquals("Two", meta.toc.get(0).title);
+        assertEquals(EpubEncryptionDetector.EncryptionKind.FONT_OBFUSCATION_ONLY, meta.encryption);
+    }
+
+    @Test
+    public void missingContainer_hasNoOpfOrToc() throws Exception {
+        File epub = writeTempEpub(new String[]{
+                "OEBPS/ch1.xhtml", "text",
+        });
+        EpubMetadata meta;
+        try (ZipFile zip = new ZipFile(epub)) {
+            meta = EpubMetadata.read(zip);
+        }
+        assertNull(meta.opfPath);
+        assertEquals(0, meta.spine.size());
+        assertEquals(0, meta.toc.size());
+        assertEquals(EpubEncryptionDetector.EncryptionKind.NONE, meta.encryption);
+        assertEquals(Long.valueOf(4L), meta.entries.get("OEBPS/ch1.xhtml"));
+    }
+
+    private static File writeTempEpub(String[] pathAndContents) throws Exception {
+        File out = File.createTempFile("epub_meta_", ".epub");
+        out.deleteOnExit();
+
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(out, false))) {
+            for (int i = 0; i + 1 < pathAndContents.length; i += 2) {
+                ZipEntry e = new ZipEntry(pathAndContents[i]);
+                zos.putNextEntry(e);
+                zos.write(pathAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+            zos.finish();
+        }
+        return out;
+    }
+}
@@ -0,0 +1,91 @@
+package org.opendroidpdf.app.memory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CacheGovernorTest {
+
+    /** A cache of {@code size} bytes that records the order it was trimmed in (and the fraction, if unsized). */
+    private static final class FakeCache implements CacheGovernor.Trimmable {
+        final String name;
+        final List<String> trimLog;
+        long size;
+
+        FakeCache(String name, long size, List<String> trimLog) {
+            this.name = name;
+            this.size = size;
+            this.trimLog = trimLog;
+        }
+
+        @Override public long sizeBytes() {
+            return size;
+        }
+
+        @Override public void trimToFraction(float fraction) {
+            if (size < 0) {
+                trimLog.add(name + "@" + fraction);
+                return;
+            }
+            trimLog.add(name);
+            size = (long) (size * fraction);
+        }
+    }
+
+    @Test
+    public void trimsLowestPriorityFirstUntilUnderTarget() {
+        CacheGovernor g = new CacheGovernor(1000);
+        List<String> log = new ArrayList<>();
+        FakeCache annotations = new FakeCache("annotations", 400, log);
+        FakeCache pool = new FakeCache("pool", 300, log);
+        FakeCache layouts = new FakeCache("layouts", 200, log);
+        CacheGovernor.Registration a = g.register("annotations", CacheGovernor.PRIORITY_ANNOTATIONS, 0f, annotations);
+        CacheGovernor.Registration p = g.register("pool", CacheGovernor.PRIORITY_POOL, 0f, pool);
+        CacheGovernor.Registration l = g.register("layouts", CacheGovernor.PRIORITY_LAYOUT, 0f, layouts);
+        assertEquals(900, g.totalBytes());
+
+        g.trimTo(500);
+        assertEquals(0, pool.size);
+        assertEquals(100, layouts.size);
+        assertEquals(400, annotations.size);
+        assertEquals("[pool, layouts]", log.toString());
+        assertNotNull(a);
+        assertNotNull(p);
+        assertNotNull(l);
+    }
+
+    @Test
+    public void unknownSizeCachesTrimByTargetRatio() {
+        CacheGovernor g = new CacheGovernor(1000);
+        List<String> log = new ArrayList<>();
+        FakeCache known = new FakeCache("known", 100, log);
+        FakeCache store = new FakeCache("store", CacheGovernor.UNKNOWN_SIZE, log);
+        CacheGovernor.Registration k = g.register("known", CacheGovernor.PRIORITY_LAYOUT, 0f, known);
+        CacheGovernor.Registration s = g.register("store", CacheGovernor.PRIORITY_NATIVE, 0f, store);
+
+        g.trimTo(1000);
+        assertTrue(log.isEmpty());
+        g.trimTo(500);
+        assertEquals("[store@0.5]", log.toString());
+        assertEquals(100, known.size);
+        assertNotNull(k);
+        assertNotNull(s);
+    }
+
+    @Test
+    public void sharesDivideBudgetAndUnregisterStopsTrims() {
+        CacheGovernor g = new CacheGovernor(1000);
+        List<String> log = new ArrayList<>();
+        FakeCache thumbs = new FakeCache("thumbs", 50, log);
+        CacheGovernor.Registration r = g.register("thumbs", CacheGovernor.PRIORITY_THUMBNAILS, 0.25f, thumbs);
+        assertEquals(250, r.budgetBytes());
+
+        r.unregister();
+        g.clear();
+        assertTrue(log.isEmpty());
+        assertEquals(0, g.totalBytes());
+    }
+}
@@ -0,0 +1,102 @@
+package org.opendroidpdf.app.preferences;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class PreferencesRepositoryTest {
+
+    private static final class FakePenStore implements PenPrefsStore {
+        PenPrefsSnapshot stored = new PenPrefsSnapshot(4f, 0, 1f, 20f, 0.5f, 4f);
+        int loads;
+        int saves;
+
+        @Override public PenPrefsSnapshot load() { loads++; return stored; }
+        @Override public void save(PenPrefsSnapshot snapshot) { saves++; stored = snapshot; }
+    }
+
+    private static final class FakeEditorStore implements EditorPrefsStore {
+        EditorPrefsSnapshot stored = new EditorPrefsSnapshot(10f, true, 0, 1, 2, 3);
+
+        @Override public EditorPrefsSnapshot load() { return stored; }
+    }
+
+    private final FakePenStore penStore = new FakePenStore();
+    private final FakeEditorStore editorStore = new FakeEditorStore();
+    private final PreferencesRepository repo = new PreferencesRepository(
+            penStore,
+            new TextStylePrefsStore() {
+                @Override public TextStylePrefsSnapshot load() { throw new AssertionError("not read"); }
+                @Override public void save(TextStylePrefsSnapshot snapshot) { throw new AssertionError("not written"); }
+            },
+            editorStore,
+            () -> { throw new AssertionError("not read"); },
+            () -> { throw new AssertionError("not read"); },
+            null);
+
+    @Test
+    public void loadsOnceAndServesFromMemory() {
+        PenPrefsSnapshot first = repo.pen();
+        assertSame(first, repo.pen());
+        assertEquals(1, penStore.loads);
+    }
+
+    @Test
+    public void updateNotifiesImmediatelyAndSavesOnFlush() {
+        int[] notified = {0};
+        repo.addListener(p -> notified[0]++);
+
+        PenPrefsSnapshot next = repo.pen().withColorIndex(3);
+        repo.updatePen(next);
+        assertSame(next, repo.pen());
+        assertEquals(1, notified[0]);
+        assertEquals(0, penStore.saves);
+
+        repo.flush();
+        assertEquals(1, penStore.saves);
+        assertEquals(3, penStore.stored.colorIndex);
+        repo.flush();
+        assertEquals(1, penStore.saves);
+    }
+
+    @Test
+    public void equalUpdateIsIgnored() {
+        int[] notified = {0};
+        repo.addListener(p -> notified[0]++);
+
+        repo.updatePen(repo.pen().withColorIndex(repo.pen().colorIndex));
+        repo.flush();
+        assertEquals(0, notified[0]);
+        assertEquals(0, penStore.saves);
+    }
+
+    @Test
+    public void externalChangeReloadsOnlyReadSnapshots() {
+        repo.pen();
+        repo.editor();
+        int[] notified = {0};
+        repo.addListener(p -> notified[0]++);
+
+        repo.onSharedPreferenceChanged(null, "unrelated");
+        assertEquals(0, notified[0]);
+
+        editorStore.stored = new EditorPrefsSnapshot(12f, true, 0, 1, 2, 3);
+        repo.onSharedPreferenceChanged(null, "eraser");
+        assertEquals(1, notified[0]);
+        assertEquals(12f, repo.editor().eraserThickness, 0f);
+    }
+
+    @Test
+    public void pendingWriteWinsOverEcho() {
+        PenPrefsSnapshot next = repo.pen().withColorIndex(5);
+        repo.updatePen(next);
+        // The store still has the old value; the echo must not roll the snapshot back.
+        repo.onSharedPreferenceChanged(null, "pen");
+        assertSame(next, repo.pen());
+
+        repo.flush();
+        repo.onSharedPreferenceChanged(null, "pen");
+        assertEquals(5, repo.pen().colorIndex);
+    }
+}
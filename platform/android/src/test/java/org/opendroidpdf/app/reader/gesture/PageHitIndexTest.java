@@ -0,0 +1,68 @@
+package org.opendroidpdf.app.reader.gesture;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PageHitIndexTest {
+
+    @Test
+    public void pointQueriesMatchLinearScan() {
+        Random random = new Random(42);
+        PageHitIndex.Builder builder = new PageHitIndex.Builder();
+        List<float[]> rects = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            float l = random.nextFloat() * 600f;
+            float t = random.nextFloat() * 800f;
+            float[] r = {l, t, l + 1f + random.nextFloat() * 80f, t + 1f + random.nextFloat() * 30f};
+            rects.add(r);
+            builder.add(PageHitIndex.Kind.values()[i % 3], i, null, r[0], r[1], r[2], r[3]);
+        }
+        PageHitIndex index = builder.build();
+
+        for (int q = 0; q < 2000; q++) {
+            float x = random.nextFloat() * 700f - 50f;
+            float y = random.nextFloat() * 900f - 50f;
+            float slop = q % 2 == 0 ? 0f : 6f;
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < rects.size(); i++) {
+                float[] r = rects.get(i);
+                if (i % 3 == 1 && x >= r[0] - slop && x <= r[2] + slop && y >= r[1] - slop && y <= r[3] + slop) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> actual = new ArrayList<>();
+            for (PageHitIndex.Entry e : index.hitsAt(PageHitIndex.Kind.values()[1], x, y, slop)) {
+                actual.add(e.index);
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void nearestAndUnionBounds() {
+        PageHitIndex index = new PageHitIndex.Builder()
+                .add(PageHitIndex.Kind.LINK, 0, null, 0f, 0f, 10f, 10f)
+                .add(PageHitIndex.Kind.LINK, 1, null, 20f, 0f, 30f, 10f)
+                .add(PageHitIndex.Kind.SIDECAR_HIGHLIGHT, 0, "h", 0f, 50f, 100f, 60f)
+                .add(PageHitIndex.Kind.SIDECAR_HIGHLIGHT, 0, "h", 0f, 62f, 40f, 72f)
+                .add(PageHitIndex.Kind.WIDGET, 0, null, 5f, 5f, 4f, 6f) // inverted: ignored
+                .build();
+
+        assertEquals(4, index.size());
+        PageHitIndex.Entry near = index.nearest(PageHitIndex.Kind.LINK, 17f, 5f, 5f);
+        assertNotNull(near);
+        assertEquals(1, near.index);
+        assertNull(index.nearest(PageHitIndex.Kind.LINK, 15f, 40f, 5f));
+        assertNull(index.firstAt(PageHitIndex.Kind.SIDECAR_HIGHLIGHT, 70f, 61f));
+
+        assertArrayEquals(new float[]{0f, 50f, 100f, 72f},
+                index.unionBounds(PageHitIndex.Kind.SIDECAR_HIGHLIGHT, "h"), 0f);
+        assertNull(index.unionBounds(PageHitIndex.Kind.SIDECAR_NOTE, "h"));
+        assertEquals(3, index.intersecting(null, 0f, 0f, 25f, 55f).size());
+    }
+}
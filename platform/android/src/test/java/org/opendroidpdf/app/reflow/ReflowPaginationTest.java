@@ -0,0 +1,61 @@
+package org.opendroidpdf.app.reflow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReflowPaginationTest {
+
+    private static long loc(int chapter, int page) {
+        return (((long) chapter) << 32) | (page & 0xffffffffL);
+    }
+
+    @Test
+    public void convertsBetweenPagesAndLocations() {
+        // Chapter 1 is empty (e.g. a spine item with only an image that failed to load).
+        ReflowPagination p = ReflowPagination.of("w1_h1", new int[]{3, 0, 2});
+        assertEquals(5, p.pageCount());
+        assertEquals(3, p.chapterStartPage(2));
+
+        assertEquals(loc(0, 0), p.locationFromPageNumber(0));
+        assertEquals(loc(0, 2), p.locationFromPageNumber(2));
+        assertEquals(loc(2, 0), p.locationFromPageNumber(3));
+        assertEquals(loc(2, 1), p.locationFromPageNumber(4));
+        assertEquals(-1L, p.locationFromPageNumber(5));
+
+        for (int page = 0; page < p.pageCount(); page++) {
+            assertEquals(page, p.pageNumberFromLocation(p.locationFromPageNumber(page)));
+        }
+    }
+
+    @Test
+    public void locationsFromLongerLayoutsClampToTheirChapter() {
+        ReflowPagination p = ReflowPagination.of("w1_h1", new int[]{3, 2});
+        assertEquals(2, p.pageNumberFromLocation(loc(0, 7)));
+        assertEquals(-1, p.pageNumberFromLocation(loc(5, 0)));
+        assertEquals(-1, p.pageNumberFromLocation(-1L));
+    }
+
+    @Test
+    public void spotCheckProbesTheLongestChapter() {
+        ReflowPagination p = ReflowPagination.of("w1_h1", new int[]{1, 7, 3, 7});
+        assertEquals(4, p.chapterCount());
+        assertEquals(1, p.longestChapter());
+        assertEquals(7, p.chapterPageCount(1));
+        assertEquals(-1, p.chapterPageCount(4));
+        assertEquals(-1, p.chapterPageCount(-1));
+    }
+
+    @Test
+    public void rejectsInvalidCountsAndComparesLayouts() {
+        assertNull(ReflowPagination.of("x", new int[0]));
+        assertNull(ReflowPagination.of("x", new int[]{1, -1}));
+
+        ReflowPagination a = ReflowPagination.of("a", new int[]{4, 5});
+        assertTrue(a.sameLayoutAs(ReflowPagination.of("b", new int[]{4, 5})));
+        assertFalse(a.sameLayoutAs(ReflowPagination.of("a", new int[]{4, 6})));
+    }
+}
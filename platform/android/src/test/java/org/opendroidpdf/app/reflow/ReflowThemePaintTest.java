@@ -0,0 +1,49 @@
+package org.opendroidpdf.app.reflow;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ReflowThemePaintTest {
+
+    /** Applies a 4x5 color matrix to an opaque color the way ColorMatrixColorFilter does. */
+    private static int apply(float[] m, int color) {
+        int[] in = {(color >> 16) & 0xFF, (color >> 8) & 0xFF, color & 0xFF, (color >>> 24) & 0xFF};
+        int out = 0;
+        for (int row = 0; row < 4; row++) {
+            float v = m[row * 5 + 4];
+            for (int c = 0; c < 4; c++) v += m[row * 5 + c] * in[c];
+            int clamped = Math.max(0, Math.min(255, Math.round(v)));
+            out |= clamped << (row == 3 ? 24 : 16 - 8 * row);
+        }
+        return out;
+    }
+
+    @Test
+    public void themesMapPaperAndInk() {
+        float[] dark = ReflowThemePaint.colorMatrix(ReflowTheme.DARK);
+        assertEquals(0xFF000000, apply(dark, 0xFFFFFFFF));
+        assertEquals(0xFFFFFFFF, apply(dark, 0xFF000000));
+        assertEquals(ReflowThemePaint.paperColor(ReflowTheme.DARK), apply(dark, 0xFFFFFFFF));
+
+        float[] sepia = ReflowThemePaint.colorMatrix(ReflowTheme.SEPIA);
+        assertEquals(ReflowThemePaint.paperColor(ReflowTheme.SEPIA), apply(sepia, 0xFFFFFFFF));
+        assertEquals(0xFF5B4636, apply(sepia, 0xFF000000));
+    }
+
+    @Test
+    public void lightThemeDrawsPagesAsRendered() {
+        assertNull(ReflowThemePaint.colorMatrix(ReflowTheme.LIGHT));
+        assertNull(ReflowThemePaint.colorMatrix(null));
+        assertEquals(0xFFFFFFFF, ReflowThemePaint.paperColor(ReflowTheme.LIGHT));
+    }
+
+    @Test
+    public void cssDoesNotDependOnTheme() {
+        ReflowPrefsSnapshot light = ReflowPrefsSnapshot.defaults();
+        ReflowPrefsSnapshot dark = new ReflowPrefsSnapshot(
+                light.fontDp, light.marginScale, light.lineSpacing, ReflowTheme.DARK);
+        assertEquals(ReflowCss.compose(light, 7.2f), ReflowCss.compose(dark, 7.2f));
+    }
+}
@@ -0,0 +1,126 @@
+package org.opendroidpdf.app.render;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RenderSchedulerTest {
+
+    /** Work that records its label and optionally blocks until released. */
+    private static final class RecordingWork implements RenderScheduler.Work {
+        final String label;
+        final List<String> log;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release;
+        volatile int runs;
+        volatile boolean aborted;
+        volatile boolean dropped;
+
+        RecordingWork(String label, List<String> log, CountDownLatch release) {
+            this.label = label;
+            this.log = log;
+            this.release = release;
+        }
+
+        @Override public void run() throws Exception {
+            runs++;
+            aborted = false;
+            started.countDown();
+            if (release != null) {
+                long deadline = System.currentTimeMillis() + 5000;
+                while (!aborted && release.getCount() > 0 && System.currentTimeMillis() < deadline) {
+                    release.await(5, TimeUnit.MILLISECONDS);
+                }
+            }
+            log.add(label + (aborted ? ":aborted" : ""));
+        }
+
+        @Override public void abort() {
+            aborted = true;
+        }
+
+        @Override public void onDropped() {
+            dropped = true;
+        }
+    }
+
+    @Test
+    public void runsInPriorityOrder() throws Exception {
+        RenderScheduler scheduler = new RenderScheduler(1);
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch gate = new CountDownLatch(1);
+        RecordingWork blocker = new RecordingWork("blocker", log, gate);
+        scheduler.submit(new RenderScheduler.Request(RenderScheduler.Priority.VISIBLE_HQ, blocker));
+        assertTrue(blocker.started.await(2, TimeUnit.SECONDS));
+
+        RenderScheduler.Handle export = scheduler.submit(new RenderScheduler.Request(
+                RenderScheduler.Priority.EXPORT, new RecordingWork("export", log, null)));
+        scheduler.submit(new RenderScheduler.Request(
+                RenderScheduler.Priority.THUMBNAIL, new RecordingWork("thumb", log, null)));
+        scheduler.submit(new RenderScheduler.Request(
+                RenderScheduler.Priority.VISIBLE_ENTIRE, new RecordingWork("entire", log, null)));
+        gate.countDown();
+
+        assertTrue(export.await());
+        assertEquals(java.util.Arrays.asList("blocker", "entire", "thumb", "export"), log);
+    }
+
+    @Test
+    public void dedupesAndCoalescesPendingWork() throws Exception {
+        RenderScheduler scheduler = new RenderScheduler(1);
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch gate = new CountDownLatch(1);
+        RecordingWork blocker = new RecordingWork("blocker", log, gate);
+        scheduler.submit(new RenderScheduler.Request(RenderScheduler.Priority.VISIBLE_HQ, blocker));
+        assertTrue(blocker.started.await(2, TimeUnit.SECONDS));
+
+        RecordingWork first = new RecordingWork("a1", log, null);
+        RecordingWork duplicate = new RecordingWork("a2", log, null);
+        RenderScheduler.Handle h1 = scheduler.submit(new RenderScheduler.Request(
+                RenderScheduler.Priority.THUMBNAIL, first).dedupeKey("a"));
+        RenderScheduler.Handle h2 = scheduler.submit(new RenderScheduler.Request(
+                RenderScheduler.Priority.THUMBNAIL, duplicate).dedupeKey("a"));
+        assertTrue(duplicate.dropped);
+
+        Object view = new Object();
+        RecordingWork stale = new RecordingWork("stale", log, null);
+        RenderScheduler.Handle staleHandle = scheduler.submit(new RenderScheduler.Request(
+                RenderScheduler.Priority.VISIBLE_HQ, stale).coalesceKey(view));
+        RenderScheduler.Handle fresh = scheduler.submit(new RenderScheduler.Request(
+                RenderScheduler.Priority.VISIBLE_HQ, new RecordingWork("fresh", log, null)).coalesceKey(view));
+        assertTrue(stale.dropped);
+        assertFalse(staleHandle.await());
+
+        gate.countDown();
+        assertTrue(h1.await());
+        assertTrue(h2.await());
+        assertTrue(fresh.await());
+        assertEquals(java.util.Arrays.asList("blocker", "fresh", "a1"), log);
+    }
+
+    @Test
+    public void visibleWorkPreemptsAndRestartsBackgroundWork() throws Exception {
+        RenderScheduler scheduler = new RenderScheduler(1);
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch gate = new CountDownLatch(1);
+        RecordingWork thumb = new RecordingWork("thumb", log, gate);
+        RenderScheduler.Handle thumbHandle = scheduler.submit(new RenderScheduler.Request(
+                RenderScheduler.Priority.THUMBNAIL, thumb).restartOnPreempt());
+        assertTrue(thumb.started.await(2, TimeUnit.SECONDS));
+
+        RenderScheduler.Handle visible = scheduler.submit(new RenderScheduler.Request(
+                RenderScheduler.Priority.VISIBLE_HQ, new RecordingWork("hq", log, null)));
+        assertTrue(visible.await());
+        gate.countDown();
+        assertTrue(thumbHandle.await());
+
+        assertEquals(2, thumb.runs);
+        assertEquals(java.util.Arrays.asList("thumb:aborted", "hq", "thumb"), log);
+    }
+}
@@ -0,0 +1,142 @@
+package org.opendroidpdf.app.selection;
+
+import org.junit.Test;
+import org.opendroidpdf.TextProcessor;
+import org.opendroidpdf.TextWord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TextSelectionModelTest {
+
+    private static TextWord word(String w, float left, float top, float right, float bottom) {
+        // Plain field writes: RectF's methods are not available on the JVM unit test classpath.
+        TextWord word = new TextWord();
+        word.left = left;
+        word.top = top;
+        word.right = right;
+        word.bottom = bottom;
+        word.w = w;
+        return word;
+    }
+
+    /** Three lines of three words, 10 units tall, words 20 wide with 10 unit gaps. */
+    private static TextWord[][] page() {
+        TextWord[][] text = new TextWord[3][];
+        for (int l = 0; l < 3; l++) {
+            float top = 20f * l;
+            text[l] = new TextWord[3];
+            for (int w = 0; w < 3; w++) {
+                text[l][w] = word("l" + l + "w" + w, 30f * w, top, 30f * w + 20f, top + 10f);
+            }
+        }
+        return text;
+    }
+
+    private static String collect(Selector selector) {
+        StringBuilder sb = new StringBuilder();
+        selector.select(new TextProcessor() {
+            @Override public void onStartLine() { sb.append('['); }
+            @Override public void onWord(TextWord word) { sb.append(word.w).append(' '); }
+            @Override public void onEndLine() { sb.append(']'); }
+            @Override public void onEndText() { sb.append('.'); }
+        });
+        return sb.toString();
+    }
+
+    private interface Selector {
+        void select(TextProcessor tp);
+    }
+
+    /** The pre-index scan of TextSelector, kept here as the reference behaviour. */
+    private static void naiveSelect(TextWord[][] text, float[] box, TextProcessor tp) {
+        float left = box[0], top = box[1], right = box[2], bottom = box[3];
+        for (TextWord[] line : text) {
+            if (line.length == 0) continue;
+            if (!(line[0].bottom > top && line[0].top < bottom)) continue;
+            boolean firstLine = line[0].top < top;
+            boolean lastLine = line[0].bottom > bottom;
+            float start = Float.NEGATIVE_INFINITY;
+            float end = Float.POSITIVE_INFINITY;
+            if (firstLine && lastLine) {
+                start = Math.min(left, right);
+                end = Math.max(left, right);
+            } else if (firstLine) {
+                start = left;
+            } else if (lastLine) {
+                end = right;
+            }
+            tp.onStartLine();
+            for (TextWord word : line) {
+                if (word.right > start && word.left < end) tp.onWord(word);
+            }
+            tp.onEndLine();
+        }
+        tp.onEndText();
+    }
+
+    private static boolean select(TextSelectionModel model, float left, float top, float right, float bottom) {
+        return model.update(left, top, right, bottom, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY);
+    }
+
+    @Test
+    public void matchesNaiveScanAcrossBoxes() {
+        TextWord[][] text = page();
+        // Second line written right to left, so it takes the unordered path.
+        TextWord[] reversed = new TextWord[3];
+        for (int i = 0; i < 3; i++) reversed[i] = text[1][2 - i];
+        text[1] = reversed;
+        TextSelectionModel model = new TextSelectionModel(new TextLineIndex(text));
+        assertFalse(model.index().isOrdered(1));
+
+        float[][] boxes = {
+                {25f, 5f, 45f, 45f},   // middle of first line to middle of last
+                {5f, 5f, 75f, 8f},     // within the first line
+                {70f, 25f, 10f, 28f},  // within the second line, dragged backwards
+                {0f, -5f, 100f, 100f}, // whole page
+                {0f, 100f, 10f, 120f}, // below the text
+        };
+        for (float[] b : boxes) {
+            select(model, b[0], b[1], b[2], b[3]);
+            String expected = collect(tp -> naiveSelect(text, b, tp));
+            assertEquals(expected, collect(model::select));
+        }
+    }
+
+    @Test
+    public void handleMoveOnlyRecomputesTheMovingLine() {
+        TextWord[][] text = page();
+        TextSelectionModel model = new TextSelectionModel(new TextLineIndex(text));
+
+        assertTrue(select(model, 25f, 5f, 45f, 45f));
+        assertEquals(3, model.lineCount());
+        TextBounds first = model.lineRect(0);
+        TextBounds middle = model.lineRect(1);
+
+        // Move the end handle within the last line: only that line changes.
+        assertTrue(select(model, 25f, 5f, 75f, 45f));
+        assertTrue(first == model.lineRect(0));
+        assertTrue(middle == model.lineRect(1));
+        TextBounds last = model.lineRect(2);
+        assertEquals(40f, last.top, 0f);
+        assertEquals(0f, last.left, 0f);
+        assertEquals(80f, last.right, 0f);
+
+        // Moving within the same word changes nothing.
+        assertFalse(select(model, 25f, 5f, 70f, 45f));
+        assertTrue(last.sameAs(model.lineRect(2)));
+    }
+
+    @Test
+    public void shrinkingTheBoxDropsLines() {
+        TextWord[][] text = page();
+        TextSelectionModel model = new TextSelectionModel(new TextLineIndex(text));
+        select(model, 0f, 5f, 80f, 45f);
+
+        assertTrue(select(model, 0f, 5f, 80f, 8f));
+        assertEquals(1, model.lineCount());
+        assertEquals(0f, model.lineRect(0).top, 0f);
+        assertEquals(10f, model.lineRect(0).bottom, 0f);
+    }
+}
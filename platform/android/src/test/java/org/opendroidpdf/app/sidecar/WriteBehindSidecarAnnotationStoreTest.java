@@ -0,0 +1,143 @@
+package org.opendroidpdf.app.sidecar;
+
+import android.graphics.RectF;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+import org.opendroidpdf.app.sidecar.model.SidecarHighlight;
+import org.opendroidpdf.app.sidecar.model.SidecarInkStroke;
+import org.opendroidpdf.app.sidecar.model.SidecarNote;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindSidecarAnnotationStoreTest {
+
+    /** Keeps notes only; counts transactions and optionally fails them. */
+    private static final class FakeStore implements SidecarAnnotationStore {
+        final LinkedHashMap<String, SidecarNote> notes = new LinkedHashMap<>();
+        int transactions;
+        boolean failNext;
+
+        @NonNull @Override public List<SidecarInkStroke> listInk(@NonNull String docId, int pageIndex, @Nullable String layoutProfileId) { return Collections.emptyList(); }
+        @NonNull @Override public List<SidecarInkStroke> listAllInk(@NonNull String docId) { return Collections.emptyList(); }
+        @Override public void insertInk(@NonNull String docId, @NonNull List<SidecarInkStroke> strokes) { }
+        @Override public void deleteInk(@NonNull String docId, @NonNull String strokeId) { }
+        @Override public boolean hasAnyInk(@NonNull String docId) { return false; }
+        @NonNull @Override public List<SidecarHighlight> listHighlights(@NonNull String docId, int pageIndex, @Nullable String layoutProfileId) { return Collections.emptyList(); }
+        @NonNull @Override public List<SidecarHighlight> listAllHighlights(@NonNull String docId) { return Collections.emptyList(); }
+        @Override public void insertHighlight(@NonNull String docId, @NonNull SidecarHighlight highlight) { }
+        @Override public void deleteHighlight(@NonNull String docId, @NonNull String highlightId) { }
+        @NonNull @Override public List<SidecarNote> listNotes(@NonNull String docId, int pageIndex, @Nullable String layoutProfileId) { return listAllNotes(docId); }
+        @NonNull @Override public List<SidecarNote> listAllNotes(@NonNull String docId) { return new ArrayList<>(notes.values()); }
+        @Override public void insertNote(@NonNull String docId, @NonNull SidecarNote note) { notes.put(note.id, note); }
+        @Override public void deleteNote(@NonNull String docId, @NonNull String noteId) { notes.remove(noteId); }
+        @Override public boolean hasAnyAnnotationsInLayout(@NonNull String docId, @Nullable String layoutProfileId) { return !notes.isEmpty(); }
+        @Override public boolean hasAnyAnnotationsOutsideLayout(@NonNull String docId, @NonNull String layoutProfileId) { return false; }
+
+        @Override public void runInTransaction(@NonNull Runnable work) {
+            transactions++;
+            if (failNext) {
+                failNext = false;
+                throw new IllegalStateException("disk full");
+            }
+            work.run();
+        }
+    }
+
+    private static SidecarNote note(String id, String text) {
+        return new SidecarNote(id, 0, null, new RectF(0, 0, 10, 10), text, 1L, 0, 12f);
+    }
+
+    @Test
+    public void rewritesOfOneRowCoalesceIntoOneCommit() {
+        FakeStore delegate = new FakeStore();
+        WriteBehindSidecarAnnotationStore store = new WriteBehindSidecarAnnotationStore(delegate, null);
+
+        store.insertNote("doc", note("n1", "a"));
+        store.insertNote("doc", note("n1", "ab"));
+        store.insertNote("doc", note("n1", "abc"));
+        assertTrue(store.hasPendingWrites());
+        assertTrue(delegate.notes.isEmpty());
+        assertEquals(2, store.coalescedWrites());
+
+        store.flush();
+        assertFalse(store.hasPendingWrites());
+        assertEquals(1, delegate.transactions);
+        assertEquals("abc", delegate.notes.get("n1").text);
+    }
+
+    @Test
+    public void readsSeeQueuedWritesAndDeletesCancelPuts() {
+        FakeStore delegate = new FakeStore();
+        WriteBehindSidecarAnnotationStore store = new WriteBehindSidecarAnnotationStore(delegate, null);
+        delegate.notes.put("old", note("old", "x"));
+
+        store.insertNote("doc", note("n1", "a"));
+        store.deleteNote("doc", "n1");
+        store.deleteNote("doc", "old");
+        assertEquals(0, store.listAllNotes("doc").size());
+        assertEquals(0, store.commits());
+        assertTrue(store.hasPendingWrites());
+    }
+
+    @Test
+    public void pageReadsOverlayQueuedWritesWithoutCommitting() {
+        FakeStore delegate = new FakeStore();
+        WriteBehindSidecarAnnotationStore store = new WriteBehindSidecarAnnotationStore(delegate, null);
+        delegate.notes.put("kept", note("kept", "x"));
+        delegate.notes.put("moved", note("moved", "y"));
+
+        store.insertNote("doc", note("kept", "x2"));
+        store.insertNote("doc", new SidecarNote("moved", 3, null, new RectF(0, 0, 10, 10), "y", 1L, 0, 12f));
+        store.insertNote("doc", note("added", "z"));
+        store.insertNote("other", note("elsewhere", "w"));
+
+        List<SidecarNote> page0 = store.listNotes("doc", 0, null);
+        assertEquals(2, page0.size());
+        assertEquals("kept", page0.get(0).id);
+        assertEquals("x2", page0.get(0).text);
+        assertEquals("added", page0.get(1).id);
+        assertEquals(0, delegate.transactions);
+
+        // Aggregates flush only when the document has writes queued.
+        store.flush();
+        store.insertNote("other", note("later", "v"));
+        assertTrue(store.hasAnyAnnotationsInLayout("doc", null));
+        assertEquals(1, delegate.transactions);
+        assertTrue(store.hasPendingWrites());
+    }
+
+    @Test
+    public void failedCommitKeepsWritesQueuedAndReportsIt() {
+        FakeStore delegate = new FakeStore();
+        WriteBehindSidecarAnnotationStore store = new WriteBehindSidecarAnnotationStore(delegate, null);
+        final boolean[] state = new boolean[2];
+        WriteBehindSidecarAnnotationStore.DurabilityListener listener = (pending, failed) -> {
+            state[0] = pending;
+            state[1] = failed;
+        };
+        store.addDurabilityListener(listener);
+
+        store.insertNote("doc", note("n1", "a"));
+        assertTrue(state[0]);
+        delegate.failNext = true;
+        store.flush();
+        assertTrue(state[0]);
+        assertTrue(state[1]);
+        assertTrue(store.lastCommitFailed());
+
+        store.flush();
+        assertFalse(state[0]);
+        assertFalse(state[1]);
+        assertEquals("a", delegate.notes.get("n1").text);
+    }
+}
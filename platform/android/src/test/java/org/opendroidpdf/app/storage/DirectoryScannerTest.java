@@ -0,0 +1,76 @@
+package org.opendroidpdf.app.storage;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DirectoryScannerTest {
+
+    private static final class Collector implements DirectoryScanner.Sink {
+        final List<String> dirs = new ArrayList<>();
+        final List<String> files = new ArrayList<>();
+        int batches;
+
+        @Override public void batch(List<String> d, List<String> f) {
+            batches++;
+            dirs.addAll(d);
+            files.addAll(f);
+        }
+    }
+
+    @Test
+    public void batchesConcatenateToSortedDirsAndFiles() throws IOException {
+        File root = Files.createTempDirectory("scan").toFile();
+        int count = DirectoryScanner.BATCH_SIZE + 10;
+        for (int i = 0; i < count; i++) {
+            assertTrue(new File(root, String.format("Doc%04d.pdf", i)).createNewFile());
+        }
+        assertTrue(new File(root, "b").mkdir());
+        assertTrue(new File(root, "A").mkdir());
+        assertTrue(new File(root, "zz").mkdir());
+
+        Collector c = new Collector();
+        DirectoryScanner.Listing listing = new DirectoryScanner().list(root, c);
+        assertNotNull(listing);
+        assertEquals(2, c.batches);
+        assertEquals(Arrays.asList("A", "b", "zz"), c.dirs);
+        assertEquals(count, c.files.size());
+        assertEquals("Doc0000.pdf", c.files.get(0));
+        assertEquals(String.format("Doc%04d.pdf", count - 1), c.files.get(count - 1));
+    }
+
+    @Test
+    public void unchangedDirectoryIsServedFromCacheUntilInvalidated() throws IOException {
+        File root = Files.createTempDirectory("scan").toFile();
+        assertTrue(new File(root, "a.pdf").createNewFile());
+        assertTrue(root.setLastModified(1_000_000L));
+        DirectoryScanner scanner = new DirectoryScanner();
+        DirectoryScanner.Listing first = scanner.list(root, new Collector());
+
+        // Same mtime: the cached listing is replayed even though a file was added.
+        assertTrue(new File(root, "b.pdf").createNewFile());
+        assertTrue(root.setLastModified(1_000_000L));
+        Collector cached = new Collector();
+        assertSame(first, scanner.list(root, cached));
+        assertEquals(1, cached.batches);
+        assertEquals(Arrays.asList("a.pdf"), cached.files);
+
+        scanner.invalidate(root);
+        Collector fresh = new Collector();
+        scanner.list(root, fresh);
+        assertEquals(Arrays.asList("a.pdf", "b.pdf"), fresh.files);
+    }
+
+    @Test
+    public void unreadableDirectoryReturnsNull() {
+        File missing = new File(System.getProperty("java.io.tmpdir"), "no-such-dir-" + System.nanoTime());
+        assertNull(new DirectoryScanner().list(missing, new Collector()));
+    }
+}
@@ -0,0 +1,60 @@
+package org.opendroidpdf.app.storage;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class KeyedFileCacheTest {
+
+    @Test
+    public void writeReplacesAndReadReturnsLatest() throws IOException {
+        File dir = Files.createTempDirectory("kfc").toFile();
+        KeyedFileCache cache = new KeyedFileCache(dir, ".json", 8, 1024);
+        assertNull(cache.read("doc"));
+
+        cache.write("doc", "{\"v\":1}");
+        cache.write("doc", "{\"v\":2}");
+        assertEquals("{\"v\":2}", cache.read("doc"));
+        assertNull(cache.read("other"));
+
+        File[] files = dir.listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        assertTrue(files[0].getName().endsWith(".json"));
+    }
+
+    @Test
+    public void trimKeepsMostRecentlyUsedEntries() throws IOException {
+        File dir = Files.createTempDirectory("kfc").toFile();
+        KeyedFileCache cache = new KeyedFileCache(dir, ".json", 2, 1024);
+        cache.write("a", "A");
+        cache.write("b", "B");
+        File[] files = dir.listFiles();
+        assertNotNull(files);
+        for (File f : files) assertTrue(f.setLastModified(1_000_000L));
+
+        // Reading "a" makes it the most recent, so writing "c" evicts "b".
+        assertEquals("A", cache.read("a"));
+        cache.write("c", "C");
+        assertEquals("A", cache.read("a"));
+        assertNull(cache.read("b"));
+        assertEquals("C", cache.read("c"));
+    }
+
+    @Test
+    public void oversizedPayloadsAreNotStoredAndRemoveDropsEntry() throws IOException {
+        File dir = Files.createTempDirectory("kfc").toFile();
+        KeyedFileCache cache = new KeyedFileCache(dir, ".json", 8, 4);
+        cache.write("big", "12345");
+        assertNull(cache.read("big"));
+
+        cache.write("small", "1234");
+        assertEquals("1234", cache.read("small"));
+        cache.remove("small");
+        assertNull(cache.read("small"));
+    }
+}
@@ -0,0 +1,45 @@
+package org.opendroidpdf.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CoreOpMetricsTest {
+
+    @Test
+    public void bucketFor_usesLog2Boundaries() {
+        assertEquals(0, CoreOpMetrics.Histogram.bucketFor(0));
+        assertEquals(0, CoreOpMetrics.Histogram.bucketFor(1));
+        assertEquals(1, CoreOpMetrics.Histogram.bucketFor(2));
+        assertEquals(1, CoreOpMetrics.Histogram.bucketFor(3));
+        assertEquals(10, CoreOpMetrics.Histogram.bucketFor(1024));
+        assertEquals(CoreOpMetrics.BUCKETS - 1, CoreOpMetrics.Histogram.bucketFor(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void histogram_tracksCountTotalMaxAndQuantiles() {
+        CoreOpMetrics.Histogram h = new CoreOpMetrics.Histogram();
+        for (int i = 0; i < 99; i++) h.record(10);
+        h.record(5000);
+        assertEquals(100, h.count());
+        assertEquals(99 * 10 + 5000, h.totalMicros());
+        assertEquals(5000, h.maxMicros());
+        assertEquals(16, h.quantileUpperBoundMicros(0.5));
+        assertEquals(8192, h.quantileUpperBoundMicros(1.0));
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.quantileUpperBoundMicros(0.5));
+    }
+
+    @Test
+    public void record_splitsLockWaitFromWallTime() {
+        CoreOpMetrics.reset();
+        long start = System.nanoTime() - 3_000_000L;
+        long acquired = start + 1_000_000L;
+        CoreOpMetrics.record(CoreOpMetrics.Op.DRAW_PAGE, start, acquired);
+        assertEquals(1, CoreOpMetrics.count(CoreOpMetrics.Op.DRAW_PAGE));
+        assertEquals(0, CoreOpMetrics.count(CoreOpMetrics.Op.SAVE));
+        assertEquals(1000, CoreOpMetrics.lockWait(CoreOpMetrics.Op.DRAW_PAGE).totalMicros());
+        assertTrue(CoreOpMetrics.wall(CoreOpMetrics.Op.DRAW_PAGE).totalMicros() >= 3000);
+    }
+}
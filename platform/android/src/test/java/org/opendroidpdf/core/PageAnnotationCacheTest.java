@@ -0,0 +1,159 @@
+package org.opendroidpdf.core;
+
+import android.graphics.PointF;
+
+import org.junit.Test;
+import org.opendroidpdf.Annotation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PageAnnotationCacheTest {
+
+    // Fixtures write the android.graphics fields directly: on the JVM unit test classpath the
+    // RectF and PointF constructors are stubs that store nothing.
+    private static Annotation annotation(long objectNumber, float x, PointF[][] arcs, String text) {
+        Annotation a = new Annotation(0f, 0f, 0f, 0f, Annotation.Type.INK, arcs, text, objectNumber);
+        a.left = x;
+        a.top = 0f;
+        a.right = x + 10f;
+        a.bottom = 10f;
+        return a;
+    }
+
+    private static Annotation ink(long objectNumber, float x, PointF[][] arcs) {
+        return annotation(objectNumber, x, arcs, null);
+    }
+
+    private static PointF point(float x, float y) {
+        PointF p = new PointF();
+        p.x = x;
+        p.y = y;
+        return p;
+    }
+
+    private static PointF[][] arcs(float x) {
+        return new PointF[][]{{point(x, 1f), point(x + 5f, 2f)}};
+    }
+
+    @Test
+    public void editsMakeTheSnapshotStaleButReusable() {
+        PageAnnotationCache cache = new PageAnnotationCache();
+        Annotation a = ink(7L, 0f, arcs(0f));
+        Annotation b = ink(3L, 20f, arcs(20f));
+        Annotation[] listed = {a, b};
+        cache.put(1, listed);
+        assertSame(listed, cache.get(1));
+
+        cache.markChanged(1);
+        assertNull(cache.get(1));
+        assertArrayEquals(new long[]{3L, 7L}, cache.reusableArcs(1));
+
+        cache.markChanged(1, 7L);
+        assertArrayEquals(new long[]{3L}, cache.reusableArcs(1));
+        assertEquals(0, cache.reusableArcs(2).length);
+    }
+
+    @Test
+    public void mergeRestoresSkippedArcsAndKeepsUnchangedInstances() {
+        PageAnnotationCache cache = new PageAnnotationCache();
+        Annotation a = ink(7L, 0f, arcs(0f));
+        Annotation b = ink(3L, 20f, arcs(20f));
+        cache.put(1, new Annotation[]{a, b});
+        cache.markChanged(1);
+        long[] reuse = cache.reusableArcs(1);
+
+        // Native listing after a new stroke: known objects come without arcs, b's text changed.
+        Annotation a2 = ink(7L, 0f, null);
+        Annotation b2 = annotation(3L, 20f, null, "note");
+        Annotation c = ink(9L, 40f, arcs(40f));
+        Annotation[] merged = cache.merge(1, new Annotation[]{a2, b2, c}, reuse);
+
+        assertSame(a, merged[0]);
+        assertNotSame(b, merged[1]);
+        assertSame(b.arcs, merged[1].arcs);
+        assertEquals("note", merged[1].text);
+        assertSame(c, merged[2]);
+        assertSame(merged, cache.get(1));
+    }
+
+    @Test
+    public void mergeFailsWhenTheBaseSnapshotWasTrimmed() {
+        PageAnnotationCache cache = new PageAnnotationCache();
+        Annotation a = ink(7L, 0f, arcs(0f));
+        cache.put(1, new Annotation[]{a});
+        cache.markChanged(1);
+        long[] reuse = cache.reusableArcs(1);
+
+        // A memory trim between reusableArcs and merge drops the arcs the listing skipped.
+        cache.trimToFraction(0f);
+        assertNull(cache.merge(1, new Annotation[]{ink(7L, 0f, null)}, reuse));
+        assertNull(cache.get(1));
+
+        // The full listing that follows is stored as is.
+        Annotation full = ink(7L, 0f, arcs(0f));
+        Annotation[] merged = cache.merge(1, new Annotation[]{full}, new long[0]);
+        assertSame(full, merged[0]);
+        assertSame(merged, cache.get(1));
+
+        // A snapshot replaced meanwhile cannot supply them either.
+        cache.markChanged(1);
+        reuse = cache.reusableArcs(1);
+        cache.invalidate(1);
+        cache.put(1, new Annotation[0]);
+        assertNull(cache.merge(1, new Annotation[]{ink(7L, 0f, null)}, reuse));
+    }
+
+    @Test
+    public void touchedObjectsTakeTheirFreshArcs() {
+        Annotation a = ink(7L, 0f, arcs(0f));
+        Annotation moved = ink(7L, 5f, arcs(5f));
+        Annotation[] merged = PageAnnotationCache.merge(new Annotation[]{a}, new Annotation[]{moved}, new long[0]);
+        assertSame(moved, merged[0]);
+
+        Annotation same = ink(7L, 0f, arcs(0f));
+        merged = PageAnnotationCache.merge(new Annotation[]{a}, new Annotation[]{same}, new long[0]);
+        assertSame(a, merged[0]);
+    }
+
+    @Test
+    public void changedBoundsCoverAddedAndRestyledAnnotations() {
+        PageAnnotationCache cache = new PageAnnotationCache();
+        Annotation a = ink(7L, 0f, arcs(0f));
+        Annotation b = ink(3L, 20f, arcs(20f));
+        cache.put(1, new Annotation[]{a, b});
+        assertNull(cache.takeChangedBounds(1));
+
+        // A new stroke: the listing diff reports where it landed, not the untouched annotations.
+        cache.markChanged(1);
+        assertNull(cache.takeChangedBounds(1));
+        cache.markChanged(1);
+        Annotation c = ink(9L, 40f, arcs(40f));
+        cache.merge(1, new Annotation[]{ink(7L, 0f, null), ink(3L, 20f, null), c}, cache.reusableArcs(1));
+        assertArrayEquals(new float[]{40f, 0f, 50f, 10f}, cache.takeChangedBounds(1), 0f);
+        assertNull(cache.takeChangedBounds(1));
+
+        // A restyle lists the same fields; the old bounds of the named annotation are reported.
+        cache.markChanged(1, 3L);
+        cache.merge(1, new Annotation[]{ink(7L, 0f, null), ink(3L, 20f, arcs(20f)), ink(9L, 40f, null)}, cache.reusableArcs(1));
+        assertArrayEquals(new float[]{20f, 0f, 30f, 10f}, cache.takeChangedBounds(1), 0f);
+    }
+
+    @Test
+    public void unknownChangesHaveNoBounds() {
+        PageAnnotationCache cache = new PageAnnotationCache();
+        Annotation a = ink(7L, 0f, arcs(0f));
+        cache.put(1, new Annotation[]{a});
+        cache.markChangedUnknown(1);
+        cache.merge(1, new Annotation[]{ink(7L, 0f, null)}, cache.reusableArcs(1));
+        assertNull(cache.takeChangedBounds(1));
+
+        // Edits to a page that was never listed cannot be bounded either.
+        cache.markChanged(2);
+        cache.merge(2, new Annotation[]{a}, cache.reusableArcs(2));
+        assertNull(cache.takeChangedBounds(2));
+    }
+}
@@ -0,0 +1,71 @@
+package org.opendroidpdf.core;
+
+import org.junit.Test;
+import org.opendroidpdf.TextWord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PageTextCacheTest {
+
+    private static TextWord[][] lines(String... words) {
+        TextWord[] line = new TextWord[words.length];
+        for (int i = 0; i < words.length; i++) {
+            line[i] = new TextWord();
+            line[i].w = words[i];
+        }
+        return new TextWord[][]{line};
+    }
+
+    @Test
+    public void servesStoredPagesUntilInvalidated() {
+        PageTextCache cache = new PageTextCache();
+        TextWord[][] text = lines("hello", "world");
+        cache.put(3, text);
+
+        assertSame(text, cache.get(3));
+        assertNull(cache.get(4));
+
+        cache.invalidate(3);
+        assertNull(cache.get(3));
+        assertEquals(0L, cache.sizeBytes());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondLimit() {
+        PageTextCache cache = new PageTextCache();
+        for (int page = 0; page < PageTextCache.MAX_PAGES; page++) {
+            cache.put(page, lines("p" + page));
+        }
+        // Touch page 0 so page 1 is the oldest.
+        assertNotNull(cache.get(0));
+        cache.put(PageTextCache.MAX_PAGES, lines("new"));
+
+        assertNotNull(cache.get(0));
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(PageTextCache.MAX_PAGES));
+    }
+
+    @Test
+    public void tracksSizeAcrossReplaceAndTrim() {
+        PageTextCache cache = new PageTextCache();
+        cache.put(0, lines("a", "b"));
+        cache.put(1, lines("c"));
+        long both = cache.sizeBytes();
+        assertEquals(PageTextCache.estimateBytes(lines("a", "b")) + PageTextCache.estimateBytes(lines("c")), both);
+
+        // Replacing page 0 also makes it the most recently used.
+        cache.put(0, lines("a"));
+        assertEquals(2 * PageTextCache.estimateBytes(lines("c")), cache.sizeBytes());
+
+        cache.trimToFraction(0.5f);
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(0));
+
+        cache.trimToFraction(0f);
+        assertEquals(0L, cache.sizeBytes());
+        assertNull(cache.get(0));
+    }
+}
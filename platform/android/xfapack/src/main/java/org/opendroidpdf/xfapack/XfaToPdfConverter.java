@@ -8,7 +8,10 @@ import com.tom_roush.pdfbox.pdmodel.PDDocumentInformation;
 import com.tom_roush.pdfbox.pdmodel.encryption.InvalidPasswordException;
 import com.tom_roush.pdfbox.pdmodel.interactive.form.PDAcroForm;
 
+import org.opendroidpdf.pdfboxops.FormFlattening;
+
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -17,6 +20,9 @@ final class XfaToPdfConverter {
 
     private static final String PRODUCER = "OpenDroidPDF XFA Pack";
 
+    /** Default cap on PDFBox's in-heap stream buffers; the rest spills to a scratch file. */
+    static final long DEFAULT_MAX_MAIN_MEMORY_BYTES = 10L * 1024 * 1024;
+
     private XfaToPdfConverter() {
     }
 
@@ -29,6 +35,20 @@ final class XfaToPdfConverter {
                        int mode,
                        File tempDir,
                        String password) throws IOException {
+        return convert(in, out, mode, tempDir, password, DEFAULT_MAX_MAIN_MEMORY_BYTES);
+    }
+
+    /**
+     * The input is spooled to a temp file in {@code tempDir} and parsed from there, so PDFBox
+     * reads objects on demand and holds at most {@code maxMainMemoryBytes} of stream data on the
+     * heap; the binder-supplied descriptor may be a pipe and cannot be seeked directly.
+     */
+    static int convert(InputStream in,
+                       OutputStream out,
+                       int mode,
+                       File tempDir,
+                       String password,
+                       long maxMainMemoryBytes) throws IOException {
         if (mode != IXfaPackConverter.MODE_CONVERT_TO_ACROFORM
                 && mode != IXfaPackConverter.MODE_FLATTEN_TO_PDF) {
             return IXfaPackConverter.RESULT_ERROR;
@@ -40,7 +60,8 @@ final class XfaToPdfConverter {
         //   - an /XFA entry that causes many viewers (including MuPDF) to treat it as XFA-only.
         //
         // In that case, removing /XFA restores compatibility with the embedded AcroForm fields.
-        try (PDDocument doc = loadPdf(in, tempDir, password)) {
+        File spooled = spoolToTempFile(in, tempDir);
+        try (PDDocument doc = loadPdf(spooled, tempDir, password, maxMainMemoryBytes)) {
             // Ensure we don't attempt to re-save the original encryption dictionary without a
             // protection policy; output PDFs should be normal, openable copies.
             try {
@@ -69,7 +90,8 @@ final class XfaToPdfConverter {
 
             if (mode == IXfaPackConverter.MODE_FLATTEN_TO_PDF) {
                 try {
-                    form.flatten();
+                    // Keep the fields' existing appearances, as PDAcroForm#flatten() does.
+                    FormFlattening.flattenByPage(doc, form, false);
                 } catch (Throwable t) {
                     return IXfaPackConverter.RESULT_ERROR;
                 }
@@ -84,25 +106,37 @@ final class XfaToPdfConverter {
             return IXfaPackConverter.RESULT_OK;
         } catch (InvalidPasswordException ipe) {
             return IXfaPackConverter.RESULT_PASSWORD_REQUIRED;
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            spooled.delete();
         }
     }
 
-    private static PDDocument loadPdf(InputStream in, File tempDir, String password) throws IOException {
-        try {
-            MemoryUsageSetting mem = MemoryUsageSetting.setupMixed(10 * 1024 * 1024);
-            if (tempDir != null) {
-                mem.setTempDir(tempDir);
-            }
-            if (password != null) {
-                return PDDocument.load(in, password, mem);
+    private static File spoolToTempFile(InputStream in, File tempDir) throws IOException {
+        File file = File.createTempFile("odp_xfa_", ".pdf", tempDir);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
             }
-            return PDDocument.load(in, mem);
-        } catch (NoSuchMethodError nsme) {
-            // Defensive: older pdfbox-android shims may not expose all overloads.
-            if (password != null) {
-                return PDDocument.load(in, password);
-            }
-            return PDDocument.load(in);
+        } catch (IOException | RuntimeException e) {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    private static PDDocument loadPdf(File file, File tempDir, String password, long maxMainMemoryBytes)
+            throws IOException {
+        MemoryUsageSetting mem = MemoryUsageSetting.setupMixed(Math.max(0L, maxMainMemoryBytes));
+        if (tempDir != null) {
+            mem.setTempDir(tempDir);
+        }
+        if (password != null) {
+            return PDDocument.load(file, password, mem);
         }
+        return PDDocument.load(file, mem);
     }
 }
@@ -361,6 +361,11 @@ void pp_drop_string_list_mupdf(void *mupdf_ctx, pp_string_list *list);
 /* PDF JS alert loop. This is a PDF-only concept; alerts_new returns NULL for non-PDF docs. */
 pp_pdf_alerts *pp_pdf_alerts_new_mupdf(void *mupdf_ctx, void *mupdf_doc);
 void pp_pdf_alerts_drop(pp_pdf_alerts *alerts);
+/* Optional push delivery: called on the thread running the script while an alert is pending.
+ * Strings in `alert` are only valid during the call. Return nonzero if the alert was handed to the
+ * UI (the script then blocks until pp_pdf_alerts_reply), or 0 to dismiss it immediately. */
+typedef int (pp_pdf_alert_notify_fn)(void *user, const pp_pdf_alert *alert);
+void pp_pdf_alerts_set_notify(pp_pdf_alerts *alerts, pp_pdf_alert_notify_fn *notify, void *user);
 int pp_pdf_alerts_start(pp_pdf_alerts *alerts);
 void pp_pdf_alerts_stop(pp_pdf_alerts *alerts);
 int pp_pdf_alerts_wait(pp_pdf_alerts *alerts, pp_pdf_alert *out_alert);
@@ -11,6 +11,8 @@ struct pp_pdf_alerts
 	int alert_request;
 	int alert_reply;
 	pdf_alert_event *current_alert;
+	pp_pdf_alert_notify_fn *notify;
+	void *notify_user;
 	pthread_mutex_t fin_lock;
 	pthread_mutex_t fin_lock2;
 	pthread_mutex_t alert_lock;
@@ -41,11 +43,34 @@ pp_pdf_show_alert(pp_pdf_alerts *alerts, pdf_alert_event *alert)
 
 	if (alerts->alerts_active)
 	{
+		int delivered = 1;
+
 		alerts->current_alert = alert;
 		alerts->alert_request = 1;
 		pthread_cond_signal(&alerts->alert_request_cond);
 
-		while (alerts->alerts_active && !alerts->alert_reply)
+		if (alerts->notify)
+		{
+			/* Push the alert to the host on this (JS) thread. Strings are borrowed: the host must
+			 * copy them before returning. The lock is dropped so a reply may arrive meanwhile. */
+			pp_pdf_alert_notify_fn *notify = alerts->notify;
+			void *user = alerts->notify_user;
+			pp_pdf_alert view;
+
+			view.title_utf8 = (char *)(alert->title ? alert->title : "");
+			view.message_utf8 = (char *)(alert->message ? alert->message : "");
+			view.icon_type = alert->icon_type;
+			view.button_group_type = alert->button_group_type;
+			view.button_pressed = alert->button_pressed;
+
+			pthread_mutex_unlock(&alerts->alert_lock);
+			delivered = notify(user, &view);
+			pthread_mutex_lock(&alerts->alert_lock);
+			if (!delivered)
+				alerts->alert_request = 0;
+		}
+
+		while (delivered && alerts->alerts_active && !alerts->alert_reply)
 			pthread_cond_wait(&alerts->alert_reply_cond, &alerts->alert_lock);
 		alerts->alert_reply = 0;
 		alerts->current_alert = NULL;
@@ -155,6 +180,17 @@ pp_pdf_alerts_drop(pp_pdf_alerts *alerts)
 	fz_free(ctx, alerts);
 }
 
+void
+pp_pdf_alerts_set_notify(pp_pdf_alerts *alerts, pp_pdf_alert_notify_fn *notify, void *user)
+{
+	if (!alerts || !alerts->initialised)
+		return;
+	pthread_mutex_lock(&alerts->alert_lock);
+	alerts->notify = notify;
+	alerts->notify_user = user;
+	pthread_mutex_unlock(&alerts->alert_lock);
+}
+
 int
 pp_pdf_alerts_start(pp_pdf_alerts *alerts)
 {